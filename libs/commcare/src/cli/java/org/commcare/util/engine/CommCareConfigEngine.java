@@ -53,7 +53,9 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Hashtable;
 import java.util.Vector;
-import java.util.zip.ZipFile;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nullable;
 
 import datadog.trace.api.Trace;
 
@@ -108,6 +110,15 @@ public class CommCareConfigEngine {
         return (name, type) -> new DummyIndexedStorageUtility(type, prototypeFactory);
     }
 
+    /**
+     * Fetches and parses the app's resources on the given executor while installing or updating
+     * it, see ResourceTable.setPrefetchExecutor
+     */
+    public void setPrefetchExecutor(@Nullable ExecutorService executor, int lookahead) {
+        table.setPrefetchExecutor(executor, lookahead);
+        updateTable.setPrefetchExecutor(executor, lookahead);
+    }
+
     protected void setRoots() {
         ReferenceManager.instance().addReferenceFactory(new JavaHttpRoot());
 
@@ -125,15 +136,14 @@ public class CommCareConfigEngine {
         } else {
             fileName = archiveURL;
         }
-        ZipFile zip;
+        String archiveGUID;
         try {
-            zip = new ZipFile(fileName);
+            archiveGUID = this.mArchiveRoot.addArchiveFile(new File(fileName));
         } catch (IOException e) {
             print.println("File at " + archiveURL + ": is not a valid CommCare Package. Downloaded to: " + fileName);
             e.printStackTrace(print);
             return;
         }
-        String archiveGUID = this.mArchiveRoot.addArchiveFile(zip);
 
         init("jr://archive/" + archiveGUID + "/profile.ccpr");
     }
@@ -217,7 +227,7 @@ public class CommCareConfigEngine {
     public void initEnvironment() throws ResourceInitializationException {
         Localization.init(true);
         try {
-            table.initializeResources(platform, false);
+            initializeResources();
         } catch (ResourceInitializationException e) {
             print.println("Error while initializing one of the resolved resources");
             e.printStackTrace(print);
@@ -236,6 +246,13 @@ public class CommCareConfigEngine {
         setDefaultLocale();
     }
 
+    /**
+     * Registers the installed resources with the platform and the global localizer
+     */
+    protected void initializeResources() throws ResourceInitializationException {
+        table.initializeResources(platform, false);
+    }
+
     private void setDefaultLocale() {
         String defaultLocale = "default";
         for (PropertySetter prop : platform.getCurrentProfile().getPropertySetters()) {
@@ -94,6 +94,12 @@ public class MockUserDataSandbox extends UserSandbox {
         indexedFixtureBaseMap.put(fixtureName, new IndexedFixtureIdentifier(baseName, childName, null));
     }
 
+    @Override
+    public void removeIndexedFixture(String fixtureName) {
+        indexedFixtureStorages.remove(fixtureName);
+        indexedFixtureBaseMap.remove(fixtureName);
+    }
+
     @Override
     public IStorageUtilityIndexed<FormInstance> getUserFixtureStorage() {
         return userFixtureStorage;
@@ -0,0 +1,63 @@
+package org.commcare.util.screen;
+
+import org.commcare.cases.entity.Entity;
+import org.javarosa.core.model.instance.TreeReference;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The result of filtering, sorting and grouping an entity list, kept as the ordered references of
+ * the matching entities so that the list can be paged through without evaluating every entity
+ * again.
+ *
+ * Cursors are immutable and can be shared between requests for as long as the entities they were
+ * built from are unchanged.
+ */
+public class EntityListCursor {
+
+    private final TreeReference[] references;
+
+    // group key of each reference, null if the list isn't grouped
+    private final String[] groupKeys;
+
+    private EntityListCursor(TreeReference[] references, String[] groupKeys) {
+        this.references = references;
+        this.groupKeys = groupKeys;
+    }
+
+    /**
+     * @param entities entities in the order they are listed
+     * @param grouped  whether the entities are grouped and group keys need to be kept
+     */
+    public static EntityListCursor fromEntities(List<Entity<TreeReference>> entities, boolean grouped) {
+        TreeReference[] references = new TreeReference[entities.size()];
+        String[] groupKeys = grouped ? new String[entities.size()] : null;
+        for (int i = 0; i < references.length; i++) {
+            Entity<TreeReference> entity = entities.get(i);
+            references[i] = entity.getElement();
+            if (grouped) {
+                groupKeys[i] = entity.getGroupKey();
+            }
+        }
+        return new EntityListCursor(references, groupKeys);
+    }
+
+    public int size() {
+        return references.length;
+    }
+
+    /**
+     * @return the group key of the entity at the given position, or null if the list isn't grouped
+     */
+    public String getGroupKey(int index) {
+        return groupKeys == null ? null : groupKeys[index];
+    }
+
+    /**
+     * @return the references of the entities from start (inclusive) to end (exclusive)
+     */
+    public TreeReference[] getReferences(int start, int end) {
+        return Arrays.copyOfRange(references, start, end);
+    }
+}
@@ -0,0 +1,22 @@
+package org.commcare.util.screen;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps entity list cursors between the screens built for the same list, e.g. across requests
+ * for different pages of a case list.
+ *
+ * Implementations are responsible for discarding cursors once the entities they refer to may
+ * have changed.
+ */
+public interface EntityListCursorStore {
+
+    /**
+     * @param key identifies the entity list along with the search and sort applied to it
+     * @return the cursor stored for the key, or null if there is none
+     */
+    @Nullable
+    EntityListCursor getCursor(String key);
+
+    void storeCursor(String key, EntityListCursor cursor);
+}
@@ -4,6 +4,7 @@ import static org.commcare.util.screen.EntityScreenHelper.initEntities;
 import static org.commcare.util.screen.MultiSelectEntityScreen.USE_SELECTED_VALUES;
 
 import org.commcare.cases.entity.Entity;
+import org.commcare.cases.entity.EntityStorageCache;
 import org.commcare.modern.util.Pair;
 import org.commcare.suite.model.Action;
 import org.commcare.suite.model.Detail;
@@ -18,6 +19,8 @@ import java.io.PrintStream;
 import java.util.List;
 import java.util.Vector;
 
+import javax.annotation.Nullable;
+
 /**
  * The entity list subscreen handles actually displaying the list of dynamic entities to the
  * user to be displayed and chosen during a <datum> selection
@@ -38,21 +41,47 @@ public class EntityListSubscreen extends Subscreen<EntityScreen> {
     private final EvaluationContext rootContext;
 
     private boolean handleCaseIndex;
+    // null if the list was initialised from a cursor, until all entities are asked for
     private List<Entity<TreeReference>> entities;
+    private EntityListCursor cursor;
+    private final EntityStorageCache entityStorageCache;
 
     public EntityListSubscreen(Detail shortDetail, Vector<TreeReference> references, EvaluationContext context,
             boolean handleCaseIndex, EntityScreenContext entityScreenContext) throws CommCareSessionException {
+        this(shortDetail, references, context, handleCaseIndex, entityScreenContext, null);
+    }
+
+    public EntityListSubscreen(Detail shortDetail, Vector<TreeReference> references, EvaluationContext context,
+            boolean handleCaseIndex, EntityScreenContext entityScreenContext,
+            @Nullable EntityStorageCache entityStorageCache) throws CommCareSessionException {
+        this(shortDetail, references, context, handleCaseIndex, entityScreenContext, entityStorageCache, null);
+    }
+
+    /**
+     * @param cursor the already filtered, sorted and grouped list of the given references for the
+     *               entity screen context, if known. Entities are then only initialised once
+     *               they're asked for.
+     */
+    public EntityListSubscreen(Detail shortDetail, Vector<TreeReference> references, EvaluationContext context,
+            boolean handleCaseIndex, EntityScreenContext entityScreenContext,
+            @Nullable EntityStorageCache entityStorageCache, @Nullable EntityListCursor cursor)
+            throws CommCareSessionException {
         mHeader = createHeader(shortDetail, context);
         this.shortDetail = shortDetail;
         this.rootContext = context;
         this.handleCaseIndex = handleCaseIndex;
+        this.entityStorageCache = entityStorageCache;
         this.entitiesRefs = new TreeReference[references.size()];
         references.copyInto(entitiesRefs);
         actions = shortDetail.getCustomActions(context);
-        entities = initEntities(context, shortDetail, entityScreenContext, entitiesRefs);
+        this.cursor = cursor;
+        if (cursor == null) {
+            entities = initEntities(context, shortDetail, entityScreenContext, entitiesRefs, entityStorageCache);
+        }
     }
 
     private String[] getRows(Detail detail) {
+        List<Entity<TreeReference>> entities = getEntities();
         String[] rows = new String[entities.size()];
         for (int e = 0; e < entities.size(); e++) {
             Entity<TreeReference> entity = entities.get(e);
@@ -189,7 +218,7 @@ public class EntityListSubscreen extends Subscreen<EntityScreen> {
             String debugArg = input.substring("debug ".length());
             try {
                 int chosenDebugIndex = Integer.valueOf(debugArg.trim());
-                createRow(entities.get(chosenDebugIndex), shortDetail);
+                createRow(getEntities().get(chosenDebugIndex), shortDetail);
             } catch (NumberFormatException e) {
                 if ("list".equals(debugArg)) {
                     host.printNodesetExpansionTrace(new AccumulatingReporter());
@@ -250,6 +279,31 @@ public class EntityListSubscreen extends Subscreen<EntityScreen> {
     }
 
     public List<Entity<TreeReference>> getEntities() {
+        if (entities == null) {
+            entities = initEntities(rootContext, shortDetail, cursor.getReferences(0, cursor.size()),
+                    entityStorageCache);
+        }
         return entities;
     }
+
+    /**
+     * @return entities from start (inclusive) to end (exclusive) of the list, initialising only
+     * those if the list was built from a cursor
+     */
+    public List<Entity<TreeReference>> getEntities(int start, int end) {
+        if (entities != null) {
+            return entities.subList(start, end);
+        }
+        return initEntities(rootContext, shortDetail, cursor.getReferences(start, end), entityStorageCache);
+    }
+
+    /**
+     * @return the filtered, sorted and grouped list of this screen's entities
+     */
+    public EntityListCursor getEntityListCursor() {
+        if (cursor == null) {
+            cursor = EntityListCursor.fromEntities(entities, shortDetail.getGroup() != null);
+        }
+        return cursor;
+    }
 }
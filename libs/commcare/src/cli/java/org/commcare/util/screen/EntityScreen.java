@@ -1,6 +1,8 @@
 package org.commcare.util.screen;
 
+import org.commcare.cases.entity.EntityStorageCache;
 import org.commcare.cases.entity.EntityUtil;
+import org.commcare.cases.instance.CaseInstanceTreeElement;
 import org.commcare.cases.query.QueryContext;
 import org.commcare.cases.query.queryset.CurrentModelQuerySet;
 import org.commcare.core.interfaces.UserSandbox;
@@ -10,6 +12,7 @@ import org.commcare.suite.model.Action;
 import org.commcare.suite.model.Detail;
 import org.commcare.suite.model.Endpoint;
 import org.commcare.suite.model.EntityDatum;
+import org.commcare.suite.model.Profile;
 import org.commcare.suite.model.SessionDatum;
 import org.commcare.util.CommCarePlatform;
 import org.commcare.util.DatumUtil;
@@ -18,8 +21,11 @@ import org.javarosa.core.model.condition.EvaluationContext;
 import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.core.model.trace.EvaluationTraceReporter;
 import org.javarosa.core.model.utils.InstrumentationUtils;
+import org.javarosa.core.services.locale.Localization;
 import org.javarosa.core.util.NoLocalizedTextException;
+import org.javarosa.core.util.OrderedHashtable;
 
+import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -66,6 +72,9 @@ public class EntityScreen extends CompoundScreenHost {
 
     private QueryScreen queryScreen;
 
+    @Nullable
+    private EntityListCursorStore cursorStore;
+
     public EntityScreen(boolean handleCaseIndex) {
         this.handleCaseIndex = handleCaseIndex;
         entityScreenContext = new EntityScreenContext();
@@ -136,9 +145,77 @@ public class EntityScreen extends CompoundScreenHost {
             // sub screen is needed to handle actions but we can skip eval refs
             Vector<TreeReference> entityListReferences =
                     !needsFullInit || isDetailScreen() ? new Vector<>() : references;
-            mCurrentScreen = new EntityListSubscreen(mShortDetail, entityListReferences, evalContext,
-                    handleCaseIndex, entityScreenContext);
+            String cursorKey = entityListReferences.isEmpty() ? null : getCursorKey();
+            EntityListCursor cursor = cursorKey == null ? null : cursorStore.getCursor(cursorKey);
+            EntityListSubscreen entityListSubscreen = new EntityListSubscreen(mShortDetail,
+                    entityListReferences, evalContext, handleCaseIndex, entityScreenContext,
+                    getEntityStorageCache(), cursor);
+            if (cursorKey != null && cursor == null) {
+                cursorStore.storeCursor(cursorKey, entityListSubscreen.getEntityListCursor());
+            }
+            mCurrentScreen = entityListSubscreen;
+        }
+    }
+
+    /**
+     * Allows the filtered and sorted entity list of this screen to be reused by later screens for
+     * the same list, search and sort
+     */
+    public void setEntityListCursorStore(@Nullable EntityListCursorStore cursorStore) {
+        this.cursorStore = cursorStore;
+    }
+
+    /**
+     * @return key of this screen's entity list in the cursor store, or null if the list shouldn't
+     * be kept. Only lists of the user's own cases are kept, since the cursor store can tell when
+     * those have changed.
+     */
+    @Nullable
+    private String getCursorKey() {
+        if (cursorStore == null ||
+                !CaseInstanceTreeElement.MODEL_NAME.equals(mNeededDatum.getNodeset().getInstanceName())) {
+            return null;
+        }
+        Profile profile = mPlatform.getCurrentProfile();
+        if (profile == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        key.append(profile.getUniqueId()).append('_').append(profile.getVersion())
+                .append('|').append(Localization.getGlobalLocalizerAdvanced().getLocale())
+                .append('|').append(mShortDetail.getId())
+                .append('|').append(mNeededDatum.getNodeset().toString(true))
+                .append('|').append(references.size())
+                .append('|').append(entityScreenContext.getSearchText())
+                .append('|').append(entityScreenContext.isFuzzySearch())
+                .append('|').append(entityScreenContext.getSortIndex());
+        // the nodeset can depend on earlier selections
+        OrderedHashtable<String, String> sessionData = mSession.getData();
+        for (Enumeration<String> keys = sessionData.keys(); keys.hasMoreElements(); ) {
+            String dataId = keys.nextElement();
+            key.append('|').append(dataId).append('=').append(sessionData.get(dataId));
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the sandbox's cache of evaluated entity fields if this screen lists the user's own
+     * cases, since cached values are keyed by case record
+     */
+    @Nullable
+    private EntityStorageCache getEntityStorageCache() {
+        if (!mShortDetail.isLazyLoading() ||
+                !CaseInstanceTreeElement.MODEL_NAME.equals(mNeededDatum.getNodeset().getInstanceName())) {
+            return null;
+        }
+        // cached values are only valid for the app build and locale they were evaluated with
+        Profile profile = mPlatform.getCurrentProfile();
+        if (profile == null) {
+            return null;
         }
+        String cacheScope = profile.getUniqueId() + "_" + profile.getVersion() + "_" +
+                Localization.getGlobalLocalizerAdvanced().getLocale();
+        return mSession.getSandbox().getEntityStorageCache(cacheScope);
     }
 
     /**
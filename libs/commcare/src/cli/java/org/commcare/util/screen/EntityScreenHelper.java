@@ -20,6 +20,8 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * Common methods for initialising entities
  */
@@ -36,20 +38,71 @@ public class EntityScreenHelper {
      */
     public static List<Entity<TreeReference>> initEntities(EvaluationContext context, Detail detail,
             EntityScreenContext entityScreenContext, TreeReference[] entitiesRefs) {
-        NodeEntityFactory nodeEntityFactory;
+        return initEntities(context, detail, entityScreenContext, entitiesRefs, null);
+    }
+
+    /**
+     * Initialises given entity references into Entity models
+     *
+     * @param context             evaluation context to calculate detail fields
+     * @param detail              detail definition to map the given entity references to
+     * @param entityScreenContext entity screen context
+     * @param entitiesRefs        references to initialise
+     * @param entityStorageCache  cache to read and store evaluated sort fields of lazy loading
+     *                            details in, if any
+     * @return List of initialised entity models
+     */
+    public static List<Entity<TreeReference>> initEntities(EvaluationContext context, Detail detail,
+            EntityScreenContext entityScreenContext, TreeReference[] entitiesRefs,
+            @Nullable EntityStorageCache entityStorageCache) {
+        NodeEntityFactory nodeEntityFactory = getEntityFactory(context, detail, entityStorageCache);
+        List<Entity<TreeReference>> entities = buildEntities(nodeEntityFactory, entitiesRefs);
+        entities = filterEntities(entityScreenContext, nodeEntityFactory, entities);
+        sortEntities(entityScreenContext, entities, detail);
+        if (entityStorageCache != null && detail.isLazyLoading()) {
+            entityStorageCache.flush();
+        }
+        return groupEntities(entities, detail);
+    }
+
+    /**
+     * Initialises given entity references into Entity models in the order given, without
+     * filtering, sorting or grouping them
+     *
+     * @param context            evaluation context to calculate detail fields
+     * @param detail             detail definition to map the given entity references to
+     * @param entitiesRefs       references to initialise
+     * @param entityStorageCache cache to read and store evaluated sort fields of lazy loading
+     *                           details in, if any
+     * @return List of initialised entity models
+     */
+    public static List<Entity<TreeReference>> initEntities(EvaluationContext context, Detail detail,
+            TreeReference[] entitiesRefs, @Nullable EntityStorageCache entityStorageCache) {
+        List<Entity<TreeReference>> entities =
+                buildEntities(getEntityFactory(context, detail, entityStorageCache), entitiesRefs);
+        if (entityStorageCache != null && detail.isLazyLoading()) {
+            entityStorageCache.flush();
+        }
+        return entities;
+    }
+
+    private static NodeEntityFactory getEntityFactory(EvaluationContext context, Detail detail,
+            @Nullable EntityStorageCache entityStorageCache) {
         if (detail.isLazyLoading()) {
-            nodeEntityFactory = new AsyncNodeEntityFactory(detail, context, null);
-        } else {
-            nodeEntityFactory = new NodeEntityFactory(detail, context);
+            return new AsyncNodeEntityFactory(detail, context, entityStorageCache);
         }
+        return new NodeEntityFactory(detail, context);
+    }
+
+    private static List<Entity<TreeReference>> buildEntities(NodeEntityFactory nodeEntityFactory,
+            TreeReference[] entitiesRefs) {
+        nodeEntityFactory.prefetchModels(entitiesRefs);
         List<Entity<TreeReference>> entities = new ArrayList<>();
         for (TreeReference reference : entitiesRefs) {
             entities.add(nodeEntityFactory.getEntity(reference));
         }
         nodeEntityFactory.prepareEntities(entities);
-        entities = filterEntities(entityScreenContext, nodeEntityFactory, entities);
-        sortEntities(entityScreenContext, entities, detail);
-        return groupEntities(entities, detail);
+        return entities;
     }
 
     // Sorts by order of appearance of a groupKey if grouping is enabled
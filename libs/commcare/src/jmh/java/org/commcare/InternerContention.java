@@ -0,0 +1,82 @@
+package org.commcare;
+
+import org.javarosa.core.util.CacheTable;
+import org.javarosa.core.util.Interner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Interning and cache lookups from many threads at once, as when many users restore or
+ * evaluate against the same shared tables.
+ */
+@Threads(16)
+public class InternerContention {
+
+    private static final int DISTINCT_VALUES = 20000;
+
+    @State(Scope.Benchmark)
+    public static class SharedTables {
+        String[] values;
+        Interner<String> strongInterner;
+        Interner<String> weakInterner;
+        CacheTable<String, String> table;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            values = new String[DISTINCT_VALUES];
+            for (int i = 0; i < DISTINCT_VALUES; i++) {
+                values[i] = "case_property_value_" + i;
+            }
+            strongInterner = new Interner<>(DISTINCT_VALUES, false);
+            weakInterner = new Interner<>();
+            table = new CacheTable<>();
+        }
+
+        String randomValue() {
+            // a fresh copy, as read off the wire or out of storage
+            return new String(values[ThreadLocalRandom.current().nextInt(DISTINCT_VALUES)]);
+        }
+    }
+
+    @Benchmark
+    public String internStrong(SharedTables tables) {
+        return tables.strongInterner.intern(tables.randomValue());
+    }
+
+    @Benchmark
+    public String internWeak(SharedTables tables) {
+        return tables.weakInterner.intern(tables.randomValue());
+    }
+
+    @Benchmark
+    public String retrieveOrRegister(SharedTables tables) {
+        String key = tables.randomValue();
+        String cached = tables.table.retrieve(key);
+        if (cached == null) {
+            tables.table.register(key, key);
+            return key;
+        }
+        return cached;
+    }
+
+    // Execute using:
+    //  java -jar build\libs\commcare-core-jmh.jar -wi 5 -i 5 InternerContention
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(InternerContention.class.getSimpleName())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
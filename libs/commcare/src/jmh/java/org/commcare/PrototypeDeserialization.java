@@ -0,0 +1,78 @@
+package org.commcare;
+
+import org.commcare.cases.model.Case;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.services.storage.IStorageIterator;
+import org.javarosa.core.services.storage.util.DummyIndexedStorageUtility;
+import org.javarosa.core.test.FormParseInit;
+import org.javarosa.core.util.externalizable.ExtUtil;
+import org.javarosa.core.util.externalizable.LivePrototypeFactory;
+import org.javarosa.core.util.externalizable.PrototypeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Deserialization dominated by looking up the classes of tagged objects and creating them:
+ * reading a large form definition back in, and iterating over a case table.
+ */
+public class PrototypeDeserialization {
+
+    private static final int CASES = 2000;
+
+    @State(Scope.Benchmark)
+    public static class SerializedData {
+        PrototypeFactory factory;
+        byte[] formDef;
+        DummyIndexedStorageUtility<Case> caseStorage;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // registers every class hashed while serializing, for reading them back in
+            factory = new LivePrototypeFactory();
+            formDef = ExtUtil.serialize(
+                    new FormParseInit("/app_performance/large_tdh_form.xml").getFormDef());
+
+            caseStorage = new DummyIndexedStorageUtility<>(Case.class, factory);
+            for (int i = 0; i < CASES; i++) {
+                Case c = new Case("case " + i, "person");
+                c.setCaseId("case_id_" + i);
+                c.setProperty("age", String.valueOf(i % 90));
+                c.setProperty("village", "village_" + (i % 20));
+                c.setIndex("parent", "household", "household_" + (i % 100));
+                c.setID(-1);
+                caseStorage.write(c);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object formDefReadExternal(SerializedData data) throws Exception {
+        return ExtUtil.deserialize(data.formDef, FormDef.class, data.factory);
+    }
+
+    @Benchmark
+    public void caseTableIteration(SerializedData data, Blackhole blackhole) {
+        for (IStorageIterator<Case> iterator = data.caseStorage.iterate(); iterator.hasMore(); ) {
+            blackhole.consume(iterator.nextRecord());
+        }
+    }
+
+    // Execute using:
+    //  java -jar build\libs\commcare-core-jmh.jar -wi 5 -i 5 PrototypeDeserialization
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(PrototypeDeserialization.class.getSimpleName())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
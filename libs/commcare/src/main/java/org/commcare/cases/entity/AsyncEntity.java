@@ -51,6 +51,9 @@ public class AsyncEntity extends Entity<TreeReference> {
 
     @Nullable
     private final EntityStorageCache mEntityStorageCache;
+    // which fields' sort values may be kept in mEntityStorageCache, or null if all of them
+    @Nullable
+    private final boolean[] mCacheableSortFields;
 
     /*
      * the Object's lock. NOTE: _DO NOT LOCK ANY CODE WHICH READS/WRITES THE CACHE
@@ -69,6 +72,14 @@ public class AsyncEntity extends Entity<TreeReference> {
                        TreeReference t, Hashtable<String, XPathExpression> variables,
                        @Nullable EntityStorageCache cache, String cacheIndex, String detailId,
                        String extraKey, DetailGroup detailGroup) {
+        this(fields, ec, t, variables, cache, null, cacheIndex, detailId, extraKey, detailGroup);
+    }
+
+    public AsyncEntity(DetailField[] fields, EvaluationContext ec,
+                       TreeReference t, Hashtable<String, XPathExpression> variables,
+                       @Nullable EntityStorageCache cache, @Nullable boolean[] cacheableSortFields,
+                       String cacheIndex, String detailId, String extraKey,
+                       DetailGroup detailGroup) {
         super(t, extraKey);
 
         this.fields = fields;
@@ -80,6 +91,7 @@ public class AsyncEntity extends Entity<TreeReference> {
         this.context = ec;
         this.mVariableDeclarations = variables;
         this.mEntityStorageCache = cache;
+        this.mCacheableSortFields = cacheableSortFields;
 
         //TODO: It's weird that we pass this in, kind of, but the thing is that we don't want to figure out
         //if this ref is _cachable_ every time, since it's a pretty big lift
@@ -141,37 +153,30 @@ public class AsyncEntity extends Entity<TreeReference> {
                         return null;
                     }
                     String cacheKey = null;
-                    if (mEntityStorageCache != null) {
+                    if (mEntityStorageCache != null && mCacheIndex != null &&
+                            (mCacheableSortFields == null || mCacheableSortFields[i])) {
                         cacheKey = mEntityStorageCache.getCacheKey(mDetailId, String.valueOf(i));
-                        if (mCacheIndex != null) {
-                            //Check the cache!
-                            String value = mEntityStorageCache.retrieveCacheValue(mCacheIndex, cacheKey);
-                            if (value != null) {
-                                this.setSortData(i, value);
-                                return sortData[i];
-                            }
+                        //Check the cache!
+                        String value = mEntityStorageCache.retrieveCacheValue(mCacheIndex, cacheKey);
+                        if (value != null) {
+                            this.setSortData(i, value);
+                            return sortData[i];
+                        }
+                    }
 
-                            loadVariableContext();
-                            try {
-                                sortText = fields[i].getSort();
-                                if (sortText == null) {
-                                    this.setSortData(i, getFieldString(i));
-                                } else {
-                                    this.setSortData(i, StringUtils.normalize(sortText.evaluate(context)));
-                                }
-                                if (mEntityStorageCache != null) {
-                                    mEntityStorageCache.cache(mCacheIndex, cacheKey, sortData[i]);
-                                }
-                            } catch (XPathException xpe) {
-                                Logger.exception("Error while evaluating sort field", xpe);
-                                xpe.printStackTrace();
-                                sortData[i] = "<invalid xpath: " + xpe.getMessage() + ">";
-                            }
+                    loadVariableContext();
+                    try {
+                        this.setSortData(i, StringUtils.normalize(sortText.evaluate(context)));
+                        if (cacheKey != null) {
+                            mEntityStorageCache.cache(mCacheIndex, cacheKey, sortData[i]);
                         }
-                        return sortData[i];
+                    } catch (XPathException xpe) {
+                        Logger.exception("Error while evaluating sort field", xpe);
+                        xpe.printStackTrace();
+                        sortData[i] = "<invalid xpath: " + xpe.getMessage() + ">";
                     }
-                    return sortData[i];
                 }
+                return sortData[i];
             }
         } catch (IOException e) {
             Logger.exception("Error while getting sort field", e);
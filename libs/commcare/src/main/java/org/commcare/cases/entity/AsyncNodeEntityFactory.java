@@ -2,6 +2,7 @@ package org.commcare.cases.entity;
 
 
 import org.commcare.suite.model.Detail;
+import org.commcare.suite.model.DetailField;
 import org.javarosa.core.model.condition.EvaluationContext;
 import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.core.model.utils.CacheHost;
@@ -23,6 +24,9 @@ public class AsyncNodeEntityFactory extends NodeEntityFactory {
     private final Hashtable<String, AsyncEntity> mEntitySet = new Hashtable<>();
     @Nullable
     private final EntityStorageCache mEntityCache;
+    // which fields' sort values mEntityCache may hold, decided once for the whole list
+    @Nullable
+    private final boolean[] mCacheableSortFields;
 
     private CacheHost mCacheHost = null;
     private Boolean mTemplateIsCachable = null;
@@ -38,9 +42,33 @@ public class AsyncNodeEntityFactory extends NodeEntityFactory {
 
         mVariableDeclarations = detail.getVariableDeclarations();
         mEntityCache = entityStorageCache;
+        mCacheableSortFields = getCacheableSortFields(detail, entityStorageCache);
         isBlockingAsyncMode = detail.hasSortField();
     }
 
+    @Nullable
+    private static boolean[] getCacheableSortFields(Detail detail,
+            @Nullable EntityStorageCache entityStorageCache) {
+        if (entityStorageCache == null) {
+            return null;
+        }
+        DetailField[] fields = detail.getFields();
+        boolean[] cacheable = new boolean[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            cacheable[i] = fields[i].getSort() != null &&
+                    entityStorageCache.isSortFieldCacheable(fields[i]);
+        }
+        return cacheable;
+    }
+
+    /**
+     * Fields of lazy loading details are only evaluated as they are needed, so reading every
+     * model up front would mostly be wasted
+     */
+    @Override
+    public void prefetchModels(TreeReference[] references) {
+    }
+
     @Override
     public Entity<TreeReference> getEntity(TreeReference data) {
         EvaluationContext nodeContext = new EvaluationContext(ec, data);
@@ -58,7 +86,8 @@ public class AsyncNodeEntityFactory extends NodeEntityFactory {
         String entityKey = loadCalloutDataMapKey(nodeContext);
         AsyncEntity entity =
                 new AsyncEntity(detail.getFields(), nodeContext, data, mVariableDeclarations,
-                        mEntityCache, mCacheIndex, detail.getId(), entityKey, detail.getGroup());
+                        mEntityCache, mCacheableSortFields, mCacheIndex, detail.getId(), entityKey,
+                        detail.getGroup());
 
         if (mCacheIndex != null) {
             mEntitySet.put(mCacheIndex, entity);
@@ -1,6 +1,7 @@
 package org.commcare.cases.entity;
 
 import org.commcare.suite.model.Detail;
+import org.commcare.suite.model.DetailField;
 
 import java.io.Closeable;
 import java.util.Hashtable;
@@ -20,4 +21,18 @@ public interface EntityStorageCache {
     int getSortFieldIdFromCacheKey(String detailId, String cacheKey);
 
     void primeCache(Hashtable<String, AsyncEntity> entitySet, String[][] cachePrimeKeys, Detail detail);
+
+    /**
+     * @return whether the evaluated sort value of the given field may be stored in this cache, which
+     * depends on what invalidates the implementation's values
+     */
+    default boolean isSortFieldCacheable(DetailField field) {
+        return true;
+    }
+
+    /**
+     * Writes out any values passed to {@link #cache} that the implementation is still holding on to
+     */
+    default void flush() {
+    }
 }
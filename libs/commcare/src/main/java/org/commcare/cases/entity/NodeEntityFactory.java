@@ -1,5 +1,7 @@
 package org.commcare.cases.entity;
 
+import org.commcare.cases.instance.StorageBackedChildElement;
+import org.commcare.cases.instance.StorageInstanceTreeElement;
 import org.commcare.cases.query.QueryContext;
 import org.commcare.cases.query.queryset.CurrentModelQuerySet;
 import org.commcare.suite.model.Detail;
@@ -7,13 +9,17 @@ import org.commcare.suite.model.DetailField;
 import org.commcare.suite.model.DetailGroup;
 import org.commcare.suite.model.Text;
 import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.instance.AbstractTreeElement;
 import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.core.model.trace.ReducingTraceReporter;
 import org.javarosa.core.model.utils.InstrumentationUtils;
 import org.javarosa.xpath.XPathException;
 import org.javarosa.xpath.parser.XPathSyntaxException;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author ctsims
@@ -92,6 +98,32 @@ public class NodeEntityFactory {
                 detail.evaluateFocusFunction(nodeContext), groupKey, altTextData);
     }
 
+    /**
+     * Reads the models behind the provided references from storage in bulk, ahead of the
+     * entities for them being built, rather than one at a time as each entity's fields are
+     * evaluated. Only worthwhile for lists large enough to count as a bulk query.
+     */
+    public void prefetchModels(TreeReference[] references) {
+        if (references.length <= QueryContext.BULK_QUERY_THRESHOLD) {
+            return;
+        }
+        Map<StorageInstanceTreeElement, List<Integer>> recordIdsByStorage = new LinkedHashMap<>();
+        for (TreeReference reference : references) {
+            AbstractTreeElement element = ec.resolveReference(reference);
+            if (element instanceof StorageBackedChildElement &&
+                    element.getParent() instanceof StorageInstanceTreeElement) {
+                recordIdsByStorage.computeIfAbsent(
+                        (StorageInstanceTreeElement)element.getParent(), k -> new ArrayList<>())
+                        .add(((StorageBackedChildElement)element).getRecordId());
+            }
+        }
+        for (Map.Entry<StorageInstanceTreeElement, List<Integer>> entry :
+                recordIdsByStorage.entrySet()) {
+            entry.getKey().prefetchRecords(entry.getValue(), ec.getCurrentQueryContext());
+        }
+        printAndClearTraces("case prefetch");
+    }
+
     /**
      * Evaluate the lookup's 'template' detail block and use result as key for
      * attaching external (callout) data to the entity.
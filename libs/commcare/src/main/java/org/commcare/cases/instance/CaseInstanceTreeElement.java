@@ -3,7 +3,6 @@ package org.commcare.cases.instance;
 import org.commcare.cases.model.Case;
 import org.commcare.cases.query.IndexedSetMemberLookup;
 import org.commcare.cases.query.IndexedValueLookup;
-import org.commcare.cases.query.NegativeIndexedValueLookup;
 import org.commcare.cases.query.PredicateProfile;
 import org.commcare.cases.query.QueryContext;
 import org.commcare.cases.query.QueryPlanner;
@@ -87,24 +86,13 @@ public class CaseInstanceTreeElement extends StorageInstanceTreeElement<Case, Ca
     }
 
     @Override
-    protected int getNumberOfBatchableKeysInProfileSet(Vector<PredicateProfile> profiles) {
-        int keysToBatch = 0;
-        //Otherwise see how many of these we can bulk process
-        for (int i = 0; i < profiles.size(); ++i) {
-            //If the current key is an index fetch, we actually can't do it in bulk,
-            //so we need to stop
-            if (profiles.elementAt(i).getKey().startsWith(Case.INDEX_CASE_INDEX_PRE) ||
-                    !(profiles.elementAt(i) instanceof IndexedValueLookup ||
-                            profiles.elementAt(i) instanceof NegativeIndexedValueLookup)) {
-                break;
-            }
-            keysToBatch++;
-        }
-        return keysToBatch;
+    protected boolean isBatchableProfile(PredicateProfile profile) {
+        //If the current key is an index fetch, we actually can't do it in bulk,
+        //so we need to stop
+        return !profile.getKey().startsWith(Case.INDEX_CASE_INDEX_PRE) &&
+                super.isBatchableProfile(profile);
     }
 
-
-
     @Override
     protected CaseChildElement getChildTemplate() {
         return CaseChildElement.buildCaseChildTemplate(this);
@@ -180,6 +180,14 @@ public abstract class StorageBackedChildElement<Model extends Externalizable>
         return parent;
     }
 
+    /**
+     * @return the storage id of the record backing this element, or -1 if it is only known by
+     * its entity id so far
+     */
+    public int getRecordId() {
+        return recordId;
+    }
+
     @Override
     public IAnswerData getValue() {
         return null;
@@ -5,6 +5,7 @@ import org.commcare.cases.util.StorageBackedTreeRoot;
 import org.commcare.modern.engine.cases.RecordObjectCache;
 import org.commcare.modern.engine.cases.RecordSetResultCache;
 import org.commcare.modern.util.Pair;
+import org.commcare.modern.util.PerformanceTuningUtil;
 import org.javarosa.core.model.data.IAnswerData;
 import org.javarosa.core.model.instance.AbstractTreeElement;
 import org.javarosa.core.model.instance.TreeElement;
@@ -17,6 +18,7 @@ import org.javarosa.core.util.DataUtil;
 import org.javarosa.core.util.Interner;
 import org.javarosa.core.util.externalizable.Externalizable;
 
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Vector;
 
@@ -35,8 +37,11 @@ public abstract class StorageInstanceTreeElement<Model extends Externalizable, T
 
     protected final IStorageUtilityIndexed<Model> storage;
     protected Vector<T> elements;
+    // case property values repeat heavily across records, and are cheap enough to hold strongly
+    private static final long STRING_CACHE_SIZE = 10000;
+
     protected final Interner<TreeElement> treeCache = new Interner<>();
-    private Interner<String> stringCache = new Interner<>();
+    private Interner<String> stringCache = new Interner<>(STRING_CACHE_SIZE, false);
 
     private int numRecords = -1;
     private TreeReference cachedRef = null;
@@ -306,6 +311,41 @@ public abstract class StorageInstanceTreeElement<Model extends Externalizable, T
         return getElementSingular(recordId, context);
     }
 
+    /**
+     * Reads the models for the provided records from storage in bulk into the query context's
+     * record object cache, so that evaluating expressions over each of them later doesn't need a
+     * separate read per record. Records which are already loaded or have a cached tree are
+     * skipped, as is everything past the largest block it is safe to hold in memory at once.
+     */
+    public void prefetchRecords(Collection<Integer> recordIds, QueryContext context) {
+        String storageCacheKey = getStorageCacheName();
+        if (storageCacheKey == null) {
+            return;
+        }
+        RecordObjectCache<Model> recordObjectCache = context.getQueryCache(RecordObjectCache.class);
+
+        int maxPrefetch = PerformanceTuningUtil.getMaxPrefetchCaseBlock();
+        LinkedHashSet<Integer> toLoad = new LinkedHashSet<>();
+        for (Integer recordId : recordIds) {
+            if (toLoad.size() >= maxPrefetch) {
+                break;
+            }
+            if (recordId >= 0 && !recordObjectCache.isLoaded(storageCacheKey, recordId)
+                    && treeCache.retrieve(recordId) == null) {
+                toLoad.add(recordId);
+            }
+        }
+        if (toLoad.isEmpty()) {
+            return;
+        }
+
+        EvaluationTrace loadTrace = new EvaluationTrace(
+                String.format("Model [%s]: Prefetch", storageCacheKey));
+        storage.bulkRead(toLoad, recordObjectCache.getLoadedCaseMap(storageCacheKey));
+        loadTrace.setOutcome("Loaded: " + toLoad.size());
+        context.reportTrace(loadTrace);
+    }
+
     public static boolean canLoadRecordFromGroup(RecordSetResultCache recordSetCache, String cacheName, int recordId) {
         return recordSetCache != null && recordSetCache.hasMatchingRecordSet(cacheName, recordId);
     }
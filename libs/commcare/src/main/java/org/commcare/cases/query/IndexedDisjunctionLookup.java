@@ -0,0 +1,37 @@
+package org.commcare.cases.query;
+
+/**
+ * An indexed disjunction lookup matches an element if any one of its branches, each of which is
+ * a lookup against indexed values, matches it.
+ *
+ * IE:
+ *
+ * index_one = 'a' or index_two &gt; 5
+ */
+
+public class IndexedDisjunctionLookup implements PredicateProfile {
+    public final PredicateProfile[] branches;
+
+    public IndexedDisjunctionLookup(PredicateProfile... branches) {
+        this.branches = branches;
+    }
+
+    /**
+     * @return The key of the first branch. Other branches may operate over other keys.
+     */
+    public String getKey() {
+        return branches[0].getKey();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("(");
+        for (int i = 0; i < branches.length; i++) {
+            if (i > 0) {
+                description.append(" or ");
+            }
+            description.append(branches[i]);
+        }
+        return description.append(")").toString();
+    }
+}
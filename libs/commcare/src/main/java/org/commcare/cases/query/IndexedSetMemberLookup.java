@@ -20,7 +20,17 @@ public class IndexedSetMemberLookup implements PredicateProfile {
         this.valueSet = ((String)valueSet).split(" ");
     }
 
+    public IndexedSetMemberLookup(String key, String[] valueSet) {
+        this.key = key;
+        this.valueSet = valueSet;
+    }
+
     public String getKey() {
         return key;
     }
+
+    @Override
+    public String toString() {
+        return key + " in " + String.join(" ", valueSet);
+    }
 }
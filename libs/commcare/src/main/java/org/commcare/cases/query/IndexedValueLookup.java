@@ -24,4 +24,9 @@ public class IndexedValueLookup implements PredicateProfile {
     public String getKey() {
         return key;
     }
+
+    @Override
+    public String toString() {
+        return key + "=" + value;
+    }
 }
@@ -0,0 +1,44 @@
+package org.commcare.cases.query;
+
+/**
+ * An indexed value prefix lookup is a check for whether a value which is indexed on the current
+ * platform starts with a static, non-empty prefix
+ *
+ * IE:
+ *
+ * starts-with(index, 'ab')
+ */
+
+public class IndexedValuePrefixLookup implements PredicateProfile {
+    public final String key;
+    public final String prefix;
+
+    public IndexedValuePrefixLookup(String key, String prefix) {
+        this.key = key;
+        this.prefix = prefix;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The smallest string which sorts (by code point) after every string starting with
+     * the prefix, or null if there is no such string that is simple to compute. Every value v
+     * starting with the prefix satisfies prefix &lt;= v &lt; upper bound, which lets the lookup
+     * be matched as a range over an index.
+     */
+    public String getUpperBound() {
+        char last = prefix.charAt(prefix.length() - 1);
+        if (last == Character.MAX_VALUE || Character.isSurrogate(last)
+                || Character.isSurrogate((char)(last + 1))) {
+            return null;
+        }
+        return prefix.substring(0, prefix.length() - 1) + (char)(last + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "starts-with(" + key + "," + prefix + ")";
+    }
+}
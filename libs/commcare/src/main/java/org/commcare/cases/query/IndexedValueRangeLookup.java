@@ -0,0 +1,73 @@
+package org.commcare.cases.query;
+
+import org.javarosa.xpath.expr.XPathCmpExpr;
+
+/**
+ * An indexed value range lookup is a numeric comparison of a key which is indexed by the current
+ * platform against a static value. The indexed value is converted to a number the same way the
+ * XPath engine would convert it, so values which aren't numbers (or dates) never match.
+ *
+ * IE:
+ *
+ * index &gt; 5
+ */
+
+public class IndexedValueRangeLookup implements PredicateProfile {
+    public final String key;
+    /**
+     * One of the XPathCmpExpr operators, with the key on the left hand side
+     */
+    public final int op;
+    public final double value;
+
+    public IndexedValueRangeLookup(String key, int op, double value) {
+        this.key = key;
+        this.op = op;
+        this.value = value;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the operator which keeps a comparison equivalent when its operands are swapped
+     */
+    public static int swapOperands(int op) {
+        switch (op) {
+            case XPathCmpExpr.LT:
+                return XPathCmpExpr.GT;
+            case XPathCmpExpr.GT:
+                return XPathCmpExpr.LT;
+            case XPathCmpExpr.LTE:
+                return XPathCmpExpr.GTE;
+            case XPathCmpExpr.GTE:
+                return XPathCmpExpr.LTE;
+            default:
+                throw new IllegalArgumentException("Unknown comparison operator " + op);
+        }
+    }
+
+    /**
+     * @return the SQL operator matching this lookup's comparison
+     */
+    public String getOperator() {
+        switch (op) {
+            case XPathCmpExpr.LT:
+                return "<";
+            case XPathCmpExpr.GT:
+                return ">";
+            case XPathCmpExpr.LTE:
+                return "<=";
+            case XPathCmpExpr.GTE:
+                return ">=";
+            default:
+                throw new IllegalArgumentException("Unknown comparison operator " + op);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return key + getOperator() + value;
+    }
+}
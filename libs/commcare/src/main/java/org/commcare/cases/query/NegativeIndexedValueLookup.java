@@ -24,4 +24,9 @@ public class NegativeIndexedValueLookup implements PredicateProfile {
     public String getKey() {
         return key;
     }
+
+    @Override
+    public String toString() {
+        return key + "!=" + value;
+    }
 }
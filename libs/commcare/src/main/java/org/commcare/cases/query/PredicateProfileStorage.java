@@ -0,0 +1,21 @@
+package org.commcare.cases.query;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Storage which can natively match records against predicate profiles beyond flat key/value
+ * lookups: ranges, prefixes, set membership and disjunctions of those.
+ *
+ * Storage backed tree roots will only batch those profile types into a storage lookup if their
+ * storage implements this interface.
+ */
+public interface PredicateProfileStorage {
+
+    /**
+     * Adds the ids of all records matching every one of the provided profiles to the return set
+     *
+     * @throws IllegalArgumentException if one of the profiles can't be matched by this storage
+     */
+    void getIDsForProfiles(List<PredicateProfile> profiles, LinkedHashSet<Integer> returnSet);
+}
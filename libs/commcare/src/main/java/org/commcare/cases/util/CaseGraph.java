@@ -0,0 +1,457 @@
+package org.commcare.cases.util;
+
+import org.commcare.cases.model.CaseIndex;
+import org.javarosa.core.util.DAG;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Graph of the cases in a user's storage and the indices between them, as used to determine which
+ * cases should be purged.
+ *
+ * Cases are numbered densely in the order they are added, and indices are kept as adjacency
+ * arrays in both directions, so that a graph of many cases can be walked without allocating per
+ * case or per index. Indexed cases that don't exist in storage are kept as placeholder nodes.
+ *
+ * The status of each case is a bitmask of the CasePurgeFilter STATUS_* flags.
+ *
+ * Built through {@link Builder}.
+ */
+public class CaseGraph {
+
+    // the relationship of extension indices, which is the only one purging treats differently
+    static final byte EXTENSION = 0;
+
+    private final String[] caseIds;
+
+    // storage id of each case, -1 for placeholders of indexed cases which don't exist
+    private final int[] recordIds;
+
+    private final int[] status;
+
+    // cases removed from the graph along with all of their indices
+    private final boolean[] removed;
+
+    private final String[] relationships;
+
+    // indices grouped by the indexing case: those of case n are at [indexOffsets[n], indexOffsets[n + 1])
+    private final int[] indexOffsets;
+    private final int[] indexTargets;
+    private final byte[] indexRelationships;
+
+    // the same indices grouped by the indexed case
+    private final int[] indexedByOffsets;
+    private final int[] indexedBySources;
+    private final byte[] indexedByRelationships;
+
+    private CaseGraph(String[] caseIds, int[] recordIds, int[] status, String[] relationships,
+                      int[] indexOffsets, int[] indexTargets, byte[] indexRelationships,
+                      int[] indexedByOffsets, int[] indexedBySources, byte[] indexedByRelationships) {
+        this.caseIds = caseIds;
+        this.recordIds = recordIds;
+        this.status = status;
+        this.removed = new boolean[caseIds.length];
+        this.relationships = relationships;
+        this.indexOffsets = indexOffsets;
+        this.indexTargets = indexTargets;
+        this.indexRelationships = indexRelationships;
+        this.indexedByOffsets = indexedByOffsets;
+        this.indexedBySources = indexedBySources;
+        this.indexedByRelationships = indexedByRelationships;
+    }
+
+    /**
+     * @return the number of cases in the graph, not counting placeholders of indexed cases which
+     * don't exist
+     */
+    public int getCaseCount() {
+        int count = 0;
+        for (int recordId : recordIds) {
+            if (recordId != -1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int getNodeCount() {
+        return caseIds.length;
+    }
+
+    String getCaseId(int node) {
+        return caseIds[node];
+    }
+
+    int getRecordId(int node) {
+        return recordIds[node];
+    }
+
+    /**
+     * @return whether the node is a case that exists and hasn't been removed from the graph
+     */
+    boolean isPresent(int node) {
+        return recordIds[node] != -1 && !removed[node];
+    }
+
+    /**
+     * @return whether the node is a placeholder for an indexed case which doesn't exist
+     */
+    boolean isMissing(int node) {
+        return recordIds[node] == -1;
+    }
+
+    boolean hasStatus(int node, int flags) {
+        return (status[node] & flags) == flags;
+    }
+
+    void addStatus(int node, int flags) {
+        status[node] |= flags;
+    }
+
+    /**
+     * @return the nodes of the cases indexed by the case
+     */
+    int[] getIndexTargets(int node) {
+        return Arrays.copyOfRange(indexTargets, indexOffsets[node], indexOffsets[node + 1]);
+    }
+
+    /**
+     * Removes the case from the graph along with all cases indexing it, directly or not
+     *
+     * @param removedRecordIds receives the storage ids of cases that weren't removed already
+     * @param removedCaseIds   receives the case ids of cases that weren't removed already
+     */
+    void removeWithIndexingCases(int node, ArrayList<Integer> removedRecordIds,
+                                 ArrayList<String> removedCaseIds) {
+        int[] toProcess = new int[]{node};
+        int size = 1;
+        while (size > 0) {
+            int current = toProcess[--size];
+            if (removed[current]) {
+                continue;
+            }
+            removed[current] = true;
+            removedRecordIds.add(recordIds[current]);
+            removedCaseIds.add(caseIds[current]);
+            int start = indexedByOffsets[current];
+            int end = indexedByOffsets[current + 1];
+            if (size + end - start > toProcess.length) {
+                toProcess = Arrays.copyOf(toProcess, Math.max(toProcess.length * 2, size + end - start));
+            }
+            for (int i = start; i < end; i++) {
+                toProcess[size++] = indexedBySources[i];
+            }
+        }
+    }
+
+    /**
+     * @return whether the case has an index of the given relationship to a case in the graph
+     */
+    boolean hasIndexOfRelationship(int node, byte relationship) {
+        for (int i = indexOffsets[node]; i < indexOffsets[node + 1]; i++) {
+            if (indexRelationships[i] == relationship && isPresent(indexTargets[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the indices between cases in the graph form a cycle
+     */
+    boolean containsCycle() {
+        int nodeCount = caseIds.length;
+        int[] unvisitedIndexing = new int[nodeCount];
+        int presentCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (!isPresent(node)) {
+                continue;
+            }
+            presentCount++;
+            for (int i = indexOffsets[node]; i < indexOffsets[node + 1]; i++) {
+                if (isPresent(indexTargets[i])) {
+                    unvisitedIndexing[indexTargets[i]]++;
+                }
+            }
+        }
+
+        // remove cases nothing indexes until none are left, which only fails with a cycle
+        int[] toVisit = new int[presentCount];
+        int size = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (isPresent(node) && unvisitedIndexing[node] == 0) {
+                toVisit[size++] = node;
+            }
+        }
+        int visited = 0;
+        while (size > 0) {
+            int node = toVisit[--size];
+            visited++;
+            for (int i = indexOffsets[node]; i < indexOffsets[node + 1]; i++) {
+                int target = indexTargets[i];
+                if (isPresent(target) && --unvisitedIndexing[target] == 0) {
+                    toVisit[size++] = target;
+                }
+            }
+        }
+        return visited < presentCount;
+    }
+
+    /**
+     * Applies the mark to every case reachable from a marked case through indices that meet the
+     * given criteria.
+     *
+     * @param towardsIndexedCases  whether to follow indices from the indexing to the indexed case,
+     *                             or the other way round
+     * @param extensionsOnly       whether to only follow extension indices
+     * @param destinationCondition flags a case needs to have to be marked, 0 for none
+     */
+    void propagateMark(int mark, boolean towardsIndexedCases, boolean extensionsOnly,
+                       int destinationCondition) {
+        int[] offsets = towardsIndexedCases ? indexOffsets : indexedByOffsets;
+        int[] neighbors = towardsIndexedCases ? indexTargets : indexedBySources;
+        byte[] neighborRelationships = towardsIndexedCases ? indexRelationships : indexedByRelationships;
+
+        // every case is pushed at most once, when it gets marked
+        int[] toProcess = new int[caseIds.length];
+        int size = 0;
+        for (int node = 0; node < caseIds.length; node++) {
+            if (isPresent(node) && hasStatus(node, mark)) {
+                toProcess[size++] = node;
+            }
+        }
+        while (size > 0) {
+            int node = toProcess[--size];
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                if (extensionsOnly && neighborRelationships[i] != EXTENSION) {
+                    continue;
+                }
+                int neighbor = neighbors[i];
+                if (isPresent(neighbor) && !hasStatus(neighbor, mark)
+                        && hasStatus(neighbor, destinationCondition)) {
+                    status[neighbor] |= mark;
+                    toProcess[size++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the cases still in the graph and the indices between them as a DAG, with the
+     * [STATUS_FLAGS, storageid] of each case as its node
+     */
+    public DAG<String, int[], String> toDAG() {
+        DAG<String, int[], String> dag = new DAG<>();
+        for (int node = 0; node < caseIds.length; node++) {
+            if (isPresent(node)) {
+                dag.addNode(caseIds[node], new int[]{status[node], recordIds[node]});
+            }
+        }
+        for (int node = 0; node < caseIds.length; node++) {
+            if (!isPresent(node)) {
+                continue;
+            }
+            for (int i = indexOffsets[node]; i < indexOffsets[node + 1]; i++) {
+                if (isPresent(indexTargets[i])) {
+                    dag.setEdge(caseIds[node], caseIds[indexTargets[i]],
+                            relationships[indexRelationships[i]]);
+                }
+            }
+        }
+        return dag;
+    }
+
+    /**
+     * Collects cases and their indices in any order, with indexed cases allowed to be added after
+     * the cases indexing them.
+     */
+    public static class Builder {
+        private final HashMap<String, Integer> nodes = new HashMap<>();
+        private String[] caseIds = new String[16];
+        private int[] recordIds = new int[16];
+        private int[] status = new int[16];
+        private int nodeCount;
+
+        private int[] indexSources = new int[16];
+        private int[] indexTargets = new int[16];
+        private byte[] indexRelationships = new byte[16];
+        private int indexCount;
+
+        private final ArrayList<String> relationships = new ArrayList<>();
+
+        // (recordId << 32 | node) of every case, sorted, built when cases are looked up by record
+        private long[] nodesByRecordId;
+
+        public Builder() {
+            relationships.add(CaseIndex.RELATIONSHIP_EXTENSION);
+        }
+
+        /**
+         * @param owned whether the case is owned by the user or one of their groups
+         * @return the node of the case, for use with {@link #addIndex}
+         */
+        public int addCase(String caseId, int recordId, boolean owned, boolean open) {
+            int node = getOrAddNode(caseId);
+            int nodeStatus = 0;
+            if (owned) {
+                nodeStatus |= CasePurgeFilter.STATUS_OWNED;
+            }
+            if (open) {
+                nodeStatus |= CasePurgeFilter.STATUS_OPEN;
+            }
+            if (owned && open) {
+                nodeStatus |= CasePurgeFilter.STATUS_RELEVANT;
+            }
+            recordIds[node] = recordId;
+            status[node] = nodeStatus;
+            nodesByRecordId = null;
+            return node;
+        }
+
+        /**
+         * Adds an index from the case at the given node. Where a case has several indices to the
+         * same case, one that isn't an extension takes precedence, and otherwise the first one.
+         */
+        public void addIndex(int node, String targetCaseId, String relationship) {
+            int target = getOrAddNode(targetCaseId);
+            if (indexCount == indexSources.length) {
+                int capacity = indexCount * 2;
+                indexSources = Arrays.copyOf(indexSources, capacity);
+                indexTargets = Arrays.copyOf(indexTargets, capacity);
+                indexRelationships = Arrays.copyOf(indexRelationships, capacity);
+            }
+            indexSources[indexCount] = node;
+            indexTargets[indexCount] = target;
+            indexRelationships[indexCount] = getRelationshipId(relationship);
+            indexCount++;
+        }
+
+        /**
+         * @return the node of the case with the given storage id, or -1 if it hasn't been added
+         */
+        public int getNodeForRecord(int recordId) {
+            if (nodesByRecordId == null) {
+                long[] sorted = new long[nodeCount];
+                int size = 0;
+                for (int node = 0; node < nodeCount; node++) {
+                    if (recordIds[node] != -1) {
+                        sorted[size++] = ((long)recordIds[node] << 32) | node;
+                    }
+                }
+                nodesByRecordId = Arrays.copyOf(sorted, size);
+                Arrays.sort(nodesByRecordId);
+            }
+            int position = Arrays.binarySearch(nodesByRecordId, (long)recordId << 32);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            if (position < nodesByRecordId.length && (int)(nodesByRecordId[position] >>> 32) == recordId) {
+                return (int)nodesByRecordId[position];
+            }
+            return -1;
+        }
+
+        private int getOrAddNode(String caseId) {
+            Integer existing = nodes.get(caseId);
+            if (existing != null) {
+                return existing;
+            }
+            if (nodeCount == caseIds.length) {
+                int capacity = nodeCount * 2;
+                caseIds = Arrays.copyOf(caseIds, capacity);
+                recordIds = Arrays.copyOf(recordIds, capacity);
+                status = Arrays.copyOf(status, capacity);
+            }
+            caseIds[nodeCount] = caseId;
+            recordIds[nodeCount] = -1;
+            status[nodeCount] = 0;
+            nodes.put(caseId, nodeCount);
+            return nodeCount++;
+        }
+
+        private byte getRelationshipId(String relationship) {
+            int id = relationships.indexOf(relationship);
+            if (id == -1) {
+                if (relationships.size() > Byte.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct case index relationships");
+                }
+                id = relationships.size();
+                relationships.add(relationship);
+            }
+            return (byte)id;
+        }
+
+        public CaseGraph build() {
+            // group the indices by indexing case, keeping the order they were added in
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < indexCount; i++) {
+                offsets[indexSources[i] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+            int[] targets = new int[indexCount];
+            byte[] targetRelationships = new byte[indexCount];
+            int[] next = Arrays.copyOf(offsets, nodeCount);
+            for (int i = 0; i < indexCount; i++) {
+                int position = next[indexSources[i]]++;
+                targets[position] = indexTargets[i];
+                targetRelationships[position] = indexRelationships[i];
+            }
+
+            // only keep one index per pair of cases
+            int[] uniqueOffsets = new int[nodeCount + 1];
+            int uniqueCount = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                int start = uniqueCount;
+                for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                    int duplicate = -1;
+                    for (int j = start; j < uniqueCount; j++) {
+                        if (targets[j] == targets[i]) {
+                            duplicate = j;
+                            break;
+                        }
+                    }
+                    if (duplicate == -1) {
+                        targets[uniqueCount] = targets[i];
+                        targetRelationships[uniqueCount] = targetRelationships[i];
+                        uniqueCount++;
+                    } else if (targetRelationships[duplicate] == EXTENSION
+                            && targetRelationships[i] != EXTENSION) {
+                        targetRelationships[duplicate] = targetRelationships[i];
+                    }
+                }
+                uniqueOffsets[node + 1] = uniqueCount;
+            }
+            targets = Arrays.copyOf(targets, uniqueCount);
+            targetRelationships = Arrays.copyOf(targetRelationships, uniqueCount);
+
+            // and group the same indices by indexed case
+            int[] inverseOffsets = new int[nodeCount + 1];
+            for (int i = 0; i < uniqueCount; i++) {
+                inverseOffsets[targets[i] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                inverseOffsets[node + 1] += inverseOffsets[node];
+            }
+            int[] sources = new int[uniqueCount];
+            byte[] sourceRelationships = new byte[uniqueCount];
+            next = Arrays.copyOf(inverseOffsets, nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                for (int i = uniqueOffsets[node]; i < uniqueOffsets[node + 1]; i++) {
+                    int position = next[targets[i]]++;
+                    sources[position] = node;
+                    sourceRelationships[position] = targetRelationships[i];
+                }
+            }
+
+            return new CaseGraph(Arrays.copyOf(caseIds, nodeCount),
+                    Arrays.copyOf(recordIds, nodeCount), Arrays.copyOf(status, nodeCount),
+                    relationships.toArray(new String[0]),
+                    uniqueOffsets, targets, targetRelationships,
+                    inverseOffsets, sources, sourceRelationships);
+        }
+    }
+}
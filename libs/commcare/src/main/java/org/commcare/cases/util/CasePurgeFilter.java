@@ -9,12 +9,10 @@ import org.javarosa.core.services.storage.EntityFilter;
 import org.javarosa.core.services.storage.IStorageIterator;
 import org.javarosa.core.services.storage.IStorageUtilityIndexed;
 import org.javarosa.core.util.DAG;
-import org.javarosa.core.util.DAG.Edge;
 import org.javarosa.core.util.DataUtil;
 
-import java.util.Enumeration;
+import java.util.ArrayList;
 import java.util.Hashtable;
-import java.util.Stack;
 import java.util.Vector;
 
 /**
@@ -45,10 +43,10 @@ public class CasePurgeFilter extends EntityFilter<Case> {
 
     private final Vector<Integer> idsToRemove = new Vector<>();
 
-    // The index is a string containing the case GUID. The Nodes will be a int array containing
-    // [STATUS_FLAGS, storageid]. Edges are a string representing the relationship between the
-    // nodes, which is one of the Case Index relationships (IE: parent, extension)
-    private DAG<String, int[], String> internalCaseDAG;
+    // Nodes are the cases, with their STATUS_FLAGS and storage id. Edges are the case indices,
+    // from the indexing case to the indexed case, tagged with the Case Index relationship (IE:
+    // parent, extension)
+    private CaseGraph internalCaseGraph;
 
     // Flag that gets checked by DataPullTask, in order to report to device logs
     private boolean invalidEdgesWereRemoved;
@@ -77,34 +75,28 @@ public class CasePurgeFilter extends EntityFilter<Case> {
         this(getFullCaseGraph(caseStorage, owners));
     }
 
-    public CasePurgeFilter(DAG<String, int[], String> graph) throws InvalidCaseGraphException {
+    public CasePurgeFilter(CaseGraph graph) throws InvalidCaseGraphException {
         setIdsToRemoveWithNewExtensions(graph);
     }
 
-    private void setIdsToRemoveWithNewExtensions(DAG<String, int[], String> graph) throws InvalidCaseGraphException {
-        internalCaseDAG = graph;
+    private void setIdsToRemoveWithNewExtensions(CaseGraph graph) throws InvalidCaseGraphException {
+        internalCaseGraph = graph;
 
-        // It is important that actual edge removal be done after the call to getInvalidEdges() is
-        // complete, to prevent a ConcurrentModificationException
-        Vector<String[]> edgesToRemove = getInvalidEdges();
-        for (String[] edge : edgesToRemove) {
-            internalCaseDAG.removeEdge(edge[0], edge[1]);
-        }
+        removeCasesWithMissingIndices();
 
-        if (internalCaseDAG.containsCycle()) {
+        if (internalCaseGraph.containsCycle()) {
             throw new InvalidCaseGraphException("Invalid data sandbox, cycle detected");
         }
 
-        propagateRelevance(internalCaseDAG);
-        propagateAvailabile(internalCaseDAG);
-        propagateLive(internalCaseDAG);
+        propagateRelevance(internalCaseGraph);
+        propagateAvailabile(internalCaseGraph);
+        propagateLive(internalCaseGraph);
 
         // Ok, so now just go through all nodes and signal that we need to remove anything
         // that isn't live!
-        for (Enumeration iterator = internalCaseDAG.getNodes(); iterator.hasMoreElements(); ) {
-            int[] node = (int[])iterator.nextElement();
-            if (!caseStatusIs(node[0], STATUS_ALIVE)) {
-                idsToRemove.addElement(Integer.valueOf(node[1]));
+        for (int node = 0; node < internalCaseGraph.getNodeCount(); node++) {
+            if (internalCaseGraph.isPresent(node) && !internalCaseGraph.hasStatus(node, STATUS_ALIVE)) {
+                idsToRemove.addElement(Integer.valueOf(internalCaseGraph.getRecordId(node)));
             }
         }
     }
@@ -113,22 +105,13 @@ public class CasePurgeFilter extends EntityFilter<Case> {
      * Given the case storage and valid owners in the current environment, produce a case graph of
      * the state on the phone.
      *
-     * The Index of each node is its case id guid
-     * The Node element for the guide consists of an integer array [STATUS_FLAGS, storageid]
-     * storageid is the id of the row of the case in the provided storage
-     * STATUS_FLAGS is a bitmasked integer. It should be initialized with any of STATUS_OWNED,
-     * STATUS_OPEN, and/or STATUS_RELEVANT as applies to the node (A node starts as relevant
-     * if it is OWNED and it is OPEN)
-     *
-     * The Edge string is the 'type' of index from the originating case to the target case(ie: parent, or extension)
+     * Each case starts out with any of STATUS_OWNED, STATUS_OPEN, and/or STATUS_RELEVANT as
+     * applies to it (A case starts as relevant if it is OWNED and it is OPEN), and has an edge for
+     * each of its indices to the indexed case, tagged with the 'type' of index (ie: parent, or
+     * extension)
      */
-    public static DAG<String, int[], String> getFullCaseGraph(IStorageUtilityIndexed<Case> caseStorage, Vector<String> owners) {
-        DAG<String, int[], String> caseGraph = new DAG<>();
-        Vector<CaseIndex> indexHolder = new Vector<>();
-
-        // Pass 1: Create a DAG which contains all of the cases on the phone as nodes, and has a
-        // directed edge for each index (from the 'child' case pointing to the 'parent' case) with
-        // the appropriate relationship tagged
+    public static CaseGraph getFullCaseGraph(IStorageUtilityIndexed<Case> caseStorage, Vector<String> owners) {
+        CaseGraph.Builder caseGraph = new CaseGraph.Builder();
         for (IStorageIterator<Case> i = caseStorage.iterate(); i.hasMore(); ) {
             Case c = i.nextRecord();
             boolean owned = true;
@@ -136,215 +119,80 @@ public class CasePurgeFilter extends EntityFilter<Case> {
                 owned = owners.contains(c.getUserId());
             }
 
-            // In order to deal with multiple indices pointing to the same case with different
-            // relationships, we'll need to traverse once to eliminate any ambiguity
-            // TODO: How do we speed this up? Do we need to?
+            int node = caseGraph.addCase(c.getCaseId(), c.getID(), owned, !c.isClosed());
             for (CaseIndex index : c.getIndices()) {
-                CaseIndex toReplace = null;
-                boolean skip = false;
-                for (CaseIndex existing : indexHolder) {
-                    if (existing.getTarget().equals(index.getTarget())) {
-                        if (existing.getRelationship().equals(CaseIndex.RELATIONSHIP_EXTENSION) && !index.getRelationship().equals(CaseIndex.RELATIONSHIP_EXTENSION)) {
-                            toReplace = existing;
-                        } else {
-                            skip = true;
-                        }
-                        break;
-                    }
-                }
-                if (toReplace != null) {
-                    indexHolder.removeElement(toReplace);
-                }
-                if (!skip) {
-                    indexHolder.addElement(index);
-                }
-            }
-            int nodeStatus = 0;
-            if (owned) {
-                nodeStatus |= STATUS_OWNED;
-            }
-
-            if (!c.isClosed()) {
-                nodeStatus |= STATUS_OPEN;
-            }
-
-            if (owned && !c.isClosed()) {
-                nodeStatus |= STATUS_RELEVANT;
+                caseGraph.addIndex(node, index.getTarget(), index.getRelationship());
             }
-
-            caseGraph.addNode(c.getCaseId(), new int[]{nodeStatus, c.getID()});
-
-            for (CaseIndex index : indexHolder) {
-                caseGraph.setEdge(c.getCaseId(), index.getTarget(), index.getRelationship());
-            }
-            indexHolder.removeAllElements();
         }
-
-        return caseGraph;
+        return caseGraph.build();
     }
 
-    private static void propagateRelevance(DAG<String, int[], String> g) {
-        propagateMarkToDAG(g, true, STATUS_RELEVANT, STATUS_RELEVANT);
-        propagateMarkToDAG(g, false, STATUS_RELEVANT, STATUS_RELEVANT, CaseIndex.RELATIONSHIP_EXTENSION, false);
+    private static void propagateRelevance(CaseGraph g) {
+        g.propagateMark(STATUS_RELEVANT, true, false, 0);
+        g.propagateMark(STATUS_RELEVANT, false, true, 0);
     }
 
-    private static void propagateAvailabile(DAG<String, int[], String> g) {
-        for (Enumeration e = g.getIndices(); e.hasMoreElements(); ) {
-            String index = (String)e.nextElement();
-            int[] node = g.getNode(index);
-            if (caseStatusIs(node[0], STATUS_OPEN | STATUS_RELEVANT) &&
-                    !hasOutgoingExtension(g, index)) {
-                node[0] |= STATUS_AVAILABLE;
+    private static void propagateAvailabile(CaseGraph g) {
+        for (int node = 0; node < g.getNodeCount(); node++) {
+            if (g.isPresent(node) && g.hasStatus(node, STATUS_OPEN | STATUS_RELEVANT) &&
+                    !g.hasIndexOfRelationship(node, CaseGraph.EXTENSION)) {
+                g.addStatus(node, STATUS_AVAILABLE);
             }
         }
-        propagateMarkToDAG(g, false, STATUS_AVAILABLE, STATUS_AVAILABLE, CaseIndex.RELATIONSHIP_EXTENSION, true);
-    }
-
-    private static boolean hasOutgoingExtension(DAG<String, int[], String> g, String index) {
-        for (Edge<String, String> edge : g.getChildren(index)) {
-            if (edge.e.equals(CaseIndex.RELATIONSHIP_EXTENSION)) {
-                return true;
-            }
-        }
-        return false;
+        g.propagateMark(STATUS_AVAILABLE, false, true, STATUS_OPEN);
     }
 
-    private static void propagateLive(DAG<String, int[], String> g) {
-        for (Enumeration e = g.getIndices(); e.hasMoreElements(); ) {
-            String index = (String)e.nextElement();
-            int[] node = g.getNode(index);
-            if (caseStatusIs(node[0], STATUS_OWNED | STATUS_RELEVANT | STATUS_AVAILABLE)) {
-                node[0] |= STATUS_ALIVE;
+    private static void propagateLive(CaseGraph g) {
+        for (int node = 0; node < g.getNodeCount(); node++) {
+            if (g.isPresent(node) &&
+                    g.hasStatus(node, STATUS_OWNED | STATUS_RELEVANT | STATUS_AVAILABLE)) {
+                g.addStatus(node, STATUS_ALIVE);
             }
         }
 
         //NOTE: There is no currently 'safe' number of times to execute these two propagations that
         //will properly cover the graph, this is a short-term fix for covering the most common
         //cases.
-        propagateMarkToDAG(g, true, STATUS_ALIVE, STATUS_ALIVE);
-        propagateMarkToDAG(g, false, STATUS_ALIVE, STATUS_ALIVE, CaseIndex.RELATIONSHIP_EXTENSION, true);
-        propagateMarkToDAG(g, true, STATUS_ALIVE, STATUS_ALIVE);
-        propagateMarkToDAG(g, false, STATUS_ALIVE, STATUS_ALIVE, CaseIndex.RELATIONSHIP_EXTENSION, true);
-    }
-
-    private static void propagateMarkToDAG(DAG<String, int[], String> g, boolean direction, int mask, int mark) {
-        propagateMarkToDAG(g, direction, mask, mark, null, false);
+        g.propagateMark(STATUS_ALIVE, true, false, 0);
+        g.propagateMark(STATUS_ALIVE, false, true, STATUS_OPEN);
+        g.propagateMark(STATUS_ALIVE, true, false, 0);
+        g.propagateMark(STATUS_ALIVE, false, true, STATUS_OPEN);
     }
 
     /**
-     * Propogates the provided mark in a chain from all nodes which meet the mask to all of their
-     * neighboring nodes, as long as those nodes meet the relationship provided. If the relationship
-     * is null, only the mask is checked.
-     *
-     * @param walkFromSourceToSink If true, start at sources (nodes with only outgoing edges), and walk edges
-     *                             from parent to child. If false, start at sinks (nodes with only incoming edges)
-     *                             and walk from child to parent
-     * @param maskCondition        A mask for what nodes meet the criteria of being marked in the walk.
-     * @param markToApply          A new binary flag (or set of flags) to apply to all nodes meeting the criteria
-     * @param relationship         If non-null, an additional criteria for whether a node should be marked.
-     *                             A node will only be marked if the edge walked to put it on the stack
-     *                             meets this criteria.
+     * Find any indices to cases which don't exist (which are created when a child makes a
+     * placeholder index to a parent, but then the parent does not actually exist on the phone
+     * for some reason), and remove the indexing cases from the graph along with all cases made
+     * invalid by them not existing, i.e. all of their child and extension cases.
      */
-    private static void propagateMarkToDAG(DAG<String, int[], String> dag, boolean walkFromSourceToSink,
-                                           int maskCondition, int markToApply, String relationship,
-                                           boolean requireOpenDestination) {
-        Stack<String> toProcess = walkFromSourceToSink ? dag.getSources() : dag.getSinks();
-        while (!toProcess.isEmpty()) {
-            // current node
-            String index = toProcess.pop();
-            int[] node = dag.getNode(index);
-
-            Vector<Edge<String, String>> edgeSet = walkFromSourceToSink ? dag.getChildren(index) :
-                    dag.getParents(index);
-
-            for (Edge<String, String> edge : edgeSet) {
-                if (caseStatusIs(node[0], maskCondition) && (relationship == null || edge.e.equals(relationship))) {
-                    if (!requireOpenDestination || caseStatusIs(dag.getNode(edge.i)[0], STATUS_OPEN)) {
-                        dag.getNode(edge.i)[0] |= markToApply;
-                    }
-                }
-                toProcess.addElement(edge.i);
+    private void removeCasesWithMissingIndices() {
+        ArrayList<Integer> indexingMissingCases = new ArrayList<>();
+        for (int node = 0; node < internalCaseGraph.getNodeCount(); node++) {
+            if (internalCaseGraph.isMissing(node)) {
+                continue;
             }
-        }
-    }
-
-    /**
-     * Traverse the graph to accumulate a list of any edges to empty nodes (which are created when
-     * a child makes a placeholder index to a parent, but then the parent does not actually exist
-     * on the phone for some reason).
-     *
-     * Then remove any nodes that are made invalid by that parent node not existing, which further
-     * accumulates the list of invalid edges
-     *
-     * @return Whether or not this method invocation removed any invalid edges from the DAG
-     */
-    private Vector<String[]> getInvalidEdges() {
-        Hashtable<String, Vector<Edge<String, String>>> allEdges = internalCaseDAG.getEdges();
-        Vector<String> childOfNonexistentParent = new Vector<>();
-        Vector<String[]> edgesToRemove = new Vector<>();
-        Enumeration edgeOriginIndices = allEdges.keys();
-        while (edgeOriginIndices.hasMoreElements()) {
-            String originIndex = (String)edgeOriginIndices.nextElement();
-            Vector<Edge<String, String>> edgeListForOrigin = allEdges.get(originIndex);
-            for (Edge<String, String> edge : edgeListForOrigin) {
-                String targetIndex = edge.i;
-                if (internalCaseDAG.getNode(targetIndex) == null) {
-                    missingCases.addElement(targetIndex);
-                    edgesToRemove.addElement(new String[]{originIndex, targetIndex});
-                    childOfNonexistentParent.addElement(originIndex);
+            for (int target : internalCaseGraph.getIndexTargets(node)) {
+                if (internalCaseGraph.isMissing(target)) {
+                    missingCases.addElement(internalCaseGraph.getCaseId(target));
+                    indexingMissingCases.add(node);
                 }
             }
         }
 
-        // Any case node with a nonexistent parent should be removed from the graph, as should
-        // all of its descendants, and any edges to or from it
-        for (String index : childOfNonexistentParent) {
-            removeNodeAndPropagate(index, edgesToRemove);
-        }
-
-        invalidEdgesWereRemoved = edgesToRemove.size() > 0;
-        return edgesToRemove;
-    }
-
-    /**
-     * Remove from the graph the node at this index, and remove all nodes that are made
-     * invalid by the non-existence of that node (i.e. all of its child and extension cases).
-     * Also accumulate a list of edges that need to be removed as a result of this method call.
-     * Actual edge removal should then be done all at once by the caller, to avoid
-     * ConcurrentModificationException
-     */
-    private void removeNodeAndPropagate(String indexOfRemovedNode,
-                                        Vector<String[]> accumulatedEdgesToRemove) {
-        // Wording is confusing here -- because all edges in this graph are from a child case to
-        // a parent case, calling getParents() for a node returns all of its child/extension cases
-        Vector<Edge<String, String>> childCases = internalCaseDAG.getParents(indexOfRemovedNode);
-        for (Edge<String, String> child : childCases) {
-            // Want to remove the edge from child case to parent case
-            accumulatedEdgesToRemove.addElement(new String[]{child.i, indexOfRemovedNode});
-
-            // Recurse on child case
-            removeNodeAndPropagate(child.i, accumulatedEdgesToRemove);
-        }
-
-        // Also want to remove any outgoing edges to other parents (but do NOT delete those
-        // parents because they are still valid)
-        Vector<Edge<String, String>> parentCases = internalCaseDAG.getChildren(indexOfRemovedNode);
-        for (Edge<String, String> parent : parentCases) {
-            accumulatedEdgesToRemove.addElement(new String[]{indexOfRemovedNode, parent.i});
+        ArrayList<Integer> removedRecordIds = new ArrayList<>();
+        ArrayList<String> removedCaseIds = new ArrayList<>();
+        for (int node : indexingMissingCases) {
+            internalCaseGraph.removeWithIndexingCases(node, removedRecordIds, removedCaseIds);
         }
+        idsToRemove.addAll(removedRecordIds);
+        casesRemovedDueToMissingCases.addAll(removedCaseIds);
 
-        // Once all edges to/from this node have been removed, delete the node itself from the
-        // DAG, and add it to the list of cases to be purged
-        if (casesRemovedDueToMissingCases.indexOf(indexOfRemovedNode) == -1) {
-            int storageIdOfRemovedNode = internalCaseDAG.removeNode(indexOfRemovedNode)[1];
-            idsToRemove.addElement(Integer.valueOf(storageIdOfRemovedNode));
-            casesRemovedDueToMissingCases.addElement(indexOfRemovedNode);
-        }
+        invalidEdgesWereRemoved = !indexingMissingCases.isEmpty();
     }
 
     // For use in tests
     public DAG<String, int[], String> getInternalCaseGraph() {
-        return internalCaseDAG;
+        return internalCaseGraph.toDAG();
     }
 
     /**
@@ -1,9 +1,13 @@
 package org.commcare.cases.util;
 
+import org.commcare.cases.query.IndexedDisjunctionLookup;
 import org.commcare.cases.query.IndexedSetMemberLookup;
 import org.commcare.cases.query.IndexedValueLookup;
+import org.commcare.cases.query.IndexedValuePrefixLookup;
+import org.commcare.cases.query.IndexedValueRangeLookup;
 import org.commcare.cases.query.NegativeIndexedValueLookup;
 import org.commcare.cases.query.PredicateProfile;
+import org.commcare.cases.query.PredicateProfileStorage;
 import org.commcare.cases.query.QueryContext;
 import org.commcare.cases.query.QueryPlanner;
 import org.commcare.cases.query.handlers.BasicStorageBackedCachingQueryHandler;
@@ -16,11 +20,15 @@ import org.javarosa.core.model.trace.EvaluationTrace;
 import org.javarosa.core.services.storage.IStorageUtilityIndexed;
 import org.javarosa.core.util.DataUtil;
 import org.javarosa.xpath.expr.FunctionUtils;
+import org.javarosa.xpath.expr.XPathBoolExpr;
+import org.javarosa.xpath.expr.XPathCmpExpr;
 import org.javarosa.xpath.expr.XPathEqExpr;
 import org.javarosa.xpath.expr.XPathExpression;
 import org.javarosa.xpath.expr.XPathPathExpr;
 import org.javarosa.xpath.expr.XPathSelectedFunc;
+import org.javarosa.xpath.expr.XPathStartsWithFunc;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -131,62 +139,135 @@ public abstract class StorageBackedTreeRoot<T extends AbstractTreeElement> imple
                                           Hashtable<XPathPathExpr, String> indices,
                                           EvaluationContext evalContext,
                                           Vector<PredicateProfile> optimizations) {
-
-        predicate:
         for (XPathExpression xpe : predicates) {
-            //what we want here is a static evaluation of the expression to see if it consists of evaluating
-            //something we index with something static.
-            if (xpe instanceof XPathEqExpr) {
-                XPathExpression left = ((XPathEqExpr)xpe).a;
-                if (left instanceof XPathPathExpr) {
-                    for (Enumeration en = indices.keys(); en.hasMoreElements(); ) {
-                        XPathPathExpr expr = (XPathPathExpr)en.nextElement();
-                        if (expr.matches(left)) {
-                            String filterIndex = translateFilterExpr(expr, (XPathPathExpr)left, indices);
-
-                            //TODO: We need a way to determine that this value does not also depend on anything in the current context, not
-                            //sure the best way to do that....? Maybe tell the evaluation context to skip out here if it detects a request
-                            //to resolve in a certain area?
-                            Object o = FunctionUtils.unpack(((XPathEqExpr)xpe).b.eval(evalContext));
-                            PredicateProfile lookup;
-                            if (((XPathEqExpr)xpe).op == XPathEqExpr.EQ) {
-                                lookup = new IndexedValueLookup(filterIndex, o);
-                                optimizations.add(lookup);
-                                continue predicate;
-                            } else if (((XPathEqExpr)xpe).op == XPathEqExpr.NEQ) {
-                                lookup = new NegativeIndexedValueLookup(filterIndex, o);
-                                optimizations.add(lookup);
-                                continue predicate;
-                            }
-                        }
-                    }
+            PredicateProfile profile = getNativePredicateProfile(xpe, indices, evalContext);
+
+            //Predicates are matched in order, so once we hit one we can't profile we're done
+            if (profile == null) {
+                break;
+            }
+            optimizations.addElement(profile);
+        }
+    }
+
+    /**
+     * @return A profile for a predicate which compares something we index with something static,
+     * or null if the predicate doesn't have a structure we can match against the index
+     */
+    private PredicateProfile getNativePredicateProfile(XPathExpression xpe,
+                                                       Hashtable<XPathPathExpr, String> indices,
+                                                       EvaluationContext evalContext) {
+        //TODO: We need a way to determine that the static values do not also depend on anything in the current
+        //context, not sure the best way to do that....? Maybe tell the evaluation context to skip out here if it
+        //detects a request to resolve in a certain area?
+        if (xpe instanceof XPathEqExpr) {
+            XPathEqExpr eqExpr = (XPathEqExpr)xpe;
+            String filterIndex = getFilterIndex(eqExpr.a, indices);
+            if (filterIndex != null) {
+                Object o = FunctionUtils.unpack(eqExpr.b.eval(evalContext));
+                if (eqExpr.op == XPathEqExpr.EQ) {
+                    return new IndexedValueLookup(filterIndex, o);
+                } else if (eqExpr.op == XPathEqExpr.NEQ) {
+                    return new NegativeIndexedValueLookup(filterIndex, o);
                 }
-            } else if (xpe instanceof XPathSelectedFunc) {
-                XPathExpression lookupArg = ((XPathSelectedFunc)xpe).args[1];
-                if (lookupArg instanceof XPathPathExpr) {
-                    for (Enumeration en = indices.keys(); en.hasMoreElements(); ) {
-                        XPathPathExpr expr = (XPathPathExpr)en.nextElement();
-                        if (expr.matches(lookupArg)) {
-                            String filterIndex = translateFilterExpr(expr, (XPathPathExpr)lookupArg, indices);
-
-                            //TODO: We need a way to determine that this value does not also depend on anything in the current context, not
-                            //sure the best way to do that....? Maybe tell the evaluation context to skip out here if it detects a request
-                            //to resolve in a certain area?
-                            Object o = FunctionUtils.unpack(((XPathSelectedFunc)xpe).args[0].eval(evalContext));
-
-                            optimizations.addElement(new IndexedSetMemberLookup(filterIndex, o));
-
-                            continue predicate;
-                        }
+            }
+        } else if (xpe instanceof XPathSelectedFunc) {
+            XPathSelectedFunc selectedFunc = (XPathSelectedFunc)xpe;
+            String filterIndex = getFilterIndex(selectedFunc.args[1], indices);
+            if (filterIndex != null) {
+                Object o = FunctionUtils.unpack(selectedFunc.args[0].eval(evalContext));
+                return new IndexedSetMemberLookup(filterIndex, o);
+            }
+        } else if (xpe instanceof XPathCmpExpr) {
+            XPathCmpExpr cmpExpr = (XPathCmpExpr)xpe;
+            String filterIndex = getFilterIndex(cmpExpr.a, indices);
+            if (filterIndex != null) {
+                return new IndexedValueRangeLookup(filterIndex, cmpExpr.op,
+                        FunctionUtils.toNumeric(cmpExpr.b.eval(evalContext)));
+            }
+            filterIndex = getFilterIndex(cmpExpr.b, indices);
+            if (filterIndex != null) {
+                return new IndexedValueRangeLookup(filterIndex,
+                        IndexedValueRangeLookup.swapOperands(cmpExpr.op),
+                        FunctionUtils.toNumeric(cmpExpr.a.eval(evalContext)));
+            }
+        } else if (xpe instanceof XPathStartsWithFunc) {
+            XPathStartsWithFunc startsWithFunc = (XPathStartsWithFunc)xpe;
+            String filterIndex = getFilterIndex(startsWithFunc.args[0], indices);
+            if (filterIndex != null) {
+                String prefix = FunctionUtils.toString(startsWithFunc.args[1].eval(evalContext));
+                //an empty prefix matches everything, including elements without the value
+                if (prefix.length() > 0) {
+                    IndexedValuePrefixLookup lookup = new IndexedValuePrefixLookup(filterIndex, prefix);
+                    if (lookup.getUpperBound() != null) {
+                        return lookup;
                     }
                 }
             }
+        } else if (xpe instanceof XPathBoolExpr && ((XPathBoolExpr)xpe).op == XPathBoolExpr.OR) {
+            XPathBoolExpr boolExpr = (XPathBoolExpr)xpe;
+            PredicateProfile left = getNativePredicateProfile(boolExpr.a, indices, evalContext);
+            if (left == null) {
+                return null;
+            }
+            PredicateProfile right = getNativePredicateProfile(boolExpr.b, indices, evalContext);
+            if (right == null) {
+                return null;
+            }
+            return buildDisjunction(left, right);
+        }
+        return null;
+    }
 
+    /**
+     * @return The index matching the provided expression if it is a path to an indexed value,
+     * null otherwise
+     */
+    private String getFilterIndex(XPathExpression expression, Hashtable<XPathPathExpr, String> indices) {
+        if (!(expression instanceof XPathPathExpr)) {
+            return null;
+        }
+        for (Enumeration en = indices.keys(); en.hasMoreElements(); ) {
+            XPathPathExpr expr = (XPathPathExpr)en.nextElement();
+            if (expr.matches(expression)) {
+                return translateFilterExpr(expr, (XPathPathExpr)expression, indices);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chains of equality checks against the same index are collapsed into a single set lookup,
+     * everything else is matched branch by branch
+     */
+    private static PredicateProfile buildDisjunction(PredicateProfile left, PredicateProfile right) {
+        String[] leftValues = getSetMemberValues(left);
+        String[] rightValues = getSetMemberValues(right);
+        if (leftValues != null && rightValues != null && left.getKey().equals(right.getKey())) {
+            String[] values = new String[leftValues.length + rightValues.length];
+            System.arraycopy(leftValues, 0, values, 0, leftValues.length);
+            System.arraycopy(rightValues, 0, values, leftValues.length, rightValues.length);
+            return new IndexedSetMemberLookup(left.getKey(), values);
+        }
+
+        Vector<PredicateProfile> branches = new Vector<>();
+        for (PredicateProfile branch : new PredicateProfile[]{left, right}) {
+            if (branch instanceof IndexedDisjunctionLookup) {
+                branches.addAll(Arrays.asList(((IndexedDisjunctionLookup)branch).branches));
+            } else {
+                branches.addElement(branch);
+            }
+        }
+        return new IndexedDisjunctionLookup(branches.toArray(new PredicateProfile[branches.size()]));
+    }
 
-            //There's only one case where we want to keep moving along, and we would have triggered it if it were going to happen,
-            //so otherwise, just get outta here.
-            break;
+    private static String[] getSetMemberValues(PredicateProfile profile) {
+        if (profile instanceof IndexedSetMemberLookup) {
+            return ((IndexedSetMemberLookup)profile).valueSet;
+        } else if (profile instanceof IndexedValueLookup && ((IndexedValueLookup)profile).value instanceof String) {
+            return new String[]{(String)((IndexedValueLookup)profile).value};
         }
+        return null;
     }
 
     protected QueryPlanner getQueryPlanner() {
@@ -308,24 +389,21 @@ public abstract class StorageBackedTreeRoot<T extends AbstractTreeElement> imple
         String cacheKey = "";
         String keyDescription ="";
 
+        boolean requiresProfileLookup = false;
+
         for (int i = numKeysToProcess - 1; i >= 0; i--) {
-            String name = "";
-            String value = "";
-            String operator = "";
-            if (profiles.elementAt(i) instanceof IndexedValueLookup) {
-                name = profiles.elementAt(i).getKey();
-                value = (String)(((IndexedValueLookup)profiles.elementAt(i)).value);
+            PredicateProfile profile = profiles.elementAt(i);
+            String name = profile.getKey();
+            if (profile instanceof IndexedValueLookup) {
                 namesToMatch.add(name);
-                valuesToMatch.add(value);
-                operator = "=";
-            } else if (profiles.elementAt(i) instanceof NegativeIndexedValueLookup) {
-                name = profiles.elementAt(i).getKey();
-                value = (String)(((NegativeIndexedValueLookup)profiles.elementAt(i)).value);
+                valuesToMatch.add((String)(((IndexedValueLookup)profile).value));
+            } else if (profile instanceof NegativeIndexedValueLookup) {
                 namesToInverseMatch.add(name);
-                valuesToInverseMatch.add(value);
-                operator = "!=";                
+                valuesToInverseMatch.add((String)(((NegativeIndexedValueLookup)profile).value));
+            } else {
+                requiresProfileLookup = true;
             }
-            cacheKey += "|" + name + operator + value;
+            cacheKey += "|" + profile;
             keyDescription += name + "|";
         }
         String[] namesArray = namesToMatch.toArray(new String[namesToMatch.size()]);
@@ -346,7 +424,12 @@ public abstract class StorageBackedTreeRoot<T extends AbstractTreeElement> imple
         } else {
             EvaluationTrace trace = new EvaluationTrace(String.format("Storage [%s] Key Lookup [%s]", storageTreeName, keyDescription));
             ids = new LinkedHashSet<>();
-            storage.getIDsForValues(namesArray, valuesArray, inverseNames, inverseValues, ids);
+            if (requiresProfileLookup) {
+                ((PredicateProfileStorage)storage).getIDsForProfiles(
+                        new Vector<>(profiles.subList(0, numKeysToProcess)), ids);
+            } else {
+                storage.getIDsForValues(namesArray, valuesArray, inverseNames, inverseValues, ids);
+            }
             trace.setOutcome("Results: " + ids.size());
             currentQueryContext.reportTrace(trace);
 
@@ -367,8 +450,8 @@ public abstract class StorageBackedTreeRoot<T extends AbstractTreeElement> imple
 
     /**
      * Provide the number of keys that should be included in a general multi-key metadata lookup
-     * from the provided set. Each key in the returned set should be an indexed value lookup
-     * which can be matched in flat metadata with no additional processing.
+     * from the provided set. Each key in the returned set should be a lookup which can be
+     * matched in flat metadata by the storage with no additional processing.
      *
      * @param profiles A set of potential predicate profiles for bulk processing
      * @return The number of elements to process from the provided set. If only the first
@@ -378,9 +461,8 @@ public abstract class StorageBackedTreeRoot<T extends AbstractTreeElement> imple
         int keysToBatch = 0;
         //Otherwise see how many of these we can bulk process
         for (int i = 0; i < profiles.size(); ++i) {
-            //If the current key isn't an indexedvalue lookup, we can't process in this step
-            if (!(profiles.elementAt(i) instanceof IndexedValueLookup ||
-                  profiles.elementAt(i) instanceof NegativeIndexedValueLookup)) {
+            //If the current key can't be matched by the storage, we can't process in this step
+            if (!isBatchableProfile(profiles.elementAt(i))) {
                 break;
             }
 
@@ -390,6 +472,31 @@ public abstract class StorageBackedTreeRoot<T extends AbstractTreeElement> imple
         return keysToBatch;
     }
 
+    /**
+     * @return Whether the provided profile can be matched in a multi-key metadata lookup against
+     * this root's storage. Indexed value lookups can be matched by any indexed storage, other
+     * lookups only by storage which can match predicate profiles natively.
+     */
+    protected boolean isBatchableProfile(PredicateProfile profile) {
+        if (profile instanceof IndexedValueLookup || profile instanceof NegativeIndexedValueLookup) {
+            return true;
+        }
+        if (!(getStorage() instanceof PredicateProfileStorage)) {
+            return false;
+        }
+        if (profile instanceof IndexedDisjunctionLookup) {
+            for (PredicateProfile branch : ((IndexedDisjunctionLookup)profile).branches) {
+                if (!isBatchableProfile(branch)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return profile instanceof IndexedSetMemberLookup ||
+                profile instanceof IndexedValueRangeLookup ||
+                profile instanceof IndexedValuePrefixLookup;
+    }
+
     /**
      * @return A string which will provide a unique name for the storage that is used in this tree
      * root. Used to differentiate the record ID's retrieved during operations on this root in
@@ -1,5 +1,6 @@
 package org.commcare.core.interfaces;
 
+import org.commcare.cases.entity.EntityStorageCache;
 import org.commcare.cases.ledger.Ledger;
 import org.commcare.cases.model.Case;
 import org.commcare.cases.model.StorageIndexedTreeElementModel;
@@ -11,6 +12,8 @@ import org.javarosa.core.services.storage.IStorageUtilityIndexed;
 
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 /**
  *  Interface to be implemented by sandboxes for a user's CommCare instance data
  *
@@ -55,6 +58,12 @@ public abstract class UserSandbox {
      */
     public abstract void setIndexedFixturePathBases(String fixtureName, String baseName, String childName, TreeElement attrs);
 
+    /**
+     * Removes the indexed storage and path bases of a fixture, if any, so that it is read from
+     * normal fixture storage again.
+     */
+    public abstract void removeIndexedFixture(String fixtureName);
+
     public abstract IStorageUtilityIndexed<FormInstance> getUserFixtureStorage();
 
     public abstract IStorageUtilityIndexed<FormInstance> getAppFixtureStorage();
@@ -72,4 +81,15 @@ public abstract class UserSandbox {
     public String getSyncToken(){
         return syncToken;
     }
+
+    /**
+     * @param cacheScope Identifies what cached values were evaluated against (the app build, for
+     *                   instance). Values cached under one scope are never returned for another.
+     * @return A cache of evaluated entity fields for the cases in this sandbox that persists
+     * between sessions, or null if this sandbox doesn't keep one
+     */
+    @Nullable
+    public EntityStorageCache getEntityStorageCache(String cacheScope) {
+        return null;
+    }
 }
\ No newline at end of file
@@ -53,6 +53,7 @@ public class CommCareTransactionParserFactory implements TransactionParserFactor
 
     protected final UserSandbox sandbox;
     protected boolean isBulkProcessingEnabled = false;
+    private boolean indexAllFixtures = false;
 
     private int requests = 0;
 
@@ -102,7 +103,13 @@ public class CommCareTransactionParserFactory implements TransactionParserFactor
             if (isIndexed) {
                 FixtureIndexSchema schema = fixtureSchemas.get(id);
                 return new IndexedFixtureXmlParser(parser, id, schema, sandbox);
+            } else if (indexAllFixtures && id != null) {
+                return new IndexedFixtureXmlParser(parser, id, fixtureSchemas.get(id), sandbox, true);
             } else {
+                if (id != null && sandbox.getIndexedFixtureIdentifier(id) != null) {
+                    // previously stored as table rows, which would shadow the fixture parsed now
+                    sandbox.removeIndexedFixture(id);
+                }
                 return fixtureParser.getParser(parser);
             }
         } else if ("sync".equalsIgnoreCase(name) &&
@@ -132,6 +139,14 @@ public class CommCareTransactionParserFactory implements TransactionParserFactor
         return null;
     }
 
+    /**
+     * Store fixtures that weren't declared as indexed as table rows too, so that references into
+     * them don't need to load the whole fixture.
+     */
+    public void setIndexAllFixtures(boolean indexAllFixtures) {
+        this.indexAllFixtures = indexAllFixtures;
+    }
+
     protected void req() {
         requests++;
         reportProgress(requests);
@@ -37,4 +37,8 @@ public class IndexedFixturePathsConstants {
                     IndexedFixturePathsConstants.INDEXED_FIXTURE_PATHS_COL_ATTRIBUTES  +
                     " FROM " + IndexedFixturePathsConstants.INDEXED_FIXTURE_PATHS_TABLE +
                     " WHERE " + IndexedFixturePathsConstants.INDEXED_FIXTURE_PATHS_COL_NAME + " = ?;";
+
+    public final static String INDEXED_FIXTURE_PATHS_TABLE_DELETE_STMT =
+            "DELETE FROM " + IndexedFixturePathsConstants.INDEXED_FIXTURE_PATHS_TABLE +
+                    " WHERE " + IndexedFixturePathsConstants.INDEXED_FIXTURE_PATHS_COL_NAME + " = ?;";
 }
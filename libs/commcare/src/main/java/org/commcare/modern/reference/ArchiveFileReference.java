@@ -5,7 +5,6 @@ import org.javarosa.core.reference.Reference;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.ZipFile;
 
 /**
  * An archive file reference retrieves a binary file from a path within a zip
@@ -17,16 +16,16 @@ public class ArchiveFileReference implements Reference {
 
     private final String GUID;
     private final String archiveURI;
-    private final ZipFile mZipFile;
+    private final SharedArchive mArchive;
 
     /**
-     * @param zipFile    The host file
+     * @param archive    The host archive
      * @param GUID       The guid registered with the existing root
      * @param archiveURI a local path to the file being referenced
      */
-    public ArchiveFileReference(ZipFile zipFile, String GUID, String archiveURI) {
+    public ArchiveFileReference(SharedArchive archive, String GUID, String archiveURI) {
         this.archiveURI = archiveURI;
-        this.mZipFile = zipFile;
+        this.mArchive = archive;
         this.GUID = GUID;
     }
 
@@ -42,18 +41,16 @@ public class ArchiveFileReference implements Reference {
 
     @Override
     public InputStream getStream() throws IOException {
-        try {
-            return mZipFile.getInputStream(mZipFile.getEntry(archiveURI));
-        } catch (NullPointerException e) {
+        InputStream stream = mArchive == null ? null : mArchive.getStream(archiveURI);
+        if (stream == null) {
             String reference = "";
-            if(mZipFile != null) {
-                reference = mZipFile.getName();
+            if (mArchive != null) {
+                reference = mArchive.getPath();
             }
-            RuntimeException re = new RuntimeException(String.format("ZipFile %s threw NullPointerException with URI %s in archive with GUID %s.",
+            throw new RuntimeException(String.format("Archive %s has no entry for URI %s in archive with GUID %s.",
                     reference, archiveURI, GUID));
-            re.initCause(e);
-            throw re;
         }
+        return stream;
     }
 
     @Override
@@ -6,8 +6,10 @@ import org.javarosa.core.reference.ReferenceFactory;
 import org.javarosa.core.reference.ReferenceManager;
 import org.javarosa.core.util.PropertyUtils;
 
-import java.util.HashMap;
-import java.util.zip.ZipFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author wspride
@@ -17,7 +19,8 @@ import java.util.zip.ZipFile;
  */
 public class ArchiveFileRoot implements ReferenceFactory {
 
-    protected static final HashMap<String, ZipFile> guidToFolderMap = new HashMap<>();
+    // registrations of the same file share one open archive, see SharedArchive
+    protected static final Map<String, SharedArchive> guidToArchiveMap = new ConcurrentHashMap<>();
 
     protected static final int GUID_LENGTH = 10;
 
@@ -26,7 +29,7 @@ public class ArchiveFileRoot implements ReferenceFactory {
 
     @Override
     public Reference derive(String guidPath) throws InvalidReferenceException {
-        return new ArchiveFileReference(guidToFolderMap.get(getGUID(guidPath)), getGUID(guidPath), getPath(guidPath));
+        return new ArchiveFileReference(guidToArchiveMap.get(getGUID(guidPath)), getGUID(guidPath), getPath(guidPath));
     }
 
     @Override
@@ -42,21 +45,42 @@ public class ArchiveFileRoot implements ReferenceFactory {
         return URI.toLowerCase().startsWith("jr://archive/");
     }
 
-    public String addArchiveFile(ZipFile zipFile) {
-        return addArchiveFile(zipFile, null);
+    public String addArchiveFile(File archive) throws IOException {
+        return addArchiveFile(archive, null);
     }
 
-    public String addArchiveFile(ZipFile zip, String appId) {
+    /**
+     * @param appId the GUID to register the archive under, replacing any archive already
+     *              registered under it, or null to register it under a new GUID
+     * @throws java.util.zip.ZipException if the file isn't a valid archive
+     */
+    public String addArchiveFile(File archive, String appId) throws IOException {
         String mGUID;
         if (appId == null) {
             mGUID = PropertyUtils.genGUID(GUID_LENGTH);
         } else {
             mGUID = appId;
         }
-        guidToFolderMap.put(mGUID, zip);
+        SharedArchive previous = guidToArchiveMap.put(mGUID, SharedArchive.acquire(archive));
+        if (previous != null) {
+            previous.release();
+        }
         return mGUID;
     }
 
+    /**
+     * Unregisters the archive, closing it unless it is still registered under another GUID
+     */
+    public void removeArchiveFile(String guid) {
+        if (guid == null) {
+            return;
+        }
+        SharedArchive archive = guidToArchiveMap.remove(guid);
+        if (archive != null) {
+            archive.release();
+        }
+    }
+
     protected String getGUID(String jrpath) {
         String prependRemoved = jrpath.substring("jr://archive/".length());
         int slashindex = prependRemoved.indexOf("/");
@@ -0,0 +1,445 @@
+package org.commcare.modern.reference;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nullable;
+
+/**
+ * A .ccz archive which is opened once no matter how many times, or under how many GUIDs, its file
+ * is registered with an ArchiveFileRoot, and which is read through a read-only memory mapping of
+ * the whole file.
+ *
+ * The archive's central directory is read once, when it is opened. Stored entries are read
+ * straight out of the mapping, and deflated entries are inflated out of it. The small deflated
+ * entries every install of an app reads - profile, suites, forms, locale files - are kept inflated
+ * in a small cache shared by all open archives.
+ *
+ * Archives the mapping can't handle (larger than 2GB, or using zip64 or encryption) are read
+ * through a ZipFile instead, which is only closed once the streams read from it are.
+ */
+public class SharedArchive {
+
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final long ZIP64_MARKER = 0xffffffffL;
+
+    private static final int MAX_CACHED_ENTRY_BYTES = 256 * 1024;
+    private static final long INFLATED_CACHE_BYTES = 16 * 1024 * 1024;
+
+    // open archives, keyed on the path, size and modification time of their files
+    private static final Map<String, SharedArchive> openArchives = new HashMap<>();
+
+    private static final Cache<CachedEntryKey, byte[]> inflatedEntries = CacheBuilder.newBuilder()
+            .maximumWeight(INFLATED_CACHE_BYTES)
+            .weigher((CachedEntryKey key, byte[] inflated) -> inflated.length)
+            .build();
+
+    private final String key;
+    private final String path;
+
+    @Nullable
+    private final ByteBuffer mapping;
+    @Nullable
+    private final Map<String, MappedEntry> entries;
+    @Nullable
+    private final ZipFile zipFile;
+
+    // registrations holding the archive open, guarded by openArchives
+    private int references;
+
+    // streams still reading from the zip file, and whether it should be closed once they are done,
+    // guarded by this
+    private int openZipStreams;
+    private boolean zipFileReleased;
+
+    private SharedArchive(String key, String path, ByteBuffer mapping, Map<String, MappedEntry> entries) {
+        this.key = key;
+        this.path = path;
+        this.mapping = mapping;
+        this.entries = entries;
+        this.zipFile = null;
+    }
+
+    private SharedArchive(String key, String path, ZipFile zipFile) {
+        this.key = key;
+        this.path = path;
+        this.mapping = null;
+        this.entries = null;
+        this.zipFile = zipFile;
+    }
+
+    /**
+     * Opens the archive, or shares the one already open for the same file. Each call must be
+     * matched by a call to release.
+     *
+     * @throws ZipException if the file isn't a valid archive
+     */
+    public static SharedArchive acquire(File file) throws IOException {
+        String key = file.getCanonicalPath() + ":" + file.length() + ":" + file.lastModified();
+        synchronized (openArchives) {
+            SharedArchive archive = openArchives.get(key);
+            if (archive == null) {
+                archive = open(file, key);
+                openArchives.put(key, archive);
+            }
+            archive.references++;
+            return archive;
+        }
+    }
+
+    /**
+     * Closes the archive once every acquisition of it has been released. Streams already read
+     * from the archive stay readable: the mapping is only dropped once they are, and the zip file
+     * is only closed once they are closed.
+     */
+    public void release() {
+        synchronized (openArchives) {
+            if (--references > 0) {
+                return;
+            }
+            openArchives.remove(key);
+        }
+        inflatedEntries.asMap().keySet().removeIf(cached -> cached.archive == this);
+        if (zipFile != null) {
+            synchronized (this) {
+                zipFileReleased = true;
+                if (openZipStreams > 0) {
+                    return;
+                }
+            }
+            closeZipFile();
+        }
+    }
+
+    private void zipStreamClosed() {
+        synchronized (this) {
+            if (--openZipStreams > 0 || !zipFileReleased) {
+                return;
+            }
+        }
+        closeZipFile();
+    }
+
+    private void closeZipFile() {
+        try {
+            zipFile.close();
+        } catch (IOException e) {
+            // nothing left to read from it either way
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the entry's contents, or null if the archive has no such entry
+     */
+    @Nullable
+    public InputStream getStream(String name) throws IOException {
+        if (zipFile != null) {
+            ZipEntry entry = zipFile.getEntry(name);
+            if (entry == null) {
+                return null;
+            }
+            synchronized (this) {
+                openZipStreams++;
+            }
+            try {
+                return new ZipEntryInputStream(zipFile.getInputStream(entry));
+            } catch (IOException | RuntimeException e) {
+                zipStreamClosed();
+                throw e;
+            }
+        }
+        MappedEntry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.method == ZipEntry.STORED) {
+            return new ByteBufferInputStream(getData(name, entry));
+        }
+        if (entry.size > MAX_CACHED_ENTRY_BYTES) {
+            return new EntryInflaterInputStream(new ByteBufferInputStream(getData(name, entry)), entry.size);
+        }
+        try {
+            return new ByteArrayInputStream(inflatedEntries.get(new CachedEntryKey(this, name),
+                    () -> inflate(getData(name, entry), (int)entry.size)));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private ByteBuffer getData(String name, MappedEntry entry) throws ZipException {
+        int header = entry.localHeaderOffset;
+        if (mapping.getInt(header) != LOC_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + name + " in " + path);
+        }
+        int dataOffset = header + LOC_HEADER_SIZE + readShort(mapping, header + 26)
+                + readShort(mapping, header + 28);
+        ByteBuffer data = mapping.duplicate();
+        data.position(dataOffset);
+        data.limit(dataOffset + entry.compressedSize);
+        return data.slice();
+    }
+
+    private static byte[] inflate(ByteBuffer data, int size) throws IOException {
+        byte[] inflated = new byte[size];
+        try (InputStream in = new EntryInflaterInputStream(new ByteBufferInputStream(data), size)) {
+            int read = 0;
+            while (read < size) {
+                int count = in.read(inflated, read, size - read);
+                if (count < 0) {
+                    throw new EOFException("Archive entry ended early");
+                }
+                read += count;
+            }
+        }
+        return inflated;
+    }
+
+    private static SharedArchive open(File file, String key) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() <= Integer.MAX_VALUE) {
+                ByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mapping.order(ByteOrder.LITTLE_ENDIAN);
+                try {
+                    return new SharedArchive(key, file.getPath(), mapping, readCentralDirectory(mapping));
+                } catch (ZipException e) {
+                    // let ZipFile have a go, it either handles the archive or reports what's wrong
+                }
+            }
+        }
+        return new SharedArchive(key, file.getPath(), new ZipFile(file));
+    }
+
+    private static Map<String, MappedEntry> readCentralDirectory(ByteBuffer mapping) throws ZipException {
+        try {
+            int end = findEndOfCentralDirectory(mapping);
+            int count = readShort(mapping, end + 10);
+            long directorySize = readInt(mapping, end + 12);
+            long directoryOffset = readInt(mapping, end + 16);
+            if (readShort(mapping, end + 4) != 0 || readShort(mapping, end + 6) != 0
+                    || count == 0xffff || directoryOffset + directorySize > end) {
+                throw new ZipException("Unsupported central directory");
+            }
+
+            Map<String, MappedEntry> entries = new HashMap<>();
+            int position = (int)directoryOffset;
+            for (int i = 0; i < count; i++) {
+                if (mapping.getInt(position) != CEN_SIGNATURE) {
+                    throw new ZipException("Invalid central directory entry");
+                }
+                int flags = readShort(mapping, position + 8);
+                int method = readShort(mapping, position + 10);
+                long compressedSize = readInt(mapping, position + 20);
+                long size = readInt(mapping, position + 24);
+                int nameLength = readShort(mapping, position + 28);
+                int extraLength = readShort(mapping, position + 30);
+                int commentLength = readShort(mapping, position + 32);
+                long localHeaderOffset = readInt(mapping, position + 42);
+                if ((flags & 1) != 0 || (method != ZipEntry.STORED && method != ZipEntry.DEFLATED)
+                        || compressedSize == ZIP64_MARKER || size == ZIP64_MARKER
+                        || localHeaderOffset == ZIP64_MARKER) {
+                    throw new ZipException("Unsupported entry");
+                }
+
+                byte[] name = new byte[nameLength];
+                ByteBuffer nameBuffer = mapping.duplicate();
+                nameBuffer.position(position + CEN_HEADER_SIZE);
+                nameBuffer.get(name);
+                entries.put(new String(name, StandardCharsets.UTF_8),
+                        new MappedEntry(method, (int)compressedSize, size, (int)localHeaderOffset));
+                position += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+            }
+            return entries;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | BufferUnderflowException e) {
+            throw new ZipException("Truncated central directory");
+        }
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer mapping) throws ZipException {
+        int stop = Math.max(0, mapping.limit() - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+        for (int position = mapping.limit() - END_HEADER_SIZE; position >= stop; position--) {
+            if (mapping.getInt(position) == END_SIGNATURE) {
+                return position;
+            }
+        }
+        throw new ZipException("No end of central directory");
+    }
+
+    private static int readShort(ByteBuffer buffer, int position) {
+        return buffer.getShort(position) & 0xffff;
+    }
+
+    private static long readInt(ByteBuffer buffer, int position) {
+        return buffer.getInt(position) & 0xffffffffL;
+    }
+
+    private static class MappedEntry {
+        private final int method;
+        private final int compressedSize;
+        private final long size;
+        private final int localHeaderOffset;
+
+        private MappedEntry(int method, int compressedSize, long size, int localHeaderOffset) {
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    private static class CachedEntryKey {
+        private final SharedArchive archive;
+        private final String name;
+
+        private CachedEntryKey(SharedArchive archive, String name) {
+            this.archive = archive;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CachedEntryKey)) {
+                return false;
+            }
+            CachedEntryKey other = (CachedEntryKey)o;
+            return archive == other.archive && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(archive) + name.hashCode();
+        }
+    }
+
+    /**
+     * Reads a slice of the mapping without copying it anywhere first
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int)Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Reads an entry of the zip file, letting the archive close the zip file once this and every
+     * other stream read from it is closed
+     */
+    private class ZipEntryInputStream extends FilterInputStream {
+        private boolean closed;
+
+        private ZipEntryInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                zipStreamClosed();
+            }
+        }
+    }
+
+    /**
+     * Inflates raw deflate data the way ZipFile does, feeding the inflater the dummy byte it may
+     * need past the end of the data and releasing it on close
+     */
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean eof;
+
+        private EntryInflaterInputStream(InputStream in, long size) {
+            super(in, new Inflater(true), (int)Math.max(512, Math.min(size, 8192)));
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of archive entry");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            inf.end();
+        }
+    }
+}
@@ -1,6 +1,16 @@
 package org.commcare.resources;
 
 import org.commcare.resources.model.InstallRequestSource;
+import org.commcare.resources.model.Resource;
+import org.javarosa.core.reference.Reference;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
 
 /**
  * Defines context for Resource installation requests
@@ -9,6 +19,9 @@ public class ResourceInstallContext {
 
     private InstallRequestSource mInstallRequestSource;
 
+    // resource id -> resource being fetched and parsed ahead of its install
+    private final Map<String, Prefetch> mPrefetches = new ConcurrentHashMap<>();
+
     public ResourceInstallContext(InstallRequestSource installRequestSource) {
         mInstallRequestSource = installRequestSource;
     }
@@ -16,4 +29,72 @@ public class ResourceInstallContext {
     public InstallRequestSource getInstallRequestSource() {
         return mInstallRequestSource;
     }
+
+    /**
+     * Records that the resource is being prefetched from the given reference, replacing any
+     * earlier prefetch of it
+     */
+    public void addPrefetch(Resource r, Reference ref, Future<?> prefetch) {
+        Prefetch previous = mPrefetches.put(r.getResourceId(), new Prefetch(ref.getURI(), prefetch));
+        if (previous != null) {
+            previous.future.cancel(true);
+        }
+    }
+
+    /**
+     * Waits for the resource to be prefetched from the given reference, if it was.
+     *
+     * A prefetch which hasn't started yet is cancelled rather than waited on, since the installing
+     * thread can fetch the resource just as well as an executor thread.
+     *
+     * @return the parsed resource, or null if the installer should fetch it itself
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T takePrefetchedResource(Resource r, Reference ref) {
+        Prefetch prefetch = mPrefetches.remove(r.getResourceId());
+        if (prefetch == null) {
+            return null;
+        }
+        if (!prefetch.uri.equals(ref.getURI()) || prefetch.future.cancel(false)) {
+            prefetch.future.cancel(true);
+            return null;
+        }
+        try {
+            return (T)prefetch.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            // the install will run into, and report, the same failure
+            return null;
+        }
+    }
+
+    /**
+     * Drops the resource's prefetch once it has been installed some other way
+     */
+    public void cancelPrefetch(Resource r) {
+        Prefetch prefetch = mPrefetches.remove(r.getResourceId());
+        if (prefetch != null) {
+            prefetch.future.cancel(true);
+        }
+    }
+
+    public void cancelPrefetches() {
+        for (Prefetch prefetch : mPrefetches.values()) {
+            prefetch.future.cancel(true);
+        }
+        mPrefetches.clear();
+    }
+
+    private static class Prefetch {
+        private final String uri;
+        private final Future<?> future;
+
+        private Prefetch(String uri, Future<?> future) {
+            this.uri = uri;
+            this.future = future;
+        }
+    }
 }
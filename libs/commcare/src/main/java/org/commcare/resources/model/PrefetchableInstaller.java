@@ -0,0 +1,32 @@
+package org.commcare.resources.model;
+
+import org.javarosa.core.reference.Reference;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+/**
+ * A resource installer which can fetch and parse its resource apart from installing it, without
+ * touching the platform's storage or the resource table.
+ *
+ * A table preparing its resources with a prefetch executor (see
+ * ResourceTable.setPrefetchExecutor) prefetches such resources on that executor ahead of
+ * installing them, and the installer then picks up the parsed resource from the install context
+ * (see ResourceInstallContext.takePrefetchedResource) instead of fetching and parsing it again.
+ * Installs themselves still happen one at a time, in order, on the thread preparing the table.
+ *
+ * @param <T> the parsed form of the resource
+ */
+public interface PrefetchableInstaller<T> {
+
+    /**
+     * Runs on an executor thread, possibly while other resources are being prefetched or
+     * installed, so mustn't modify the installer or any shared state.
+     *
+     * @return the parsed resource, or null if it couldn't be read from ref. Failures are never
+     * reported from here: the install fetches the resource itself and reports them as usual.
+     */
+    @Nullable
+    T prefetch(Reference ref) throws IOException;
+}
@@ -23,6 +23,8 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.annotation.Nullable;
 
@@ -60,6 +62,9 @@ public class ResourceTable {
     private TableStateListener stateListener = null;
     private InstallCancelled cancellationChecker = null;
     private InstallStatsLogger installStatsLogger = null;
+    // Fetches and parses resources ahead of their install, see setPrefetchExecutor
+    private ExecutorService prefetchExecutor = null;
+    private int prefetchLookahead = 0;
 
     private static final int NUMBER_OF_LOSSY_RETRIES = 3;
     // Tracks whether a compound resource has been added, requiring
@@ -477,9 +482,7 @@ public class ResourceTable {
 
         // install all unready resources.
         while (!unreadyResources.isEmpty()) {
-            for (Resource r : unreadyResources) {
-                prepareResource(master, platform, r, masterResourceMap, resourceInstallContext);
-            }
+            prepareResources(unreadyResources, master, platform, masterResourceMap, resourceInstallContext);
             // Installing resources may have exposed more unready resources
             // that need installing.
             unreadyResources = getUnreadyResources();
@@ -518,15 +521,114 @@ public class ResourceTable {
 
         // install unready resources, until toInitialize has been installed.
         while (isResourceUninitialized(toInitialize) && !unreadyResources.isEmpty()) {
-            for (Resource r : unreadyResources) {
-                prepareResource(master, platform, r, null, resourceInstallContext);
-            }
+            prepareResources(unreadyResources, master, platform, null, resourceInstallContext);
             // Installing resources may have exposed more unready resources
             // that need installing.
             unreadyResources = getUnreadyResources();
         }
     }
 
+    /**
+     * Installs the given resources in order. With a prefetch executor, the
+     * resources following the one being installed are fetched and parsed on
+     * the executor in the meantime. Compound resources are never prefetched,
+     * so the children they expose are only picked up by a later pass, once
+     * their parent has been committed.
+     *
+     * @param masterResourceMap Map from resource id to resources for master,
+     *                          null to look them up in master as needed
+     */
+    private void prepareResources(Vector<Resource> resources, ResourceTable master,
+                                  CommCarePlatform platform,
+                                  Hashtable<String, Resource> masterResourceMap,
+                                  ResourceInstallContext resourceInstallContext)
+            throws UnresolvedResourceException, UnfullfilledRequirementsException, InstallCancelledException {
+        int prefetched = 0;
+        try {
+            for (int i = 0; i < resources.size(); i++) {
+                if (prefetchExecutor != null) {
+                    int prefetchUpTo = Math.min(resources.size(), i + 1 + prefetchLookahead);
+                    for (prefetched = Math.max(prefetched, i + 1); prefetched < prefetchUpTo; prefetched++) {
+                        prefetchResource(resources.elementAt(prefetched), master,
+                                masterResourceMap, resourceInstallContext);
+                    }
+                }
+                Resource r = resources.elementAt(i);
+                prepareResource(master, platform, r, masterResourceMap, resourceInstallContext);
+                if (prefetchExecutor != null) {
+                    resourceInstallContext.cancelPrefetch(r);
+                }
+            }
+        } finally {
+            if (prefetchExecutor != null) {
+                resourceInstallContext.cancelPrefetches();
+            }
+        }
+    }
+
+    /**
+     * Starts fetching and parsing the resource on the prefetch executor from
+     * the first reference its install will try, if its installer supports it
+     * and it won't just be copied over from master.
+     */
+    private void prefetchResource(Resource r, ResourceTable master,
+                                  Hashtable<String, Resource> masterResourceMap,
+                                  ResourceInstallContext resourceInstallContext) {
+        if (!(r.getInstaller() instanceof PrefetchableInstaller)) {
+            return;
+        }
+        Vector<Reference> invalid = new Vector<>();
+        if (master != null) {
+            Resource peer = masterResourceMap == null ?
+                    master.getResourceWithId(r.getResourceId()) : masterResourceMap.get(r.getResourceId());
+            if (peer != null) {
+                if (!r.isNewer(peer)) {
+                    return;
+                }
+                invalid = ResourceTable.gatherResourcesLocalRefs(peer, master);
+            }
+        }
+        Reference ref = getFirstInstallReference(r, invalid, master);
+        if (ref == null) {
+            return;
+        }
+        PrefetchableInstaller<?> installer = (PrefetchableInstaller<?>)r.getInstaller();
+        try {
+            resourceInstallContext.addPrefetch(r, ref, prefetchExecutor.submit(() -> installer.prefetch(ref)));
+        } catch (RejectedExecutionException e) {
+            // installed without prefetching
+        }
+    }
+
+    /**
+     * @return The first reference findResourceLocationAndInstall will try to
+     * install the resource from, skipping cache locations since there is
+     * nothing to fetch from those
+     */
+    @Nullable
+    private Reference getFirstInstallReference(Resource r, Vector<Reference> invalid,
+                                               ResourceTable master) {
+        for (ResourceLocation location : r.getLocations()) {
+            if (location.getAuthority() == Resource.RESOURCE_AUTHORITY_CACHE) {
+                continue;
+            }
+            if (location.isRelative()) {
+                for (Reference ref : gatherLocationsRefs(location, r, this, master)) {
+                    if (!(location.getAuthority() == Resource.RESOURCE_AUTHORITY_LOCAL && invalid.contains(ref))) {
+                        return ref;
+                    }
+                }
+            } else {
+                try {
+                    return ReferenceManager.instance().DeriveReference(location.getLocation());
+                } catch (InvalidReferenceException e) {
+                    // reported, if need be, when the resource is installed
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * @param master            The global resource to prepare against. Used to
      *                          establish whether resources need to be fetched
@@ -1137,6 +1239,20 @@ public class ResourceTable {
         this.installStatsLogger = logger;
     }
 
+    /**
+     * Fetches and parses the resources whose installers support it (see
+     * PrefetchableInstaller) on the given executor while this table is
+     * prepared, up to lookahead resources ahead of the one being installed.
+     * Resources are still installed, committed and reported to the state
+     * listener one at a time, in order, on the preparing thread.
+     *
+     * @param executor null to fetch and parse each resource as it is installed
+     */
+    public void setPrefetchExecutor(@Nullable ExecutorService executor, int lookahead) {
+        this.prefetchExecutor = executor;
+        this.prefetchLookahead = lookahead;
+    }
+
     public boolean recoverResources(CommCarePlatform platform, String profileRef, ResourceInstallContext resourceInstallContext)
             throws InstallCancelledException, UnresolvedResourceException, UnfullfilledRequirementsException {
         return recoverResources(platform, profileRef, resourceInstallContext, mMissingResources);
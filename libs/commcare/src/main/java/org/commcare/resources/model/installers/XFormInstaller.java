@@ -2,6 +2,7 @@ package org.commcare.resources.model.installers;
 
 import org.commcare.resources.ResourceInstallContext;
 import org.commcare.resources.model.MissingMediaException;
+import org.commcare.resources.model.PrefetchableInstaller;
 import org.commcare.resources.model.Resource;
 import org.commcare.resources.model.ResourceLocation;
 import org.commcare.resources.model.ResourceTable;
@@ -25,7 +26,7 @@ import java.util.Vector;
 /**
  * @author ctsims
  */
-public class XFormInstaller extends CacheInstaller<FormDef> {
+public class XFormInstaller extends CacheInstaller<FormDef> implements PrefetchableInstaller<FormDef> {
 
     private static final String UPGRADE_EXT = "_TEMP";
     private static final String STAGING_EXT = "_STAGING-OPENROSA";
@@ -46,11 +47,15 @@ public class XFormInstaller extends CacheInstaller<FormDef> {
                 //If it's in the cache, we should just get it from there
                 return false;
             } else {
-                incoming = ref.getStream();
-                if (incoming == null) {
-                    return false;
+                FormDef formDef = resourceInstallContext == null ? null :
+                        resourceInstallContext.takePrefetchedResource(r, ref);
+                if (formDef == null) {
+                    incoming = ref.getStream();
+                    if (incoming == null) {
+                        return false;
+                    }
+                    formDef = XFormUtils.getFormRaw(new InputStreamReader(incoming, "UTF-8"));
                 }
-                FormDef formDef = XFormUtils.getFormRaw(new InputStreamReader(incoming, "UTF-8"));
                 if (formDef == null) {
                     //Bad Form!
                     return false;
@@ -88,6 +93,16 @@ public class XFormInstaller extends CacheInstaller<FormDef> {
         }
     }
 
+    @Override
+    public FormDef prefetch(Reference ref) throws IOException {
+        try (InputStream incoming = ref.getStream()) {
+            if (incoming == null) {
+                return null;
+            }
+            return XFormUtils.getFormRaw(new InputStreamReader(incoming, "UTF-8"));
+        }
+    }
+
     @Override
     public boolean upgrade(Resource r, CommCarePlatform platform) throws UnresolvedResourceException {
         //Basically some content as revert. Merge;
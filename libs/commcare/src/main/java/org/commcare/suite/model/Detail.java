@@ -78,7 +78,7 @@ public class Detail implements Externalizable {
     private Callout callout;
 
     private OrderedHashtable<String, String> variables;
-    private OrderedHashtable<String, XPathExpression> variablesCompiled;
+    private volatile OrderedHashtable<String, XPathExpression> variablesCompiled;
 
 
     private Vector<Action> actions;
@@ -326,17 +326,19 @@ public class Detail implements Externalizable {
 
     public OrderedHashtable<String, XPathExpression> getVariableDeclarations() {
         if (variablesCompiled == null) {
-            variablesCompiled = new OrderedHashtable<>();
+            // build fully before publishing, details can be shared between requests
+            OrderedHashtable<String, XPathExpression> compiled = new OrderedHashtable<>();
             for (Enumeration en = variables.keys(); en.hasMoreElements(); ) {
                 String key = (String)en.nextElement();
                 //TODO: This is stupid, parse this stuff at XML Parse time.
                 try {
-                    variablesCompiled.put(key, XPathParseTool.parseXPath(variables.get(key)));
+                    compiled.put(key, XPathParseTool.parseXPath(variables.get(key)));
                 } catch (XPathSyntaxException e) {
                     e.printStackTrace();
                     throw new RuntimeException(e.getMessage());
                 }
             }
+            variablesCompiled = compiled;
         }
         return variablesCompiled;
     }
@@ -16,7 +16,9 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Creates a table for the indexed fixture and parses each element into a
@@ -28,12 +30,22 @@ import java.util.Set;
  * ('product-list', 'products', 'product') to be able to reconstruct the
  * fixture instance
  *
+ * Fixtures that weren't declared as indexed can also be stored this way, in which case the indices
+ * are the attributes and single-valued fields that every entry has, up to MAX_INFERRED_INDICES of
+ * them, and fixtures whose entries don't share the same name are only kept in normal fixture
+ * storage.
+ *
  * @author Phillip Mates (pmates@dimagi.com)
  */
 public class IndexedFixtureXmlParser extends TransactionParser<StorageIndexedTreeElementModel> {
 
-    private final Set<String> indices;
-    private final Set<String> columnIndices;
+    // upper bound on the columns indexed for a fixture without a schema
+    private static final int MAX_INFERRED_INDICES = 16;
+    private static final Pattern INDEX_NAME_PATTERN = Pattern.compile("^[a-zA-Z0-9@_\\.-]+$");
+
+    private Set<String> indices;
+    private Set<String> columnIndices;
+    private final boolean inferStorage;
     private final UserSandbox sandbox;
     private final String fixtureName;
     private IStorageUtilityIndexed<StorageIndexedTreeElementModel> indexedFixtureStorage;
@@ -41,12 +53,24 @@ public class IndexedFixtureXmlParser extends TransactionParser<StorageIndexedTre
 
     public IndexedFixtureXmlParser(KXmlParser parser, String fixtureId,
                                    FixtureIndexSchema schema, UserSandbox sandbox) {
+        this(parser, fixtureId, schema, sandbox, false);
+    }
+
+    /**
+     * @param inferStorage whether the fixture wasn't declared as indexed, so its indices need to be
+     *                     inferred and it may turn out not to be storable as table rows
+     */
+    public IndexedFixtureXmlParser(KXmlParser parser, String fixtureId,
+                                   FixtureIndexSchema schema, UserSandbox sandbox,
+                                   boolean inferStorage) {
         super(parser);
         this.sandbox = sandbox;
         this.fixtureName = fixtureId;
+        this.inferStorage = inferStorage;
 
         if (schema == null) {
-            // don't create any table indices if there was no fixture index schema
+            // don't create any table indices if there was no fixture index schema, unless they
+            // are inferred from the entries once parsed
             this.indices = new HashSet<>();
             this.columnIndices = new HashSet<>();
         } else {
@@ -67,7 +91,12 @@ public class IndexedFixtureXmlParser extends TransactionParser<StorageIndexedTre
         if (nextTagInBlock("fixture")) {
             // only commit fixtures with bodies to storage
             TreeElement root = new TreeElementParser(parser, 0, fixtureName).parse();
-            processRoot(root);
+            if (inferStorage && !hasUniformEntries(root)) {
+                // entries can't be stored as rows of a single table, so only keep normal storage
+                sandbox.removeIndexedFixture(fixtureName);
+            } else {
+                processRoot(root);
+            }
 
             // commit whole instance to normal fixture storage to allow for
             // migrations going forward, if ever needed
@@ -85,6 +114,9 @@ public class IndexedFixtureXmlParser extends TransactionParser<StorageIndexedTre
         if (root.hasChildren()) {
             String entryName = root.getChildAt(0).getName();
             writeFixtureIndex(root, entryName);
+            if (inferStorage && indices.isEmpty()) {
+                inferIndices(root, entryName);
+            }
 
             for (TreeElement entry : root.getChildrenWithName(entryName)) {
                 processEntry(entry, indices);
@@ -102,6 +134,75 @@ public class IndexedFixtureXmlParser extends TransactionParser<StorageIndexedTre
         commit(model);
     }
 
+    /**
+     * @return whether the root has entries that all share the same name
+     */
+    private static boolean hasUniformEntries(TreeElement root) {
+        if (!root.hasChildren()) {
+            return false;
+        }
+        String entryName = root.getChildAt(0).getName();
+        for (int i = 1; i < root.getNumChildren(); i++) {
+            if (!entryName.equals(root.getChildAt(i).getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Index the attributes and the fields that occur once without nested elements in every
+     * entry, which covers what predicates over fixture entries usually filter on.
+     */
+    private void inferIndices(TreeElement root, String entryName) {
+        Set<String> inferred = null;
+        for (TreeElement entry : root.getChildrenWithName(entryName)) {
+            Set<String> indexable = getIndexableFields(entry);
+            if (inferred == null) {
+                inferred = indexable;
+            } else {
+                inferred.retainAll(indexable);
+            }
+            if (inferred.isEmpty()) {
+                // no later entry can add back a field this one lacks
+                break;
+            }
+        }
+        indices = new LinkedHashSet<>();
+        if (inferred != null) {
+            for (String index : inferred) {
+                if (indices.size() == MAX_INFERRED_INDICES) {
+                    break;
+                }
+                indices.add(index);
+            }
+        }
+        columnIndices = new HashSet<>();
+        for (String index : indices) {
+            columnIndices.add(FixtureIndexSchema.escapeIndex(index));
+        }
+    }
+
+    private static Set<String> getIndexableFields(TreeElement entry) {
+        Set<String> indexable = new LinkedHashSet<>();
+        for (int i = 0; i < entry.getAttributeCount(); i++) {
+            addInferredIndex(indexable, "@" + entry.getAttributeName(i));
+        }
+        for (int i = 0; i < entry.getNumChildren(); i++) {
+            TreeElement field = entry.getChildAt(i);
+            if (!field.hasChildren() && entry.getChildMultiplicity(field.getName()) == 1) {
+                addInferredIndex(indexable, field.getName());
+            }
+        }
+        return indexable;
+    }
+
+    private static void addInferredIndex(Set<String> inferred, String index) {
+        if (INDEX_NAME_PATTERN.matcher(index).matches()) {
+            inferred.add(index);
+        }
+    }
+
     @Override
     protected void commit(StorageIndexedTreeElementModel parsed) throws IOException {
         getIndexedFixtureStorage(parsed).write(parsed);
@@ -50,9 +50,11 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -119,6 +121,19 @@ public class FormDef implements IFormElement, IMetaData,
      */
     private HashMap<TreeReference, Condition> conditionRepeatTargetIndex;
 
+    /**
+     * Position of each triggerable in the topologically ordered 'triggerables', which serves as
+     * its id during a cascade. Built lazily and dropped whenever 'triggerables' changes.
+     */
+    private IdentityHashMap<Triggerable, Integer> triggerableIds;
+
+    /**
+     * Ids of the triggerables that depend on the targets of each triggerable, by id. Unlike the
+     * children a triggerable cascades to, these don't depend on the instance, so are only
+     * computed once.
+     */
+    private int[][] targetFanOut;
+
     public EvaluationContext exprEvalContext;
 
     // XML ID's cannot start with numbers, so this should never conflict
@@ -605,6 +620,7 @@ public class FormDef implements IFormElement, IMetaData,
             // The triggerable isn't being added in any order, so topological
             // sorting has been disrupted
             triggerables.add(t);
+            clearTriggerableIds();
 
             for (TreeReference trigger : t.getTriggers()) {
                 TreeReference predicatelessTrigger = t.widenContextToAndClearPredicates(trigger);
@@ -679,10 +695,32 @@ public class FormDef implements IFormElement, IMetaData,
 
         // At this point triggerables should be topologically sorted (according
         // to Drew)
+        clearTriggerableIds();
 
         buildConditionRepeatTargetIndex();
     }
 
+    private void clearTriggerableIds() {
+        triggerableIds = null;
+        targetFanOut = null;
+    }
+
+    /**
+     * @return the position of the triggerable in 'triggerables', or -1 if it isn't part of this
+     * form
+     */
+    private int getTriggerableId(Triggerable t) {
+        if (triggerableIds == null) {
+            triggerableIds = new IdentityHashMap<>(triggerables.size() * 2);
+            for (int i = 0; i < triggerables.size(); i++) {
+                triggerableIds.put(triggerables.get(i), i);
+            }
+            targetFanOut = new int[triggerables.size()][];
+        }
+        Integer id = triggerableIds.get(t);
+        return id == null ? -1 : id;
+    }
+
     private void buildPartialOrdering(List<Pair<Triggerable, Triggerable>> partialOrdering) {
         for (Triggerable t : triggerables) {
             ArrayList<Triggerable> deps = new ArrayList<>();
@@ -898,11 +936,7 @@ public class FormDef implements IFormElement, IMetaData,
             //We can't make this reference generic before now or we'll lose the target information,
             //so we'll be more inclusive than needed and see if any of our triggers are keyed on
             //the predicate-less path of this ref
-            TreeReference predicatelessRef = ref;
-            if (ref.hasPredicates()) {
-                predicatelessRef = ref.removePredicates();
-            }
-            Vector<Triggerable> triggered = triggerIndex.get(predicatelessRef);
+            Vector<Triggerable> triggered = getTriggerablesTargetingNode(ref);
 
             if (triggered != null) {
                 //If so, walk all of these triggerables that we found
@@ -916,6 +950,14 @@ public class FormDef implements IFormElement, IMetaData,
         }
     }
 
+    private Vector<Triggerable> getTriggerablesTargetingNode(TreeReference ref) {
+        TreeReference predicatelessRef = ref;
+        if (ref.hasPredicates()) {
+            predicatelessRef = ref.removePredicates();
+        }
+        return triggerIndex.get(predicatelessRef);
+    }
+
     /**
      * Enables debug traces in this form, which can be requested as a map after
      * this call has been performed. Debug traces will be available until they
@@ -1074,22 +1116,86 @@ public class FormDef implements IFormElement, IMetaData,
     private void evaluateTriggerables(List<Triggerable> tv,
                                       TreeReference anchorRef,
                                       boolean isRepeatEntryInit) {
-        // Update the list of triggerables that need to be evaluated.
-        for (int i = 0; i < tv.size(); i++) {
-            // NOTE PLM: tv may grow in size through iteration.
-            Triggerable t = tv.get(i);
-            fillTriggeredElements(t, tv, isRepeatEntryInit);
+        // Mark the triggerables that need to be evaluated by id, queueing each
+        // the first time it is marked so that what it triggers gets marked too.
+        // Every triggerable is queued at most once.
+        BitSet affected = new BitSet(triggerables.size());
+        int[] queue = new int[triggerables.size()];
+        int queueEnd = 0;
+        for (Triggerable t : tv) {
+            queueEnd = markTriggerable(getTriggerableId(t), affected, queue, queueEnd);
+        }
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            queueEnd = markTriggeredElements(queue[queueStart], affected, queue, queueEnd,
+                    isRepeatEntryInit);
         }
 
-        // tv should now contain all of the triggerable components which are
-        // going to need to be addressed by this update.
-        // 'triggerables' is topologically-ordered by dependencies, so evaluate
-        // the triggerables in 'tv' in the order they appear in 'triggerables'
-        for (Triggerable triggerable : triggerables) {
-            if (tv.contains(triggerable)) {
-                evaluateTriggerable(triggerable, anchorRef);
+        // affected should now contain all of the triggerable components which
+        // are going to need to be addressed by this update. Ids follow the
+        // topological order of 'triggerables', so evaluate them in id order
+        for (int id = affected.nextSetBit(0); id >= 0; id = affected.nextSetBit(id + 1)) {
+            evaluateTriggerable(triggerables.get(id), anchorRef);
+        }
+    }
+
+    private static int markTriggerable(int id, BitSet affected, int[] queue, int queueEnd) {
+        if (id != -1 && !affected.get(id)) {
+            affected.set(id);
+            queue[queueEnd++] = id;
+        }
+        return queueEnd;
+    }
+
+    /**
+     * Marks the elements which will need to be evaluated when the triggerable
+     * with the given id is fired. Same as {@link #fillTriggeredElements}, but
+     * over ids.
+     *
+     * @return the new end of the queue
+     */
+    private int markTriggeredElements(int id, BitSet affected, int[] queue, int queueEnd,
+                                      boolean isRepeatEntryInit) {
+        Triggerable t = triggerables.get(id);
+        if (!t.canCascade()) {
+            return queueEnd;
+        }
+        for (int triggeredId : getTargetFanOut(id)) {
+            queueEnd = markTriggerable(triggeredId, affected, queue, queueEnd);
+        }
+        if (!isRepeatEntryInit && t.isCascadingToChildren()) {
+            for (TreeReference target : t.getTargets()) {
+                ArrayList<TreeReference> updatedNodes = new ArrayList<>();
+                updatedNodes.add(target);
+                for (TreeReference ref : findCascadeReferences(target, updatedNodes)) {
+                    Vector<Triggerable> triggered = getTriggerablesTargetingNode(ref);
+                    if (triggered != null) {
+                        for (Triggerable triggerable : triggered) {
+                            queueEnd = markTriggerable(getTriggerableId(triggerable), affected,
+                                    queue, queueEnd);
+                        }
+                    }
+                }
+            }
+        }
+        return queueEnd;
+    }
+
+    /**
+     * @return ids of the triggerables that depend on the targets of the
+     * triggerable with the given id
+     */
+    private int[] getTargetFanOut(int id) {
+        int[] fanOut = targetFanOut[id];
+        if (fanOut == null) {
+            ArrayList<Triggerable> triggered = new ArrayList<>();
+            addTriggerablesTargetingNodes(triggerables.get(id).getTargets(), triggered);
+            fanOut = new int[triggered.size()];
+            for (int i = 0; i < fanOut.length; i++) {
+                fanOut[i] = getTriggerableId(triggered.get(i));
             }
+            targetFanOut[id] = fanOut;
         }
+        return fanOut;
     }
 
     /**
@@ -1836,6 +1942,7 @@ public class FormDef implements IFormElement, IMetaData,
         triggerables = null;
         triggerIndex = null;
         conditionRepeatTargetIndex = null;
+        clearTriggerableIds();
         //We may need ths one, actually
         exprEvalContext = null;
     }
@@ -0,0 +1,89 @@
+package org.javarosa.core.services.locale;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable snapshot of the locales and locale data sources registered with a Localizer, which
+ * can be shared by any number of localizers on any number of threads (see
+ * Localizer.useSharedTables).
+ *
+ * The text for each locale is merged out of its data sources the first time it is needed and kept
+ * in a compact immutable map from then on, rather than every localizer re-reading its sources into
+ * a new Hashtable whenever its locale is set.
+ */
+public class LocaleTables {
+
+    private final Vector<String> locales;
+    private final Hashtable<String, Vector<LocaleDataSource>> localeResources;
+    private final String defaultLocale;
+    private final boolean fallbackDefaultLocale;
+    private final boolean fallbackDefaultForm;
+
+    // merged text, keyed on [locale, default locale] since the default locale's text is merged in
+    private final Map<List<String>, Map<String, String>> localeText = new ConcurrentHashMap<>();
+
+    private LocaleTables(Localizer localizer) {
+        this.locales = new Vector<>();
+        this.localeResources = new Hashtable<>();
+        for (String locale : localizer.getAvailableLocales()) {
+            locales.addElement(locale);
+            localeResources.put(locale, localizer.getLocaleResources(locale));
+        }
+        this.defaultLocale = localizer.getDefaultLocale();
+        this.fallbackDefaultLocale = localizer.getFallbackLocale();
+        this.fallbackDefaultForm = localizer.getFallbackForm();
+    }
+
+    /**
+     * Captures the locales and data sources currently registered with the localizer. Data sources
+     * registered with it afterwards aren't reflected in the snapshot.
+     */
+    public static LocaleTables capture(Localizer localizer) {
+        return new LocaleTables(localizer);
+    }
+
+    /**
+     * Shared with the localizers using these tables, which must copy them before modifying them
+     */
+    Vector<String> getLocales() {
+        return locales;
+    }
+
+    Hashtable<String, Vector<LocaleDataSource>> getLocaleResources() {
+        return localeResources;
+    }
+
+    String getDefaultLocale() {
+        return defaultLocale;
+    }
+
+    boolean getFallbackLocale() {
+        return fallbackDefaultLocale;
+    }
+
+    boolean getFallbackForm() {
+        return fallbackDefaultForm;
+    }
+
+    /**
+     * @return the full text for the locale, including that of the default locale when falling back
+     * to it, or null if the locale isn't defined
+     * @throws org.javarosa.core.util.NoLocalizedTextException if the locale has keys missing from
+     *                                                         the default locale
+     */
+    Map<String, String> getLocaleText(String locale, String defaultLocale) {
+        if (locale == null || !locales.contains(locale)) {
+            return null;
+        }
+        return localeText.computeIfAbsent(Arrays.asList(locale, defaultLocale),
+                key -> ImmutableMap.copyOf(Localizer.mergeLocaleData(locale, defaultLocale,
+                        fallbackDefaultLocale, localeResources)));
+    }
+}
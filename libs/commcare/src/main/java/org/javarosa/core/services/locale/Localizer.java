@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -29,12 +30,15 @@ import java.util.Vector;
 public class Localizer implements Externalizable {
     private Vector<String> locales;
     private Hashtable<String, Vector<LocaleDataSource>> localeResources;
-    private Hashtable<String, String> currentLocaleData;
+    private Map<String, String> currentLocaleData;
     private String defaultLocale;
     private String currentLocale;
     private boolean fallbackDefaultLocale;
     private boolean fallbackDefaultForm;
 
+    // when set, the locales and resources above are the (read only) ones of these tables
+    private LocaleTables sharedTables;
+
     /**
      * Default constructor. Disables all fallback modes.
      */
@@ -69,6 +73,7 @@ public class Localizer implements Externalizable {
         if (hasLocale(locale)) {
             return false;
         } else {
+            detachSharedTables();
             locales.addElement(locale);
             localeResources.put(locale, new Vector<LocaleDataSource>());
             return true;
@@ -169,7 +174,53 @@ public class Localizer implements Externalizable {
      * 4. For each resource file for the current locale, load each definition
      */
     private void loadCurrentLocaleResources() {
-        currentLocaleData = getLocaleData(currentLocale);
+        currentLocaleData = getLocaleText(currentLocale);
+    }
+
+    /**
+     * Uses the locales and locale data of the tables in place of any registered with this
+     * localizer, leaving only the choice of current and default locale to it. The text of each
+     * locale is shared with every other localizer using the same tables rather than loaded into
+     * this one.
+     *
+     * Registering further locales or resources makes this localizer a private copy of the tables
+     * again.
+     */
+    public void useSharedTables(LocaleTables tables) {
+        sharedTables = tables;
+        locales = tables.getLocales();
+        localeResources = tables.getLocaleResources();
+        fallbackDefaultLocale = tables.getFallbackLocale();
+        fallbackDefaultForm = tables.getFallbackForm();
+        defaultLocale = tables.getDefaultLocale();
+        currentLocale = null;
+        currentLocaleData = new Hashtable<>();
+    }
+
+    /**
+     * Copies the shared tables' locales and resources before they are modified
+     */
+    private void detachSharedTables() {
+        if (sharedTables != null) {
+            sharedTables = null;
+            locales = new Vector<>(locales);
+            Hashtable<String, Vector<LocaleDataSource>> resources = new Hashtable<>();
+            for (Map.Entry<String, Vector<LocaleDataSource>> entry : localeResources.entrySet()) {
+                resources.put(entry.getKey(), new Vector<>(entry.getValue()));
+            }
+            localeResources = resources;
+        }
+    }
+
+    /**
+     * @return the text of the locale, from the shared tables when in use. Null if locale not
+     * defined or null.
+     */
+    private Map<String, String> getLocaleText(String locale) {
+        if (sharedTables != null) {
+            return sharedTables.getLocaleText(locale, defaultLocale);
+        }
+        return getLocaleData(locale);
     }
 
     /**
@@ -187,6 +238,7 @@ public class Localizer implements Externalizable {
         if (resource == null) {
             throw new NullPointerException("Attempt to register a null data source in the localizer");
         }
+        detachSharedTables();
         if (localeResources.containsKey(locale)) {
             Vector<LocaleDataSource> resources = localeResources.get(locale);
             resources.addElement(resource);
@@ -202,6 +254,14 @@ public class Localizer implements Externalizable {
         }
     }
 
+    /**
+     * @return a copy of the data sources registered for the locale, empty if it is not defined
+     */
+    public Vector<LocaleDataSource> getLocaleResources(String locale) {
+        Vector<LocaleDataSource> resources = localeResources.get(locale);
+        return resources == null ? new Vector<>() : new Vector<>(resources);
+    }
+
     /**
      * Get the set of mappings for a locale.
      *
@@ -211,7 +271,12 @@ public class Localizer implements Externalizable {
         if (locale == null || !this.locales.contains(locale)) {
             return null;
         }
+        return mergeLocaleData(locale, defaultLocale, fallbackDefaultLocale, localeResources);
+    }
 
+    static Hashtable<String, String> mergeLocaleData(String locale, String defaultLocale,
+                                                     boolean fallbackDefaultLocale,
+                                                     Hashtable<String, Vector<LocaleDataSource>> localeResources) {
         //It's very important that any default locale contain the appropriate strings to localize the interface
         //for any possible language. As such, we'll keep around a table with only the default locale keys to
         //ensure that there are no localizations which are only present in another locale, which causes ugly
@@ -403,7 +468,11 @@ public class Localizer implements Externalizable {
         if (locale.equals(currentLocale)) {
             return currentLocaleData.get(textID);
         } else {
-            return getLocaleMap(locale).get(textID);
+            Map<String, String> mapping = getLocaleText(locale);
+            if (mapping == null) {
+                throw new UnregisteredLocaleException("Attempted to access an undefined locale.");
+            }
+            return mapping.get(textID);
         }
     }
 
@@ -523,6 +592,7 @@ public class Localizer implements Externalizable {
 
     @Override
     public void readExternal(DataInputStream dis, PrototypeFactory pf) throws IOException, DeserializationException {
+        sharedTables = null;
         fallbackDefaultLocale = ExtUtil.readBool(dis);
         fallbackDefaultForm = ExtUtil.readBool(dis);
         localeResources = (Hashtable)ExtUtil.read(dis, new ExtWrapMap(String.class, new ExtWrapListPoly()), pf);
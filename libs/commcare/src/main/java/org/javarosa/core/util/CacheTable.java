@@ -1,126 +1,75 @@
 package org.javarosa.core.util;
 
-import java.lang.ref.WeakReference;
-import java.util.Enumeration;
-import java.util.Hashtable;
-import java.util.Vector;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
- * A Cache Table is a self-purging weak reference store that can be used
- * to maintain a cache of objects keyed by a dynamic type.
+ * A Cache Table is a bounded store that can be used to maintain a cache of
+ * objects keyed by a dynamic type.
  *
- * Cache tables will automatically clean up references to freed week references
- * on an internal schedule, and compact the table size to maintain as small
- * of a footprint as possible.
+ * Cache tables are safe to share between threads without locking them: the
+ * table is split into independently locked segments, and reads don't lock at
+ * all. Once a table holds its maximum number of entries the least recently
+ * used ones are evicted.
  *
- * Cache tables are only available with Weak References to maintain compatibility
- * with j2me runtimes.
+ * By default cached objects are only weakly held, so that a table never keeps
+ * alive an object that is no longer used elsewhere. Entries for collected
+ * objects are removed by the table as part of normal reads and writes rather
+ * than by a separate thread. Tables of small values that are cheap to keep
+ * around, like strings, should hold them strongly instead, which spares the
+ * garbage collector from tracking a weak reference per entry.
  *
  * @author ctsims
  */
 public class CacheTable<T, K> {
-    private int totalAdditions = 0;
 
-    private Hashtable<T, WeakReference> currentTable;
+    public static final long DEFAULT_MAXIMUM_SIZE = 100000;
 
-    private static final Vector<WeakReference> caches = new Vector<>();
+    // number of independently locked segments, bounding how many threads can write at once
+    private static final int CONCURRENCY_LEVEL = 16;
 
-    private static final Thread cleaner = new Thread(() -> {
-        Vector<Integer> toRemove = new Vector<>();
-        while (true) {
-            try {
-                toRemove.removeAllElements();
-                for (int i = 0; i < caches.size(); ++i) {
-                    CacheTable cache = (CacheTable)caches.elementAt(i).get();
-                    if (cache == null) {
-                        toRemove.addElement(DataUtil.integer(i));
-                    } else {
-                        Hashtable<Object, WeakReference> table = cache.currentTable;
-                        for (Enumeration en = table.keys(); en.hasMoreElements(); ) {
-                            Object key = en.nextElement();
+    private final Cache<T, K> cache;
 
-                            synchronized (cache) {
-                                //See whether or not the cached reference has been cleared by the GC
-                                if (table.get(key).get() == null) {
-                                    //If so, remove the entry, it's no longer useful.
-                                    table.remove(key);
-                                }
-                            }
-                        }
-
-                        synchronized (cache) {
-                            //See if our current size is 25% the size of the largest size we've been
-                            //and compact (clone to a new table) if so, since the table maintains the
-                            //largest size it has ever been.
-                            //TODO: 50 is a super arbitrary upper bound
-                            if (cache.totalAdditions > 50 && cache.totalAdditions - cache.currentTable.size() > (cache.currentTable.size() >> 2)) {
-                                Hashtable newTable = new Hashtable(cache.currentTable.size());
-                                int oldMax = cache.totalAdditions;
-                                for (Enumeration en = table.keys(); en.hasMoreElements(); ) {
-                                    Object key = en.nextElement();
-                                    newTable.put(key, cache.currentTable.get(key));
-                                }
-                                cache.currentTable = newTable;
-                                cache.totalAdditions = cache.currentTable.size();
-                            }
-                        }
-
-                    }
-                }
-                for (int id = toRemove.size() - 1; id >= 0; --id) {
-                    caches.removeElementAt(toRemove.elementAt(id));
-                }
-                try {
-                    Thread.sleep(3000);
-                } catch (InterruptedException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-
-    });
+    public CacheTable() {
+        this(DEFAULT_MAXIMUM_SIZE, true);
+    }
 
-    private static void registerCache(CacheTable table) {
-        caches.addElement(new WeakReference(table));
-        synchronized (cleaner) {
-            if (!cleaner.isAlive()) {
-                cleaner.start();
-            }
+    /**
+     * @param maximumSize the most entries to keep before evicting the least recently used ones
+     * @param weakValues  whether to drop entries once their values are no longer used elsewhere
+     */
+    public CacheTable(long maximumSize, boolean weakValues) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .concurrencyLevel(CONCURRENCY_LEVEL);
+        if (weakValues) {
+            builder.weakValues();
         }
+        cache = builder.build();
     }
 
-    public CacheTable() {
-        super();
-        currentTable = new Hashtable<>();
-        registerCache(this);
+    public K retrieve(T key) {
+        return cache.getIfPresent(key);
     }
 
+    public void register(T key, K item) {
+        cache.put(key, item);
+    }
 
-    public K retrieve(T key) {
-        synchronized (this) {
-            if (!currentTable.containsKey(key)) {
-                return null;
-            }
-            K retVal = (K)currentTable.get(key).get();
-            if (retVal == null) {
-                currentTable.remove(key);
-            }
-            return retVal;
-        }
+    /**
+     * Atomically register the item unless the key already has a value
+     *
+     * @return The value already registered for the key, or null if the item was registered
+     */
+    protected K registerIfAbsent(T key, K item) {
+        return cache.asMap().putIfAbsent(key, item);
     }
 
-    public void register(T key, K item) {
-        synchronized (this) {
-            currentTable.put(key, new WeakReference(item));
-            totalAdditions++;
-        }
+    public long size() {
+        return cache.size();
     }
 
-    public void clear(){
-        currentTable.clear();
-        caches.removeAllElements();
+    public void clear() {
+        cache.invalidateAll();
     }
 }
@@ -61,7 +61,7 @@ public class ExtWrapTagged extends ExternalizableWrapper {
         byte[] tag = new byte[PrototypeFactory.getClassHashSize()];
         in.read(tag, 0, tag.length);
 
-        if (PrototypeFactory.compareHash(tag, PrototypeFactory.getWrapperTag())) {
+        if (PrototypeFactory.isWrapperTag(tag)) {
             int wrapperCode = ExtUtil.readInt(in);
 
             //find wrapper indicated by code
@@ -2,8 +2,6 @@ package org.javarosa.core.util.externalizable;
 
 import org.javarosa.core.api.ClassNameHasher;
 
-import java.util.Hashtable;
-
 /**
  * A prototype factory that is configured to keep track of all of the
  * case->hash pairs that it creates in order to use them for deserializaiton in
@@ -18,7 +16,6 @@ import java.util.Hashtable;
  * @author ctsims
  */
 public class LivePrototypeFactory extends PrototypeFactory {
-    private final Hashtable<String, Class> factoryTable = new Hashtable<>();
     private final LiveHasher mLiveHasher;
 
     public LivePrototypeFactory() {
@@ -36,19 +33,7 @@ public class LivePrototypeFactory extends PrototypeFactory {
 
     @Override
     public void addClass(Class c) {
-        byte[] hash = getLiveHasher().getHasher().getClassHashValue(c);
-        factoryTable.put(ExtUtil.printBytes(hash), c);
-    }
-
-    @Override
-    public Class getClass(byte[] hash) {
-        String key = ExtUtil.printBytes(hash);
-        return factoryTable.get(key);
-    }
-
-    @Override
-    public Object getInstance(byte[] hash) {
-        return PrototypeFactory.getInstance(getClass(hash));
+        storeHash(c, getLiveHasher().getHasher().getClassHashValue(c));
     }
 
     private LiveHasher getLiveHasher(){
@@ -0,0 +1,69 @@
+package org.javarosa.core.util.externalizable;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Creates the empty instances that deserialization reads into. The no-argument constructor of each
+ * class is looked up once and bound to a generated supplier, which the JIT can then inline like an
+ * ordinary constructor call, rather than going through reflection for every object read.
+ *
+ * Classes which can't be bound that way (or runtimes without lambda metafactory support) fall back
+ * to reflection, which also raises the same errors for classes which can't be instantiated.
+ */
+class PrototypeConstructors {
+
+    private static final MethodType SUPPLIER_FACTORY = MethodType.methodType(Supplier.class);
+    private static final MethodType SUPPLIER_GET = MethodType.methodType(Object.class);
+    private static final MethodType NO_ARGUMENTS = MethodType.methodType(void.class);
+
+    private static final Map<Class, Supplier<Object>> constructors = new ConcurrentHashMap<>();
+
+    static Object newInstance(Class c) {
+        return constructors.computeIfAbsent(c, PrototypeConstructors::bindConstructor).get();
+    }
+
+    private static Supplier<Object> bindConstructor(Class c) {
+        if (!c.isInterface() && !Modifier.isAbstract(c.getModifiers()) && isVisible(c)) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle constructor = lookup.findConstructor(c, NO_ARGUMENTS);
+                CallSite site = LambdaMetafactory.metafactory(lookup, "get", SUPPLIER_FACTORY,
+                        SUPPLIER_GET, constructor, MethodType.methodType(c));
+                return (Supplier<Object>)site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                // not accessible from here, or not supported by this runtime
+            }
+        }
+        return () -> reflectiveInstance(c);
+    }
+
+    /**
+     * The generated supplier refers to the class by name from this class's loader, so it has to
+     * resolve to the same class there
+     */
+    private static boolean isVisible(Class c) {
+        try {
+            return Class.forName(c.getName(), false, PrototypeConstructors.class.getClassLoader()) == c;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Object reflectiveInstance(Class c) {
+        try {
+            return c.newInstance();
+        } catch (IllegalAccessException iae) {
+            throw new CannotCreateObjectException(c.getName() + ": not accessible or no empty constructor");
+        } catch (InstantiationException e) {
+            throw new CannotCreateObjectException(c.getName() + ": not instantiable");
+        }
+    }
+}
@@ -3,9 +3,11 @@ package org.javarosa.core.util.externalizable;
 import org.javarosa.core.api.ClassNameHasher;
 import org.javarosa.core.model.data.UncastData;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Vector;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ProtoType factory for serializing and deserializing persisted classes using
@@ -16,8 +18,7 @@ public class PrototypeFactory {
 
     private static Hasher mStaticHasher;
 
-    private Vector<Class> classes;
-    private Vector<byte[]> hashes;
+    private final Map<ClassHashKey, Class> classesByHash = new ConcurrentHashMap<>();
 
     //lazy evaluation
     private HashSet<String> classNames;
@@ -54,9 +55,6 @@ public class PrototypeFactory {
     protected void lazyInit() {
         initialized = true;
 
-        classes = new Vector<>();
-        hashes = new Vector<>();
-
         addDefaultClasses();
         addMigratedClasses();
 
@@ -123,13 +121,7 @@ public class PrototypeFactory {
             lazyInit();
         }
 
-        for (int i = 0; i < classes.size(); i++) {
-            if (compareHash(hash, hashes.elementAt(i))) {
-                return classes.elementAt(i);
-            }
-        }
-
-        return null;
+        return classesByHash.get(new ClassHashKey(hash));
     }
 
     public Object getInstance(byte[] hash) {
@@ -137,13 +129,7 @@ public class PrototypeFactory {
     }
 
     public static Object getInstance(Class c) {
-        try {
-            return c.newInstance();
-        } catch (IllegalAccessException iae) {
-            throw new CannotCreateObjectException(c.getName() + ": not accessible or no empty constructor");
-        } catch (InstantiationException e) {
-            throw new CannotCreateObjectException(c.getName() + ": not instantiable");
-        }
+        return PrototypeConstructors.newInstance(c);
     }
 
     static byte[] getClassHash(Class type) {
@@ -173,8 +159,7 @@ public class PrototypeFactory {
     }
 
     protected void storeHash(Class c, byte[] hash){
-        classes.addElement(c);
-        hashes.addElement(hash);
+        classesByHash.put(new ClassHashKey(hash), c);
     }
 
     static byte[] getWrapperTag(){
@@ -184,4 +169,42 @@ public class PrototypeFactory {
         }
         return bytes;
     }
+
+    /**
+     * @return Whether the tag is the reserved wrapper tag, without building one to compare to
+     */
+    static boolean isWrapperTag(byte[] tag) {
+        if (tag.length != getClassHashSize()) {
+            return false;
+        }
+        for (byte b : tag) {
+            if (b != (byte)0xff) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A class hash as a map key, compared by content and with its hash code computed once
+     */
+    private static final class ClassHashKey {
+        private final byte[] hash;
+        private final int hashCode;
+
+        ClassHashKey(byte[] hash) {
+            this.hash = hash;
+            this.hashCode = Arrays.hashCode(hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ClassHashKey && Arrays.equals(hash, ((ClassHashKey)o).hash);
+        }
+    }
 }
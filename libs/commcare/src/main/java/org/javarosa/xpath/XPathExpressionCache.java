@@ -0,0 +1,67 @@
+package org.javarosa.xpath;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.parser.Lexer;
+import org.javarosa.xpath.parser.Parser;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+
+/**
+ * Parsed XPath expressions keyed by their text, so that the suites and forms that are rebuilt
+ * for each request don't have to lex and parse the same expressions again.
+ *
+ * The parsed expressions are shared by everything that parses the same text, so they must not be
+ * modified once parsed. The memory used is bounded by the total length of the cached expression
+ * text, the least recently used expressions being evicted first.
+ */
+public class XPathExpressionCache {
+
+    private final Cache<String, XPathExpression> cache;
+
+    /**
+     * @param maxCharacters the most expression text to keep the parsed expressions for
+     */
+    public XPathExpressionCache(long maxCharacters) {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxCharacters)
+                .weigher((String xpath, XPathExpression expression) -> xpath.length())
+                .recordStats()
+                .build();
+    }
+
+    public XPathExpression parse(String xpath) throws XPathSyntaxException {
+        XPathExpression expression = cache.getIfPresent(xpath);
+        if (expression == null) {
+            // two threads missing at once may both parse, which is cheaper than blocking on
+            // each other; syntax errors are thrown each time rather than cached
+            expression = Parser.parse(Lexer.lex(xpath));
+            cache.put(xpath, expression);
+        }
+        return expression;
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the underlying cache, for reporting its statistics
+     */
+    public Cache<String, XPathExpression> getCache() {
+        return cache;
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -5,8 +5,40 @@ import org.javarosa.xpath.parser.Lexer;
 import org.javarosa.xpath.parser.Parser;
 import org.javarosa.xpath.parser.XPathSyntaxException;
 
+import javax.annotation.Nullable;
+
 public class XPathParseTool {
+
+    // shared by all threads, null unless enabled with enableExpressionCache
+    @Nullable
+    private static volatile XPathExpressionCache expressionCache;
+
     public static XPathExpression parseXPath(String xpath) throws XPathSyntaxException {
+        XPathExpressionCache cache = expressionCache;
+        if (cache != null) {
+            return cache.parse(xpath);
+        }
         return Parser.parse(Lexer.lex(xpath));
     }
+
+    /**
+     * Share parsed expressions between everything parsing the same expression text
+     *
+     * @param maxCharacters the most expression text to keep the parsed expressions for
+     * @return the cache used from now on
+     */
+    public static XPathExpressionCache enableExpressionCache(long maxCharacters) {
+        XPathExpressionCache cache = new XPathExpressionCache(maxCharacters);
+        expressionCache = cache;
+        return cache;
+    }
+
+    public static void disableExpressionCache() {
+        expressionCache = null;
+    }
+
+    @Nullable
+    public static XPathExpressionCache getExpressionCache() {
+        return expressionCache;
+    }
 }
@@ -0,0 +1,90 @@
+package org.javarosa.xpath.analysis;
+
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xpath.expr.VolatileXPathFuncExpr;
+import org.javarosa.xpath.expr.XPathCustomRuntimeFunc;
+import org.javarosa.xpath.expr.XPathFuncExpr;
+import org.javarosa.xpath.expr.XPathPositionFunc;
+import org.javarosa.xpath.expr.XPathVariableReference;
+
+/**
+ * Analyzes an XPath expression to determine whether its value could depend on anything other than
+ * the node it is evaluated against and that node's descendants, such as another instance, a
+ * sibling or parent node, a variable, or a volatile function like today().
+ *
+ * The analysis is conservative: an expression it doesn't return true for only ever reads below
+ * its context node, so a value computed from it stays valid until that node changes.
+ */
+public class ReferencesBeyondContextNodeAnalyzer extends XPathBooleanAnalyzer {
+
+    public ReferencesBeyondContextNodeAnalyzer() {
+        super();
+        // stands in for whichever node the expression is evaluated against, so that the
+        // predicates of relative references can be analyzed
+        setContext(TreeReference.rootRef().extendRef("context",
+                TreeReference.DEFAULT_MUTLIPLICITY));
+    }
+
+    @Override
+    public void doNormalTreeRefAnalysis(TreeReference treeRef) {
+        // absolute references, into this or any other instance
+        referencesBeyondContextNode();
+    }
+
+    @Override
+    public void doAnalysisForRelativeTreeRef(TreeReference expressionWithContextTypeRelative) {
+        if (expressionWithContextTypeRelative.getRefLevel() > 0) {
+            referencesBeyondContextNode();
+        }
+    }
+
+    @Override
+    public void doAnalysisForTreeRefWithCurrent(TreeReference expressionWithContextTypeCurrent) {
+        if (expressionWithContextTypeCurrent.getRefLevel() > 0) {
+            referencesBeyondContextNode();
+        }
+    }
+
+    @Override
+    public void doAnalysis(XPathFuncExpr expr) {
+        if (expr instanceof VolatileXPathFuncExpr ||
+                expr instanceof XPathCustomRuntimeFunc ||
+                expr instanceof XPathPositionFunc) {
+            referencesBeyondContextNode();
+        }
+    }
+
+    @Override
+    public void doAnalysis(XPathAnalyzable analyzable) {
+        if (analyzable instanceof XPathVariableReference) {
+            referencesBeyondContextNode();
+        }
+    }
+
+    @Override
+    public boolean shouldIncludePredicates() {
+        // predicates of a reference which is already known to leave the context node might not
+        // be relative to anything the analysis can place
+        return !shortCircuit;
+    }
+
+    private void referencesBeyondContextNode() {
+        this.result = true;
+        this.shortCircuit = true;
+    }
+
+    @Override
+    protected boolean getDefaultValue() {
+        return false;
+    }
+
+    @Override
+    protected boolean aggregateResults() {
+        return orResults();
+    }
+
+    @Override
+    XPathAnalyzer initSameTypeAnalyzer() {
+        return new ReferencesBeyondContextNodeAnalyzer();
+    }
+}
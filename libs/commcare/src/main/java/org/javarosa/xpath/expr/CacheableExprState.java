@@ -10,7 +10,10 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 
 /**
- * Holder object for all of the state values an InFormCacheableExpr needs to keep track of
+ * Holder object for all of the state values an InFormCacheableExpr needs to keep track of.
+ *
+ * Parsed expressions can be shared between threads, so a state is never changed once an
+ * expression holds it: the with* methods return an updated copy to publish in its place.
  */
 public class CacheableExprState implements Externalizable {
 
@@ -20,6 +23,32 @@ public class CacheableExprState implements Externalizable {
     protected boolean contextRefIsRelevant;
     protected boolean originalContextRefIsRelevant;
 
+    CacheableExprState withCacheability(boolean exprIsCacheable) {
+        CacheableExprState state = copy();
+        state.exprIsCacheable = exprIsCacheable;
+        state.computedCacheability = true;
+        return state;
+    }
+
+    CacheableExprState withContextTypes(boolean contextRefIsRelevant,
+                                        boolean originalContextRefIsRelevant) {
+        CacheableExprState state = copy();
+        state.contextRefIsRelevant = contextRefIsRelevant;
+        state.originalContextRefIsRelevant = originalContextRefIsRelevant;
+        state.computedContextTypes = true;
+        return state;
+    }
+
+    private CacheableExprState copy() {
+        CacheableExprState state = new CacheableExprState();
+        state.computedCacheability = computedCacheability;
+        state.exprIsCacheable = exprIsCacheable;
+        state.computedContextTypes = computedContextTypes;
+        state.contextRefIsRelevant = contextRefIsRelevant;
+        state.originalContextRefIsRelevant = originalContextRefIsRelevant;
+        return state;
+    }
+
     @Override
     public void readExternal(DataInputStream in, PrototypeFactory pf) throws IOException, DeserializationException {
         computedCacheability = ExtUtil.readBool(in);
@@ -92,7 +92,10 @@ public class FunctionUtils {
         funcList.put(XPathJsonPropertyFunc.NAME, XPathJsonPropertyFunc.class);
     }
 
-    private static final CacheTable<String, Double> mDoubleParseCache = new CacheTable<>();
+    // held strongly, since nothing else holds on to the parsed values (or the NaN markers)
+    private static final CacheTable<String, Double> mDoubleParseCache =
+            new CacheTable<>(10000, false);
+
     /**
      * Gets a human readable string representing an xpath nodeset.
      *
@@ -18,26 +18,21 @@ import java.util.Set;
  */
 public abstract class InFormCacheableExpr implements XPathAnalyzable {
 
-    private Object justRetrieved;
-    CacheableExprState cacheState = new CacheableExprState();
-
-    boolean isCached(EvaluationContext ec) {
-        if (ec.expressionCachingEnabled()) {
-            queueUpCachedValue(ec);
-            return justRetrieved != null;
-        }
-        return false;
-    }
-
-    private void queueUpCachedValue(EvaluationContext ec) {
-        justRetrieved = ec.expressionCacher().getCachedValue(cacheKey(ec));
-    }
+    // replaced rather than modified as it is computed, see CacheableExprState. Racing threads
+    // compute the same values, so one overwriting the other's update only means recomputing later
+    volatile CacheableExprState cacheState = new CacheableExprState();
 
     /**
-     * queueUpCachedValue must always be called first!
+     * Looks the value up without storing it on the expression, so that parsed expressions can be
+     * evaluated from several threads at once.
+     *
+     * @return the value cached for this expression in the given context, or null if there is none
      */
-    Object getCachedValue() {
-        return justRetrieved;
+    Object getCachedValue(EvaluationContext ec) {
+        if (ec.expressionCachingEnabled()) {
+            return ec.expressionCacher().getCachedValue(cacheKey(ec));
+        }
+        return null;
     }
 
     void cache(Object value, EvaluationContext ec) {
@@ -49,18 +44,21 @@ public abstract class InFormCacheableExpr implements XPathAnalyzable {
     }
 
     private ExpressionCacheKey cacheKey(EvaluationContext ec) {
+        CacheableExprState state = stateWithContextTypes();
         return new ExpressionCacheKey(
                 this,
-                cacheState.contextRefIsRelevant ? ec.getContextRef() : null,
-                cacheState.originalContextRefIsRelevant ? ec.getOriginalContext() : null);
+                state.contextRefIsRelevant ? ec.getContextRef() : null,
+                state.originalContextRefIsRelevant ? ec.getOriginalContext() : null);
     }
 
     private boolean expressionIsCacheable(EvaluationContext ec) {
-        if (!cacheState.computedCacheability) {
-            cacheState.exprIsCacheable = rootExpressionTypeIsCacheable() && fullExpressionIsCacheable(ec);
-            cacheState.computedCacheability = true;
+        CacheableExprState state = cacheState;
+        if (!state.computedCacheability) {
+            state = cacheState.withCacheability(
+                    rootExpressionTypeIsCacheable() && fullExpressionIsCacheable(ec));
+            cacheState = state;
         }
-        return cacheState.exprIsCacheable;
+        return state.exprIsCacheable;
     }
 
     protected boolean rootExpressionTypeIsCacheable() {
@@ -88,22 +86,27 @@ public abstract class InFormCacheableExpr implements XPathAnalyzable {
     }
 
     public boolean relevantContextNodesAreCacheable(EvaluationContext ec) {
-        if (!cacheState.computedContextTypes) {
-            Set<Integer> relevantContextTypes =
-                    new TopLevelContextTypesAnalyzer().accumulate(this);
-            cacheState.contextRefIsRelevant =
-                    relevantContextTypes.contains(TreeReference.CONTEXT_INHERITED);
-            cacheState.originalContextRefIsRelevant =
-                    relevantContextTypes.contains(TreeReference.CONTEXT_ORIGINAL);
-            cacheState.computedContextTypes = true;
-        }
-        return !(cacheState.contextRefIsRelevant &&
+        CacheableExprState state = stateWithContextTypes();
+        return !(state.contextRefIsRelevant &&
                 contextRefIsUncacheableInForm(ec.getContextRef()))
                 &&
-                !(cacheState.originalContextRefIsRelevant &&
+                !(state.originalContextRefIsRelevant &&
                         contextRefIsUncacheableInForm(ec.getOriginalContext()));
     }
 
+    private CacheableExprState stateWithContextTypes() {
+        CacheableExprState state = cacheState;
+        if (!state.computedContextTypes) {
+            Set<Integer> relevantContextTypes =
+                    new TopLevelContextTypesAnalyzer().accumulate(this);
+            state = cacheState.withContextTypes(
+                    relevantContextTypes.contains(TreeReference.CONTEXT_INHERITED),
+                    relevantContextTypes.contains(TreeReference.CONTEXT_ORIGINAL));
+            cacheState = state;
+        }
+        return state;
+    }
+
     /**
      * Why this is true: Since a context ref in an EvaluationContext will always be fully-qualified,
      * its context type will always be either CONTEXT_INSTANCE or CONTEXT_ABSOLUTE. Within a form,
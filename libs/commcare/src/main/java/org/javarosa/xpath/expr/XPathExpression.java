@@ -35,10 +35,9 @@ public abstract class XPathExpression extends InFormCacheableExpr implements Ext
             throw new RequestAbandonedException();
         }
 
-        Object value;
+        Object value = getCachedValue(evalContext);
         boolean fromCache = false;
-        if (isCached(evalContext)) {
-            value = getCachedValue();
+        if (value != null) {
             fromCache = true;
         } else {
             value = evalRaw(model, evalContext);
@@ -35,18 +35,21 @@ import org.javarosa.xpath.analysis.XPathAnalyzer;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.text.MessageFormat;
 import java.util.Vector;
 
 public class XPathPathExpr extends XPathExpression {
-    private boolean templatePathChecked = false;
+    // the instance the template path was last found in, since checking it is expensive.
+    // parsed expressions can be shared between forms, so this can't just be a flag
+    private volatile WeakReference<DataInstance> templatePathCheckedIn;
     public static final int INIT_CONTEXT_ROOT = 0;
     public static final int INIT_CONTEXT_RELATIVE = 1;
     public static final int INIT_CONTEXT_EXPR = 2;
 
     public int initContext;
     public XPathStep[] steps;
-    private TreeReference cachedReference;
+    private volatile TreeReference cachedReference;
 
     //for INIT_CONTEXT_EXPR only
     public XPathFilterExpr filtExpr;
@@ -70,9 +73,17 @@ public class XPathPathExpr extends XPathExpression {
      * - only simple child name tests 'child::name', '.', and '..' allowed.
      * - '../' steps must come before anything else
      *
-     * @return a reference built from this path expression
+     * @return a reference built from this path expression, which the caller is free to change
      */
     public TreeReference getReference() throws XPathUnsupportedException {
+        return getCachedReference().clone();
+    }
+
+    /**
+     * @return the reference built from this path expression, which is shared by every evaluation
+     * of it and must not be changed
+     */
+    private TreeReference getCachedReference() throws XPathUnsupportedException {
         if (cachedReference != null) {
             return cachedReference;
         }
@@ -173,7 +184,7 @@ public class XPathPathExpr extends XPathExpression {
 
     @Override
     protected XPathNodeset evalRaw(DataInstance m, EvaluationContext ec) {
-        TreeReference genericRef = getReference();
+        TreeReference genericRef = getCachedReference();
         TreeReference ref;
 
         if (genericRef.getContextType() == TreeReference.CONTEXT_ORIGINAL) {
@@ -214,13 +225,15 @@ public class XPathPathExpr extends XPathExpression {
 
         // Error out if a (template) path along the reference starting at the
         // main DataInstance doesn't exist.
-        if (!templatePathChecked && ref.isAbsolute() && !m.hasTemplatePath(ref)) {
-            return XPathNodeset.constructInvalidPathNodeset(ref.toString(), genericRef.toString());
+        WeakReference<DataInstance> checkedIn = templatePathCheckedIn;
+        if (ref.isAbsolute() && (checkedIn == null || checkedIn.get() != m)) {
+            if (!m.hasTemplatePath(ref)) {
+                return XPathNodeset.constructInvalidPathNodeset(ref.toString(), genericRef.toString());
+            }
+            // only check the template path once per instance, since it is expensive
+            templatePathCheckedIn = new WeakReference<>(m);
         }
 
-        // only check the template path once, since it is expensive
-        templatePathChecked = true;
-
         return new XPathLazyNodeset(ref, m, ec);
     }
 
@@ -417,7 +430,7 @@ public class XPathPathExpr extends XPathExpression {
     @Override
     public Object pivot(DataInstance model, EvaluationContext evalContext,
                         Vector<Object> pivots, Object sentinal) throws UnpivotableExpressionException {
-        TreeReference ref = this.getReference();
+        TreeReference ref = getCachedReference();
         //Either concretely the sentinal, or "."
         if (ref.equals(sentinal) || (ref.getRefLevel() == 0)) {
             return sentinal;
@@ -435,7 +448,7 @@ public class XPathPathExpr extends XPathExpression {
     @Override
     public String toPrettyString() {
         try {
-            return getReference().toString(true);
+            return getCachedReference().toString(true);
         } catch(Exception e) {
             return toDebugString();
         }
@@ -0,0 +1,87 @@
+package org.commcare.cases.test;
+
+import org.commcare.cases.entity.NodeEntityFactory;
+import org.commcare.cases.instance.CaseInstanceTreeElement;
+import org.commcare.cases.model.Case;
+import org.commcare.cases.query.QueryContext;
+import org.commcare.modern.engine.cases.RecordObjectCache;
+import org.commcare.suite.model.Detail;
+import org.commcare.test.utilities.CaseTestUtils;
+import org.commcare.util.mocks.MockDataUtils;
+import org.commcare.util.mocks.MockUserDataSandbox;
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xpath.XPathNodeset;
+import org.javarosa.xpath.XPathParseTool;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for reading the cases behind a case list from storage in bulk before its entities are
+ * built
+ */
+public class EntityPrefetchTest {
+
+    private MockUserDataSandbox sandbox;
+    private final List<Case> cases = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        sandbox = MockDataUtils.getStaticStorage();
+        for (int i = 0; i < QueryContext.BULK_QUERY_THRESHOLD + 10; i++) {
+            Case c = new Case("case " + i, "patient");
+            c.setCaseId("case_" + i);
+            sandbox.getCaseStorage().write(c);
+            cases.add(c);
+        }
+    }
+
+    @Test
+    public void testPrefetchFillsRecordObjectCache() throws XPathSyntaxException {
+        EvaluationContext ec = MockDataUtils.buildContextWithInstance(sandbox, "casedb",
+                CaseTestUtils.CASE_INSTANCE);
+        new NodeEntityFactory(new Detail(), ec).prefetchModels(getCaseReferences(ec));
+
+        RecordObjectCache<Case> recordObjectCache =
+                ec.getCurrentQueryContext().getQueryCacheOrNull(RecordObjectCache.class);
+        assertNotNull(recordObjectCache);
+        for (Case c : cases) {
+            assertTrue(recordObjectCache.isLoaded(CaseInstanceTreeElement.MODEL_NAME, c.getID()));
+            assertEquals(c.getCaseId(), recordObjectCache.getLoadedRecordObject(
+                    CaseInstanceTreeElement.MODEL_NAME, c.getID()).getCaseId());
+        }
+    }
+
+    @Test
+    public void testSmallListsNotPrefetched() throws XPathSyntaxException {
+        EvaluationContext ec = MockDataUtils.buildContextWithInstance(sandbox, "casedb",
+                CaseTestUtils.CASE_INSTANCE);
+        TreeReference[] references = getCaseReferences(ec);
+        TreeReference[] smallList = new TreeReference[QueryContext.BULK_QUERY_THRESHOLD];
+        System.arraycopy(references, 0, smallList, 0, smallList.length);
+        new NodeEntityFactory(new Detail(), ec).prefetchModels(smallList);
+
+        RecordObjectCache<Case> recordObjectCache =
+                ec.getCurrentQueryContext().getQueryCacheOrNull(RecordObjectCache.class);
+        for (Case c : cases) {
+            assertFalse(recordObjectCache != null &&
+                    recordObjectCache.isLoaded(CaseInstanceTreeElement.MODEL_NAME, c.getID()));
+        }
+    }
+
+    private static TreeReference[] getCaseReferences(EvaluationContext ec)
+            throws XPathSyntaxException {
+        XPathNodeset nodeset = (XPathNodeset)XPathParseTool.parseXPath(
+                "instance('casedb')/casedb/case").eval(ec);
+        return nodeset.getReferences().toArray(new TreeReference[0]);
+    }
+}
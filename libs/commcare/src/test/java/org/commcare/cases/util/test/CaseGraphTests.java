@@ -0,0 +1,69 @@
+package org.commcare.cases.util.test;
+
+import org.commcare.cases.model.CaseIndex;
+import org.commcare.cases.util.CaseGraph;
+import org.commcare.cases.util.CasePurgeFilter;
+import org.javarosa.core.util.DAG;
+import org.junit.Test;
+
+import java.util.Vector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for building case graphs and purging cases from them
+ */
+public class CaseGraphTests {
+
+    @Test
+    public void testIndicesAddedBeforeIndexedCase() {
+        CaseGraph.Builder builder = new CaseGraph.Builder();
+        int child = builder.addCase("child", 7, true, true);
+        builder.addIndex(child, "parent", CaseIndex.RELATIONSHIP_CHILD);
+        builder.addCase("parent", 3, true, false);
+
+        assertEquals(child, builder.getNodeForRecord(7));
+        assertEquals(-1, builder.getNodeForRecord(5));
+
+        CaseGraph graph = builder.build();
+        assertEquals(2, graph.getCaseCount());
+        DAG<String, int[], String> dag = graph.toDAG();
+        assertEquals(3, dag.getNode("parent")[1]);
+        assertEquals("parent", dag.getChildren("child").firstElement().i);
+    }
+
+    @Test
+    public void testDuplicateIndexPrefersChild() {
+        CaseGraph.Builder builder = new CaseGraph.Builder();
+        int extension = builder.addCase("extension", 1, false, true);
+        builder.addIndex(extension, "host", CaseIndex.RELATIONSHIP_EXTENSION);
+        builder.addIndex(extension, "host", CaseIndex.RELATIONSHIP_CHILD);
+        builder.addCase("host", 2, true, true);
+
+        Vector<DAG.Edge<String, String>> indices = builder.build().toDAG().getChildren("extension");
+        assertEquals(1, indices.size());
+        assertEquals(CaseIndex.RELATIONSHIP_CHILD, indices.firstElement().e);
+    }
+
+    @Test
+    public void testIndexToMissingCase() throws Exception {
+        CaseGraph.Builder builder = new CaseGraph.Builder();
+        int child = builder.addCase("child", 1, true, true);
+        builder.addIndex(child, "missing", CaseIndex.RELATIONSHIP_CHILD);
+        int grandchild = builder.addCase("grandchild", 2, true, true);
+        builder.addIndex(grandchild, "child", CaseIndex.RELATIONSHIP_CHILD);
+        builder.addCase("other", 3, true, true);
+
+        CaseGraph graph = builder.build();
+        assertEquals(3, graph.getCaseCount());
+
+        CasePurgeFilter filter = new CasePurgeFilter(graph);
+        assertTrue(filter.invalidEdgesWereRemoved());
+        assertEquals(2, filter.getCasesToRemove().size());
+        DAG<String, int[], String> remaining = filter.getInternalCaseGraph();
+        assertEquals(1, remaining.getNodesCount());
+        assertNull(remaining.getNode("grandchild"));
+    }
+}
@@ -2,6 +2,8 @@ package org.commcare.fixtures.test;
 
 import org.commcare.cases.query.QueryContext;
 import org.commcare.cases.query.ScopeLimitedReferenceRequestCache;
+import org.commcare.cases.model.StorageIndexedTreeElementModel;
+import org.commcare.core.parse.CommCareTransactionParserFactory;
 import org.commcare.core.parse.ParseUtils;
 import org.commcare.test.utilities.CaseTestUtils;
 import org.commcare.util.mocks.MockDataUtils;
@@ -18,8 +20,11 @@ import org.junit.Test;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author Phillip Mates (pmates@dimagi.com)
@@ -72,6 +77,62 @@ public class IndexedFixtureTests {
         assertEquals(0, sandbox.getIndexedFixtureStorage("commtrack:products").getNumRecords());
     }
 
+    @Test
+    public void indexUndeclaredFixtures() throws UnfullfilledRequirementsException, XmlPullParserException,
+            IOException, InvalidStructureException, XPathSyntaxException {
+        parseIndexingAllFixtures("/indexed_fixture/unindexed-fixture.xml");
+
+        assertEquals(1, sandbox.getUserFixtureStorage().getNumRecords());
+        assertEquals(4, sandbox.getIndexedFixtureStorage("commtrack:products").getNumRecords());
+        assertEquals("product", sandbox.getIndexedFixtureIdentifier("commtrack:products").getFixtureChild());
+
+        // indices are inferred from the attributes and fields of the entries
+        StorageIndexedTreeElementModel entry = sandbox.getIndexedFixtureStorage("commtrack:products")
+                .getRecordForValue(StorageIndexedTreeElementModel.getSqlColumnNameFromElementOrAttribute("name"), "CU");
+        assertEquals("a6d16035b98f6f962a6538bd927cefb3", entry.getMetaData(
+                StorageIndexedTreeElementModel.getSqlColumnNameFromElementOrAttribute("@id")));
+
+        EvaluationContext ec = MockDataUtils.buildContextWithInstance(sandbox, "products", CaseTestUtils.FIXTURE_INSTANCE_PRODUCT);
+        CaseTestUtils.xpathEvalAndAssert(ec, "instance('products')/products/product[@id = 'a6d16035b98f6f962a6538bd927cefb3']/name", "CU");
+    }
+
+    @Test
+    public void mixedEntriesNotIndexed() throws UnfullfilledRequirementsException, XmlPullParserException,
+            IOException, InvalidStructureException {
+        parseIndexingAllFixtures("/indexed_fixture/unindexed-fixture.xml");
+        parseIndexingAllFixtures("/indexed_fixture/unindexed-mixed-fixture.xml");
+
+        assertNull(sandbox.getIndexedFixtureIdentifier("commtrack:products"));
+        assertNull(sandbox.getIndexedFixtureStorage("commtrack:products"));
+        assertEquals(1, sandbox.getUserFixtureStorage().getNumRecords());
+    }
+
+    @Test
+    public void inferIndicesFromEveryEntry() throws UnfullfilledRequirementsException, XmlPullParserException,
+            IOException, InvalidStructureException, XPathSyntaxException {
+        parseIndexingAllFixtures("/indexed_fixture/unindexed-irregular-fixture.xml");
+
+        assertEquals(3, sandbox.getIndexedFixtureStorage("commtrack:products").getNumRecords());
+
+        // only fields that are indexable in every entry are indexed: the second entry lacks a code,
+        // repeats its description and nests its cost
+        StorageIndexedTreeElementModel entry = sandbox.getIndexedFixtureStorage("commtrack:products")
+                .getRecordForValue(StorageIndexedTreeElementModel.getSqlColumnNameFromElementOrAttribute("name"), "CU");
+        assertEquals(new HashSet<>(Arrays.asList("@id", "name", "program_id")),
+                new HashSet<>(entry.getIndexedTreeReferenceSteps()));
+
+        EvaluationContext ec = MockDataUtils.buildContextWithInstance(sandbox, "products", CaseTestUtils.FIXTURE_INSTANCE_PRODUCT);
+        CaseTestUtils.xpathEvalAndAssert(ec, "instance('products')/products/product[code = 'dp']/name", "Depo-Provera");
+        CaseTestUtils.xpathEvalAndAssert(ec, "instance('products')/products/product[@id = 'a6d16035b98f6f962a6538bd927cefb3']/cost/amount", "57");
+    }
+
+    private void parseIndexingAllFixtures(String resource) throws UnfullfilledRequirementsException,
+            XmlPullParserException, IOException, InvalidStructureException {
+        CommCareTransactionParserFactory factory = new CommCareTransactionParserFactory(sandbox);
+        factory.setIndexAllFixtures(true);
+        ParseUtils.parseIntoSandbox(getClass().getResourceAsStream(resource), factory, false, false);
+    }
+
     @Test
     public void queryLargeBodyLookup() throws XPathSyntaxException, UnfullfilledRequirementsException,
             XmlPullParserException, IOException, InvalidStructureException {
@@ -0,0 +1,167 @@
+package org.commcare.modern.reference.test;
+
+import org.commcare.modern.reference.ArchiveFileRoot;
+import org.commcare.modern.reference.SharedArchive;
+import org.javarosa.core.reference.Reference;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SharedArchiveTest {
+
+    private static final byte[] PROFILE = "<profile/>".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File archiveFile;
+    private byte[] media;
+    private byte[] largeForm;
+
+    @Before
+    public void setUp() throws IOException {
+        media = new byte[100 * 1024];
+        new Random(1).nextBytes(media);
+        largeForm = new byte[1024 * 1024];
+        Arrays.fill(largeForm, (byte)'a');
+
+        archiveFile = folder.newFile("app.ccz");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archiveFile))) {
+            zip.putNextEntry(new ZipEntry("profile.ccpr"));
+            zip.write(PROFILE);
+            zip.closeEntry();
+
+            ZipEntry stored = new ZipEntry("media/image.png");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(media.length);
+            CRC32 crc = new CRC32();
+            crc.update(media);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(media);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("modules-0/forms-0.xml"));
+            zip.write(largeForm);
+            zip.closeEntry();
+        }
+    }
+
+    @Test
+    public void testReadEntries() throws IOException {
+        SharedArchive archive = SharedArchive.acquire(archiveFile);
+        try {
+            assertArrayEquals(PROFILE, readFully(archive.getStream("profile.ccpr")));
+            // served out of the inflated entry cache the second time around
+            assertArrayEquals(PROFILE, readFully(archive.getStream("profile.ccpr")));
+            assertArrayEquals(media, readFully(archive.getStream("media/image.png")));
+            assertArrayEquals(largeForm, readFully(archive.getStream("modules-0/forms-0.xml")));
+            assertNull(archive.getStream("missing.xml"));
+        } finally {
+            archive.release();
+        }
+    }
+
+    @Test
+    public void testOpenedOnce() throws IOException {
+        SharedArchive first = SharedArchive.acquire(archiveFile);
+        SharedArchive second = SharedArchive.acquire(archiveFile);
+        assertSame(first, second);
+
+        first.release();
+        // still open for the second acquisition
+        assertSame(second, SharedArchive.acquire(archiveFile));
+        second.release();
+        second.release();
+
+        SharedArchive reopened = SharedArchive.acquire(archiveFile);
+        assertNotSame(first, reopened);
+        reopened.release();
+    }
+
+    @Test
+    public void testStreamOutlivesRelease() throws IOException {
+        SharedArchive archive = SharedArchive.acquire(archiveFile);
+        InputStream stream = archive.getStream("media/image.png");
+        archive.release();
+        assertArrayEquals(media, readFully(stream));
+    }
+
+    @Test
+    public void testZipFileStreamsOutliveRelease() throws IOException {
+        // the central directory offsets don't account for the prefix, so the mapping can't read
+        // this archive and it is read through a ZipFile instead
+        File prefixedFile = folder.newFile("prefixed.ccz");
+        try (FileOutputStream out = new FileOutputStream(prefixedFile)) {
+            out.write("#!/bin/sh\n".getBytes(StandardCharsets.UTF_8));
+            out.write(Files.readAllBytes(archiveFile.toPath()));
+        }
+
+        SharedArchive archive = SharedArchive.acquire(prefixedFile);
+        InputStream mediaStream = archive.getStream("media/image.png");
+        InputStream formStream = archive.getStream("modules-0/forms-0.xml");
+        archive.release();
+
+        assertArrayEquals(media, readFully(mediaStream));
+        // the zip file stays open for the streams which haven't been closed yet
+        assertArrayEquals(largeForm, readFully(formStream));
+
+        SharedArchive reopened = SharedArchive.acquire(prefixedFile);
+        try {
+            assertNotSame(archive, reopened);
+            assertArrayEquals(PROFILE, readFully(reopened.getStream("profile.ccpr")));
+        } finally {
+            reopened.release();
+        }
+    }
+
+    @Test
+    public void testRegisteredWithRoot() throws Exception {
+        ArchiveFileRoot root = new ArchiveFileRoot();
+        String guid = root.addArchiveFile(archiveFile, "shared_archive_test_app");
+        assertEquals("shared_archive_test_app", guid);
+        try {
+            Reference reference = root.derive("jr://archive/" + guid + "/modules-0/forms-0.xml");
+            assertArrayEquals(largeForm, readFully(reference.getStream()));
+
+            // registering the archive again replaces, rather than leaks, the first registration
+            root.addArchiveFile(archiveFile, guid);
+            reference = root.derive("jr://archive/" + guid + "/profile.ccpr");
+            assertArrayEquals(PROFILE, readFully(reference.getStream()));
+        } finally {
+            root.removeArchiveFile(guid);
+        }
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
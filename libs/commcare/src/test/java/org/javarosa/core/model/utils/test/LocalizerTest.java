@@ -1,5 +1,6 @@
 package org.javarosa.core.model.utils.test;
 
+import org.javarosa.core.services.locale.LocaleTables;
 import org.javarosa.core.services.locale.Localizer;
 import org.javarosa.core.services.locale.TableLocaleSource;
 import org.javarosa.core.util.UnregisteredLocaleException;
@@ -11,6 +12,7 @@ import java.util.Hashtable;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class LocalizerTest {
@@ -723,4 +725,86 @@ public class LocalizerTest {
         assertNull("Localizer didn't return null value", shouldBeNull);
         assertNull("Localizer didn't return null value", shouldBeNull);
     }
+
+    private static Localizer buildTwoLocaleLocalizer() {
+        Localizer localizer = new Localizer(true, false);
+        localizer.addAvailableLocale("en");
+        localizer.addAvailableLocale("fra");
+
+        TableLocaleSource english = new TableLocaleSource();
+        english.setLocaleMapping("greeting", "hello");
+        english.setLocaleMapping("farewell", "goodbye");
+        localizer.registerLocaleResource("en", english);
+
+        TableLocaleSource french = new TableLocaleSource();
+        french.setLocaleMapping("greeting", "bonjour");
+        localizer.registerLocaleResource("fra", french);
+        localizer.setDefaultLocale("en");
+        return localizer;
+    }
+
+    @Test
+    public void testSharedTables() {
+        LocaleTables tables = LocaleTables.capture(buildTwoLocaleLocalizer());
+
+        Localizer first = new Localizer();
+        first.useSharedTables(tables);
+        Localizer second = new Localizer();
+        second.useSharedTables(tables);
+
+        first.setLocale("fra");
+        second.setToDefault();
+        assertEquals("bonjour", first.getText("greeting"));
+        assertEquals("goodbye", first.getText("farewell"));
+        assertEquals("hello", second.getText("greeting"));
+        assertEquals("hello", first.getText("greeting", "en"));
+        assertEquals("en", first.getDefaultLocale());
+        assertTrue(first.getFallbackLocale());
+    }
+
+    @Test
+    public void testSharedTablesCopiedOnRegistration() {
+        LocaleTables tables = LocaleTables.capture(buildTwoLocaleLocalizer());
+
+        Localizer modified = new Localizer();
+        modified.useSharedTables(tables);
+        modified.setLocale("fra");
+        TableLocaleSource extra = new TableLocaleSource();
+        extra.setLocaleMapping("greeting", "salut");
+        modified.registerLocaleResource("fra", extra);
+        modified.addAvailableLocale("es");
+        assertEquals("salut", modified.getText("greeting"));
+
+        Localizer unmodified = new Localizer();
+        unmodified.useSharedTables(tables);
+        unmodified.setLocale("fra");
+        assertEquals("bonjour", unmodified.getText("greeting"));
+        assertEquals(2, unmodified.getAvailableLocales().length);
+        assertEquals(1, unmodified.getLocaleResources("fra").size());
+    }
+
+    @Test
+    public void testSharedTablesLoadedOnce() {
+        final int[] reads = {0};
+        TableLocaleSource source = new TableLocaleSource() {
+            @Override
+            public Hashtable<String, String> getLocalizedText() {
+                reads[0]++;
+                return super.getLocalizedText();
+            }
+        };
+        source.setLocaleMapping("greeting", "hello");
+        Localizer localizer = new Localizer(true, false);
+        localizer.addAvailableLocale("en");
+        localizer.registerLocaleResource("en", source);
+        LocaleTables tables = LocaleTables.capture(localizer);
+
+        for (int i = 0; i < 3; i++) {
+            Localizer requestLocalizer = new Localizer();
+            requestLocalizer.useSharedTables(tables);
+            requestLocalizer.setLocale("en");
+            assertEquals("hello", requestLocalizer.getText("greeting"));
+        }
+        assertEquals(1, reads[0]);
+    }
 }
@@ -0,0 +1,89 @@
+package org.javarosa.core.util.test;
+
+import org.javarosa.core.util.CacheTable;
+import org.javarosa.core.util.Interner;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InternerTest {
+
+    @Test
+    public void testIntern() {
+        Interner<String> interner = new Interner<>(100, false);
+        String first = new String("value");
+        String second = new String("value");
+        assertNotSame(first, second);
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+    }
+
+    @Test
+    public void testHashCollisionNotInterned() {
+        Interner<String> interner = new Interner<>(100, false);
+        // "Aa" and "BB" share a hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        interner.intern("Aa");
+        assertEquals("BB", interner.intern("BB"));
+    }
+
+    @Test
+    public void testBoundedSize() {
+        CacheTable<String, String> table = new CacheTable<>(10, false);
+        for (int i = 0; i < 100; i++) {
+            table.register("key" + i, "value" + i);
+        }
+        assertTrue(table.size() <= 10);
+        assertEquals("value99", table.retrieve("key99"));
+    }
+
+    @Test
+    public void testClear() {
+        CacheTable<String, String> table = new CacheTable<>();
+        String value = "value";
+        table.register("key", value);
+        assertSame(value, table.retrieve("key"));
+        table.clear();
+        assertNull(table.retrieve("key"));
+    }
+
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        Interner<String> interner = new Interner<>();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit((Callable<List<String>>)() -> {
+                    List<String> interned = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        interned.add(interner.intern(new String("value" + i)));
+                    }
+                    return interned;
+                }));
+            }
+            List<String> expected = results.get(0).get();
+            for (Future<List<String>> result : results) {
+                List<String> interned = result.get();
+                for (int i = 0; i < interned.size(); i++) {
+                    // every thread should have ended up with the same instances
+                    assertSame(expected.get(i), interned.get(i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
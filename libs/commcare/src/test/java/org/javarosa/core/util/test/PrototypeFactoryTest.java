@@ -0,0 +1,72 @@
+package org.javarosa.core.util.test;
+
+import org.javarosa.core.api.ClassNameHasher;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.data.UncastData;
+import org.javarosa.core.util.externalizable.CannotCreateObjectException;
+import org.javarosa.core.util.externalizable.DeserializationException;
+import org.javarosa.core.util.externalizable.ExtWrapTagged;
+import org.javarosa.core.util.externalizable.LivePrototypeFactory;
+import org.javarosa.core.util.externalizable.PrototypeFactory;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PrototypeFactoryTest {
+
+    @Test
+    public void testClassLookupByHash() {
+        PrototypeFactory factory = new PrototypeFactory(new ClassNameHasher());
+        factory.addClass(StringData.class);
+
+        ClassNameHasher hasher = new ClassNameHasher();
+        assertEquals(StringData.class, factory.getClass(hasher.getClassHashValue(StringData.class)));
+        // registered by default
+        assertEquals(UncastData.class, factory.getClass(hasher.getClassHashValue(UncastData.class)));
+        assertNull(factory.getClass(hasher.getClassHashValue(PrototypeFactoryTest.class)));
+    }
+
+    @Test
+    public void testLiveFactoryReadsHashedClasses() throws IOException, DeserializationException {
+        LivePrototypeFactory factory = new LivePrototypeFactory();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExtWrapTagged(new StringData("value")).writeExternal(new DataOutputStream(out));
+
+        ExtWrapTagged read = new ExtWrapTagged();
+        read.readExternal(new DataInputStream(new ByteArrayInputStream(out.toByteArray())), factory);
+        assertEquals("value", ((StringData)read.val).getValue());
+    }
+
+    @Test
+    public void testNewInstanceEachTime() {
+        Object first = PrototypeFactory.getInstance(StringData.class);
+        Object second = PrototypeFactory.getInstance(StringData.class);
+        assertTrue(first instanceof StringData);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testUninstantiableClass() {
+        // the failure shouldn't be remembered as anything but a failure
+        for (int i = 0; i < 2; i++) {
+            try {
+                PrototypeFactory.getInstance(AbstractList.class);
+                fail("Expected an abstract class not to be instantiable");
+            } catch (CannotCreateObjectException e) {
+                assertEquals(AbstractList.class.getName() + ": not instantiable", e.getMessage());
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.xpath.XPathParseTool;
 import org.javarosa.xpath.analysis.AnalysisInvalidException;
 import org.javarosa.xpath.analysis.ContainsUncacheableExpressionAnalyzer;
+import org.javarosa.xpath.analysis.ReferencesBeyondContextNodeAnalyzer;
 import org.javarosa.xpath.analysis.ReferencesMainInstanceAnalyzer;
 import org.javarosa.xpath.analysis.InstanceNameAccumulatingAnalyzer;
 import org.javarosa.xpath.analysis.TopLevelContextTypesAnalyzer;
@@ -194,6 +195,34 @@ public class StaticAnalysisTest {
         }
     }
 
+    @Test
+    public void testReferencesBeyondContextNodeAnalysis() throws XPathSyntaxException {
+        testReferencesBeyondContextNode("case_name", false);
+        testReferencesBeyondContextNode("concat(@case_name, ' ', ./date_opened)", false);
+        testReferencesBeyondContextNode("if(child[@id = 'x']/value = '', 'a', 'b')", false);
+        testReferencesBeyondContextNode("current()/index/parent", false);
+
+        testReferencesBeyondContextNode(
+                "instance('casedb')/casedb/case[@case_id = current()/index/parent]/case_name", true);
+        testReferencesBeyondContextNode("instance('commcaresession')/session/user/data/role", true);
+        testReferencesBeyondContextNode("/data/q1", true);
+        testReferencesBeyondContextNode("../case_name", true);
+        testReferencesBeyondContextNode("child[@id = ../@id]/value", true);
+        testReferencesBeyondContextNode("today() - date(date_opened)", true);
+        testReferencesBeyondContextNode("position(.)", true);
+        testReferencesBeyondContextNode("$parent_name", true);
+    }
+
+    private void testReferencesBeyondContextNode(String expressionString, boolean expectedResult)
+            throws XPathSyntaxException {
+        ReferencesBeyondContextNodeAnalyzer analyzer = new ReferencesBeyondContextNodeAnalyzer();
+        try {
+            assertEquals(expectedResult, analyzer.computeResult(XPathParseTool.parseXPath(expressionString)));
+        } catch (AnalysisInvalidException e) {
+            fail("Encountered Analysis Invalid exception: " + e.getMessage());
+        }
+    }
+
     @Test
     public void testContextTypesAnalyzer() throws XPathSyntaxException {
         testContextTypesAccumulate("true()",
@@ -0,0 +1,114 @@
+package org.javarosa.xpath.test;
+
+import org.commcare.cases.query.queryset.CaseModelQuerySetMatcher;
+import org.commcare.xml.TestInstances;
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.instance.DataInstance;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.xpath.XPathExpressionCache;
+import org.javarosa.xpath.XPathLazyNodeset;
+import org.javarosa.xpath.XPathNodeset;
+import org.javarosa.xpath.XPathParseTool;
+import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for sharing parsed XPath expressions between parses of the same text
+ */
+public class XPathExpressionCacheTest {
+
+    @After
+    public void tearDown() {
+        XPathParseTool.disableExpressionCache();
+    }
+
+    @Test
+    public void testParsedOnce() throws XPathSyntaxException {
+        XPathExpressionCache cache = XPathParseTool.enableExpressionCache(1000);
+        XPathExpression first = XPathParseTool.parseXPath("count(/data/path) > 1");
+        XPathExpression second = XPathParseTool.parseXPath("count(/data/path) > 1");
+        assertSame(first, second);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        XPathParseTool.disableExpressionCache();
+        assertNotSame(first, XPathParseTool.parseXPath("count(/data/path) > 1"));
+    }
+
+    @Test
+    public void testSyntaxErrorsNotCached() {
+        XPathExpressionCache cache = XPathParseTool.enableExpressionCache(1000);
+        for (int i = 0; i < 2; i++) {
+            try {
+                XPathParseTool.parseXPath("/data/path[");
+                fail("Expected a syntax error");
+            } catch (XPathSyntaxException e) {
+                // expected
+            }
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBoundedByExpressionLength() throws XPathSyntaxException {
+        XPathExpressionCache cache = new XPathExpressionCache(20);
+        cache.parse("/data/first");
+        cache.parse("/data/second");
+        assertEquals(1, cache.size());
+        cache.parse("/data/second");
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testTemplatePathCheckedForEachInstance() throws XPathSyntaxException {
+        XPathExpression expr = new XPathExpressionCache(1000).parse("/data/path");
+
+        FormInstance withPath = createInstance("path");
+        assertTrue(expr.eval(withPath, new EvaluationContext(withPath)) instanceof XPathLazyNodeset);
+
+        // the same parsed expression in a form without the path should still find it invalid
+        FormInstance withoutPath = createInstance("other");
+        assertFalse(expr.eval(withoutPath, new EvaluationContext(withoutPath))
+                instanceof XPathLazyNodeset);
+    }
+
+    @Test
+    public void testSharedPathNotChangedByCallers() throws XPathSyntaxException {
+        XPathParseTool.enableExpressionCache(1000);
+        Hashtable<String, DataInstance> instances = new Hashtable<>();
+        instances.put(TestInstances.CASEDB, TestInstances.buildCaseDb(Arrays.asList("a", "b", "c")));
+        EvaluationContext ec = new EvaluationContext(null, instances);
+
+        XPathExpression expr = XPathParseTool.parseXPath("instance('casedb')/casedb/case");
+        assertEquals(3, ((XPathNodeset)expr.eval(ec)).size());
+
+        // the matcher pins the multiplicity of the reference it gets from the same parsed path
+        new CaseModelQuerySetMatcher(new HashMap<>());
+
+        XPathExpression again = XPathParseTool.parseXPath("instance('casedb')/casedb/case");
+        assertSame(expr, again);
+        assertEquals(3, ((XPathNodeset)again.eval(ec)).size());
+        assertEquals(3, ((XPathNodeset)expr.eval(ec)).size());
+    }
+
+    private static FormInstance createInstance(String childName) {
+        TreeElement data = new TreeElement("data");
+        data.addChild(new TreeElement(childName));
+        return new FormInstance(data);
+    }
+}
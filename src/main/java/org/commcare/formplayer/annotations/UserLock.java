@@ -13,4 +13,11 @@ import java.lang.annotation.Target;
 @Target(value = ElementType.METHOD)
 @Retention(value = RetentionPolicy.RUNTIME)
 public @interface UserLock {
+
+    /**
+     * Whether identical requests for the same session that arrive while this one is still waiting
+     * on the lock should share its response instead of queueing behind it. Only safe for requests
+     * that don't change the session.
+     */
+    boolean coalesce() default false;
 }
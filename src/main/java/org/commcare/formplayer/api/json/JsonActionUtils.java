@@ -1,6 +1,8 @@
 package org.commcare.formplayer.api.json;
 
 import org.commcare.formplayer.api.util.ApiConstants;
+import org.commcare.formplayer.beans.FormEntryResponseBean;
+import org.commcare.formplayer.beans.QuestionBean;
 import org.commcare.modern.util.Pair;
 import org.javarosa.core.model.Constants;
 import org.javarosa.core.model.FormDef;
@@ -16,7 +18,6 @@ import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.form.api.FormEntryController;
 import org.javarosa.form.api.FormEntryModel;
 import org.javarosa.form.api.FormEntryPrompt;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
@@ -33,18 +34,18 @@ import datadog.trace.api.Trace;
 public class JsonActionUtils {
 
     /**
-     * Delete a repeat at the specified index, return the JSON response
+     * Delete a repeat at the specified index, return the response
      *
      * @param controller      the FormEntryController under consideration
      * @param model           the FormEntryModel under consideration
      * @param repeatIndexString the form index of the repeat group to be deleted
-     * @return The JSON representation of the updated form tree
+     * @return The response containing the updated form tree
      */
-    public static JSONObject deleteRepeatToJson(FormEntryController controller,
+    public static FormEntryResponseBean deleteRepeat(FormEntryController controller,
             FormEntryModel model, String repeatIndexString) {
         FormIndex indexToDelete = indexFromString(repeatIndexString, model.getForm());
         controller.deleteRepeat(indexToDelete);
-        return getCurrentJson(controller, model);
+        return getCurrentResponse(controller, model);
     }
 
     /**
@@ -53,63 +54,45 @@ public class JsonActionUtils {
      * @param controller      the FormEntryController under consideration
      * @param model           the FormEntryModel under consideration
      * @param formIndexString the form index of the repeat group to be expanded
-     * @return The JSON representation of the updated question tree
+     * @return The response containing the updated question tree
      */
-    public static JSONObject descendRepeatToJson(FormEntryController controller,
+    public static FormEntryResponseBean descendRepeat(FormEntryController controller,
             FormEntryModel model, String formIndexString) {
         FormIndex formIndex = indexFromString(formIndexString, model.getForm());
         controller.jumpToIndex(formIndex);
         controller.descendIntoNewRepeat();
-        return getCurrentJson(controller, model);
+        return getCurrentResponse(controller, model);
     }
 
     /**
-     * Get the JSON representation of the question tree of this controller/model pair
+     * Get the response for the question tree of this controller/model pair
      *
      * @param controller the FormEntryController under consideration
      * @param model      the FormEntryModel under consideration
-     * @return The JSON representation of the question tree
+     * @return The response containing the question tree
      */
-    public static JSONObject getCurrentJson(FormEntryController controller,
+    public static FormEntryResponseBean getCurrentResponse(FormEntryController controller,
             FormEntryModel model) {
-        JSONObject ret = new JSONObject();
-        ret.put(ApiConstants.QUESTION_TREE_KEY, getFullFormJSON(model, controller));
+        FormEntryResponseBean ret = new FormEntryResponseBean();
+        ret.setTree(getFullFormTree(model, controller));
         return ret;
     }
 
-
-    // Similar to above, but get the questions for only one formIndex (OQPS)
-    public static JSONObject getCurrentJson(FormEntryController controller,
-            FormEntryModel model,
-            String formIndex) {
-        return new JSONObject().put(ApiConstants.QUESTION_TREE_KEY,
-                getOneQuestionPerScreenJson(model, controller,
-                        JsonActionUtils.indexFromString(formIndex, model.getForm())));
-    }
-
-    // Similar to above, but get the questions for only one formIndex (OQPS)
-    public static JSONObject getPromptJson(FormEntryModel model) {
-        return new JSONObject().put(ApiConstants.QUESTION_EVENT_KEY,
-                PromptToJson.parseQuestionType(model, new JSONObject()));
-    }
-
     /**
-     * Answer the question, return the updated JSON representation of the question tree
+     * Answer the question, return the JSON representation of the result
      *
      * @param controller the FormEntryController under consideration
      * @param model      the FormEntryModel under consideration
      * @param answer     the answer to enter
      * @param prompt     the question to be answered
-     * @return The JSON representation of the updated question tree
+     * @param skipValidation whether an unchanged answer is accepted without validating it again
+     * @return The JSON representation of the answer's status, and of any validation error
      */
     @Trace
     private static JSONObject questionAnswerToJson(FormEntryController controller,
             FormEntryModel model, String answer,
             FormEntryPrompt prompt,
-            boolean oneQuestionPerScreen,
-            FormIndex navIndex,
-            boolean skipValidation,
-            boolean returnTree) {
+            boolean skipValidation) {
         JSONObject ret = new JSONObject();
         IAnswerData answerData;
         int result;
@@ -144,40 +127,28 @@ public class JsonActionUtils {
             ret.put(ApiConstants.ERROR_TYPE_KEY, "constraint");
             ret.put(ApiConstants.ERROR_REASON_KEY, prompt.getConstraintText());
         } else if (result == FormEntryController.ANSWER_OK) {
-            if (returnTree) {
-                if (oneQuestionPerScreen) {
-                    ret.put(ApiConstants.QUESTION_TREE_KEY, getOneQuestionPerScreenJson(
-                            model, controller, navIndex));
-                } else {
-                    ret.put(ApiConstants.QUESTION_TREE_KEY, getFullFormJSON(model, controller));
-                }
-            }
             ret.put(ApiConstants.RESPONSE_STATUS_KEY, "accepted");
         }
         return ret;
     }
 
     /**
-     * Answer the question, return the updated JSON representation of the question tree
+     * Answer the question, return the JSON representation of the result
      *
      * @param controller the FormEntryController under consideration
      * @param model      the FormEntryModel under consideration
      * @param answer     the answer to enter
      * @param ansIndex   the form index of the question to be answered
-     * @return The JSON representation of the updated question tree
+     * @param skipValidation whether an unchanged answer is accepted without validating it again
+     * @return The JSON representation of the answer's status, and of any validation error
      */
     public static JSONObject questionAnswerToJson(FormEntryController controller,
             FormEntryModel model, String answer,
             String ansIndex,
-            boolean oneQuestionPerScreen,
-            String navIndex,
-            boolean skipValidation,
-            boolean returnTree) {
+            boolean skipValidation) {
         FormIndex answerIndex = indexFromString(ansIndex, model.getForm());
         FormEntryPrompt prompt = model.getQuestionPrompt(answerIndex);
-        FormIndex navigationIndex = indexFromString(navIndex, model.getForm());
-        return questionAnswerToJson(controller, model, answer, prompt, oneQuestionPerScreen,
-                navigationIndex, skipValidation, returnTree);
+        return questionAnswerToJson(controller, model, answer, prompt, skipValidation);
     }
 
     /**
@@ -314,26 +285,33 @@ public class JsonActionUtils {
         return ret;
     }
 
+    /**
+     * Get the question tree of this controller/model pair as the beans sent to the client
+     *
+     * @param fem the FormEntryModel under consideration
+     * @param fec the FormEntryController under consideration
+     * @return The questions of the form, expanding groups and repeats
+     */
     @Trace
-    public static JSONArray getFullFormJSON(FormEntryModel fem, FormEntryController fec) {
-        JSONArray ret = new JSONArray();
-        Walker walker = new Walker(ret, FormIndex.createBeginningOfFormIndex(), fec, fem);
+    public static QuestionBean[] getFullFormTree(FormEntryModel fem, FormEntryController fec) {
+        List<QuestionBean> ret = new ArrayList<>();
+        QuestionBeanWalker walker = new QuestionBeanWalker(ret,
+                FormIndex.createBeginningOfFormIndex(), fec, fem);
         walker.walk();
-        return ret;
+        return ret.toArray(new QuestionBean[0]);
     }
 
-    public static JSONArray getOneQuestionPerScreenJson(FormEntryModel fem, FormEntryController fec,
-            FormIndex formIndex) {
-        JSONArray ret = new JSONArray();
+    // Similar to above, but get the questions for only one formIndex (OQPS)
+    public static QuestionBean[] getOneQuestionPerScreenTree(FormEntryModel fem,
+            FormEntryController fec, FormIndex formIndex) {
         if (formIndex.isEndOfFormIndex()) {
-            return ret;
+            return new QuestionBean[0];
         }
         FormEntryPrompt[] prompts = fec.getQuestionPrompts(formIndex);
-        for (FormEntryPrompt prompt : prompts) {
-            fem.setQuestionIndex(prompt.getIndex());
-            JSONObject obj = new JSONObject();
-            PromptToJson.parseQuestionType(fem, obj);
-            ret.put(obj);
+        QuestionBean[] ret = new QuestionBean[prompts.length];
+        for (int i = 0; i < prompts.length; i++) {
+            fem.setQuestionIndex(prompts[i].getIndex());
+            ret[i] = PromptToQuestionBean.parseQuestionType(fem);
         }
         return ret;
     }
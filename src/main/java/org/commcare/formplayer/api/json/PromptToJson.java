@@ -130,7 +130,7 @@ public class PromptToJson {
         return obj;
     }
 
-    private static String getRepeatAddText(FormEntryCaption prompt) {
+    static String getRepeatAddText(FormEntryCaption prompt) {
         String promptText = prompt.getLongText();
         if (prompt.getNumRepetitions() > 0) {
             try {
@@ -252,7 +252,7 @@ public class PromptToJson {
     }
 
 
-    private static String parseDataType(FormEntryPrompt prompt) {
+    static String parseDataType(FormEntryPrompt prompt) {
         if (prompt.getControlType() == Constants.CONTROL_TRIGGER) {
             return "info";
         }
@@ -0,0 +1,231 @@
+package org.commcare.formplayer.api.json;
+
+import org.commcare.formplayer.beans.QuestionBean;
+import org.commcare.formplayer.exceptions.ApplicationConfigException;
+import org.javarosa.core.model.Constants;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.SelectChoice;
+import org.javarosa.core.model.data.GeoPointData;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.data.SelectMultiData;
+import org.javarosa.core.model.data.helper.Selection;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.core.model.utils.DateUtils;
+import org.javarosa.form.api.FormEntryCaption;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+import datadog.trace.api.Trace;
+
+/**
+ * Functions for generating the QuestionBean representation of a FormEntryPrompt directly, without
+ * going through the org.json representation built by PromptToJson.
+ *
+ * The beans built here serialize to exactly the same JSON as the PromptToJson output read back
+ * into a QuestionBean, which QuestionTreeTest checks.
+ */
+public class PromptToQuestionBean {
+
+    /**
+     * @param prompt   The FormEntryPrompt under consideration
+     * @param question the question bean being populated
+     */
+    public static void parseQuestion(FormEntryPrompt prompt, QuestionBean question) {
+        parseCaption(prompt, question);
+        question.setHelp(prompt.getHelpText());
+        TreeReference questionRef = prompt.getQuestion().getBind().getReference();
+        question.setBinding(questionRef.toString());
+        question.setQuestion_id(questionRef.getNameLast());
+        question.setDatatype(PromptToJson.parseDataType(prompt));
+        question.setControl(prompt.getControlType());
+        question.setRequired(prompt.isRequired() ? 1 : 0);
+        question.setHint(prompt.getHintText());
+        question.setAnswer(parseQuestionAnswer(prompt));
+        question.setIx(prompt.getIndex().toString());
+
+        question.setHelp_image(prompt.getHelpMultimedia(FormEntryCaption.TEXT_FORM_IMAGE));
+        question.setHelp_audio(prompt.getHelpMultimedia(FormEntryCaption.TEXT_FORM_AUDIO));
+        question.setHelp_video(prompt.getHelpMultimedia(FormEntryCaption.TEXT_FORM_VIDEO));
+
+        if (prompt.getDataType() == Constants.DATATYPE_CHOICE
+                || prompt.getDataType() == Constants.DATATYPE_CHOICE_LIST) {
+            question.setChoices(parseSelect(prompt));
+        }
+    }
+
+    /**
+     * @param prompt   The FormEntryCaption to get the caption fields from
+     * @param question The question bean being populated
+     */
+    public static void parseCaption(FormEntryCaption prompt, QuestionBean question) {
+        question.setCaption_audio(prompt.getAudioText());
+        question.setCaption(prompt.getLongText());
+        question.setCaption_image(prompt.getImageText());
+        question.setCaption_video(prompt.getVideoText());
+        question.setCaption_markdown(prompt.getMarkdownText());
+    }
+
+    public static QuestionBean parseQuestionType(FormEntryModel model) {
+        QuestionBean question = new QuestionBean();
+        int status = model.getEvent();
+        FormIndex ix = model.getFormIndex();
+        question.setIx(ix.toString());
+
+        switch (status) {
+            case FormEntryController.EVENT_BEGINNING_OF_FORM:
+                question.setType("form-start");
+                break;
+            case FormEntryController.EVENT_END_OF_FORM:
+                question.setIx(">");
+                question.setType("form-complete");
+                break;
+            case FormEntryController.EVENT_QUESTION:
+                question.setType("question");
+                question.setStyle(parseStyle(model.getCaptionPrompt()));
+                parseQuestion(model.getQuestionPrompt(), question);
+                break;
+            case FormEntryController.EVENT_REPEAT_JUNCTURE:
+                question.setType("repeat-juncture");
+                parseRepeatJuncture(model, question, ix);
+                break;
+            case FormEntryController.EVENT_GROUP:
+                // we're in a subgroup
+                parseCaption(model.getCaptionPrompt(), question);
+                question.setType("sub-group");
+                question.setStyle(parseStyle(model.getCaptionPrompt()));
+                question.setRepeatable("false");
+                break;
+            case FormEntryController.EVENT_REPEAT:
+                // we're in a subgroup
+                parseCaption(model.getCaptionPrompt(), question);
+                question.setType("sub-group");
+                question.setRepeatable("true");
+                question.setExists("true");
+                question.setDelete(model.isNonCountedRepeat());
+                break;
+            case FormEntryController.EVENT_PROMPT_NEW_REPEAT:
+                // we're in a subgroup, dummy node for user counted repeat group
+                FormEntryCaption prompt = model.getCaptionPrompt();
+                parseCaption(prompt, question);
+                question.setType("sub-group");
+                question.setRepeatable("true");
+                question.setExists("false");
+                question.setDelete(false);
+                question.setAddChoice(PromptToJson.getRepeatAddText(prompt));
+                break;
+        }
+        return question;
+    }
+
+    private static void parseRepeatJuncture(FormEntryModel model, QuestionBean question,
+            FormIndex ix) {
+        FormEntryCaption formEntryCaption = model.getCaptionPrompt(ix);
+        FormEntryCaption.RepeatOptions repeatOptions = formEntryCaption.getRepeatOptions();
+        parseCaption(formEntryCaption, question);
+        question.setHeader(repeatOptions.header);
+        question.setAddChoice(repeatOptions.add);
+    }
+
+    @Trace
+    private static Object parseQuestionAnswer(FormEntryPrompt prompt) {
+        IAnswerData answerValue = prompt.getAnswerValue();
+        if (answerValue == null) {
+            return null;
+        }
+        switch (prompt.getDataType()) {
+            case Constants.DATATYPE_NULL:
+            case Constants.DATATYPE_BARCODE:
+            case Constants.DATATYPE_TEXT:
+                return answerValue.getDisplayText();
+            case Constants.DATATYPE_INTEGER:
+                return (int)answerValue.getValue();
+            case Constants.DATATYPE_LONG:
+                return (long)answerValue.getValue();
+            case Constants.DATATYPE_DECIMAL:
+                return parseNumber((double)answerValue.getValue());
+            case Constants.DATATYPE_DATE:
+                return DateUtils.formatDate((Date)answerValue.getValue(),
+                        DateUtils.FORMAT_ISO8601);
+            case Constants.DATATYPE_TIME:
+                return answerValue.getDisplayText();
+            case Constants.DATATYPE_DATE_TIME:
+                DateTime answer = new DateTime(answerValue.getValue());
+                return answer.toString("yyyy-MM-dd'T'HH:mm:ssZZ");
+            case Constants.DATATYPE_CHOICE:
+                Selection singleSelection = ((Selection)answerValue.getValue());
+                singleSelection.attachChoice(prompt.getQuestion());
+                int singleOrdinal = singleSelection.getTouchformsIndex();
+                return singleOrdinal > 0 ? singleOrdinal : null;
+            case Constants.DATATYPE_CHOICE_LIST:
+                Vector<Selection> selections = ((SelectMultiData)answerValue).getValue();
+                List<Integer> acc = new ArrayList<>(selections.size());
+                for (Selection selection : selections) {
+                    selection.attachChoice(prompt.getQuestion());
+                    int multiOrdinal = selection.getTouchformsIndex();
+                    if (multiOrdinal > 0) {
+                        acc.add(multiOrdinal);
+                    }
+                }
+                return acc;
+            case Constants.DATATYPE_GEOPOINT:
+                GeoPointData geoPointData = ((GeoPointData)prompt.getAnswerValue());
+                List<Object> coords = new ArrayList<>(2);
+                coords.add(parseNumber(geoPointData.getLatitude()));
+                coords.add(parseNumber(geoPointData.getLongitude()));
+                return coords;
+            case Constants.DATATYPE_BINARY:
+                return answerValue.getDisplayText();
+        }
+        return null;
+    }
+
+    /**
+     * org.json drops the fraction of whole numbers it writes out ("3" rather than "3.0") unless
+     * they are in exponent notation, so do the same to keep the serialized answers unchanged
+     */
+    private static Object parseNumber(double value) {
+        if (value == Math.rint(value) && Double.toString(value).indexOf('E') < 0) {
+            return (int)value;
+        }
+        return value;
+    }
+
+    /**
+     * Given a prompt, generate an array of the possible select choices. return empty array if no
+     * choices.
+     */
+    private static String[] parseSelect(FormEntryPrompt prompt) {
+        Vector<SelectChoice> choices = prompt.getSelectChoices();
+        String[] ret = new String[choices.size()];
+        for (int i = 0; i < ret.length; i++) {
+            SelectChoice choice = choices.get(i);
+            String choiceValue = prompt.getSelectChoiceText(choice);
+            if (prompt.getControlType() == Constants.CONTROL_SELECT_MULTI
+                    && choice.getValue().contains(" ")) {
+                throw new ApplicationConfigException(
+                        String.format("Select answer options cannot contain spaces. " +
+                                "Question %s with answer %s", prompt, choiceValue));
+            }
+            ret[i] = choiceValue;
+        }
+        return ret;
+    }
+
+    private static HashMap<String, String> parseStyle(FormEntryCaption caption) {
+        String hint = caption.getAppearanceHint();
+        if (hint == null) {
+            return null;
+        }
+        HashMap<String, String> ret = new HashMap<>();
+        ret.put("raw", hint);
+        return ret;
+    }
+}
@@ -0,0 +1,95 @@
+package org.commcare.formplayer.api.json;
+
+import org.commcare.formplayer.beans.QuestionBean;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Walks the form from a given index, building the QuestionBean tree sent to the client. For each
+ * question at the walker's starting depth a QuestionBean is added to the compiler list, expanding
+ * repeats where necessary, and each subgroup is walked recursively to fill in its children.
+ */
+public class QuestionBeanWalker {
+
+    private final List<QuestionBean> compiler;
+    private final FormIndex parentIndex;
+    private final FormEntryController fec;
+    private final FormEntryModel fem;
+
+    public QuestionBeanWalker(List<QuestionBean> compiler, FormIndex parentIndex,
+            FormEntryController fec, FormEntryModel fem) {
+        this.compiler = compiler;
+        this.parentIndex = parentIndex;
+        this.fec = fec;
+        this.fem = fem;
+    }
+
+    private FormIndex step(FormIndex formIndex, boolean descend) {
+        FormIndex nextIndex = fec.getAdjacentIndex(formIndex, true, descend);
+        fem.setQuestionIndex(nextIndex);
+        return nextIndex;
+    }
+
+    private boolean indexInScope(FormIndex formIndex) {
+        if (formIndex.isEndOfFormIndex()) {
+            return false;
+        }
+        if (parentIndex.isBeginningOfFormIndex()) {
+            return true;
+        }
+        return FormIndex.isSubElement(parentIndex, formIndex);
+    }
+
+    public FormIndex walk() {
+        FormIndex currentIndex = step(parentIndex, true);
+        while (indexInScope(currentIndex)) {
+            boolean relevant = fem.isIndexRelevant(currentIndex);
+
+            if (!relevant) {
+                currentIndex = step(currentIndex, false);
+                break;
+            }
+
+            QuestionBean question = PromptToQuestionBean.parseQuestionType(fem);
+
+            if ("sub-group".equals(question.getType())) {
+                List<QuestionBean> children = new ArrayList<>();
+                QuestionBeanWalker walker = new QuestionBeanWalker(children, currentIndex, fec,
+                        fem);
+                compiler.add(question);
+                currentIndex = walker.walk();
+                question.setChildren(children.toArray(new QuestionBean[0]));
+            } else if ("repeat-juncture".equals(question.getType())) {
+                Vector<String> repetitions =
+                        fem.getCaptionPrompt(currentIndex).getRepetitionsText();
+                int numRepetitions = fem.getForm().getNumRepetitions(currentIndex);
+                QuestionBean[] children = new QuestionBean[numRepetitions];
+                for (int i = 0; i < numRepetitions; i++) {
+                    FormIndex ix = fem.getForm().descendIntoRepeat(currentIndex, i);
+                    QuestionBean repetition = new QuestionBean();
+                    repetition.setType("sub-group");
+                    repetition.setIx(ix.toString());
+                    repetition.setCaption(repetitions.get(i));
+                    repetition.setRepeatable("true");
+                    List<QuestionBean> subChildren = new ArrayList<>();
+                    QuestionBeanWalker walker = new QuestionBeanWalker(subChildren, ix, fec, fem);
+                    walker.walk();
+                    repetition.setChildren(subChildren.toArray(new QuestionBean[0]));
+                    children[i] = repetition;
+                }
+                question.setChildren(children);
+                compiler.add(question);
+                currentIndex = step(currentIndex, true);
+            } else {
+                compiler.add(question);
+                currentIndex = step(currentIndex, true);
+            }
+        }
+        return currentIndex;
+    }
+}
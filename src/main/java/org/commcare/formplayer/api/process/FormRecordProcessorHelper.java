@@ -5,11 +5,12 @@ import org.apache.commons.logging.LogFactory;
 import org.commcare.cases.ledger.Ledger;
 import org.commcare.cases.ledger.LedgerPurgeFilter;
 import org.commcare.cases.model.Case;
-import org.commcare.cases.model.CaseIndex;
+import org.commcare.cases.util.CaseGraph;
 import org.commcare.cases.util.CasePurgeFilter;
 import org.commcare.cases.util.InvalidCaseGraphException;
 import org.commcare.core.process.XmlFormRecordProcessor;
 import org.commcare.core.sandbox.SandboxUtils;
+import org.commcare.formplayer.database.models.CasePurgeFrontier;
 import org.commcare.formplayer.database.models.FormplayerCaseIndexTable;
 import org.commcare.formplayer.engine.FormplayerTransactionParserFactory;
 import org.commcare.formplayer.sandbox.JdbcSqlStorageIterator;
@@ -24,7 +25,6 @@ import org.javarosa.core.model.instance.DataInstance;
 import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.core.services.Logger;
 import org.javarosa.core.services.storage.IStorageIterator;
-import org.javarosa.core.util.DAG;
 import org.javarosa.model.xform.XPathReference;
 import org.javarosa.xml.util.InvalidStructureException;
 import org.javarosa.xml.util.UnfullfilledRequirementsException;
@@ -33,7 +33,13 @@ import org.xmlpull.v1.XmlPullParserException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.Vector;
 
 /**
@@ -45,6 +51,12 @@ import java.util.Vector;
 public class FormRecordProcessorHelper extends XmlFormRecordProcessor {
     private static final Log log = LogFactory.getLog(FormRecordProcessorHelper.class);
 
+    private static final String[] CASE_GRAPH_METADATA =
+            new String[]{Case.INDEX_OWNER_ID, Case.INDEX_CASE_STATUS, Case.INDEX_CASE_ID};
+
+    // an incremental purge falls back to reading all cases once more than 1/n of them changed
+    private static final int MAX_INCREMENTAL_PURGE_FRACTION = 4;
+
     public static void processXML(FormplayerTransactionParserFactory factory,
             String fileText)
             throws IOException, XmlPullParserException, UnfullfilledRequirementsException,
@@ -59,43 +71,44 @@ public class FormRecordProcessorHelper extends XmlFormRecordProcessor {
      * unified
      */
     public static void purgeCases(UserSqlSandbox sandbox) throws InvalidCaseGraphException {
-        long start = System.currentTimeMillis();
-        //We need to determine if we're using ownership for purging. For right now, only in sync
-        // mode
-        Vector<String> owners = new Vector<>();
-        Vector<String> users = new Vector<>();
-        for (IStorageIterator<User> userIterator = sandbox.getUserStorage().iterate();
-                userIterator.hasMore(); ) {
-            String id = userIterator.nextRecord().getUniqueId();
-            owners.addElement(id);
-            users.addElement(id);
-        }
+        purgeCases(sandbox, false);
+    }
 
-        //Now add all of the relevant groups
-        //TODO: Wow. This is.... kind of megasketch
-        for (String userId : users) {
-            DataInstance instance = SandboxUtils.loadFixture(sandbox, "user-groups", userId);
-            if (instance == null) {
-                continue;
-            }
-            EvaluationContext ec = new EvaluationContext(instance);
-            for (TreeReference ref : ec.expandReference(
-                    XPathReference.getPathExpr("/groups/group/@id").getReference())) {
-                AbstractTreeElement<AbstractTreeElement> idelement = ec.resolveReference(ref);
-                if (idelement.getValue() != null) {
-                    owners.addElement(idelement.getValue().uncast().getString());
-                }
-            }
-        }
+    /**
+     * @param incremental whether to only consider the cases connected to cases written since the
+     *                    last purge, as tracked by {@link CasePurgeFrontier}, instead of all cases
+     */
+    public static void purgeCases(UserSqlSandbox sandbox, boolean incremental)
+            throws InvalidCaseGraphException {
+        long start = System.currentTimeMillis();
+        Set<String> owners = getOwners(sandbox);
 
         int removedCaseCount = -1;
         int removedLedgers = -1;
 
         SqlStorage<Case> storage = sandbox.getCaseStorage();
-        DAG<String, int[], String> fullCaseGraph = getFullCaseGraph(storage,
-                new FormplayerCaseIndexTable(sandbox), owners);
+        FormplayerCaseIndexTable indexTable = new FormplayerCaseIndexTable(sandbox);
+        CasePurgeFrontier frontier = new CasePurgeFrontier(sandbox);
+
+        CaseGraph caseGraph;
+        if (!incremental) {
+            frontier.stopTracking();
+            caseGraph = getFullCaseGraph(storage, indexTable, owners);
+        } else if (!frontier.isTracking() || !owners.equals(frontier.getOwners())) {
+            // the ownership of any case may have changed
+            caseGraph = getFullCaseGraph(storage, indexTable, owners);
+        } else {
+            Set<String> changedCaseIds = frontier.getCaseIds();
+            if (changedCaseIds.size() > storage.getNumRecords() / MAX_INCREMENTAL_PURGE_FRACTION) {
+                // cheaper to read all cases in one go than to walk the graph from most of them
+                caseGraph = getFullCaseGraph(storage, indexTable, owners);
+            } else {
+                caseGraph = getCaseGraph(storage, indexTable, owners, changedCaseIds);
+            }
+        }
+        int consideredCaseCount = caseGraph.getCaseCount();
 
-        CasePurgeFilter filter = new CasePurgeFilter(fullCaseGraph);
+        CasePurgeFilter filter = new CasePurgeFilter(caseGraph);
         if (filter.invalidEdgesWereRemoved()) {
             Logger.log(LogTypes.SOFT_ASSERT, "An invalid edge was created in the internal " +
                     "case DAG of a case purge filter, meaning that at least 1 case on the " +
@@ -110,7 +123,6 @@ public class FormRecordProcessorHelper extends XmlFormRecordProcessor {
         Vector<Integer> casesRemoved = storage.removeAll(filter.getCasesToRemove());
         removedCaseCount = casesRemoved.size();
 
-        FormplayerCaseIndexTable indexTable = new FormplayerCaseIndexTable(sandbox);
         indexTable.clearCaseIndices(casesRemoved);
 
 
@@ -118,27 +130,60 @@ public class FormRecordProcessorHelper extends XmlFormRecordProcessor {
         LedgerPurgeFilter stockFilter = new LedgerPurgeFilter(stockStorage, storage);
         removedLedgers = stockStorage.removeAll(stockFilter).size();
 
+        if (incremental) {
+            frontier.reset(owners);
+        }
 
         long taken = System.currentTimeMillis() - start;
         log.info(String.format(
-                "Purged [%d Case, %d Ledger] records in %dms",
-                removedCaseCount, removedLedgers, taken));
+                "Purged [%d Case, %d Ledger] records out of %d cases considered in %dms",
+                removedCaseCount, removedLedgers, consideredCaseCount, taken));
 
     }
 
-    public static DAG<String, int[], String> getFullCaseGraph(SqlStorage<Case> caseStorage,
-            FormplayerCaseIndexTable indexTable,
-            Vector<String> owners) {
-        DAG<String, int[], String> caseGraph = new DAG<>();
-        Vector<Pair<String, String>> indexHolder = new Vector<>();
+    /**
+     * @return ids of the users in the sandbox and of the groups they are in
+     */
+    private static Set<String> getOwners(UserSqlSandbox sandbox) {
+        //We need to determine if we're using ownership for purging. For right now, only in sync
+        // mode
+        Set<String> owners = new HashSet<>();
+        Vector<String> users = new Vector<>();
+        for (IStorageIterator<User> userIterator = sandbox.getUserStorage().iterate();
+                userIterator.hasMore(); ) {
+            String id = userIterator.nextRecord().getUniqueId();
+            owners.add(id);
+            users.addElement(id);
+        }
 
-        HashMap<Integer, Vector<Pair<String, String>>> caseIndexMap = indexTable.getCaseIndexMap();
+        //Now add all of the relevant groups
+        //TODO: Wow. This is.... kind of megasketch
+        for (String userId : users) {
+            DataInstance instance = SandboxUtils.loadFixture(sandbox, "user-groups", userId);
+            if (instance == null) {
+                continue;
+            }
+            EvaluationContext ec = new EvaluationContext(instance);
+            for (TreeReference ref : ec.expandReference(
+                    XPathReference.getPathExpr("/groups/group/@id").getReference())) {
+                AbstractTreeElement<AbstractTreeElement> idelement = ec.resolveReference(ref);
+                if (idelement.getValue() != null) {
+                    owners.add(idelement.getValue().uncast().getString());
+                }
+            }
+        }
+        return owners;
+    }
 
-        // Pass 1: Create a DAG which contains all of the cases on the phone as nodes, and has a
-        // directed edge for each index (from the 'child' case pointing to the 'parent' case) with
-        // the appropriate relationship tagged
-        for (JdbcSqlStorageIterator<Case> i = caseStorage.iterate(true,
-                new String[]{Case.INDEX_OWNER_ID, Case.INDEX_CASE_STATUS, Case.INDEX_CASE_ID});
+    /**
+     * Builds the graph of all cases, reading the cases and then the case index table in a single
+     * pass each
+     */
+    public static CaseGraph getFullCaseGraph(SqlStorage<Case> caseStorage,
+            FormplayerCaseIndexTable indexTable,
+            Set<String> owners) {
+        CaseGraph.Builder caseGraph = new CaseGraph.Builder();
+        for (JdbcSqlStorageIterator<Case> i = caseStorage.iterate(true, CASE_GRAPH_METADATA);
                 i.hasMore(); ) {
 
             String ownerId = i.peekIncludedMetadata(Case.INDEX_OWNER_ID);
@@ -146,60 +191,91 @@ public class FormRecordProcessorHelper extends XmlFormRecordProcessor {
             String caseID = i.peekIncludedMetadata(Case.INDEX_CASE_ID);
             int caseRecordId = i.nextID();
 
+            caseGraph.addCase(caseID, caseRecordId, isOwned(ownerId, owners), !closed);
+        }
+        indexTable.addCaseIndices(caseGraph);
+        return caseGraph.build();
+    }
+
+    /**
+     * Builds the part of the case graph made up of the given cases and all cases connected to them
+     * through indices in either direction. Purge relevance never propagates between cases that
+     * aren't connected, so purging this part gives the same result for it as purging the full
+     * graph.
+     *
+     * @param caseIds ids of the cases to start from, which don't need to exist
+     */
+    public static CaseGraph getCaseGraph(SqlStorage<Case> caseStorage,
+            FormplayerCaseIndexTable indexTable,
+            Set<String> owners,
+            Collection<String> caseIds) {
+        // metadata of the cases found so far, by record id
+        TreeMap<Integer, String[]> caseMetadata = new TreeMap<>();
+        HashMap<Integer, Vector<Pair<String, String>>> caseIndexMap = new HashMap<>();
+        Set<String> seenCaseIds = new HashSet<>(caseIds);
 
-            boolean owned = true;
-            if (owners != null) {
-                owned = owners.contains(ownerId);
+        Set<String> pendingCaseIds = new HashSet<>(caseIds);
+        LinkedHashSet<Integer> pendingRecordIds = new LinkedHashSet<>();
+        while (!pendingCaseIds.isEmpty() || !pendingRecordIds.isEmpty()) {
+            HashMap<Integer, String[]> found = new HashMap<>();
+            if (!pendingCaseIds.isEmpty()) {
+                caseStorage.bulkReadMetadataForIndex(Case.INDEX_CASE_ID, pendingCaseIds,
+                        CASE_GRAPH_METADATA, found);
+            }
+            if (!pendingRecordIds.isEmpty()) {
+                caseStorage.bulkReadMetadata(pendingRecordIds, CASE_GRAPH_METADATA, found);
+            }
+            found.keySet().removeAll(caseMetadata.keySet());
+            pendingCaseIds = new HashSet<>();
+            pendingRecordIds = new LinkedHashSet<>();
+            if (found.isEmpty()) {
+                break;
             }
 
-            Vector<Pair<String, String>> indices = caseIndexMap.get(caseRecordId);
+            Set<String> foundCaseIds = new HashSet<>();
+            for (Map.Entry<Integer, String[]> entry : found.entrySet()) {
+                caseMetadata.put(entry.getKey(), entry.getValue());
+                String caseId = entry.getValue()[2];
+                foundCaseIds.add(caseId);
+                seenCaseIds.add(caseId);
+            }
 
-            if (indices != null) {
-                // In order to deal with multiple indices pointing to the same case with different
-                // relationships, we'll need to traverse once to eliminate any ambiguity
+            // cases indexed by the cases just found
+            HashMap<Integer, Vector<Pair<String, String>>> foundIndices =
+                    indexTable.getCaseIndexMap(found.keySet());
+            caseIndexMap.putAll(foundIndices);
+            for (Vector<Pair<String, String>> indices : foundIndices.values()) {
                 for (Pair<String, String> index : indices) {
-                    Pair<String, String> toReplace = null;
-                    boolean skip = false;
-                    for (Pair<String, String> existing : indexHolder) {
-                        if (existing.first.equals(index.first)) {
-                            if (existing.second.equals(CaseIndex.RELATIONSHIP_EXTENSION)
-                                    && !index.second.equals(CaseIndex.RELATIONSHIP_EXTENSION)) {
-                                toReplace = existing;
-                            } else {
-                                skip = true;
-                            }
-                            break;
-                        }
-                    }
-                    if (toReplace != null) {
-                        indexHolder.removeElement(toReplace);
-                    }
-                    if (!skip) {
-                        indexHolder.addElement(index);
+                    if (seenCaseIds.add(index.first)) {
+                        pendingCaseIds.add(index.first);
                     }
                 }
             }
-            int nodeStatus = 0;
-            if (owned) {
-                nodeStatus |= CasePurgeFilter.STATUS_OWNED;
-            }
-
-            if (!closed) {
-                nodeStatus |= CasePurgeFilter.STATUS_OPEN;
-            }
 
-            if (owned && !closed) {
-                nodeStatus |= CasePurgeFilter.STATUS_RELEVANT;
+            // cases indexing the cases just found
+            for (Integer recordId : indexTable.getCasesIndexing(foundCaseIds)) {
+                if (!caseMetadata.containsKey(recordId)) {
+                    pendingRecordIds.add(recordId);
+                }
             }
+        }
 
-            caseGraph.addNode(caseID, new int[]{nodeStatus, caseRecordId});
-
-            for (Pair<String, String> index : indexHolder) {
-                caseGraph.setEdge(caseID, index.first, index.second);
+        CaseGraph.Builder caseGraph = new CaseGraph.Builder();
+        for (Map.Entry<Integer, String[]> entry : caseMetadata.entrySet()) {
+            String[] metadata = entry.getValue();
+            int node = caseGraph.addCase(metadata[2], entry.getKey(),
+                    isOwned(metadata[0], owners), !"closed".equals(metadata[1]));
+            Vector<Pair<String, String>> indices = caseIndexMap.get(entry.getKey());
+            if (indices != null) {
+                for (Pair<String, String> index : indices) {
+                    caseGraph.addIndex(node, index.first, index.second);
+                }
             }
-            indexHolder.removeAllElements();
         }
+        return caseGraph.build();
+    }
 
-        return caseGraph;
+    private static boolean isOwned(String ownerId, Set<String> owners) {
+        return owners == null || owners.contains(ownerId);
     }
 }
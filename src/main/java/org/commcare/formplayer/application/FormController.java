@@ -3,8 +3,6 @@ package org.commcare.formplayer.application;
 import static org.commcare.formplayer.util.Constants.PART_ANSWER;
 import static org.commcare.formplayer.util.Constants.PART_FILE;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.commcare.formplayer.annotations.ConfigureStorageFromSession;
@@ -26,7 +24,9 @@ import org.commcare.formplayer.beans.menus.ErrorBean;
 import org.commcare.formplayer.objects.FormVolatilityRecord;
 import org.commcare.formplayer.objects.SerializableFormSession;
 import org.commcare.formplayer.services.CategoryTimingHelper;
+import org.commcare.formplayer.services.FormTreeDeltaService;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
+import org.commcare.formplayer.services.LiveFormSessionService;
 import org.commcare.formplayer.services.MediaMetaDataService;
 import org.commcare.formplayer.session.FormSession;
 import org.commcare.formplayer.util.Constants;
@@ -66,7 +66,6 @@ import io.sentry.Sentry;
 public class FormController extends AbstractBaseController {
 
     private final Log log = LogFactory.getLog(FormController.class);
-    private final ObjectMapper mapper = new ObjectMapper();
     @Autowired
     private MediaMetaDataService mediaMetaDataService;
 
@@ -78,12 +77,20 @@ public class FormController extends AbstractBaseController {
     @Autowired
     private FormSessionFactory formSessionFactory;
 
+    @Autowired
+    private LiveFormSessionService liveFormSessionService;
+
+    @Autowired
+    private FormTreeDeltaService formTreeDeltaService;
+
     @Autowired
     private FormplayerDatadog datadog;
     @Resource(name = "redisVolatilityDict")
     private ValueOperations<String, FormVolatilityRecord> volatilityCache;
     @Value("${commcarehq.host}")
     private String host;
+    @Value("${formplayer.session.binary_state:false}")
+    private boolean binarySessionState;
 
     // Iterate over all answers and attempt to save them to check for validity.
     public static HashMap<String, ErrorBean> validateAnswers(FormEntryController formEntryController,
@@ -103,10 +110,7 @@ public class FormController extends AbstractBaseController {
                                 formEntryModel,
                                 answer,
                                 key,
-                                false,
-                                null,
-                                skipValidation,
-                                false);
+                                skipValidation);
                 if (!answerResult.get(ApiConstants.RESPONSE_STATUS_KEY).equals(
                         Constants.ANSWER_RESPONSE_STATUS_POSITIVE)) {
                     ErrorBean error = new ErrorBean();
@@ -243,7 +247,15 @@ public class FormController extends AbstractBaseController {
                 () -> {
                     responseBean.setTitle(serializableFormSession.getTitle());
                     responseBean.setSequenceId(serializableFormSession.getVersion());
-                    responseBean.setInstanceXml(new InstanceXmlBean(serializableFormSession.getInstanceXml()));
+                    boolean deltaRequested = answerQuestionBean.getDeltaBaseSequenceId() != null;
+                    if (deltaRequested) {
+                        formTreeDeltaService.applyDelta(serializableFormSession.getId(),
+                                answerQuestionBean.getDeltaBaseSequenceId(), responseBean);
+                    }
+                    if (!deltaRequested || answerQuestionBean.isIncludeInstanceXml()) {
+                        responseBean.setInstanceXml(
+                                new InstanceXmlBean(serializableFormSession.getInstanceXml()));
+                    }
                 }
         );
 
@@ -260,11 +272,11 @@ public class FormController extends AbstractBaseController {
         SerializableFormSession serializableFormSession = formSessionService.getSessionById(
                 newRepeatRequestBean.getSessionId());
         FormSession formEntrySession = formSessionFactory.getFormSession(serializableFormSession);
-        JSONObject response = JsonActionUtils.descendRepeatToJson(formEntrySession.getFormEntryController(),
+        FormEntryResponseBean responseBean = JsonActionUtils.descendRepeat(
+                formEntrySession.getFormEntryController(),
                 formEntrySession.getFormEntryModel(),
                 newRepeatRequestBean.getRepeatIndex());
         updateSession(formEntrySession);
-        FormEntryResponseBean responseBean = mapper.readValue(response.toString(), FormEntryResponseBean.class);
         responseBean.setTitle(serializableFormSession.getTitle());
         responseBean.setInstanceXml(new InstanceXmlBean(serializableFormSession.getInstanceXml()));
         log.info("New response: " + responseBean);
@@ -281,11 +293,11 @@ public class FormController extends AbstractBaseController {
         SerializableFormSession serializableFormSession = formSessionService.getSessionById(
                 deleteRepeatRequestBean.getSessionId());
         FormSession formEntrySession = formSessionFactory.getFormSession(serializableFormSession);
-        JSONObject response = JsonActionUtils.deleteRepeatToJson(formEntrySession.getFormEntryController(),
+        FormEntryResponseBean responseBean = JsonActionUtils.deleteRepeat(
+                formEntrySession.getFormEntryController(),
                 formEntrySession.getFormEntryModel(),
                 deleteRepeatRequestBean.getRepeatIndex());
         updateSession(formEntrySession);
-        FormEntryResponseBean responseBean = mapper.readValue(response.toString(), FormEntryResponseBean.class);
         responseBean.setTitle(serializableFormSession.getTitle());
         responseBean.setInstanceXml(new InstanceXmlBean(serializableFormSession.getInstanceXml()));
         return responseBean;
@@ -347,7 +359,7 @@ public class FormController extends AbstractBaseController {
      */
     @RequestMapping(value = Constants.URL_GET_INSTANCE, method = {RequestMethod.GET, RequestMethod.POST})
     @ResponseBody
-    @UserLock
+    @UserLock(coalesce = true)
     @UserRestore
     @ConfigureStorageFromSession
     public GetInstanceResponseBean getRawInstance(@RequestBody SessionRequestBean requestBean,
@@ -356,13 +368,16 @@ public class FormController extends AbstractBaseController {
         SerializableFormSession serializableFormSession = formSessionService.getSessionById(
                 requestBean.getSessionId());
         FormSession formSession = formSessionFactory.getFormSession(serializableFormSession);
-        return new GetInstanceResponseBean(formSession, false);
+        GetInstanceResponseBean responseBean = new GetInstanceResponseBean(formSession, false);
+        // nothing was changed so the session is still at the version that was loaded
+        liveFormSessionService.checkin(formSession, serializableFormSession);
+        return responseBean;
     }
 
 
     @RequestMapping(value = Constants.URL_CURRENT, method = RequestMethod.POST)
     @ResponseBody
-    @UserLock
+    @UserLock(coalesce = true)
     @UserRestore
     @ConfigureStorageFromSession
     public FormEntryNavigationResponseBean getCurrent(@RequestBody SessionRequestBean requestBean,
@@ -377,9 +392,10 @@ public class FormController extends AbstractBaseController {
     }
 
     private void updateSession(FormSession formEntrySession) throws Exception {
-        categoryTimingHelper.timed(
+        SerializableFormSession savedSession = categoryTimingHelper.timed(
                 Constants.TimingCategories.UPDATE_SESSION,
-                () -> formSessionService.saveSession(formEntrySession.serialize())
+                () -> formSessionService.saveSession(formEntrySession.serialize(binarySessionState))
         );
+        liveFormSessionService.checkin(formEntrySession, savedSession);
     }
 }
@@ -4,6 +4,7 @@ import org.commcare.formplayer.objects.SerializableFormSession;
 import org.commcare.formplayer.services.FormDefinitionService;
 import org.commcare.formplayer.services.FormplayerRemoteInstanceFetcher;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
+import org.commcare.formplayer.services.LiveFormSessionService;
 import org.commcare.formplayer.services.MenuSessionRunnerService;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.commcare.formplayer.services.VirtualDataInstanceService;
@@ -39,7 +40,14 @@ public class FormSessionFactory {
     @Autowired
     private CommCareSessionFactory commCareSessionFactory;
 
+    @Autowired
+    private LiveFormSessionService liveFormSessionService;
+
     public FormSession getFormSession(SerializableFormSession serializableFormSession) throws Exception {
+        FormSession liveSession = liveFormSessionService.checkout(serializableFormSession);
+        if (liveSession != null) {
+            return liveSession;
+        }
         CommCareSession commCareSession = commCareSessionFactory.getCommCareSession(serializableFormSession.getMenuSessionId());
         return getFormSession(serializableFormSession, commCareSession);
     }
@@ -18,9 +18,11 @@ import org.commcare.formplayer.objects.FormVolatilityRecord;
 import org.commcare.formplayer.objects.SerializableFormSession;
 import org.commcare.formplayer.objects.SerializableMenuSession;
 import org.commcare.formplayer.services.CategoryTimingHelper;
+import org.commcare.formplayer.services.EntityListCursorService;
 import org.commcare.formplayer.services.FormSessionService;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
 import org.commcare.formplayer.services.InstallService;
+import org.commcare.formplayer.services.LiveFormSessionService;
 import org.commcare.formplayer.services.MediaValidator;
 import org.commcare.formplayer.services.MenuSessionFactory;
 import org.commcare.formplayer.services.MenuSessionRunnerService;
@@ -105,6 +107,12 @@ public class FormSubmissionHelper {
     @Autowired
     private FormSessionFactory formSessionFactory;
 
+    @Autowired
+    private EntityListCursorService entityListCursorService;
+
+    @Autowired
+    private LiveFormSessionService liveFormSessionService;
+
     @Autowired
     private FormplayerDatadog datadog;
 
@@ -116,6 +124,9 @@ public class FormSubmissionHelper {
     @Value("${formplayer.form.submit.max_attachments}")
     private Integer maxAttachmentsPerForm;
 
+    @Value("${formplayer.purge.incremental:false}")
+    private boolean incrementalPurge;
+
     public SubmitResponseBean processAndSubmitForm(HttpServletRequest request, String sessionID,
             String domain, boolean isPrevalidated, Map<String, Object> answers) throws Exception {
         FormSubmissionContext context = getFormProcessingContext(request, sessionID, domain, isPrevalidated, answers);
@@ -335,12 +346,14 @@ public class FormSubmissionHelper {
                 storageFactory.getPropertyManager().isBulkPerformanceEnabled()
         );
         FormRecordProcessorHelper.processXML(factory, context.getFormEntrySession().submitGetXml());
+        entityListCursorService.invalidate();
+        liveFormSessionService.invalidate();
         categoryTimingHelper.timed(
                 Constants.TimingCategories.PURGE_CASES,
                 () -> {
                     if (factory.wereCaseIndexesDisrupted()
                             && storageFactory.getPropertyManager().isAutoPurgeEnabled()) {
-                        FormRecordProcessorHelper.purgeCases(factory.getSqlSandbox());
+                        FormRecordProcessorHelper.purgeCases(factory.getSqlSandbox(), incrementalPurge);
                     }
                 },
                 context.getMetricsTags()
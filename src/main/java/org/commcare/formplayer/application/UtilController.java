@@ -25,6 +25,7 @@ import org.commcare.formplayer.sqlitedb.CaseSearchDB;
 import org.commcare.formplayer.sqlitedb.UserDB;
 import org.commcare.formplayer.util.Constants;
 import org.commcare.formplayer.util.NotificationLogger;
+import org.commcare.modern.reference.ArchiveFileRoot;
 import org.javarosa.core.model.instance.ExternalDataInstanceSource;
 import org.javarosa.xform.parse.XFormParseException;
 import org.javarosa.xform.parse.XFormParser;
@@ -71,6 +72,9 @@ public class UtilController {
     @Autowired
     NotificationLogger notificationLogger;
 
+    @Autowired
+    private ArchiveFileRoot formplayerArchiveFileRoot;
+
     private final Log log = LogFactory.getLog(UtilController.class);
 
     @Autowired
@@ -110,6 +114,8 @@ public class UtilController {
         boolean success = true;
         try {
             deleteRequest.clear();
+            // drop this node's handle on the app's archive, it is reopened by the next install
+            formplayerArchiveFileRoot.removeArchiveFile(deleteRequest.getAppId());
         } catch (Exception e) {
             e.printStackTrace();
             success = false;
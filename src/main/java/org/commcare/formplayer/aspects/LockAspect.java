@@ -12,20 +12,34 @@ import org.apache.commons.logging.LogFactory;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.commcare.formplayer.annotations.UserLock;
 import org.commcare.formplayer.services.FormSessionService;
 import org.commcare.modern.database.TableBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
+import org.springframework.web.util.WebUtils;
 import org.commcare.formplayer.services.CategoryTimingHelper;
 import org.commcare.formplayer.services.FormplayerLockRegistry;
 import org.commcare.formplayer.services.FormplayerLockRegistry.FormplayerReentrantLock;
 import org.commcare.formplayer.util.Constants;
 import org.commcare.formplayer.util.FormplayerSentry;
+import org.commcare.formplayer.util.MultipleReadHttpRequest;
 import org.commcare.formplayer.util.RequestUtils;
 import org.commcare.formplayer.util.UserUtils;
 
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -52,6 +66,33 @@ public class LockAspect {
 
     private final Log log = LogFactory.getLog(LockAspect.class);
 
+    // the most recently queued coalescable request of each user that is still waiting on the lock
+    private final ConcurrentHashMap<String, CoalescedRequest> pendingRequests = new ConcurrentHashMap<>();
+
+    private static class CoalescedRequest {
+        final String key;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        final long startedAt = System.nanoTime();
+        // set once the request obtains the lock, until then it is still waiting on it
+        volatile Long lockedAt;
+
+        CoalescedRequest(@Nullable String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return System.nanoTime() by which the request has either failed to obtain the lock or
+         * lost it to expiry
+         */
+        long getDeadline() {
+            Long locked = lockedAt;
+            if (locked == null) {
+                return startedAt + TimeUnit.SECONDS.toNanos(Constants.USER_LOCK_TIMEOUT);
+            }
+            return locked + TimeUnit.MILLISECONDS.toNanos(Constants.LOCK_DURATION);
+        }
+    }
+
     @Around(value = "@annotation(org.commcare.formplayer.annotations.UserLock)")
     public Object aroundLock(ProceedingJoinPoint joinPoint) throws Throwable {
         Object[] args = joinPoint.getArgs();
@@ -77,18 +118,34 @@ public class LockAspect {
         }
 
 
+        String coalesceKey = getCoalesceKey(bean, joinPoint);
+        CoalescedRequest ownRequest = new CoalescedRequest(coalesceKey);
+        CoalescedRequest request = enqueue(username, ownRequest);
+        if (request != ownRequest) {
+            return awaitCoalesced(bean, joinPoint, request);
+        }
+
         Lock lock;
 
         try {
-            lock = getLockAndBlock(username);
+            lock = getLockAndBlock(username, bean, joinPoint);
+            request.lockedAt = System.nanoTime();
             log.info(String.format("Obtained lock for username %s", username));
-        } catch (LockError e) {
-            logLockError(bean, joinPoint, "_timed_out");
-            throw e;
+        } catch (Throwable t) {
+            request.result.completeExceptionally(t);
+            throw t;
+        } finally {
+            // requests arriving from now on would see the effects of this one, so can't share it
+            pendingRequests.remove(username, request);
         }
 
         try {
-            return joinPoint.proceed();
+            Object result = joinPoint.proceed();
+            request.result.complete(result);
+            return result;
+        } catch (Throwable t) {
+            request.result.completeExceptionally(t);
+            throw t;
         } finally {
             if (lock != null) {
                 try {
@@ -103,6 +160,78 @@ public class LockAspect {
         }
     }
 
+    /**
+     * Registers a request that is about to wait on the user's lock. If the user's most recently
+     * queued request is identical and coalescable, that request is returned instead, and its result
+     * should be awaited instead of taking the lock.
+     */
+    private CoalescedRequest enqueue(String username, CoalescedRequest ownRequest) {
+        if (ownRequest.key == null) {
+            // anything queued before this request may no longer be shared by those queued after it
+            pendingRequests.remove(username);
+            return ownRequest;
+        }
+        return pendingRequests.compute(username, (key, pending) ->
+                pending != null && ownRequest.key.equals(pending.key) ? pending : ownRequest);
+    }
+
+    private Object awaitCoalesced(AuthenticatedRequestBean bean, ProceedingJoinPoint joinPoint,
+            CoalescedRequest request) throws Throwable {
+        datadogStatsDClient.increment(
+                Constants.DATADOG_LOCK_COALESCED,
+                "domain:" + bean.getDomain(),
+                "request:" + RequestUtils.getRequestEndpoint()
+        );
+        while (true) {
+            // the deadline moves out once the request being waited on obtains the lock
+            long remaining = request.getDeadline() - System.nanoTime();
+            try {
+                return request.result.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                if (request.getDeadline() - System.nanoTime() > 0) {
+                    continue;
+                }
+                log.info(String.format("Timed out waiting on coalesced request for username %s",
+                        bean.getUsernameDetail()));
+                logLockError(bean, joinPoint, "_timed_out");
+                throw new LockError();
+            }
+        }
+    }
+
+    /**
+     * @return key identifying requests that may share a single response, or null if the request
+     * has to run on its own
+     */
+    @Nullable
+    private String getCoalesceKey(AuthenticatedRequestBean bean, ProceedingJoinPoint joinPoint) {
+        Method method = ((MethodSignature)joinPoint.getSignature()).getMethod();
+        UserLock userLock = method.getAnnotation(UserLock.class);
+        if (userLock == null || !userLock.coalesce() || !(bean instanceof SessionRequestBean)) {
+            return null;
+        }
+        String sessionId = ((SessionRequestBean)bean).getSessionId();
+        // the body has to be read again, which only the wrapped request allows
+        MultipleReadHttpRequest request = WebUtils.getNativeRequest(RequestUtils.getCurrentRequest(),
+                MultipleReadHttpRequest.class);
+        if (sessionId == null || request == null) {
+            return null;
+        }
+        // requests for the same session can still differ in other fields of the body
+        String body;
+        try {
+            body = RequestUtils.getBody(request.getInputStream());
+        } catch (IOException e) {
+            return null;
+        }
+        String requestHash = Hashing.sha256()
+                .hashString(request.getQueryString() + "|" + body, StandardCharsets.UTF_8)
+                .toString();
+        return method.getName() + "|" + sessionId + "|" + requestHash;
+    }
+
     public static String getLockKeyForAuthenticatedBean(AuthenticatedRequestBean bean, FormSessionService formSessionService) throws Exception {
         if (bean.getUsernameDetail() != null) {
             return TableBuilder.scrubName(bean.getUsernameDetail());
@@ -137,8 +266,21 @@ public class LockAspect {
     }
 
     @Trace
-    private Lock getLockAndBlock(String username) throws LockError {
+    private Lock getLockAndBlock(String username, AuthenticatedRequestBean bean,
+            ProceedingJoinPoint joinPoint) throws LockError {
         FormplayerReentrantLock lock = userLockRegistry.obtain(username);
+        int queueDepth = lock.getQueueLength();
+        datadogStatsDClient.histogram(
+                Constants.DATADOG_LOCK_QUEUE_DEPTH,
+                queueDepth,
+                "domain:" + bean.getDomain(),
+                "request:" + RequestUtils.getRequestEndpoint()
+        );
+        if (queueDepth >= Constants.USER_LOCK_MAX_QUEUE_DEPTH) {
+            log.info(String.format("Too many requests waiting on lock for username %s", username));
+            logLockError(bean, joinPoint, "_queue_full");
+            throw new LockError();
+        }
         if (obtainLock(lock)) {
             return lock;
         } else {
@@ -146,6 +288,7 @@ public class LockAspect {
             userLockRegistry.logLockError(lock, String.format(
                     "Unable to obtain lock with lock key %s. expired=%s, lockTime=%s(s)",
                     username, lock.isExpired(), lock.timeLocked()));
+            logLockError(bean, joinPoint, "_timed_out");
             throw new LockError();
         }
     }
@@ -23,6 +23,13 @@ public class AnswerQuestionRequestBean extends SessionRequestBean {
     @Nullable
     private Map<String, Object> answersToValidate;
 
+    // seq_id of the last question tree the client has, to only be sent the questions changed since
+    @Nullable
+    private Integer deltaBaseSequenceId;
+
+    // whether to send the instance xml along with a delta response
+    private boolean includeInstanceXml;
+
     // our JSON-Object mapping lib (Jackson) requires a default constructor
     public AnswerQuestionRequestBean() {
     }
@@ -77,4 +84,25 @@ public class AnswerQuestionRequestBean extends SessionRequestBean {
     public void setAnswersToValidate(Map<String, Object> answersToValidate) {
         this.answersToValidate = answersToValidate;
     }
+
+    @Nullable
+    @JsonGetter(value = "delta_base_seq_id")
+    public Integer getDeltaBaseSequenceId() {
+        return deltaBaseSequenceId;
+    }
+
+    @JsonSetter(value = "delta_base_seq_id")
+    public void setDeltaBaseSequenceId(Integer deltaBaseSequenceId) {
+        this.deltaBaseSequenceId = deltaBaseSequenceId;
+    }
+
+    @JsonGetter(value = "include_instance_xml")
+    public boolean isIncludeInstanceXml() {
+        return includeInstanceXml;
+    }
+
+    @JsonSetter(value = "include_instance_xml")
+    public void setIncludeInstanceXml(boolean includeInstanceXml) {
+        this.includeInstanceXml = includeInstanceXml;
+    }
 }
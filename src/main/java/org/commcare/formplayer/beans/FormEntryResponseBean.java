@@ -1,6 +1,7 @@
 package org.commcare.formplayer.beans;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import org.commcare.formplayer.beans.menus.ErrorBean;
 
@@ -18,6 +19,12 @@ public class FormEntryResponseBean extends SessionResponseBean {
     private QuestionBean event;
     private HashMap<String, ErrorBean> errors;
 
+    // Set instead of the tree when only sending the questions changed since the client's tree.
+    // Each replaces the question with the same ix, and its children if it has any.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private QuestionBean[] changed;
+    private boolean delta;
+
     // our JSON-Object mapping lib (Jackson) requires a default constructor
     public FormEntryResponseBean() {
     }
@@ -76,4 +83,20 @@ public class FormEntryResponseBean extends SessionResponseBean {
     public void setErrors(HashMap<String, ErrorBean> errors) {
         this.errors = errors;
     }
+
+    public QuestionBean[] getChanged() {
+        return changed;
+    }
+
+    public void setChanged(QuestionBean[] changed) {
+        this.changed = changed;
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    public void setDelta(boolean delta) {
+        this.delta = delta;
+    }
 }
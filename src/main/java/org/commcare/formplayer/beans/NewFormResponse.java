@@ -1,11 +1,7 @@
 package org.commcare.formplayer.beans;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.commcare.formplayer.beans.menus.EntityDetailResponse;
 
-import java.io.IOException;
-
 /**
  * Created by willpride on 1/12/16.
  */
@@ -19,10 +15,10 @@ public class NewFormResponse extends SessionResponseBean {
     public NewFormResponse() {
     }
 
-    public NewFormResponse(String formTreeJson, String[] languages,
+    public NewFormResponse(QuestionBean[] tree, String[] languages,
             String title, String sessionId, int sequenceId,
-            String instanceXml) throws IOException {
-        this.tree = new ObjectMapper().readValue(formTreeJson, QuestionBean[].class);
+            String instanceXml) {
+        this.tree = tree;
         this.langs = languages;
         this.title = title;
         this.sessionId = sessionId;
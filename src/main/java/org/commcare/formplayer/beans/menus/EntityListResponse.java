@@ -17,6 +17,7 @@ import org.commcare.suite.model.EndpointAction;
 import org.commcare.suite.model.EndpointArgument;
 import org.commcare.suite.model.EntityDatum;
 import org.commcare.suite.model.Style;
+import org.commcare.util.screen.EntityListCursor;
 import org.commcare.util.screen.EntityListSubscreen;
 import org.commcare.util.screen.EntityScreen;
 import org.commcare.util.screen.EntityScreenContext;
@@ -88,14 +89,13 @@ public class EntityListResponse extends MenuBean {
             this.actions = processActions(nextScreen.getSession(), entityListActions);
             this.redoLast = processRedoLast(entityListActions);
 
-            List<Entity<TreeReference>> entityList = entityListScreen.getEntities();
             EntityScreenContext entityScreenContext = nextScreen.getEntityScreenContext();
             int casesPerPage = entityScreenContext.getCasesPerPage();
             casesPerPage = Math.min(casesPerPage, MAX_CASES_PER_PAGE);
             int offset = entityScreenContext.getOffSet();
             Detail detail = nextScreen.getShortDetail();
-            List<Entity<TreeReference>> entitesForPage = paginateEntities(entityList, detail, casesPerPage,
-                    offset);
+            List<Entity<TreeReference>> entitesForPage = paginateEntities(entityListScreen, detail,
+                    casesPerPage, offset);
             EvaluationContext ec = nextScreen.getEvalContext();
             SessionWrapper session = nextScreen.getSession();
             EntityDatum neededDatum = (EntityDatum)session.getNeededDatum();
@@ -175,19 +175,23 @@ public class EntityListResponse extends MenuBean {
         return entities;
     }
 
-    private List<Entity<TreeReference>> paginateEntities(
-            List<Entity<TreeReference>> entityList, Detail detail, int casesPerPage, int offset) {
-        if (entityList.size() > casesPerPage && !(detail.getNumEntitiesToDisplayPerRow() > 1)) {
+    private List<Entity<TreeReference>> paginateEntities(EntityListSubscreen entityListScreen,
+            Detail detail, int casesPerPage, int offset) {
+        EntityListCursor cursor = entityListScreen.getEntityListCursor();
+        if (cursor.size() > casesPerPage && !(detail.getNumEntitiesToDisplayPerRow() > 1)) {
             // we're doing pagination
-            return getEntitiesForCurrentPage(entityList, casesPerPage, offset, detail);
+            return getEntitiesForCurrentPage(entityListScreen, cursor, casesPerPage, offset, detail);
         }
-        return entityList;
+        return entityListScreen.getEntities();
     }
 
+    /**
+     * Works out the page from the list's cursor so that only the entities on the page are
+     * initialised when the list comes from a cursor
+     */
     @Trace
-    private List<Entity<TreeReference>> getEntitiesForCurrentPage(List<Entity<TreeReference>> matched,
-            int casesPerPage,
-            int offset, Detail detail) {
+    private List<Entity<TreeReference>> getEntitiesForCurrentPage(EntityListSubscreen entityListScreen,
+            EntityListCursor matched, int casesPerPage, int offset, Detail detail) {
         setPageCount((int)Math.ceil((double)matched.size() / casesPerPage));
         if (offset > matched.size()) {
             // Set the offset to last page
@@ -195,29 +199,31 @@ public class EntityListResponse extends MenuBean {
         }
         setCurrentPage(offset / casesPerPage);
         int end = offset + casesPerPage;
-        List<Entity<TreeReference>> entitiesForPage = new ArrayList<>();
+        int start;
         if (detail.getGroup() != null) {
-            // we want to paginate the groups insted of entities
+            // we want to paginate the groups insted of entities, which are listed one group after another
+            start = matched.size();
             int groupCount = -1;
+            int groupEnd = matched.size();
             for (int i = 0; i < matched.size(); i++) {
-                Entity<TreeReference> currEntity = matched.get(i);
-                if (i == 0 || !Objects.equals(currEntity.getGroupKey(), matched.get(i - 1).getGroupKey())) {
+                if (i == 0 || !Objects.equals(matched.getGroupKey(i), matched.getGroupKey(i - 1))) {
                     groupCount++;
-                }
-                if (groupCount >= offset && groupCount < end) {
-                    entitiesForPage.add(currEntity);
+                    if (groupCount == offset) {
+                        start = i;
+                    } else if (groupCount == end) {
+                        groupEnd = i;
+                    }
                 }
             }
             setPageCount((int)Math.ceil((double)(groupCount + 1) / casesPerPage));
+            end = Math.max(start, groupEnd);
         } else {
-            int length = casesPerPage;
+            start = offset;
             if (end > matched.size()) {
                 end = matched.size();
-                length = end - offset;
             }
-            entitiesForPage = matched.subList(offset, offset + length);
         }
-        return entitiesForPage;
+        return entityListScreen.getEntities(start, end);
     }
 
     public int[] getSortIndices() {
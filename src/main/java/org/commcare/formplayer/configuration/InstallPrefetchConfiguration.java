@@ -0,0 +1,63 @@
+package org.commcare.formplayer.configuration;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.commcare.formplayer.engine.FormplayerConfigEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sets up the pool shared by all app installs for fetching and parsing forms and locale files
+ * ahead of installing them (see ResourceTable.setPrefetchExecutor), and reports its usage.
+ */
+@Configuration
+@Slf4j
+public class InstallPrefetchConfiguration {
+
+    private static final String EXECUTOR_NAME = "install_prefetch";
+
+    // resources each install may have prefetched, or be prefetching, per thread in the pool
+    private static final int LOOKAHEAD_PER_THREAD = 2;
+
+    @Value("${formplayer.install.prefetch_threads:0}")
+    private int prefetchThreads;
+
+    /**
+     * The pool is shut down with the application context. Null when prefetching is off, in which
+     * case installs fetch each resource as they come to it.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService installPrefetchExecutor() {
+        if (prefetchThreads <= 0) {
+            FormplayerConfigEngine.setInstallPrefetchExecutor(null, 0);
+            return null;
+        }
+        log.info("Install prefetch configured - threads: {}", prefetchThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(prefetchThreads,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("install-prefetch-%d")
+                        .setDaemon(true)
+                        .build());
+        FormplayerConfigEngine.setInstallPrefetchExecutor(executor,
+                prefetchThreads * LOOKAHEAD_PER_THREAD);
+        return executor;
+    }
+
+    @Bean
+    public MeterBinder installPrefetchMetrics() {
+        ExecutorService executor = installPrefetchExecutor();
+        if (executor == null) {
+            return registry -> {
+            };
+        }
+        return registry -> ExecutorServiceMetrics.monitor(registry, executor, EXECUTOR_NAME);
+    }
+}
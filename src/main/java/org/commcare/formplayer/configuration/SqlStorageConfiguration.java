@@ -0,0 +1,60 @@
+package org.commcare.formplayer.configuration;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.commcare.formplayer.sandbox.SqlStorage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sets up the pool shared by all users' storage for deserializing the records read by large bulk
+ * reads, such as the cases prefetched for a case list (see SqlStorage.bulkRead), and reports its
+ * usage.
+ */
+@Configuration
+@Slf4j
+public class SqlStorageConfiguration {
+
+    private static final String EXECUTOR_NAME = "sql_storage_deserialization";
+
+    @Value("${formplayer.case_prefetch.deserialization_threads:0}")
+    private int deserializationThreads;
+
+    /**
+     * The pool is shut down with the application context. Null when deserialization isn't
+     * spread across threads, in which case bulk reads deserialize on the requesting thread.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService sqlStorageDeserializationExecutor() {
+        if (deserializationThreads <= 0) {
+            SqlStorage.setDeserializationExecutor(null);
+            return null;
+        }
+        log.info("Bulk read deserialization configured - threads: {}", deserializationThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(deserializationThreads,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("sql-storage-deserialization-%d")
+                        .setDaemon(true)
+                        .build());
+        SqlStorage.setDeserializationExecutor(executor);
+        return executor;
+    }
+
+    @Bean
+    public MeterBinder sqlStorageDeserializationMetrics() {
+        ExecutorService executor = sqlStorageDeserializationExecutor();
+        if (executor == null) {
+            return registry -> {
+            };
+        }
+        return registry -> ExecutorServiceMetrics.monitor(registry, executor, EXECUTOR_NAME);
+    }
+}
@@ -0,0 +1,40 @@
+package org.commcare.formplayer.configuration;
+
+import org.javarosa.xpath.XPathExpressionCache;
+import org.javarosa.xpath.XPathParseTool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sets up the process wide cache of parsed XPath expressions (see XPathExpressionCache) and
+ * reports its hits, misses and size with the other cache metrics.
+ */
+@Configuration
+@Slf4j
+public class XPathExpressionCacheConfiguration {
+
+    private static final String CACHE_NAME = "xpath_expression";
+
+    @Value("${formplayer.xpath.expression_cache:false}")
+    private boolean expressionCacheEnabled;
+
+    @Value("${formplayer.xpath.expression_cache_max_characters:4000000}")
+    private long maxCharacters;
+
+    @Bean
+    public MeterBinder xpathExpressionCacheMetrics() {
+        if (!expressionCacheEnabled) {
+            XPathParseTool.disableExpressionCache();
+            return registry -> {
+            };
+        }
+        log.info("XPath expression cache configured - max characters: {}", maxCharacters);
+        XPathExpressionCache cache = XPathParseTool.enableExpressionCache(maxCharacters);
+        return registry -> GuavaCacheMetrics.monitor(registry, cache.getCache(), CACHE_NAME);
+    }
+}
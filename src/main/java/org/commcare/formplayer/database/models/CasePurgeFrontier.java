@@ -0,0 +1,135 @@
+package org.commcare.formplayer.database.models;
+
+import static org.commcare.formplayer.sandbox.SqlSandboxUtils.execSql;
+
+import org.commcare.cases.model.Case;
+import org.commcare.formplayer.exceptions.SQLiteRuntimeException;
+import org.commcare.formplayer.sandbox.SqlHelper;
+import org.commcare.formplayer.services.ConnectionHandler;
+import org.commcare.modern.util.Pair;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Tracks the cases whose part of the case graph may have changed since the last case purge, so
+ * that the next purge only needs to look at the cases connected to them.
+ *
+ * Tracking starts with a purge over all cases, which also records the owners it purged for. Until
+ * then, or once the owners change, the next purge needs to look at all cases again.
+ */
+public class CasePurgeFrontier {
+
+    private static final String FRONTIER_TABLE_NAME = "case_purge_frontier";
+    private static final String OWNERS_TABLE_NAME = "case_purge_owners";
+
+    private static final String COL_CASE_ID = "case_id";
+    private static final String COL_OWNER_ID = "owner_id";
+
+    private static final String INSERT_CASE_STATEMENT =
+            "INSERT OR IGNORE INTO " + FRONTIER_TABLE_NAME + " (" + COL_CASE_ID + ") VALUES (?);";
+    private static final String INSERT_OWNER_STATEMENT =
+            "INSERT OR IGNORE INTO " + OWNERS_TABLE_NAME + " (" + COL_OWNER_ID + ") VALUES (?);";
+
+    private final ConnectionHandler connectionHandler;
+    private Boolean tracking;
+
+    public CasePurgeFrontier(ConnectionHandler connectionHandler) {
+        this.connectionHandler = connectionHandler;
+    }
+
+    /**
+     * @return whether cases written to the user's database are being tracked
+     */
+    public boolean isTracking() {
+        if (tracking == null) {
+            tracking = SqlHelper.isTableExist(connectionHandler.getConnection(), FRONTIER_TABLE_NAME);
+        }
+        return tracking;
+    }
+
+    /**
+     * Adds cases that were just written, along with the cases they indexed before being written,
+     * which may no longer be kept alive by them. Needs to be called before the indices of the
+     * cases are updated.
+     */
+    public void addCases(Collection<Case> cases, FormplayerCaseIndexTable indexTable) {
+        if (!isTracking() || cases.isEmpty()) {
+            return;
+        }
+        List<Integer> recordIds = new ArrayList<>(cases.size());
+        List<Pair<String, Object[]>> rows = new ArrayList<>();
+        for (Case c : cases) {
+            recordIds.add(c.getID());
+            rows.add(Pair.create(INSERT_CASE_STATEMENT, new Object[]{c.getCaseId()}));
+        }
+        for (Vector<Pair<String, String>> indices : indexTable.getCaseIndexMap(recordIds).values()) {
+            for (Pair<String, String> index : indices) {
+                rows.add(Pair.create(INSERT_CASE_STATEMENT, new Object[]{index.first}));
+            }
+        }
+        SqlHelper.executeBatched(connectionHandler.getConnection(), rows);
+    }
+
+    public Set<String> getCaseIds() {
+        return readColumn(FRONTIER_TABLE_NAME, COL_CASE_ID);
+    }
+
+    /**
+     * @return the owners of the last purge
+     */
+    public Set<String> getOwners() {
+        return readColumn(OWNERS_TABLE_NAME, COL_OWNER_ID);
+    }
+
+    /**
+     * Empties the frontier after a purge, starting tracking if it wasn't already
+     *
+     * @param owners the owners the purge was done for
+     */
+    public void reset(Set<String> owners) {
+        execSql(connectionHandler.getConnection(), "CREATE TABLE IF NOT EXISTS " + FRONTIER_TABLE_NAME +
+                " (" + COL_CASE_ID + " TEXT PRIMARY KEY)");
+        execSql(connectionHandler.getConnection(), "CREATE TABLE IF NOT EXISTS " + OWNERS_TABLE_NAME +
+                " (" + COL_OWNER_ID + " TEXT PRIMARY KEY)");
+        List<Pair<String, Object[]>> rows = new ArrayList<>();
+        rows.add(Pair.create("DELETE FROM " + FRONTIER_TABLE_NAME + ";", new Object[0]));
+        rows.add(Pair.create("DELETE FROM " + OWNERS_TABLE_NAME + ";", new Object[0]));
+        for (String owner : owners) {
+            rows.add(Pair.create(INSERT_OWNER_STATEMENT, new Object[]{owner}));
+        }
+        SqlHelper.executeBatched(connectionHandler.getConnection(), rows);
+        tracking = true;
+    }
+
+    /**
+     * Stops tracking, so that purges look at all cases again until tracking is restarted
+     */
+    public void stopTracking() {
+        SqlHelper.dropTable(connectionHandler.getConnection(), FRONTIER_TABLE_NAME);
+        SqlHelper.dropTable(connectionHandler.getConnection(), OWNERS_TABLE_NAME);
+        tracking = false;
+    }
+
+    private Set<String> readColumn(String tableName, String column) {
+        Set<String> values = new HashSet<>();
+        try (PreparedStatement selectStatement = SqlHelper.prepareTableSelectProjectionStatement(
+                connectionHandler.getConnection(), tableName, new String[]{column})) {
+            try (ResultSet resultSet = selectStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    values.add(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLiteRuntimeException(e);
+        }
+        return values;
+    }
+}
@@ -4,26 +4,48 @@ import static org.commcare.formplayer.sandbox.SqlSandboxUtils.execSql;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.commcare.cases.entity.AsyncEntity;
+import org.commcare.formplayer.exceptions.SQLiteRuntimeException;
+import org.commcare.formplayer.sandbox.UserSqlSandbox;
 import org.commcare.modern.database.TableBuilder;
 import org.commcare.formplayer.sandbox.SqlHelper;
 import org.commcare.modern.database.DatabaseHelper;
 import org.commcare.modern.database.DatabaseIndexingUtils;
 import org.commcare.modern.util.Pair;
 import org.commcare.formplayer.services.ConnectionHandler;
+import org.commcare.suite.model.Detail;
+import org.commcare.suite.model.DetailField;
+import org.javarosa.xpath.analysis.AnalysisInvalidException;
+import org.javarosa.xpath.analysis.ReferencesBeyondContextNodeAnalyzer;
 
+import java.io.Closeable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
+ * Stores evaluated entity fields for the cases in a user's database so that they don't have to be
+ * re-evaluated by every request which sorts or searches a case list.
+ *
+ * Values are keyed by the case's record id and invalidated by the case parsers whenever the case is
+ * written. Since nothing else invalidates them, only sort fields which read nothing but the case's
+ * own row are cached. Writes are buffered and only persisted in batches or when the cache is
+ * flushed.
+ *
  * @author wspride
  */
-public class EntityStorageCache {
+public class EntityStorageCache implements org.commcare.cases.entity.EntityStorageCache {
+
+    // cache of the fields of case list entities
+    public static final String CASE_CACHE_NAME = "entitycase";
 
     private static final String TABLE_NAME = "entitycache";
 
@@ -33,14 +55,29 @@ public class EntityStorageCache {
     private static final String COL_VALUE = "value";
     private static final String COL_TIMESTAMP = "timestamp";
 
+    private static final int WRITE_BATCH_SIZE = 500;
+
     private final ConnectionHandler handler;
     private final String mCacheName;
+    private final String mCacheScope;
+
+    // values waiting to be written, keyed by entity key and cache key
+    private final Map<Pair<String, String>, String> pendingWrites = new LinkedHashMap<>();
 
     private static final Log log = LogFactory.getLog(EntityStorageCache.class);
 
     public EntityStorageCache(String cacheName, ConnectionHandler handler) {
+        this(cacheName, handler, null);
+    }
+
+    /**
+     * @param cacheScope prefixed to all cache keys, so that values cached for one scope (e.g. an
+     *                   app build) are never read for another
+     */
+    public EntityStorageCache(String cacheName, ConnectionHandler handler, String cacheScope) {
         this.mCacheName = cacheName;
         this.handler = handler;
+        this.mCacheScope = cacheScope;
         try {
             execSql(handler.getConnection(), getTableDefinition());
             EntityStorageCache.createIndexes(handler.getConnection());
@@ -71,26 +108,98 @@ public class EntityStorageCache {
                 DatabaseIndexingUtils.indexOnTableCommand("NAME_ENTITY_KEY", TABLE_NAME, COL_CACHE_NAME + ", " + COL_ENTITY_KEY + ", " + COL_CACHE_KEY));
     }
 
-    // Currently unused
-    public void cache(String entityKey, String cacheKey, String value) throws SQLException {
-        long timestamp = System.currentTimeMillis();
-        //TODO: this should probably just be an ON CONFLICT REPLACE call
-        Pair<String, String[]> wherePair =
-                DatabaseHelper.createWhere(new String[]{COL_CACHE_NAME, COL_ENTITY_KEY, COL_CACHE_KEY},
-                        new String[]{this.mCacheName, entityKey, cacheKey});
-        SqlHelper.deleteFromTableWhere(handler.getConnection(), TABLE_NAME, wherePair.first, wherePair.second);
-        //We need to clear this cache value if it exists first.
-        HashMap<String, Object> contentValues = new HashMap<>();
-        contentValues.put(COL_CACHE_NAME, mCacheName);
-        contentValues.put(COL_ENTITY_KEY, entityKey);
-        contentValues.put(COL_CACHE_KEY, cacheKey);
-        contentValues.put(COL_VALUE, value);
-        contentValues.put(COL_TIMESTAMP, String.valueOf(timestamp));
-        SqlHelper.basicInsert(handler.getConnection(), TABLE_NAME, contentValues);
+    /**
+     * Entities are only evaluated on the request thread, so there's nothing to lock against
+     */
+    @Override
+    public Closeable lockCache() {
+        return () -> {
+        };
+    }
+
+    @Override
+    public String getCacheKey(String detailId, String detailFieldIndex) {
+        String cacheKey = detailId + "_" + detailFieldIndex;
+        return mCacheScope == null ? cacheKey : mCacheScope + "|" + cacheKey;
     }
 
-    // Currently unused
+    /**
+     * Sort fields which look at related cases, fixtures, session data or the current time can
+     * change without the case being written, so their values are never cached
+     */
+    @Override
+    public boolean isSortFieldCacheable(DetailField field) {
+        try {
+            return !new ReferencesBeyondContextNodeAnalyzer().computeResult(field.getSort());
+        } catch (AnalysisInvalidException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void cache(String entityKey, String cacheKey, String value) {
+        pendingWrites.put(Pair.create(entityKey, cacheKey), value);
+        if (pendingWrites.size() >= WRITE_BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all buffered values in a single transaction
+     */
+    @Override
+    public void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        String timestamp = String.valueOf(System.currentTimeMillis());
+        String deleteStatement = MessageFormat.format("DELETE FROM {0} WHERE {1} = ? AND {2} = ? AND {3} = ?;",
+                TABLE_NAME, COL_CACHE_NAME, COL_ENTITY_KEY, COL_CACHE_KEY);
+        String insertStatement = MessageFormat.format("INSERT INTO {0} ({1}, {2}, {3}, {4}, {5}) VALUES (?, ?, ?, ?, ?);",
+                TABLE_NAME, COL_CACHE_NAME, COL_ENTITY_KEY, COL_CACHE_KEY, COL_VALUE, COL_TIMESTAMP);
+        List<Pair<String, Object[]>> rows = new ArrayList<>(pendingWrites.size() * 2);
+        for (Map.Entry<Pair<String, String>, String> write : pendingWrites.entrySet()) {
+            String entityKey = write.getKey().first;
+            String cacheKey = write.getKey().second;
+            // deletes all run before the inserts, as they are batched per statement
+            rows.add(Pair.create(deleteStatement, new Object[]{mCacheName, entityKey, cacheKey}));
+            rows.add(Pair.create(insertStatement,
+                    new Object[]{mCacheName, entityKey, cacheKey, write.getValue(), timestamp}));
+        }
+        pendingWrites.clear();
+
+        Connection connection = handler.getConnection();
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                SqlHelper.executeBatched(connection, rows);
+                if (autoCommit) {
+                    connection.commit();
+                }
+            } catch (SQLiteRuntimeException e) {
+                if (autoCommit) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLiteRuntimeException(e);
+        }
+    }
+
+    @Override
     public String retrieveCacheValue(String entityKey, String cacheKey) {
+        String pending = pendingWrites.get(Pair.create(entityKey, cacheKey));
+        if (pending != null) {
+            return pending;
+        }
         Connection connection = handler.getConnection();
         try (PreparedStatement preparedStatement = SqlHelper.prepareTableSelectStatement(connection,
                     TABLE_NAME,
@@ -109,6 +218,77 @@ public class EntityStorageCache {
         }
     }
 
+    /**
+     * Loads the cached sort fields of every case matching the most recent case lookup into the
+     * entities for those cases with a single query, rather than one query per entity and field.
+     *
+     * @param cachePrimeKeys names and values (followed by inverse names and values) of the case
+     *                       lookup the entities were most likely selected with
+     */
+    @Override
+    public void primeCache(Hashtable<String, AsyncEntity> entitySet, String[][] cachePrimeKeys,
+            Detail detail) {
+        // Without sort fields this is called off the request thread, which must not share the
+        // connection. Values are then read one at a time when the entities are searched.
+        if (!detail.hasSortField() || entitySet.isEmpty()) {
+            return;
+        }
+        flush();
+
+        List<String> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        where.append("e.").append(COL_CACHE_NAME).append(" = ?");
+        args.add(mCacheName);
+
+        DetailField[] fields = detail.getFields();
+        where.append(" AND e.").append(COL_CACHE_KEY).append(" IN (");
+        boolean first = true;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getSort() != null && isSortFieldCacheable(fields[i])) {
+                where.append(first ? "?" : ", ?");
+                args.add(getCacheKey(detail.getId(), String.valueOf(i)));
+                first = false;
+            }
+        }
+        where.append(")");
+        if (first) {
+            // none of the sort fields are cached
+            return;
+        }
+
+        appendPrimeKeyClauses(where, args, cachePrimeKeys[0], cachePrimeKeys[1], " = ?");
+        appendPrimeKeyClauses(where, args, cachePrimeKeys[2], cachePrimeKeys[3], " != ?");
+
+        String query = "SELECT e." + COL_ENTITY_KEY + ", e." + COL_CACHE_KEY + ", e." + COL_VALUE +
+                " FROM " + TABLE_NAME + " e JOIN " + UserSqlSandbox.FORMPLAYER_CASE + " c" +
+                " ON e." + COL_ENTITY_KEY + " = c." + DatabaseHelper.ID_COL +
+                " WHERE " + where + ";";
+        Connection connection = handler.getConnection();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            for (int i = 0; i < args.size(); i++) {
+                preparedStatement.setString(i + 1, args.get(i));
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    AsyncEntity entity = entitySet.get(resultSet.getString(1));
+                    if (entity != null) {
+                        entity.setSortData(resultSet.getString(2), resultSet.getString(3));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLiteRuntimeException(e);
+        }
+    }
+
+    private static void appendPrimeKeyClauses(StringBuilder where, List<String> args, String[] names,
+            String[] values, String comparison) {
+        for (int i = 0; i < names.length; i++) {
+            where.append(" AND c.").append(TableBuilder.scrubName(names[i])).append(comparison);
+            args.add(values[i]);
+        }
+    }
+
     /**
      * Removes cache records associated with the provided ID
      */
@@ -126,20 +306,21 @@ public class EntityStorageCache {
         if (recordIds.size() == 0) {
             return;
         }
-        List<Pair<String, String[]>> whereParamList = TableBuilder.sqlList(recordIds);
-        for(Pair<String, String[]> querySet : whereParamList) {
+        List<Pair<String, String[]>> whereClauses = new ArrayList<>();
+        for (Pair<String, String[]> querySet : TableBuilder.sqlList(recordIds)) {
             String[] updated = new String[querySet.second.length + 1];
             System.arraycopy(querySet.second, 0, updated, 1, querySet.second.length);
             updated[0] = this.mCacheName;
-            SqlHelper.deleteFromTableWhere(handler.getConnection(),
-                    TABLE_NAME,
+            whereClauses.add(Pair.create(
                     MessageFormat.format("{0} = ? AND {1} IN {2}", COL_CACHE_NAME, COL_ENTITY_KEY, querySet.first),
-                    updated);
+                    updated));
         }
+        SqlHelper.deleteFromTableWhereAll(handler.getConnection(), TABLE_NAME, whereClauses);
     }
 
-    public static int getSortFieldIdFromCacheKey(String detailId, String cacheKey) {
-        String intId = cacheKey.substring(detailId.length() + 1);
+    @Override
+    public int getSortFieldIdFromCacheKey(String detailId, String cacheKey) {
+        String intId = cacheKey.substring(getCacheKey(detailId, "").length());
         try {
             return Integer.parseInt(intId);
         } catch (NumberFormatException nfe) {
@@ -7,6 +7,7 @@ import org.apache.commons.logging.LogFactory;
 import org.commcare.cases.model.Case;
 import org.commcare.cases.model.CaseIndex;
 import org.commcare.cases.query.queryset.DualTableSingleMatchModelQuerySet;
+import org.commcare.cases.util.CaseGraph;
 import org.commcare.formplayer.sandbox.SqlHelper;
 import org.commcare.formplayer.sandbox.SqlStorage;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
@@ -21,6 +22,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -96,6 +98,11 @@ public class FormplayerCaseIndexTable implements CaseIndexTable {
         String typeFirstIndex = COL_INDEX_NAME + ", " + COL_CASE_RECORD_ID + ", " + COL_INDEX_TARGET;
         execSql(connection,
                 DatabaseIndexingUtils.indexOnTableCommand(typeFirstIndexId, getTableName(), typeFirstIndex));
+
+        String targetFirstIndexId = "TARGET_RECORD";
+        String targetFirstIndex = COL_INDEX_TARGET + ", " + COL_CASE_RECORD_ID;
+        execSql(connection,
+                DatabaseIndexingUtils.indexOnTableCommand(targetFirstIndexId, getTableName(), targetFirstIndex));
     }
 
     /**
@@ -105,16 +112,37 @@ public class FormplayerCaseIndexTable implements CaseIndexTable {
     @Override
     public void indexCase(Case c) {
         for (CaseIndex ci : c.getIndices()) {
-            HashMap<String, Object> contentValues = new HashMap<>();
-            contentValues.put(COL_CASE_RECORD_ID, "" + c.getID());
-            contentValues.put(COL_INDEX_NAME, ci.getName());
-            contentValues.put(COL_INDEX_TYPE, ci.getTargetType());
-            contentValues.put(COL_INDEX_TARGET, ci.getTarget());
-            contentValues.put(COL_INDEX_RELATIONSHIP, ci.getRelationship());
-            SqlHelper.basicInsert(connectionHandler.getConnection(), getTableName(), contentValues);
+            SqlHelper.basicInsert(connectionHandler.getConnection(), getTableName(),
+                    getIndexContentValues(c, ci));
         }
     }
 
+    /**
+     * Creates all indexes for the provided cases in a single batch
+     */
+    public void indexCases(Collection<Case> cases) {
+        List<HashMap<String, Object>> rows = new ArrayList<>();
+        for (Case c : cases) {
+            for (CaseIndex ci : c.getIndices()) {
+                rows.add(getIndexContentValues(c, ci));
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        SqlHelper.basicInsertAll(connectionHandler.getConnection(), getTableName(), rows);
+    }
+
+    private static HashMap<String, Object> getIndexContentValues(Case c, CaseIndex ci) {
+        HashMap<String, Object> contentValues = new HashMap<>();
+        contentValues.put(COL_CASE_RECORD_ID, "" + c.getID());
+        contentValues.put(COL_INDEX_NAME, ci.getName());
+        contentValues.put(COL_INDEX_TYPE, ci.getTargetType());
+        contentValues.put(COL_INDEX_TARGET, ci.getTarget());
+        contentValues.put(COL_INDEX_RELATIONSHIP, ci.getRelationship());
+        return contentValues;
+    }
+
     public void clearCaseIndices(Case c) {
         clearCaseIndices(c.getID());
     }
@@ -132,13 +160,11 @@ public class FormplayerCaseIndexTable implements CaseIndexTable {
         if (idsToClear.size() == 0) {
             return;
         }
-        List<Pair<String, String[]>> whereParamList = TableBuilder.sqlList(idsToClear);
-        for (Pair<String, String[]> whereParams : whereParamList) {
-            SqlHelper.deleteFromTableWhere(connectionHandler.getConnection(),
-                    getTableName(),
-                    COL_CASE_RECORD_ID + " IN " + whereParams.first,
-                    whereParams.second);
+        List<Pair<String, String[]>> whereClauses = new ArrayList<>();
+        for (Pair<String, String[]> whereParams : TableBuilder.sqlList(idsToClear)) {
+            whereClauses.add(Pair.create(COL_CASE_RECORD_ID + " IN " + whereParams.first, whereParams.second));
         }
+        SqlHelper.deleteFromTableWhereAll(connectionHandler.getConnection(), getTableName(), whereClauses);
     }
 
     @Override
@@ -151,32 +177,97 @@ public class FormplayerCaseIndexTable implements CaseIndexTable {
         return SqlHelper.isTableExist(connectionHandler.getConnection(), getTableName());
     }
 
-    public HashMap<Integer, Vector<Pair<String, String>>> getCaseIndexMap() {
-        String[] projection = new String[]{COL_CASE_RECORD_ID, COL_INDEX_TARGET, COL_INDEX_RELATIONSHIP};
-        HashMap<Integer, Vector<Pair<String, String>>> caseIndexMap = new HashMap<>();
-
+    /**
+     * Adds every index in the table to the case graph, streaming the rows rather than reading
+     * them all into memory first. Indices of cases that aren't in the graph are skipped.
+     */
+    public void addCaseIndices(CaseGraph.Builder caseGraph) {
         try (PreparedStatement selectStatement = SqlHelper.prepareTableSelectProjectionStatement(
                 connectionHandler.getConnection(),
                 getTableName(),
-                projection)) {
+                getCaseIndexMapProjection())) {
             try (ResultSet resultSet = selectStatement.executeQuery()) {
                 while (resultSet.next()) {
-                    int caseRecordId = resultSet.getInt(resultSet.findColumn(COL_CASE_RECORD_ID));
-                    String targetCase = resultSet.getString(resultSet.findColumn(COL_INDEX_TARGET));
-                    String relationship = resultSet.getString(COL_INDEX_RELATIONSHIP);
-                    Pair<String, String> index = new Pair<>(targetCase, relationship);
-
-                    Vector<Pair<String, String>> indexList;
-                    if (!caseIndexMap.containsKey(caseRecordId)) {
-                        indexList = new Vector<>();
-                    } else {
-                        indexList = caseIndexMap.get(caseRecordId);
+                    int node = caseGraph.getNodeForRecord(resultSet.getInt(1));
+                    if (node != -1) {
+                        caseGraph.addIndex(node, resultSet.getString(2), resultSet.getString(3));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the indices of the given cases as pairs of target case id and relationship, by record id
+     *
+     * @param recordIds record ids of the indexing cases
+     */
+    public HashMap<Integer, Vector<Pair<String, String>>> getCaseIndexMap(Collection<Integer> recordIds) {
+        HashMap<Integer, Vector<Pair<String, String>>> caseIndexMap = new HashMap<>();
+        try {
+            for (Pair<String, String[]> querySet : TableBuilder.sqlList(recordIds)) {
+                try (PreparedStatement selectStatement = SqlHelper.prepareTableSelectStatementProjection(
+                        connectionHandler.getConnection(),
+                        getTableName(),
+                        COL_CASE_RECORD_ID + " IN " + querySet.first,
+                        querySet.second,
+                        getCaseIndexMapProjection())) {
+                    readIntoCaseIndexMap(selectStatement, caseIndexMap);
+                }
+            }
+            return caseIndexMap;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String[] getCaseIndexMapProjection() {
+        return new String[]{COL_CASE_RECORD_ID, COL_INDEX_TARGET, COL_INDEX_RELATIONSHIP};
+    }
+
+    private static void readIntoCaseIndexMap(PreparedStatement selectStatement,
+            HashMap<Integer, Vector<Pair<String, String>>> caseIndexMap) throws SQLException {
+        try (ResultSet resultSet = selectStatement.executeQuery()) {
+            while (resultSet.next()) {
+                int caseRecordId = resultSet.getInt(resultSet.findColumn(COL_CASE_RECORD_ID));
+                String targetCase = resultSet.getString(resultSet.findColumn(COL_INDEX_TARGET));
+                String relationship = resultSet.getString(COL_INDEX_RELATIONSHIP);
+                Pair<String, String> index = new Pair<>(targetCase, relationship);
+
+                Vector<Pair<String, String>> indexList;
+                if (!caseIndexMap.containsKey(caseRecordId)) {
+                    indexList = new Vector<>();
+                } else {
+                    indexList = caseIndexMap.get(caseRecordId);
+                }
+                indexList.add(index);
+                caseIndexMap.put(caseRecordId, indexList);
+            }
+        }
+    }
+
+    /**
+     * Get the Case Record id's of cases with an index of any name targeting one of the given cases
+     *
+     * @param targetCaseIds ids of the targeted cases
+     */
+    public LinkedHashSet<Integer> getCasesIndexing(Collection<String> targetCaseIds) {
+        LinkedHashSet<Integer> ret = new LinkedHashSet<>();
+        try {
+            for (Pair<String, String[]> querySet : TableBuilder.sqlList(targetCaseIds)) {
+                try (PreparedStatement selectStatement = SqlHelper.prepareTableSelectStatement(
+                        connectionHandler.getConnection(),
+                        getTableName(),
+                        COL_INDEX_TARGET + " IN " + querySet.first,
+                        querySet.second)) {
+                    try (ResultSet resultSet = selectStatement.executeQuery()) {
+                        SqlStorage.fillIdWindow(resultSet, COL_CASE_RECORD_ID, ret);
                     }
-                    indexList.add(index);
-                    caseIndexMap.put(caseRecordId, indexList);
                 }
-                return caseIndexMap;
             }
+            return ret;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
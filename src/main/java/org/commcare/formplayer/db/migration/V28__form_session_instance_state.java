@@ -0,0 +1,15 @@
+package org.commcare.formplayer.db.migration;
+
+import java.util.Arrays;
+
+/**
+ * Binary form instance state, written in place of instancexml when
+ * formplayer.session.binary_state is enabled
+ */
+public class V28__form_session_instance_state extends BaseFormplayerMigration {
+    @Override
+    public Iterable<String> getSqlStatements() {
+        return Arrays.asList("ALTER TABLE formplayer_sessions " +
+                "ADD instance_state BYTEA");
+    }
+}
@@ -2,13 +2,14 @@ package org.commcare.formplayer.engine;
 
 import org.commcare.modern.reference.ArchiveFileReference;
 import org.commcare.modern.reference.ArchiveFileRoot;
+import org.commcare.modern.reference.SharedArchive;
 import org.javarosa.core.reference.InvalidReferenceException;
 import org.javarosa.core.reference.Reference;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.zip.ZipFile;
 
 /**
  * Created by willpride on 4/25/17.
@@ -21,11 +22,11 @@ public class FormplayerArchiveFileRoot extends ArchiveFileRoot {
     private int MAX_RECENT = 5;
 
     @Override
-    public String addArchiveFile(ZipFile zip, String appId) {
-        String mGUID = super.addArchiveFile(zip, appId);
+    public String addArchiveFile(File archive, String appId) throws IOException {
+        String mGUID = super.addArchiveFile(archive, appId);
         redisTemplate.opsForValue().set(
                 String.format("formplayer:archive:%s", mGUID),
-                zip.getName()
+                archive.getPath()
         );
         return mGUID;
     }
@@ -34,15 +35,24 @@ public class FormplayerArchiveFileRoot extends ArchiveFileRoot {
     @Override
     public Reference derive(String guidPath) throws InvalidReferenceException {
         String GUID = getGUID(guidPath);
-        if (guidToFolderMap.containsKey(GUID)) {
-            return new ArchiveFileReference(guidToFolderMap.get(GUID), GUID, getPath(guidPath));
+        SharedArchive archive = guidToArchiveMap.get(GUID);
+        if (archive != null) {
+            return new ArchiveFileReference(archive, GUID, getPath(guidPath));
         }
         try {
             String zipName = redisTemplate.opsForValue().get(String.format("formplayer:archive:%s", GUID));
             if (zipName == null) {
                 throw new InvalidReferenceException(String.format("No zip file saved for key %s.", guidPath), guidPath);
             }
-            return new ArchiveFileReference(new ZipFile(zipName), GUID, getPath(guidPath));
+            // registered by another node, or before this one restarted: open it once for all
+            // the requests on this node rather than once per reference
+            archive = SharedArchive.acquire(new File(zipName));
+            SharedArchive registered = guidToArchiveMap.putIfAbsent(GUID, archive);
+            if (registered != null) {
+                archive.release();
+                archive = registered;
+            }
+            return new ArchiveFileReference(archive, GUID, getPath(guidPath));
         } catch (IOException e) {
             throw new InvalidReferenceException(String.format("Error deriving reference with exception %s.", guidPath), guidPath);
         }
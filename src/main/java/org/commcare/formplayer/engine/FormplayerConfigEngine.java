@@ -21,6 +21,7 @@ import org.javarosa.xml.util.UnfullfilledRequirementsException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.springframework.cache.Cache;
 import org.springframework.http.HttpMethod;
 import org.springframework.util.StreamUtils;
 import org.springframework.web.client.HttpClientErrorException;
@@ -33,7 +34,9 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Objects;
-import java.util.zip.ZipFile;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nullable;
 
 import okhttp3.HttpUrl;
 
@@ -44,6 +47,12 @@ public class FormplayerConfigEngine extends CommCareConfigEngine {
 
     private final Log log = LogFactory.getLog(FormplayerConfigEngine.class);
     private RestTemplate restTemplate;
+    private Cache installedAppCache;
+    private String installedAppCacheKey;
+
+    // shared by all installs for fetching and parsing app resources ahead of installing them
+    private static volatile ExecutorService prefetchExecutor;
+    private static volatile int prefetchLookahead;
 
     public FormplayerConfigEngine(IStorageIndexedFactory storageFactory,
                                   FormplayerInstallerFactory formplayerInstallerFactory,
@@ -53,6 +62,18 @@ public class FormplayerConfigEngine extends CommCareConfigEngine {
         this.restTemplate = restTemplate;
         this.mArchiveRoot = formplayerArchiveFileRoot;
         ReferenceManager.instance().addReferenceFactory(formplayerArchiveFileRoot);
+        setPrefetchExecutor(prefetchExecutor, prefetchLookahead);
+    }
+
+    /**
+     * Sets the executor engines created from now on fetch and parse app resources on while
+     * installing, up to lookahead resources ahead of the one being installed
+     *
+     * @param executor null to fetch and parse resources on the installing thread
+     */
+    public static void setInstallPrefetchExecutor(@Nullable ExecutorService executor, int lookahead) {
+        prefetchLookahead = lookahead;
+        prefetchExecutor = executor;
     }
 
     private String parseAppId(String url) {
@@ -85,19 +106,36 @@ public class FormplayerConfigEngine extends CommCareConfigEngine {
         } else {
             fileName = archiveURL;
         }
-        ZipFile zip;
+        initFromLocalArchive(fileName, appId);
+    }
+
+    /**
+     * Installs from an already downloaded .ccz, registering it with the archive root under
+     * the given app id (or a random GUID if null)
+     */
+    public void initFromLocalArchive(String fileName, String appId) throws InstallCancelledException,
+            UnresolvedResourceException, UnfullfilledRequirementsException {
+        String archiveGUID;
         try {
-            zip = new ZipFile(fileName);
+            archiveGUID = this.mArchiveRoot.addArchiveFile(new File(fileName), appId);
         } catch (IOException e) {
-            log.error("File at " + archiveURL + ": is not a valid CommCare Package. Downloaded to: " + fileName, e);
+            log.error("File at " + fileName + ": is not a valid CommCare Package", e);
             return;
         }
-        String archiveGUID = this.mArchiveRoot.addArchiveFile(zip, appId);
         init("jr://archive/" + archiveGUID + "/profile.ccpr");
     }
 
     @Override
     protected String downloadToTemp(String resource) {
+        return downloadArchive(restTemplate, resource);
+    }
+
+    /**
+     * Downloads a .ccz from HQ into a temp file without touching any application storage
+     *
+     * @return the absolute path of the downloaded file
+     */
+    public static String downloadArchive(RestTemplate restTemplate, String resource) {
         File file = null;
         try {
             file = restTemplate.execute(resource, HttpMethod.GET, null, clientHttpResponse -> {
@@ -129,7 +167,7 @@ public class FormplayerConfigEngine extends CommCareConfigEngine {
         return Objects.requireNonNull(file).getAbsolutePath();
     }
 
-    private String parseErrorFromResponse(String responseBody) {
+    private static String parseErrorFromResponse(String responseBody) {
         try {
             JSONObject errorJson = new JSONObject(responseBody);
             if (errorJson.has("errors")) {
@@ -147,7 +185,7 @@ public class FormplayerConfigEngine extends CommCareConfigEngine {
         return null;
     }
 
-    private void handleInstallError(String responseBody) {
+    private static void handleInstallError(String responseBody) {
         JSONObject errorJson = new JSONObject(responseBody);
         if (errorJson.has("error_html")) {
             throw new FormattedApplicationConfigException(errorJson.getString("error_html"));
@@ -162,9 +200,38 @@ public class FormplayerConfigEngine extends CommCareConfigEngine {
         ReferenceManager.instance().addReferenceFactory(new ClasspathFileRoot());
     }
 
+    /**
+     * Lets {@link #initEnvironment()} reuse the resources another request already initialized
+     * for the same install instead of reading them back out of the resource table.
+     *
+     * @param cacheKey identifies the install's current contents, null to bypass the cache
+     */
+    public void useInstalledAppCache(Cache cache, String cacheKey) {
+        this.installedAppCache = cache;
+        this.installedAppCacheKey = cacheKey;
+    }
+
     @Override
-    public void initEnvironment() throws ResourceInitializationException {
-        super.initEnvironment();
+    protected void initializeResources() throws ResourceInitializationException {
+        if (installedAppCache == null || installedAppCacheKey == null) {
+            initializeAppResources();
+            return;
+        }
+        InstalledApp installedApp = installedAppCache.get(installedAppCacheKey, InstalledApp.class);
+        if (installedApp != null) {
+            installedApp.applyTo(getPlatform());
+            return;
+        }
+        initializeAppResources();
+        installedAppCache.put(installedAppCacheKey, InstalledApp.capture(getPlatform()));
+    }
+
+    /**
+     * Initializes the app's resources along with Formplayer's own strings, so that both end up in
+     * the locale tables shared through the installed app cache
+     */
+    private void initializeAppResources() throws ResourceInitializationException {
+        super.initializeResources();
         Localization.registerLanguageReference("default",
                 "jr://springfile/formplayer_translatable_strings.txt");
     }
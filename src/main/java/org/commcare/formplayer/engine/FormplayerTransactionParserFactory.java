@@ -5,9 +5,12 @@ import org.commcare.formplayer.sandbox.UserSqlSandbox;
 import org.commcare.core.parse.CommCareTransactionParserFactory;
 import org.commcare.data.xml.TransactionParser;
 import org.commcare.data.xml.TransactionParserFactory;
+import org.commcare.xml.LedgerXmlParsers;
+import org.javarosa.core.log.WrappedException;
 import org.kxml2.io.KXmlParser;
 import org.commcare.formplayer.parsers.FormplayerCaseXmlParser;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Hashtable;
 
@@ -20,6 +23,7 @@ public class FormplayerTransactionParserFactory extends CommCareTransactionParse
 
     private TransactionParserFactory formInstanceParser;
     private boolean caseIndexesWereDisrupted = false;
+    private final RestoreWriteStage writeStage;
 
     /**
      * A mapping from an installed form's namespace its install path.
@@ -27,7 +31,17 @@ public class FormplayerTransactionParserFactory extends CommCareTransactionParse
     private Hashtable<String, String> formInstanceNamespaces;
 
     public FormplayerTransactionParserFactory(UserSqlSandbox sandbox, boolean useBulkProcessing) {
+        this(sandbox, useBulkProcessing, null);
+    }
+
+    /**
+     * @param writeStage if non-null, bulk case writes are performed on this stage while parsing
+     *                   continues. Any other transaction waits for outstanding case writes first.
+     */
+    public FormplayerTransactionParserFactory(UserSqlSandbox sandbox, boolean useBulkProcessing,
+            RestoreWriteStage writeStage) {
         super(sandbox, useBulkProcessing);
+        this.writeStage = writeStage;
     }
 
     public UserSqlSandbox getSqlSandbox() {
@@ -41,9 +55,24 @@ public class FormplayerTransactionParserFactory extends CommCareTransactionParse
             req();
             return formInstanceParser.getParser(parser);
         }
+        // setting up any other parser can touch storage, so the in-flight case batch has to be
+        // written first
+        if (writeStage != null && !isBulkCaseElement(parser)) {
+            try {
+                writeStage.awaitIdle();
+            } catch (IOException e) {
+                throw new WrappedException(e);
+            }
+        }
         return super.getParser(parser);
     }
 
+    private boolean isBulkCaseElement(KXmlParser parser) {
+        return isBulkProcessingEnabled
+                && "case".equalsIgnoreCase(parser.getName())
+                && !LedgerXmlParsers.STOCK_XML_NAMESPACE.equals(parser.getNamespace());
+    }
+
     @Override
     public void initCaseParser() {
         if (isBulkProcessingEnabled) {
@@ -88,7 +117,7 @@ public class FormplayerTransactionParserFactory extends CommCareTransactionParse
             @Override
             public FormplayerBulkCaseXmlParser getParser(KXmlParser parser) {
                 if (created == null) {
-                    created = new FormplayerBulkCaseXmlParser(parser, (UserSqlSandbox)sandbox) {
+                    created = new FormplayerBulkCaseXmlParser(parser, (UserSqlSandbox)sandbox, writeStage) {
 
                         @Override
                         public void onIndexDisrupted(String caseId) {
@@ -0,0 +1,61 @@
+package org.commcare.formplayer.engine;
+
+import org.commcare.suite.model.OfflineUserRestore;
+import org.commcare.suite.model.Profile;
+import org.commcare.suite.model.Suite;
+import org.commcare.util.CommCarePlatform;
+import org.javarosa.core.services.locale.LocaleTables;
+import org.javarosa.core.services.locale.Localization;
+
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Snapshot of the resources an app install registers when its environment is initialized: the
+ * profile, the suites, the demo user restore and the locale text.
+ *
+ * Snapshots are shared between every request (and so every thread) using the same install and
+ * must be treated as read only. Each request still gets its own CommCarePlatform bound to its own
+ * storage and its own localizer; only the deserialized app objects and the locale text tables are
+ * shared.
+ */
+public class InstalledApp {
+
+    private final Profile profile;
+    private final List<Suite> suites;
+    private final OfflineUserRestore demoUserRestore;
+    private final LocaleTables localeTables;
+
+    private InstalledApp(Profile profile, List<Suite> suites, OfflineUserRestore demoUserRestore,
+            LocaleTables localeTables) {
+        this.profile = profile;
+        this.suites = suites;
+        this.demoUserRestore = demoUserRestore;
+        this.localeTables = localeTables;
+    }
+
+    /**
+     * Captures the state of a platform and of the global localizer directly after the resource
+     * table has been initialized into them.
+     */
+    public static InstalledApp capture(CommCarePlatform platform) {
+        return new InstalledApp(platform.getCurrentProfile(), new Vector<>(platform.getInstalledSuites()),
+                platform.getDemoUserRestore(), LocaleTables.capture(Localization.getGlobalLocalizerAdvanced()));
+    }
+
+    /**
+     * Registers the captured resources with a freshly constructed platform and points the (already
+     * reset) global localizer at the shared locale tables, in place of initializing them from the
+     * resource table.
+     */
+    public void applyTo(CommCarePlatform platform) {
+        platform.setProfile(profile);
+        for (Suite suite : suites) {
+            platform.registerSuite(suite);
+        }
+        if (demoUserRestore != null) {
+            platform.registerDemoUserRestore(demoUserRestore);
+        }
+        Localization.getGlobalLocalizerAdvanced().useSharedTables(localeTables);
+    }
+}
@@ -0,0 +1,107 @@
+package org.commcare.formplayer.engine;
+
+import org.commcare.formplayer.utils.CheckedRunnable;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single writer thread used by a pipelined restore to write parsed model batches into the user's
+ * SQLite database while the parser moves on to the next batch.
+ *
+ * At most one batch is in flight at a time. Callers must invoke {@link #awaitIdle()} before
+ * touching the user database from the parsing thread so that the connection is never used by
+ * both threads at once.
+ */
+public class RestoreWriteStage implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final AtomicLong busyNanos = new AtomicLong();
+    private long waitNanos = 0;
+    private Future<?> pending;
+
+    public RestoreWriteStage() {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "restore-write-stage");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Hands a batch off to the writer thread, first waiting for any previous batch to complete
+     */
+    public void submit(CheckedRunnable<?> batch) throws IOException {
+        awaitIdle();
+        pending = executor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                batch.run();
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Blocks until the in-flight batch (if any) has been written, rethrowing any failure it raised
+     */
+    public void awaitIdle() throws IOException {
+        if (pending == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for restore writes", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            pending = null;
+            waitNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return time the writer thread spent writing batches
+     */
+    public long getBusyTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(busyNanos.get());
+    }
+
+    /**
+     * @return time the parsing thread spent blocked waiting on the writer thread
+     */
+    public long getWaitTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+    }
+
+    /**
+     * Waits for any in-flight batch without rethrowing its failure and stops the writer thread.
+     * Failures are expected to have been surfaced by an earlier call to {@link #awaitIdle()}.
+     */
+    @Override
+    public void close() {
+        try {
+            awaitIdle();
+        } catch (Exception e) {
+            // already surfaced to the parser, or the restore is being abandoned
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -28,7 +28,8 @@ import java.util.Vector;
  * ResourceInstaller for locale files that always persists the locale data in
  * the SQLite DB.
  */
-public class FormplayerLocaleInstaller extends SimpleInstaller {
+public class FormplayerLocaleInstaller extends SimpleInstaller
+        implements PrefetchableInstaller<Hashtable<String, String>> {
 
     private String locale;
 
@@ -55,16 +56,29 @@ public class FormplayerLocaleInstaller extends SimpleInstaller {
     @Override
     public boolean install(Resource r, ResourceLocation location, Reference ref, ResourceTable table, CommCarePlatform platform, boolean upgrade, ResourceInstallContext resourceInstallContext) throws UnresolvedResourceException {
         try {
-            try (InputStream incoming = ref.getStream()) {
-                localizedValues = LocalizationUtils.parseLocaleInput(incoming);
-                table.commit(r, upgrade ? Resource.RESOURCE_STATUS_UPGRADE : Resource.RESOURCE_STATUS_INSTALLED);
+            Hashtable<String, String> prefetched = resourceInstallContext == null ? null :
+                    resourceInstallContext.takePrefetchedResource(r, ref);
+            if (prefetched != null) {
+                localizedValues = prefetched;
+            } else {
+                try (InputStream incoming = ref.getStream()) {
+                    localizedValues = LocalizationUtils.parseLocaleInput(incoming);
+                }
             }
+            table.commit(r, upgrade ? Resource.RESOURCE_STATUS_UPGRADE : Resource.RESOURCE_STATUS_INSTALLED);
             return true;
         } catch (IOException e) {
             throw new UnreliableSourceException(r, e.getMessage());
         }
     }
 
+    @Override
+    public Hashtable<String, String> prefetch(Reference ref) throws IOException {
+        try (InputStream incoming = ref.getStream()) {
+            return LocalizationUtils.parseLocaleInput(incoming);
+        }
+    }
+
     @Override
     public boolean verifyInstallation(Resource r, Vector<MissingMediaException> problemList, CommCarePlatform platform) {
         return true;
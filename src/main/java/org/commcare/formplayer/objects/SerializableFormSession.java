@@ -61,6 +61,19 @@ public class SerializableFormSession implements Serializable {
     @Column(name = "instancexml")
     private String instanceXml;
 
+    /**
+     * Compressed binary form of the instance, stored in place of instanceXml when binary session
+     * state is enabled so that the next request can load it without parsing XML
+     */
+    @Setter
+    @Column(name = "instance_state")
+    private byte[] instanceState;
+
+    // XML rendered for the response of the request that wrote instanceState, never persisted
+    @Setter
+    @Transient
+    private transient String renderedInstanceXml;
+
     @Setter
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "form_definition_id")
@@ -125,6 +138,10 @@ public class SerializableFormSession implements Serializable {
         this.currentIndex = "0";
     }
 
+    public String getInstanceXml() {
+        return instanceXml != null ? instanceXml : renderedInstanceXml;
+    }
+
     public void setSubmitStatus(SubmitStatus submitStatus) {
         this.submitStatus = submitStatus.name();
     }
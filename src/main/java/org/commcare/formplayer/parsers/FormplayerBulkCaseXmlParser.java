@@ -1,8 +1,10 @@
 package org.commcare.formplayer.parsers;
 
 import org.commcare.cases.model.Case;
+import org.commcare.formplayer.database.models.CasePurgeFrontier;
 import org.commcare.formplayer.database.models.EntityStorageCache;
 import org.commcare.formplayer.database.models.FormplayerCaseIndexTable;
+import org.commcare.formplayer.engine.RestoreWriteStage;
 import org.commcare.formplayer.sandbox.SqlStorage;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
 import org.commcare.xml.bulk.BulkProcessingCaseXmlParser;
@@ -12,6 +14,7 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -25,14 +28,28 @@ import java.util.Set;
 public class FormplayerBulkCaseXmlParser extends BulkProcessingCaseXmlParser {
     private final EntityStorageCache mEntityCache;
     private final FormplayerCaseIndexTable mCaseIndexTable;
+    private final CasePurgeFrontier mPurgeFrontier;
     private final SqlStorage<Case> storage;
+    private final RestoreWriteStage writeStage;
 
     public FormplayerBulkCaseXmlParser(KXmlParser parser,
             UserSqlSandbox sandbox) {
+        this(parser, sandbox, null);
+    }
+
+    /**
+     * @param writeStage if non-null, bulk writes are handed off to this stage so that the next
+     *                   batch can be parsed while the current one is written
+     */
+    public FormplayerBulkCaseXmlParser(KXmlParser parser,
+            UserSqlSandbox sandbox,
+            RestoreWriteStage writeStage) {
         super(parser);
-        mEntityCache = new EntityStorageCache("entitycase", sandbox);
+        mEntityCache = new EntityStorageCache(EntityStorageCache.CASE_CACHE_NAME, sandbox);
         mCaseIndexTable = new FormplayerCaseIndexTable(sandbox);
+        mPurgeFrontier = new CasePurgeFrontier(sandbox);
         this.storage = sandbox.getCaseStorage();
+        this.writeStage = writeStage;
     }
 
     @Override
@@ -43,6 +60,10 @@ public class FormplayerBulkCaseXmlParser extends BulkProcessingCaseXmlParser {
     @Override
     protected void performBulkRead(Set<String> currentBulkReadSet, Map<String, Case> currentOperatingSet)
             throws InvalidStructureException, IOException, XmlPullParserException {
+        if (writeStage != null) {
+            // the previous batch may still be writing cases that this read needs to see
+            writeStage.awaitIdle();
+        }
         for (Case c : storage.getBulkRecordsForIndex(Case.INDEX_CASE_ID, currentBulkReadSet)) {
             currentOperatingSet.put(c.getCaseId(), c);
         }
@@ -50,18 +71,26 @@ public class FormplayerBulkCaseXmlParser extends BulkProcessingCaseXmlParser {
 
     @Override
     protected void performBulkWrite(LinkedHashMap<String, Case> writeLog) throws IOException {
+        if (writeStage == null) {
+            writeCases(writeLog);
+        } else {
+            // the write log is cleared as soon as we return, so hand the stage its own copy
+            LinkedHashMap<String, Case> batch = new LinkedHashMap<>(writeLog);
+            writeStage.submit(() -> writeCases(batch));
+        }
+    }
+
+    private void writeCases(LinkedHashMap<String, Case> writeLog) {
+        Collection<Case> cases = writeLog.values();
+        storage.writeAll(cases);
         ArrayList<Integer> recordIdsToWipe = new ArrayList<>();
-        for (String caseId : writeLog.keySet()) {
-            Case c = writeLog.get(caseId);
-            storage.write(c);
+        for (Case c : cases) {
             // Add the case's SQL record ID
             recordIdsToWipe.add(c.getID());
         }
         mEntityCache.invalidateCaches(recordIdsToWipe);
+        mPurgeFrontier.addCases(cases, mCaseIndexTable);
         mCaseIndexTable.clearCaseIndices(recordIdsToWipe);
-        for (String cid : writeLog.keySet()) {
-            Case c = writeLog.get(cid);
-            mCaseIndexTable.indexCase(c);
-        }
+        mCaseIndexTable.indexCases(cases);
     }
 }
@@ -1,6 +1,7 @@
 package org.commcare.formplayer.parsers;
 
 import org.commcare.cases.model.Case;
+import org.commcare.formplayer.database.models.CasePurgeFrontier;
 import org.commcare.formplayer.database.models.EntityStorageCache;
 import org.commcare.formplayer.database.models.FormplayerCaseIndexTable;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
@@ -8,6 +9,7 @@ import org.commcare.xml.CaseXmlParser;
 import org.kxml2.io.KXmlParser;
 
 import java.io.IOException;
+import java.util.Collections;
 
 /**
  * Created by willpride on 3/6/17.
@@ -15,12 +17,14 @@ import java.io.IOException;
 public class FormplayerCaseXmlParser extends CaseXmlParser {
     private final EntityStorageCache mEntityCache;
     private final FormplayerCaseIndexTable mCaseIndexTable;
+    private final CasePurgeFrontier mPurgeFrontier;
 
     public FormplayerCaseXmlParser(KXmlParser parser, boolean acceptCreateOverwrites,
             UserSqlSandbox sandbox) {
         super(parser, acceptCreateOverwrites, sandbox.getCaseStorage());
-        mEntityCache = new EntityStorageCache("entitycase", sandbox);
+        mEntityCache = new EntityStorageCache(EntityStorageCache.CASE_CACHE_NAME, sandbox);
         mCaseIndexTable = new FormplayerCaseIndexTable(sandbox);
+        mPurgeFrontier = new CasePurgeFrontier(sandbox);
     }
 
 
@@ -28,6 +32,7 @@ public class FormplayerCaseXmlParser extends CaseXmlParser {
     public void commit(Case parsed) throws IOException {
         super.commit(parsed);
         mEntityCache.invalidateCache(String.valueOf(parsed.getID()));
+        mPurgeFrontier.addCases(Collections.singletonList(parsed), mCaseIndexTable);
         mCaseIndexTable.clearCaseIndices(parsed);
         mCaseIndexTable.indexCase(parsed);
     }
@@ -1,8 +1,16 @@
 package org.commcare.formplayer.sandbox;
 
+import org.commcare.cases.query.IndexedDisjunctionLookup;
+import org.commcare.cases.query.IndexedSetMemberLookup;
+import org.commcare.cases.query.IndexedValueLookup;
+import org.commcare.cases.query.IndexedValuePrefixLookup;
+import org.commcare.cases.query.IndexedValueRangeLookup;
+import org.commcare.cases.query.NegativeIndexedValueLookup;
+import org.commcare.cases.query.PredicateProfile;
 import org.commcare.formplayer.exceptions.SQLiteRuntimeException;
 import org.commcare.modern.database.DatabaseHelper;
 import org.commcare.modern.database.DatabaseIndexingUtils;
+import org.commcare.modern.database.TableBuilder;
 import org.commcare.modern.util.Pair;
 import org.javarosa.core.services.Logger;
 import org.javarosa.core.services.storage.Persistable;
@@ -17,7 +25,9 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -277,6 +287,23 @@ public class SqlHelper {
         }
     }
 
+    public static PreparedStatement prepareTableSelectStatement(Connection c,
+            String storageKey,
+            String where,
+            List<Object> values) {
+        try {
+            String queryString =
+                    "SELECT * FROM " + storageKey + " WHERE " + where + ";";
+            PreparedStatement preparedStatement = c.prepareStatement(queryString);
+            for (int i = 0; i < values.size(); i++) {
+                setArgumentToSqlStatement(preparedStatement, values.get(i), i + 1);
+            }
+            return preparedStatement;
+        } catch (SQLException e) {
+            throw new SQLiteRuntimeException(e);
+        }
+    }
+
     /**
      * @throws IllegalArgumentException when one or more of the fields we're selecting on
      *                                  is not a valid key to select on for this object
@@ -302,6 +329,91 @@ public class SqlHelper {
         }
     }
 
+    /**
+     * Builds a where clause matching the rows for which every one of the provided predicate
+     * profiles holds. Range lookups are matched using {@link XPathNumericFunction}, which must be
+     * registered with the connection the clause is run against.
+     *
+     * @throws IllegalArgumentException when one of the profiles can't be expressed in the clause
+     */
+    public static Pair<String, List<Object>> createProfileWhere(List<PredicateProfile> profiles) {
+        StringBuilder where = new StringBuilder();
+        List<Object> arguments = new ArrayList<>();
+        for (PredicateProfile profile : profiles) {
+            if (where.length() > 0) {
+                where.append(" AND ");
+            }
+            appendProfileWhere(where, arguments, profile);
+        }
+        return new Pair<>(where.toString(), arguments);
+    }
+
+    private static void appendProfileWhere(StringBuilder where, List<Object> arguments,
+            PredicateProfile profile) {
+        if (profile instanceof IndexedDisjunctionLookup) {
+            PredicateProfile[] branches = ((IndexedDisjunctionLookup)profile).branches;
+            where.append("(");
+            for (int i = 0; i < branches.length; i++) {
+                if (i > 0) {
+                    where.append(" OR ");
+                }
+                appendProfileWhere(where, arguments, branches[i]);
+            }
+            where.append(")");
+            return;
+        }
+
+        String columnName = TableBuilder.scrubName(profile.getKey());
+        if (profile instanceof IndexedValueLookup) {
+            where.append(columnName).append("=?");
+            arguments.add(getStringLookupValue(((IndexedValueLookup)profile).value));
+        } else if (profile instanceof NegativeIndexedValueLookup) {
+            where.append(columnName).append("!=?");
+            arguments.add(getStringLookupValue(((NegativeIndexedValueLookup)profile).value));
+        } else if (profile instanceof IndexedSetMemberLookup) {
+            String[] valueSet = ((IndexedSetMemberLookup)profile).valueSet;
+            where.append(columnName).append(" IN (");
+            for (int i = 0; i < valueSet.length; i++) {
+                where.append(i == 0 ? "?" : ", ?");
+                arguments.add(valueSet[i]);
+            }
+            where.append(")");
+        } else if (profile instanceof IndexedValuePrefixLookup) {
+            // a range rather than LIKE so that the column's index can be used
+            IndexedValuePrefixLookup prefixLookup = (IndexedValuePrefixLookup)profile;
+            String upperBound = prefixLookup.getUpperBound();
+            if (upperBound == null) {
+                throw new IllegalArgumentException("Unable to match prefix " + prefixLookup.prefix);
+            }
+            where.append("(").append(columnName).append(">=? AND ").append(columnName).append("<?)");
+            arguments.add(prefixLookup.prefix);
+            arguments.add(upperBound);
+        } else if (profile instanceof IndexedValueRangeLookup) {
+            IndexedValueRangeLookup rangeLookup = (IndexedValueRangeLookup)profile;
+            if (Double.isNaN(rangeLookup.value)) {
+                // nothing compares to NaN
+                where.append("0");
+            } else {
+                where.append(XPathNumericFunction.NAME).append("(").append(columnName).append(")")
+                        .append(rangeLookup.getOperator()).append("?");
+                arguments.add(rangeLookup.value);
+            }
+        } else {
+            throw new IllegalArgumentException("Unable to match predicate profile " + profile);
+        }
+    }
+
+    /**
+     * Values are compared as strings, which only matches XPath equality when the value being
+     * looked up is itself a string
+     */
+    private static String getStringLookupValue(Object value) {
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Unable to match non string value " + value);
+        }
+        return (String)value;
+    }
+
     private static void performInsert(Connection c,
             Pair<List<Object>, String> valsAndInsertStatement) {
         try (PreparedStatement preparedStatement = c.prepareStatement(valsAndInsertStatement.second)) {
@@ -410,6 +522,8 @@ public class SqlHelper {
             preparedStatement.setInt(index, (Integer)arg);
         } else if (arg instanceof Long) {
             preparedStatement.setLong(index, (Long)arg);
+        } else if (arg instanceof Double) {
+            preparedStatement.setDouble(index, (Double)arg);
         } else if (arg instanceof byte[]) {
             preparedStatement.setBinaryStream(index, new ByteArrayInputStream((byte[])arg), ((byte[])arg).length);
         } else if (arg == null) {
@@ -444,6 +558,150 @@ public class SqlHelper {
         }
     }
 
+    /**
+     * Writes every persistable to the table, inserting those without an id and updating the rest.
+     *
+     * Ids for new records are allocated up front from the table's current maximum id, which is
+     * what SQLite itself would assign to the INTEGER PRIMARY KEY column, so no per-row generated
+     * key lookup is needed. This relies on the caller being the only writer to the table.
+     *
+     * @param c             Database Connection
+     * @param storageKey    name of table
+     * @param persistables  records to write. New records have their ids set.
+     */
+    public static void writeAllToTable(Connection c, String storageKey,
+            Collection<? extends Persistable> persistables) {
+        List<Pair<String, Object[]>> rows = new ArrayList<>(persistables.size());
+        List<Persistable> inserted = new ArrayList<>();
+        TableBuilder insertBuilder = null;
+        int nextId = -1;
+        for (Persistable p : persistables) {
+            if (p.getID() != -1) {
+                rows.add(buildUpdateStatement(storageKey, p, p.getID()));
+                continue;
+            }
+            if (insertBuilder == null) {
+                insertBuilder = new TableBuilder(storageKey);
+                insertBuilder.addData(p);
+                nextId = getMaxId(c, storageKey) + 1;
+            }
+            p.setID(nextId++);
+            inserted.add(p);
+            Pair<String, List<Object>> insertData = insertBuilder.getTableInsertData(p);
+            Object[] args = insertData.second.toArray();
+            // the id column is always the first column of a TableBuilder insert
+            args[0] = p.getID();
+            rows.add(Pair.create(insertData.first, args));
+        }
+
+        try {
+            executeBatched(c, rows);
+        } catch (SQLiteRuntimeException e) {
+            for (Persistable p : inserted) {
+                p.setID(-1);
+            }
+            throw e;
+        }
+    }
+
+    private static int getMaxId(Connection c, String storageKey) {
+        String query = "SELECT MAX(" + DatabaseHelper.ID_COL + ") FROM " + storageKey + ";";
+        try (PreparedStatement preparedStatement = c.prepareStatement(query)) {
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                // MAX over an empty table is NULL, which reads as 0
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new SQLiteRuntimeException(e);
+        }
+    }
+
+    /**
+     * Executes a parameterised statement for each row, preparing each distinct statement only once
+     * and sending its rows through a single JDBC batch.
+     *
+     * Rows sharing a statement run in the order given, but statements are executed one after
+     * another, so callers must not depend on ordering between different statements.
+     *
+     * @param statementsAndArgs the SQL for each row paired with the arguments for its placeholders
+     */
+    public static void executeBatched(Connection c, List<Pair<String, Object[]>> statementsAndArgs) {
+        Map<String, PreparedStatement> prepared = new LinkedHashMap<>();
+        try {
+            for (Pair<String, Object[]> row : statementsAndArgs) {
+                PreparedStatement preparedStatement = prepared.get(row.first);
+                if (preparedStatement == null) {
+                    preparedStatement = c.prepareStatement(row.first);
+                    prepared.put(row.first, preparedStatement);
+                }
+                for (int i = 0; i < row.second.length; i++) {
+                    setArgumentToSqlStatement(preparedStatement, row.second[i], i + 1);
+                }
+                preparedStatement.addBatch();
+            }
+            for (PreparedStatement preparedStatement : prepared.values()) {
+                preparedStatement.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new SQLiteRuntimeException(e);
+        } finally {
+            for (PreparedStatement preparedStatement : prepared.values()) {
+                try {
+                    preparedStatement.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts each set of content values, batching rows that share the same set of columns
+     */
+    public static void basicInsertAll(Connection c, String storageKey,
+            List<? extends Map<String, Object>> contentValuesList) {
+        List<Pair<String, Object[]>> rows = new ArrayList<>(contentValuesList.size());
+        for (Map<String, Object> contentVals : contentValuesList) {
+            Pair<List<Object>, String> valsAndInsertStatement =
+                    buildInsertStatement(storageKey, contentVals);
+            rows.add(Pair.create(valsAndInsertStatement.second, valsAndInsertStatement.first.toArray()));
+        }
+        executeBatched(c, rows);
+    }
+
+    /**
+     * Deletes rows matching each where clause, batching clauses that share the same shape
+     *
+     * @param whereClauses where clause strings paired with their arguments
+     */
+    public static void deleteFromTableWhereAll(Connection connection, String tableName,
+            List<Pair<String, String[]>> whereClauses) {
+        List<Pair<String, Object[]>> rows = new ArrayList<>(whereClauses.size());
+        for (Pair<String, String[]> where : whereClauses) {
+            rows.add(Pair.create("DELETE FROM " + tableName + " WHERE " + where.first + ";",
+                    (Object[])where.second));
+        }
+        executeBatched(connection, rows);
+    }
+
+    private static Pair<String, Object[]> buildUpdateStatement(String tableName, Persistable persistable,
+            int id) {
+        HashMap<String, Object> map = DatabaseHelper.getMetaFieldsAndValues(persistable);
+        StringBuilder stringBuilder = new StringBuilder("UPDATE " + tableName + " SET "
+                + DatabaseHelper.DATA_COL + " = ? ");
+        Object[] args = new Object[map.size() + 2];
+        // reuse the blob already serialized for the metadata values
+        args[0] = map.get(DatabaseHelper.DATA_COL);
+        int i = 1;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            stringBuilder.append(", ").append(entry.getKey()).append(" = ?");
+            args[i++] = entry.getValue();
+        }
+        args[i] = id;
+        stringBuilder.append(" WHERE " + DatabaseHelper.ID_COL + " = ?;");
+        return Pair.create(stringBuilder.toString(), args);
+    }
+
     /**
      * Update entry under id with persistable p
      *
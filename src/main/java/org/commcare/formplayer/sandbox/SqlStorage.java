@@ -1,5 +1,7 @@
 package org.commcare.formplayer.sandbox;
 
+import org.commcare.cases.query.PredicateProfile;
+import org.commcare.cases.query.PredicateProfileStorage;
 import org.commcare.formplayer.exceptions.SQLiteRuntimeException;
 import org.commcare.formplayer.services.ConnectionHandler;
 import org.commcare.modern.database.DatabaseHelper;
@@ -23,6 +25,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -31,6 +34,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
 
 /**
  * IStorageIndexedUtility implemented on SQLite using JDBC. Contains all the functionality
@@ -39,7 +47,13 @@ import java.util.Vector;
  * @author wspride
  */
 public class SqlStorage<T extends Persistable>
-        implements IStorageUtilityIndexed<T>, Iterable<T> {
+        implements IStorageUtilityIndexed<T>, PredicateProfileStorage, Iterable<T> {
+
+    // records per task when deserializing a bulk read in parallel
+    private static final int DESERIALIZATION_BATCH_SIZE = 250;
+
+    @Nullable
+    private static volatile ExecutorService deserializationExecutor;
 
     private Class<T> prototype;
     private final String tableName;
@@ -120,6 +134,17 @@ public class SqlStorage<T extends Persistable>
         p.setID(id);
     }
 
+    /**
+     * Writes all records in as few statements as possible, inserting new records and updating
+     * existing ones. New records have their ids set, as with {@link #write(Persistable)}.
+     */
+    public void writeAll(Collection<? extends Persistable> persistables) {
+        if (persistables.isEmpty()) {
+            return;
+        }
+        SqlHelper.writeAllToTable(getConnection(), tableName, persistables);
+    }
+
     @Override
     public T read(int id) {
         return newObject(readBytes(id), id);
@@ -185,6 +210,23 @@ public class SqlStorage<T extends Persistable>
         }
     }
 
+    @Override
+    public void getIDsForProfiles(List<PredicateProfile> profiles, LinkedHashSet<Integer> returnSet) {
+        Pair<String, List<Object>> where = SqlHelper.createProfileWhere(profiles);
+        Connection connection = this.getConnection();
+        try {
+            XPathNumericFunction.register(connection);
+            try (PreparedStatement preparedStatement = SqlHelper.prepareTableSelectStatement(connection,
+                    this.tableName, where.first, where.second)) {
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    fillIdWindow(resultSet, DatabaseHelper.ID_COL, returnSet);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLiteRuntimeException(e);
+        }
+    }
+
     @Override
     public T getRecordForValue(String fieldName, Object value)
             throws NoSuchElementException, InvalidIndexException {
@@ -485,6 +527,11 @@ public class SqlStorage<T extends Persistable>
 
     public void bulkRead(LinkedHashSet<Integer> cuedCases, HashMap<Integer, T> recordMap)
             throws RequestAbandonedException {
+        ExecutorService executor = deserializationExecutor;
+        if (executor != null && cuedCases.size() > DESERIALIZATION_BATCH_SIZE) {
+            bulkReadInParallel(cuedCases, recordMap, executor);
+            return;
+        }
         List<Pair<String, String[]>> whereParamList = TableBuilder.sqlList(cuedCases);
         Connection connection = this.getConnection();
         try {
@@ -512,6 +559,85 @@ public class SqlStorage<T extends Persistable>
         }
     }
 
+    /**
+     * Reads the records' bytes on this thread, since the connection can't be shared, and hands
+     * them to the executor in batches to be deserialized while the rest are still being read
+     */
+    private void bulkReadInParallel(LinkedHashSet<Integer> cuedCases, HashMap<Integer, T> recordMap,
+            ExecutorService executor) throws RequestAbandonedException {
+        List<Future<List<T>>> batches = new ArrayList<>();
+        Connection connection = this.getConnection();
+        try {
+            for (Pair<String, String[]> querySet : TableBuilder.sqlList(cuedCases)) {
+                try (PreparedStatement preparedStatement =
+                             SqlHelper.prepareTableSelectStatement(connection,
+                                     this.tableName, DatabaseHelper.ID_COL + " IN " + querySet.first,
+                                     querySet.second)) {
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        int index = resultSet.findColumn(DatabaseHelper.DATA_COL);
+                        List<Integer> ids = new ArrayList<>(DESERIALIZATION_BATCH_SIZE);
+                        List<byte[]> blobs = new ArrayList<>(DESERIALIZATION_BATCH_SIZE);
+                        while (resultSet.next()) {
+                            if (Thread.interrupted()) {
+                                throw new RequestAbandonedException();
+                            }
+                            ids.add(resultSet.getInt(DatabaseHelper.ID_COL));
+                            blobs.add(resultSet.getBytes(index));
+                            if (ids.size() == DESERIALIZATION_BATCH_SIZE) {
+                                batches.add(submitDeserialization(executor, ids, blobs));
+                                ids = new ArrayList<>(DESERIALIZATION_BATCH_SIZE);
+                                blobs = new ArrayList<>(DESERIALIZATION_BATCH_SIZE);
+                            }
+                        }
+                        if (!ids.isEmpty()) {
+                            batches.add(submitDeserialization(executor, ids, blobs));
+                        }
+                    }
+                }
+            }
+            for (Future<List<T>> batch : batches) {
+                for (T record : batch.get()) {
+                    recordMap.put(record.getID(), record);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLiteRuntimeException(e);
+        } catch (InterruptedException e) {
+            throw new RequestAbandonedException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // no-op for the batches already done, stops the rest if we're bailing out
+            for (Future<List<T>> batch : batches) {
+                batch.cancel(false);
+            }
+        }
+    }
+
+    private Future<List<T>> submitDeserialization(ExecutorService executor, List<Integer> ids,
+            List<byte[]> blobs) {
+        return executor.submit(() -> {
+            List<T> records = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                records.add(newObject(blobs.get(i), ids.get(i)));
+            }
+            return records;
+        });
+    }
+
+    /**
+     * Deserialize the records read by large bulk reads on the given executor, shared by all
+     * storage, rather than on the reading thread
+     *
+     * @param executor the executor to use, or null to deserialize on the reading thread
+     */
+    public static void setDeserializationExecutor(@Nullable ExecutorService executor) {
+        deserializationExecutor = executor;
+    }
+
     @Override
     public String[] getMetaDataForRecord(int recordId, String[] metaFieldNames) {
         String recordIdString = String.valueOf(recordId);
@@ -552,7 +678,22 @@ public class SqlStorage<T extends Persistable>
     @Override
     public void bulkReadMetadata(LinkedHashSet<Integer> recordIds, String[] metaFieldNames,
             HashMap<Integer, String[]> metadataMap) {
-        List<Pair<String, String[]>> whereParamList = TableBuilder.sqlList(recordIds);
+        bulkReadMetadataWhere(DatabaseHelper.ID_COL, TableBuilder.sqlList(recordIds), metaFieldNames,
+                metadataMap);
+    }
+
+    /**
+     * Reads the given metadata fields of all records with one of the given values for an index,
+     * keyed by record id
+     */
+    public void bulkReadMetadataForIndex(String indexName, Collection<String> matchingValues,
+            String[] metaFieldNames, HashMap<Integer, String[]> metadataMap) {
+        bulkReadMetadataWhere(TableBuilder.scrubName(indexName), TableBuilder.sqlList(matchingValues, "?"),
+                metaFieldNames, metadataMap);
+    }
+
+    private void bulkReadMetadataWhere(String column, List<Pair<String, String[]>> whereParamList,
+            String[] metaFieldNames, HashMap<Integer, String[]> metadataMap) {
         String[] scrubbedNames = scrubMetadataNames(metaFieldNames);
         String[] projection = getProjectedFieldsWithId(false, scrubbedNames);
         Connection connection = getConnection();
@@ -563,7 +704,7 @@ public class SqlStorage<T extends Persistable>
                 try (PreparedStatement preparedStatement =
                              SqlHelper.prepareTableSelectStatementProjection(connection,
                                      this.tableName,
-                                     DatabaseHelper.ID_COL + " IN " + querySet.first,
+                                     column + " IN " + querySet.first,
                                      querySet.second, projection)) {
 
                     try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -4,6 +4,7 @@ import org.commcare.cases.ledger.Ledger;
 import org.commcare.cases.model.Case;
 import org.commcare.cases.model.StorageIndexedTreeElementModel;
 import org.commcare.core.interfaces.UserSandbox;
+import org.commcare.formplayer.database.models.EntityStorageCache;
 import org.commcare.formplayer.services.ConnectionHandler;
 import org.commcare.modern.database.DatabaseIndexingUtils;
 import org.commcare.modern.database.IndexedFixturePathsConstants;
@@ -77,6 +78,11 @@ public class UserSqlSandbox extends UserSandbox implements ConnectionHandler {
         return caseStorage;
     }
 
+    @Override
+    public EntityStorageCache getEntityStorageCache(String cacheScope) {
+        return new EntityStorageCache(EntityStorageCache.CASE_CACHE_NAME, this, cacheScope);
+    }
+
     @Override
     public SqlStorage<Ledger> getLedgerStorage() {
         return ledgerStorage;
@@ -140,6 +146,18 @@ public class UserSqlSandbox extends UserSandbox implements ConnectionHandler {
         sqlUtil.insertOrReplace(contentVals);
     }
 
+    @Override
+    public void removeIndexedFixture(String fixtureName) {
+        try (PreparedStatement preparedStatement = sqlUtil.getConnection().prepareStatement(
+                IndexedFixturePathsConstants.INDEXED_FIXTURE_PATHS_TABLE_DELETE_STMT)) {
+            preparedStatement.setString(1, fixtureName);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        SqlHelper.dropTable(sqlUtil.getConnection(), StorageIndexedTreeElementModel.getTableName(fixtureName));
+    }
+
     /**
      * create 'fixture paths' table and an index over that table
      */
@@ -0,0 +1,33 @@
+package org.commcare.formplayer.sandbox;
+
+import org.javarosa.xpath.expr.FunctionUtils;
+import org.sqlite.Function;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * SQLite function converting a column value to a number using XPath's type conversion rules, so
+ * that numeric comparisons matched in SQL give the same result the XPath engine would have.
+ *
+ * Values XPath converts to NaN are returned as NULL, which (like NaN) fails every comparison.
+ */
+public class XPathNumericFunction extends Function {
+
+    public static final String NAME = "xpath_numeric";
+
+    public static void register(Connection connection) throws SQLException {
+        Function.create(connection, NAME, new XPathNumericFunction(), 1, Function.FLAG_DETERMINISTIC);
+    }
+
+    @Override
+    protected void xFunc() throws SQLException {
+        String value = value_text(0);
+        double numeric = value == null ? Double.NaN : FunctionUtils.toNumeric(value);
+        if (Double.isNaN(numeric)) {
+            result();
+        } else {
+            result(numeric);
+        }
+    }
+}
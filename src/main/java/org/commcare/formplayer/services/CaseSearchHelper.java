@@ -1,5 +1,7 @@
 package org.commcare.formplayer.services;
 
+import static org.commcare.formplayer.util.Constants.TOGGLE_SHARE_CASE_SEARCH_RESULTS;
+
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 
@@ -10,12 +12,14 @@ import org.commcare.cases.model.Case;
 import org.commcare.core.parse.CaseInstanceXmlTransactionParserFactory;
 import org.commcare.core.parse.ParseUtils;
 import org.commcare.formplayer.DbUtils;
+import org.commcare.formplayer.beans.auth.FeatureFlagChecker;
 import org.commcare.formplayer.database.models.FormplayerCaseIndexTable;
 import org.commcare.formplayer.sandbox.CaseSearchSqlSandbox;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
 import org.commcare.formplayer.session.MenuSession;
 import org.commcare.formplayer.sqlitedb.CaseSearchDB;
 import org.commcare.formplayer.sqlitedb.SQLiteDB;
+import org.commcare.formplayer.sqlitedb.SharedCaseSearchDB;
 import org.commcare.formplayer.util.SerializationUtil;
 import org.commcare.formplayer.web.client.WebClient;
 import org.commcare.util.screen.ScreenUtils;
@@ -39,6 +43,7 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -53,6 +58,8 @@ import java.util.TreeMap;
 public class CaseSearchHelper {
 
     private static final String CASE_SEARCH_INDEX_TABLE_PREFIX = "case_search_index_storage_";
+    // scrubbed usernames never contain '.', so this can't be mistaken for a user's scope
+    private static final String DOMAIN_SCOPE = ".domain";
     @Autowired
     CacheManager cacheManager;
 
@@ -63,6 +70,9 @@ public class CaseSearchHelper {
 
     @Autowired
     private FormplayerStorageFactory storageFactory;
+
+    @Autowired
+    private CaseSearchResultStore caseSearchResultStore;
     private final Log log = LogFactory.getLog(CaseSearchHelper.class);
 
     public AbstractTreeElement getExternalRoot(String instanceId, ExternalDataInstanceSource source,
@@ -73,6 +83,10 @@ public class CaseSearchHelper {
         Multimap<String, String> requestData = source.getRequestData();
         String url = source.getSourceUri();
 
+        if (caseSearchResultStore.isEnabled() && shouldParseIntoCaseSearchStorage(source.useCaseTemplate())) {
+            return getSharedCaseSearchRoot(instanceId, url, requestData, skipCache);
+        }
+
         Cache cache = cacheManager.getCache("case_search");
         String cacheKey = getCacheKey(source.getSourceUri(), requestData);
         TreeElement cachedRoot = getCachedRoot(cache, cacheKey, url, skipCache);
@@ -112,6 +126,73 @@ public class CaseSearchHelper {
         throw new IOException("No response from server for case search query");
     }
 
+    /**
+     * Gets the results of the search out of the shared result store, indexing them into it first
+     * if no user with the same permission scope ran the same search recently
+     */
+    private AbstractTreeElement getSharedCaseSearchRoot(String instanceId, String url,
+            Multimap<String, String> requestData, boolean skipCache)
+            throws UnfullfilledRequirementsException, XmlPullParserException, InvalidStructureException,
+            IOException {
+        String storeKey = getCacheKey(url, requestData, isDomainScoped());
+        String caseSearchTableName = evalCaseSearchTableName(storeKey);
+        SharedCaseSearchDB caseSearchDb = skipCache ? null : caseSearchResultStore.get(storeKey);
+        if (caseSearchDb != null) {
+            log.info(String.format("Using shared case search results for %s", url));
+        } else {
+            caseSearchDb = caseSearchResultStore.newResults(restoreFactory.getDomain());
+            fetchIntoSharedStorage(caseSearchDb, caseSearchTableName, url, requestData);
+            caseSearchResultStore.publish(storeKey, caseSearchDb);
+        }
+
+        UserSqlSandbox caseSearchSandbox = new CaseSearchSqlSandbox(caseSearchTableName, caseSearchDb);
+        InstanceBase instanceBase = new InstanceBase(instanceId);
+        return new CaseInstanceTreeElement(instanceBase, caseSearchSandbox.getCaseStorage(),
+                getCaseIndexTable(caseSearchSandbox, caseSearchTableName));
+    }
+
+    /**
+     * Parses the search response into the case storage as it streams in from HQ
+     */
+    private void fetchIntoSharedStorage(SharedCaseSearchDB caseSearchDb, String caseSearchTableName, String url,
+            Multimap<String, String> requestData)
+            throws UnfullfilledRequirementsException, XmlPullParserException, InvalidStructureException {
+        UserSqlSandbox caseSearchSandbox = new CaseSearchSqlSandbox(caseSearchTableName, caseSearchDb);
+        FormplayerCaseIndexTable caseSearchIndexTable = getCaseIndexTable(caseSearchSandbox, caseSearchTableName);
+        try {
+            webClient.postFormData(url, requestData, response -> {
+                try {
+                    parseIntoCaseSearchStorage(caseSearchDb, caseSearchSandbox, caseSearchSandbox.getCaseStorage(),
+                            response.getBody(), caseSearchIndexTable);
+                } catch (UnfullfilledRequirementsException | XmlPullParserException
+                         | InvalidStructureException e) {
+                    throw new ResponseParseException(e);
+                }
+                return null;
+            });
+        } catch (ResponseParseException e) {
+            caseSearchResultStore.discard(caseSearchDb);
+            Throwable cause = e.getCause();
+            if (cause instanceof UnfullfilledRequirementsException) {
+                throw (UnfullfilledRequirementsException)cause;
+            } else if (cause instanceof XmlPullParserException) {
+                throw (XmlPullParserException)cause;
+            }
+            throw (InvalidStructureException)cause;
+        } catch (RuntimeException e) {
+            caseSearchResultStore.discard(caseSearchDb);
+            throw e;
+        }
+    }
+
+    /**
+     * Whether HQ has marked the domain's search results as being the same for all of its users,
+     * so that they can be shared between them
+     */
+    private boolean isDomainScoped() {
+        return FeatureFlagChecker.isToggleEnabled(TOGGLE_SHARE_CASE_SEARCH_RESULTS);
+    }
+
     private FormplayerCaseIndexTable getCaseIndexTable(ConnectionHandler caseSearchSandbox,
             String caseSearchTableName) {
         String caseSearchIndexTableName = CASE_SEARCH_INDEX_TABLE_PREFIX + caseSearchTableName;
@@ -130,7 +211,7 @@ public class CaseSearchHelper {
     }
 
     private void parseIntoCaseSearchStorage(SQLiteDB caseSearchDb, UserSqlSandbox caseSearchSandbox,
-            IStorageUtilityIndexed<Case> caseSearchStorage, ByteArrayInputStream responeStream,
+            IStorageUtilityIndexed<Case> caseSearchStorage, InputStream responeStream,
             FormplayerCaseIndexTable caseSearchIndexTable)
             throws UnfullfilledRequirementsException, InvalidStructureException,
             XmlPullParserException, IOException {
@@ -193,6 +274,10 @@ public class CaseSearchHelper {
         String cacheKey = getCacheKey(source.getSourceUri(), source.getRequestData());
         Cache cache = cacheManager.getCache("case_search");
         cache.evict(cacheKey);
+        if (caseSearchResultStore.isEnabled()) {
+            caseSearchResultStore.invalidate(
+                    getCacheKey(source.getSourceUri(), source.getRequestData(), isDomainScoped()));
+        }
 
         CaseSearchDB caseSearchDb = initCaseSearchDB();
         String caseSearchTableName = evalCaseSearchTableName(cacheKey);
@@ -204,6 +289,15 @@ public class CaseSearchHelper {
     }
 
     private String getCacheKey(String url, Multimap<String, String> queryParams) throws InvalidStructureException {
+        return getCacheKey(url, queryParams, false);
+    }
+
+    /**
+     * @param domainScoped whether the results are the same for every user of the domain rather
+     *                     than specific to the current user
+     */
+    private String getCacheKey(String url, Multimap<String, String> queryParams, boolean domainScoped)
+            throws InvalidStructureException {
         URI uri;
         try {
             uri = new URI(url);
@@ -213,9 +307,13 @@ public class CaseSearchHelper {
 
         StringBuilder builder = new StringBuilder();
         builder.append(restoreFactory.getDomain());
-        builder.append("_").append(restoreFactory.getScrubbedUsername());
-        if (restoreFactory.getAsUsername() != null) {
-            builder.append("_").append(restoreFactory.getAsUsername());
+        if (domainScoped) {
+            builder.append("_").append(DOMAIN_SCOPE);
+        } else {
+            builder.append("_").append(restoreFactory.getScrubbedUsername());
+            if (restoreFactory.getAsUsername() != null) {
+                builder.append("_").append(restoreFactory.getAsUsername());
+            }
         }
         builder.append("_").append(uri);
         Map<String, Collection<String>> sortedQueryParams = new TreeMap<>(queryParams.asMap());
@@ -234,6 +332,15 @@ public class CaseSearchHelper {
         cacheManager.getCache("case_search").clear();
     }
 
+    /**
+     * Carries the parse errors of a streamed response out of the response extractor
+     */
+    private static class ResponseParseException extends RuntimeException {
+        ResponseParseException(Exception cause) {
+            super(cause);
+        }
+    }
+
     public Multimap<String, String> getMetricTags(MenuSession menuSession) {
         String moduleNameTagValue = ScreenUtils.getBestTitle(menuSession.getSessionWrapper());
 
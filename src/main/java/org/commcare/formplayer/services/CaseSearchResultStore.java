@@ -0,0 +1,163 @@
+package org.commcare.formplayer.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.commcare.formplayer.sqlitedb.SharedCaseSearchDB;
+import org.commcare.formplayer.util.Constants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps indexed case search results on disk so that other requests, and other users of the same
+ * domain with the same permission scope, can reuse them rather than running and indexing the same
+ * search again.
+ *
+ * Results expire a fixed time after they were indexed, and the least valuable results are
+ * discarded once those of all domains together take up more than the configured space on disk.
+ * Discarded results are only deleted from disk once no request can still be reading them, which is
+ * the longest a request can hold its user's lock after being handed them.
+ */
+@Service
+public class CaseSearchResultStore {
+
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private final Log log = LogFactory.getLog(CaseSearchResultStore.class);
+
+    @Value("${formplayer.case_search.shared_store:false}")
+    private boolean enabled;
+
+    @Value("${formplayer.case_search.shared_store.ttl_seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${formplayer.case_search.shared_store.max_megabytes:2048}")
+    private long maxMegabytes;
+
+    private long deleteDelayMillis = Constants.LOCK_DURATION;
+
+    private Ticker ticker = Ticker.systemTicker();
+
+    private volatile Cache<String, SharedCaseSearchDB> results;
+
+    // results no longer handed out, keyed on their folder, waiting for the requests which were
+    // handed them to finish before they are deleted
+    private volatile Cache<String, SharedCaseSearchDB> retiredResults;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param key identifies the search's domain, permission scope and query
+     * @return the results of the search, with a connection already open for this request, or
+     * null if there are none
+     */
+    @Nullable
+    public SharedCaseSearchDB get(String key) {
+        SharedCaseSearchDB db = getResults().getIfPresent(key);
+        if (db == null) {
+            return null;
+        }
+        if (!db.databaseFileExists()) {
+            // removed from disk underneath us, e.g. by the temp db purge
+            getResults().asMap().remove(key, db);
+            return null;
+        }
+        SharedCaseSearchDB reader = db.reopen();
+        reader.getConnection();
+        return reader;
+    }
+
+    /**
+     * @return a database to index a new set of results into before publishing them
+     */
+    public SharedCaseSearchDB newResults(String domain) {
+        SharedCaseSearchDB db = SharedCaseSearchDB.newResults(domain);
+        db.createDatabaseFolder();
+        return db;
+    }
+
+    /**
+     * Makes fully indexed results available to other requests, replacing (and eventually deleting)
+     * any results previously stored for the same search
+     */
+    public void publish(String key, SharedCaseSearchDB db) {
+        getResults().put(key, db.reopen());
+    }
+
+    /**
+     * Deletes results which couldn't be indexed, and so were never published
+     */
+    public void discard(SharedCaseSearchDB db) {
+        db.closeConnection();
+        db.deleteDatabaseFolder();
+    }
+
+    public void invalidate(String key) {
+        getResults().invalidate(key);
+    }
+
+    /**
+     * Retires the results which have expired or been evicted, and deletes the retired results no
+     * request can still be reading, now rather than waiting for the store's next scheduled clean up
+     */
+    public void cleanUp() {
+        getResults().cleanUp();
+        retiredResults.cleanUp();
+    }
+
+    private Cache<String, SharedCaseSearchDB> getResults() {
+        if (results == null) {
+            synchronized (this) {
+                if (results == null) {
+                    retiredResults = buildRetiredResults();
+                    results = buildResults();
+                }
+            }
+        }
+        return results;
+    }
+
+    private Cache<String, SharedCaseSearchDB> buildResults() {
+        log.info(String.format("Shared case search results configured - ttl: %ds, max size: %dMB",
+                ttlSeconds, maxMegabytes));
+        return Caffeine.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .maximumWeight(maxMegabytes * BYTES_PER_MEGABYTE)
+                .weigher((String key, SharedCaseSearchDB db) ->
+                        (int)Math.min(db.getDatabaseFile().length(), Integer.MAX_VALUE))
+                .removalListener((String key, SharedCaseSearchDB db, RemovalCause cause) -> {
+                    if (db != null) {
+                        retiredResults.put(db.getDatabaseFolder().getPath(), db);
+                    }
+                })
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .scheduler(Scheduler.systemScheduler())
+                .build();
+    }
+
+    private Cache<String, SharedCaseSearchDB> buildRetiredResults() {
+        return Caffeine.newBuilder()
+                .expireAfterWrite(deleteDelayMillis, TimeUnit.MILLISECONDS)
+                .removalListener((String folder, SharedCaseSearchDB db, RemovalCause cause) -> {
+                    if (db != null) {
+                        db.deleteDatabaseFolder();
+                    }
+                })
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .scheduler(Scheduler.systemScheduler())
+                .build();
+    }
+}
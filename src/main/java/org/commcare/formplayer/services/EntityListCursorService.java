@@ -0,0 +1,87 @@
+package org.commcare.formplayer.services;
+
+import org.commcare.formplayer.util.Constants;
+import org.commcare.util.screen.EntityListCursor;
+import org.commcare.util.screen.EntityListCursorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the filtered and sorted result of a user's case lists in memory so that requests for
+ * further pages of a list only evaluate the cases shown on that page.
+ *
+ * Cursors are kept per user database and sync token, so a sync discards them. Anything else that
+ * writes cases to the user's database must call {@link #invalidate()}.
+ */
+@Service
+public class EntityListCursorService {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private RestoreFactory restoreFactory;
+
+    @Value("${formplayer.entity_list.cursor_cache:false}")
+    private boolean enabled;
+
+    /**
+     * @param browserLocation location the user's here() function evaluates to, which sorts and
+     *                        filters may depend on
+     * @return store for the cursors of the current user, or null if cursors shouldn't be kept
+     */
+    @Nullable
+    public EntityListCursorStore getCursorStore(@Nullable String browserLocation) {
+        CaffeineCache cache = getCache();
+        if (cache == null) {
+            return null;
+        }
+        return new EntityListCursorStore() {
+            @Override
+            public EntityListCursor getCursor(String key) {
+                return cache.get(getCacheKey(key), EntityListCursor.class);
+            }
+
+            @Override
+            public void storeCursor(String key, EntityListCursor cursor) {
+                cache.put(getCacheKey(key), cursor);
+            }
+
+            private String getCacheKey(String key) {
+                return getUserPrefix() + restoreFactory.getSyncToken() + "|" + browserLocation + "|" + key;
+            }
+        };
+    }
+
+    /**
+     * Discards all cursors of the current user, for use when their cases have changed
+     */
+    public void invalidate() {
+        CaffeineCache cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        String userPrefix = getUserPrefix();
+        cache.getNativeCache().asMap().keySet()
+                .removeIf(key -> key instanceof String && ((String)key).startsWith(userPrefix));
+    }
+
+    private String getUserPrefix() {
+        return restoreFactory.getSQLiteDB().getDatabaseFile().getPath() + "|";
+    }
+
+    /**
+     * The Caffeine cache is needed to discard a user's cursors by key prefix
+     */
+    private CaffeineCache getCache() {
+        if (!enabled) {
+            return null;
+        }
+        return (CaffeineCache)cacheManager.getCache(Constants.ENTITY_LIST_CURSOR_CACHE);
+    }
+}
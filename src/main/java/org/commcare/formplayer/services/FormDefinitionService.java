@@ -7,18 +7,24 @@ import org.commcare.formplayer.session.FormSession;
 import org.commcare.formplayer.util.serializer.FormDefStringSerializer;
 import org.javarosa.core.log.WrappedException;
 import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.condition.EvaluationContext;
 import org.javarosa.core.services.storage.IStorageUtilityIndexed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
  * Service class that abstracts interactions with FormDefinitionRepo
@@ -36,6 +42,11 @@ public class FormDefinitionService {
     @Autowired
     private CacheManager caches;
 
+    private static final String FORM_DEF_POOL_KEY = "form_def_pool";
+
+    // idle FormDefs kept per form definition, enough to cover concurrent sessions of the same form
+    private static final int MAX_POOLED_FORM_DEFS = 8;
+
     /**
      * Checks if an entry for this (appId, formXmlns, formVersion) combination already exists, and returns if so
      * Otherwise creates a new entry which entails serializing the formDef object (costly operation)
@@ -98,28 +109,85 @@ public class FormDefinitionService {
     }
 
     /**
-     * This method uses the sessionId to cache deserialized FormDefs
-     * Deserializing a serialized FormDef object is costly, and this avoids doing so in between requests
-     * within the same session
+     * Deserialized FormDefs are pooled per form definition rather than cached per session.
+     * Deserializing a serialized FormDef object is costly, and the structure of a form is the same for every
+     * session of it: only the instance, which is reloaded from the session on every request, differs.
+     *
+     * The returned FormDef belongs to the caller for the rest of the current request, after which it is
+     * returned to the pool for any session of the same form definition to reuse.
      *
      * @param session session that contains session id and serialized formDef
      * @return deserialized FormDef object
      */
     public FormDef getFormDef(SerializableFormSession session) {
-        FormDef formDef = this.getFormDefWithCache(session);
-        // ensure previous tree references are cleared (only necessary when retrieving from cache)
+        FormDef formDef = this.checkoutFormDef(session);
+        // ensure previous tree references are cleared (only necessary when retrieving from the pool)
         formDef.getMainInstance().cleanCache();
         return formDef;
     }
 
     /**
      * Always use public getFormDef to ensure internal FormDef cached references are cleared.
-     *
-     * We can't use @{@link Cacheable} here since we want to keep this method private.
      */
-    private FormDef getFormDefWithCache(SerializableFormSession session) {
+    private FormDef checkoutFormDef(SerializableFormSession session) {
+        SerializableFormDefinition formDefinition = session.getFormDefinition();
+        PooledFormDef pooled = getFormDefPool(formDefinition).poll();
+        FormDef formDef;
+        if (pooled == null) {
+            formDef = getFormDefFromSession(session);
+        } else {
+            formDef = pooled.formDef;
+            if (!session.getId().equals(pooled.sessionId)) {
+                // drop function handlers (e.g. static dates) registered by the previous session
+                formDef.setEvaluationContext(new EvaluationContext(null));
+            }
+        }
+        returnToPoolAfterRequest(formDefinition, session.getId(), formDef);
+        return formDef;
+    }
+
+    private Deque<PooledFormDef> getFormDefPool(SerializableFormDefinition formDefinition) {
         Cache cache = caches.getCache("form_definition");
-        return cache.get(session.getId(), () -> getFormDefFromSession(session));
+        List<String> poolKey = Arrays.asList(FORM_DEF_POOL_KEY, formDefinition.getAppId(),
+                formDefinition.getFormXmlns(), formDefinition.getFormVersion());
+        return cache.get(poolKey, ConcurrentLinkedDeque::new);
+    }
+
+    /**
+     * Outside of a request there is no point at which the FormDef is known to be free again, so it is
+     * simply not pooled.
+     */
+    private void returnToPoolAfterRequest(SerializableFormDefinition formDefinition, String sessionId,
+            FormDef formDef) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null || formDefinition == null) {
+            return;
+        }
+        requestAttributes.registerDestructionCallback(
+                getPoolCallbackName(formDef),
+                () -> {
+                    Deque<PooledFormDef> pool = getFormDefPool(formDefinition);
+                    if (pool.size() < MAX_POOLED_FORM_DEFS) {
+                        pool.push(new PooledFormDef(sessionId, formDef));
+                    }
+                },
+                RequestAttributes.SCOPE_REQUEST);
+    }
+
+    /**
+     * Keep a FormDef checked out during the current request from being returned to the pool, for
+     * when it is going to outlive the request (see {@link LiveFormSessionService})
+     */
+    public void detachFormDef(FormDef formDef) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            // removing the attribute also removes the destruction callback registered under its name
+            requestAttributes.removeAttribute(getPoolCallbackName(formDef), RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private static String getPoolCallbackName(FormDef formDef) {
+        return FORM_DEF_POOL_KEY + "." + System.identityHashCode(formDef);
     }
 
     private FormDef getFormDefFromSession(SerializableFormSession session) {
@@ -137,13 +205,14 @@ public class FormDefinitionService {
     }
 
     /**
-     * Cache the form def for future requests in this session
+     * Pool the form def of a newly started session for future requests once this request completes
      *
-     * @param session grab the id to cache on and the deserialized form def from the session
+     * @param session grab the form definition and the deserialized form def from the session
      * @return deserialized FormDef object
      */
-    @CachePut(key = "#session.getSessionId()")
     public FormDef cacheFormDef(FormSession session) {
+        returnToPoolAfterRequest(session.getSerializableSession().getFormDefinition(),
+                session.getSessionId(), session.getFormDef());
         return session.getFormDef();
     }
 
@@ -163,4 +232,14 @@ public class FormDefinitionService {
         return storageFactory.getStorageManager().getStorage(FormDef.STORAGE_KEY);
     }
 
+    private static class PooledFormDef {
+        private final String sessionId;
+        private final FormDef formDef;
+
+        PooledFormDef(String sessionId, FormDef formDef) {
+            this.sessionId = sessionId;
+            this.formDef = formDef;
+        }
+    }
+
 }
@@ -0,0 +1,156 @@
+package org.commcare.formplayer.services;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+
+import org.commcare.formplayer.beans.FormEntryResponseBean;
+import org.commcare.formplayer.beans.QuestionBean;
+import org.commcare.formplayer.util.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Lets form entry responses carry only the questions that changed since the question tree the
+ * client already has, rather than the full tree.
+ *
+ * For each form session, a fingerprint of the last tree sent is kept along with the seq_id it was
+ * sent with. A client asking for a delta names the seq_id of the tree it has, and gets a full
+ * tree whenever that isn't the last one sent by this server.
+ */
+@Service
+public class FormTreeDeltaService {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    // serializes the fields of a question without its children
+    private final ObjectMapper questionMapper = new ObjectMapper()
+            .addMixIn(QuestionBean.class, WithoutChildren.class);
+
+    /**
+     * Replaces the tree of the response with the questions changed since the tree sent with the
+     * given seq_id, if possible, and records the tree of the response as the one sent.
+     *
+     * @param baseSequenceId seq_id of the tree the client has, null to always send the full tree
+     */
+    public void applyDelta(String sessionId, @Nullable Integer baseSequenceId,
+            FormEntryResponseBean response) {
+        Cache cache = cacheManager.getCache(Constants.FORM_TREE_SNAPSHOT_CACHE);
+        TreeSnapshot previous = cache.get(sessionId, TreeSnapshot.class);
+        boolean clientHasPrevious = previous != null && baseSequenceId != null
+                && previous.sequenceId == baseSequenceId;
+
+        if (response.getTree() == null) {
+            // answer wasn't accepted, so the client's tree is still current
+            if (clientHasPrevious) {
+                cache.put(sessionId, new TreeSnapshot(response.getSequenceId(), previous.questions,
+                        previous.rootStructure));
+            }
+            return;
+        }
+
+        TreeSnapshot current = new TreeSnapshot(response.getSequenceId(), new HashMap<>(),
+                getStructure(response.getTree()));
+        addToSnapshot(response.getTree(), current.questions);
+        cache.put(sessionId, current);
+
+        if (!clientHasPrevious || previous.rootStructure != current.rootStructure) {
+            return;
+        }
+        List<QuestionBean> changed = new ArrayList<>();
+        if (addChanged(response.getTree(), previous.questions, current.questions, changed)) {
+            response.setChanged(changed.toArray(new QuestionBean[0]));
+            response.setTree(null);
+            response.setDelta(true);
+        }
+    }
+
+    private void addToSnapshot(QuestionBean[] questions, Map<String, long[]> snapshot) {
+        for (QuestionBean question : questions) {
+            snapshot.put(question.getIx(),
+                    new long[]{getFingerprint(question), getStructure(question.getChildren())});
+            if (question.getChildren() != null) {
+                addToSnapshot(question.getChildren(), snapshot);
+            }
+        }
+    }
+
+    /**
+     * Adds the questions whose fields changed, without their children, and those whose children
+     * were added, removed or reordered, with their children.
+     *
+     * @return false if the questions can't be matched up with the previous tree
+     */
+    private boolean addChanged(QuestionBean[] questions, Map<String, long[]> previous,
+            Map<String, long[]> current, List<QuestionBean> changed) {
+        for (QuestionBean question : questions) {
+            long[] before = previous.get(question.getIx());
+            long[] after = current.get(question.getIx());
+            if (before == null) {
+                return false;
+            }
+            if (before[1] != after[1]) {
+                changed.add(question);
+                continue;
+            }
+            if (before[0] != after[0]) {
+                changed.add(questionMapper.convertValue(question, QuestionBean.class));
+            }
+            if (question.getChildren() != null
+                    && !addChanged(question.getChildren(), previous, current, changed)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long getFingerprint(QuestionBean question) {
+        try {
+            return Hashing.murmur3_128().hashString(questionMapper.writeValueAsString(question),
+                    StandardCharsets.UTF_8).asLong();
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long getStructure(@Nullable QuestionBean[] questions) {
+        if (questions == null) {
+            return 0;
+        }
+        StringBuilder ixs = new StringBuilder();
+        for (QuestionBean question : questions) {
+            ixs.append(question.getIx()).append(' ');
+        }
+        return Hashing.murmur3_128().hashString(ixs, StandardCharsets.UTF_8).asLong();
+    }
+
+    @JsonIgnoreProperties("children")
+    private abstract static class WithoutChildren {
+    }
+
+    private static class TreeSnapshot {
+        private final int sequenceId;
+
+        // fingerprint of the fields and of the child ixs of each question, by ix
+        private final Map<String, long[]> questions;
+        private final long rootStructure;
+
+        private TreeSnapshot(int sequenceId, Map<String, long[]> questions, long rootStructure) {
+            this.sequenceId = sequenceId;
+            this.questions = questions;
+            this.rootStructure = rootStructure;
+        }
+    }
+}
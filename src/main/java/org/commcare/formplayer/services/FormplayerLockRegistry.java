@@ -150,7 +150,8 @@ public class FormplayerLockRegistry implements LockRegistry {
         Object lockKey;
 
         public FormplayerReentrantLock(Object lockKey) {
-            super();
+            // fair so that a user's requests are served in the order they arrived
+            super(true);
             this.lockKey = lockKey;
         }
 
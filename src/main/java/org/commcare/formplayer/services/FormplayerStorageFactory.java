@@ -11,6 +11,7 @@ import org.javarosa.core.services.storage.IStorageIndexedFactory;
 import org.javarosa.core.services.storage.IStorageUtilityIndexed;
 import org.javarosa.core.services.storage.StorageManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
 import org.springframework.stereotype.Component;
@@ -20,6 +21,7 @@ import javax.annotation.PreDestroy;
 import org.commcare.formplayer.sandbox.SqlStorage;
 import org.commcare.formplayer.sqlitedb.ApplicationDB;
 import org.commcare.formplayer.sqlitedb.SQLiteDB;
+import org.commcare.formplayer.sqlitedb.SharedApplicationDB;
 import org.commcare.formplayer.util.FormplayerPropertyManager;
 import org.commcare.formplayer.util.UserUtils;
 
@@ -36,6 +38,10 @@ public class FormplayerStorageFactory implements IStorageIndexedFactory {
     private String asUsername;
 
     private SQLiteDB sqLiteDB = new SQLiteDB(null);
+    private ApplicationDB applicationDB;
+
+    @Value("${formplayer.install.shared:false}")
+    private boolean sharedInstalls;
 
     private FormplayerPropertyManager propertyManager;
     private StorageManager storageManager;
@@ -92,7 +98,20 @@ public class FormplayerStorageFactory implements IStorageIndexedFactory {
         this.asUsername = asUsername;
         this.domain = domain;
         this.appId = appId;
-        this.sqLiteDB = new ApplicationDB(domain, username, asUsername, appId);
+        this.applicationDB = new ApplicationDB(domain, username, asUsername, appId);
+        SharedApplicationDB sharedDB = sharedInstalls ? applicationDB.getSharedApplicationDB() : null;
+        useDatabase(sharedDB != null ? sharedDB : applicationDB);
+    }
+
+    /**
+     * Points this factory's storage at the given application database, e.g. once a shared
+     * install has been resolved for the configured user
+     */
+    public void useDatabase(SQLiteDB sqLiteDB) {
+        if (this.sqLiteDB != null) {
+            this.sqLiteDB.closeConnection();
+        }
+        this.sqLiteDB = sqLiteDB;
         this.sqLiteDB.closeConnection();
         this.propertyManager = new FormplayerPropertyManager(newStorage(PropertyManager.STORAGE_KEY, Property.class));
         storageManager = new StorageManager(this);
@@ -152,6 +171,18 @@ public class FormplayerStorageFactory implements IStorageIndexedFactory {
         return sqLiteDB;
     }
 
+    /**
+     * @return the configured user's own application database, regardless of whether storage is
+     * currently backed by a shared install
+     */
+    public ApplicationDB getApplicationDB() {
+        return applicationDB;
+    }
+
+    public boolean isSharedInstallEnabled() {
+        return sharedInstalls;
+    }
+
     public String getAsUsername() {
         return asUsername;
     }
@@ -4,22 +4,36 @@ import org.commcare.formplayer.engine.FormplayerConfigEngine;
 import org.commcare.formplayer.exceptions.UnresolvedResourceRuntimeException;
 import org.commcare.formplayer.installers.FormplayerInstallerFactory;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import datadog.trace.api.Trace;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.commcare.modern.reference.ArchiveFileRoot;
 import org.commcare.modern.util.Pair;
+import org.commcare.resources.model.ResourceInitializationException;
 import org.commcare.resources.model.UnresolvedResourceException;
+import org.javarosa.core.reference.InvalidReferenceException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
 import org.springframework.stereotype.Service;
 
 import org.commcare.formplayer.sqlitedb.SQLiteDB;
+import org.commcare.formplayer.sqlitedb.SharedApplicationDB;
 import org.commcare.formplayer.util.Constants;
 import org.commcare.formplayer.util.SimpleTimer;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * The InstallService handles configuring the application,
  * either from a .ccz or .ccpr reference or existing dbs.
@@ -47,12 +61,25 @@ public class InstallService {
     @Autowired
     private ResponseMetaDataTracker responseMetaDataTracker;
 
+    @Autowired
+    private CacheManager cacheManager;
+
     private final Log log = LogFactory.getLog(InstallService.class);
 
     CategoryTimingHelper.RecordingTimer installTimer;
 
+    // serialises installs of the same shared build on this node
+    private static final Interner<String> sharedInstallLocks = Interners.newWeakInterner();
+
+    // build key last downloaded for each app on this node. Like the in-memory CCZ reuse in
+    // FormplayerConfigEngine, this trusts that a released app id always serves the same build.
+    private static final Map<String, String> latestSharedBuilds = new ConcurrentHashMap<>();
+
     @Trace
     public Pair<FormplayerConfigEngine, Boolean> configureApplication(String reference, boolean preview) throws Exception {
+        if (storageFactory.isSharedInstallEnabled() && !preview && reference.startsWith("http")) {
+            return configureSharedApplication(reference);
+        }
         boolean newInstall = true;
         SQLiteDB sqliteDB = storageFactory.getSQLiteDB();
         log.info("Configuring application with reference " + reference +
@@ -64,10 +91,8 @@ public class InstallService {
                 // If the SQLiteDB exists then this was not an update
                 // Try reusing old install, fail quietly
                 try {
-                    FormplayerConfigEngine engine = new FormplayerConfigEngine(
-                            storageFactory, formplayerInstallerFactory, formplayerArchiveFileRoot, restTemplate
-                    );
-                    engine.initEnvironment();
+                    FormplayerConfigEngine engine = newConfigEngine();
+                    initEnvironment(engine);
                     return new Pair<>(engine, false);
                 } catch (Exception e) {
                     log.debug("An error occurred while trying to use the old DB file for app. Error details: Got exception "
@@ -83,15 +108,13 @@ public class InstallService {
             if (!sqliteDB.databaseFolderExists() && !sqliteDB.createDatabaseFolder()) {
                 throw new RuntimeException("Error instantiating folder " + sqliteDB.getDatabaseFileForDebugPurposes());
             }
-            FormplayerConfigEngine engine = new FormplayerConfigEngine(
-                    storageFactory, formplayerInstallerFactory, formplayerArchiveFileRoot, restTemplate
-            );
+            FormplayerConfigEngine engine = newConfigEngine();
             if (reference.endsWith(".ccpr")) {
                 engine.initFromLocalFileResource(reference);
             } else {
                 engine.initFromArchive(reference, preview);
             }
-            engine.initEnvironment();
+            initEnvironment(engine);
             installTimer.end();
             installTimer.record();
             responseMetaDataTracker.setNewInstall(true);
@@ -104,6 +127,125 @@ public class InstallService {
         }
     }
 
+    /**
+     * Configures the application from an install shared by every user of the same app build,
+     * installing it first if this is the first time the build has been seen.
+     * Only the pointer to the shared install is kept in the user's application folder.
+     */
+    private Pair<FormplayerConfigEngine, Boolean> configureSharedApplication(String reference) throws Exception {
+        SQLiteDB sqliteDB = storageFactory.getSQLiteDB();
+        if (sqliteDB.databaseFileExists()) {
+            try {
+                FormplayerConfigEngine engine = newConfigEngine();
+                initEnvironment(engine);
+                return new Pair<>(engine, false);
+            } catch (Exception e) {
+                log.debug("An error occurred while trying to use the existing install for app. Error details: Got exception "
+                        + e + " while reinitializing at path " + sqliteDB.getDatabaseFileForDebugPurposes() + " Reinitializing ..");
+            }
+        }
+
+        installTimer = categoryTimingHelper.newTimer(Constants.TimingCategories.APP_INSTALL, storageFactory.getDomain());
+        installTimer.start();
+        try {
+            SharedApplicationDB sharedDB = resolveSharedApplicationDB(reference);
+            storageFactory.getApplicationDB().setSharedApplicationDB(sharedDB);
+            storageFactory.useDatabase(sharedDB);
+            FormplayerConfigEngine engine = newConfigEngine();
+            initEnvironment(engine);
+            installTimer.end();
+            installTimer.record();
+            responseMetaDataTracker.setNewInstall(true);
+            return new Pair<>(engine, true);
+        } catch (UnresolvedResourceException e) {
+            throw new UnresolvedResourceRuntimeException(e);
+        }
+    }
+
+    private SharedApplicationDB resolveSharedApplicationDB(String reference) throws Exception {
+        String domain = storageFactory.getDomain();
+        String appId = storageFactory.getAppId();
+        String appKey = domain + "/" + appId;
+
+        String latestBuildKey = latestSharedBuilds.get(appKey);
+        if (latestBuildKey != null) {
+            SharedApplicationDB sharedDB = new SharedApplicationDB(domain, appId, latestBuildKey);
+            try {
+                formplayerArchiveFileRoot.derive("jr://archive/" + appId + "/");
+                if (sharedDB.databaseFileExists()) {
+                    return sharedDB;
+                }
+            } catch (InvalidReferenceException e) {
+                // archive is no longer registered, download it again
+            }
+        }
+
+        File archive = new File(FormplayerConfigEngine.downloadArchive(restTemplate, reference));
+        String buildKey;
+        try (InputStream archiveStream = new FileInputStream(archive)) {
+            buildKey = DigestUtils.sha256Hex(archiveStream);
+        }
+        try {
+            formplayerArchiveFileRoot.addArchiveFile(archive, appId);
+        } catch (IOException e) {
+            throw new RuntimeException("File at " + reference + " is not a valid CommCare Package", e);
+        }
+
+        SharedApplicationDB sharedDB = new SharedApplicationDB(domain, appId, buildKey);
+        synchronized (sharedInstallLocks.intern(sharedDB.getDatabaseFileForDebugPurposes())) {
+            if (!sharedDB.databaseFileExists()) {
+                installSharedApplication(sharedDB, archive);
+            }
+        }
+        latestSharedBuilds.put(appKey, buildKey);
+        return sharedDB;
+    }
+
+    private void installSharedApplication(SharedApplicationDB sharedDB, File archive) throws Exception {
+        SharedApplicationDB stagingDB = sharedDB.newStagingDB();
+        if (!stagingDB.createDatabaseFolder()) {
+            throw new RuntimeException("Error instantiating folder " + stagingDB.getDatabaseFileForDebugPurposes());
+        }
+        try {
+            storageFactory.useDatabase(stagingDB);
+            FormplayerConfigEngine engine = newConfigEngine();
+            engine.initFromLocalArchive(archive.getAbsolutePath(), storageFactory.getAppId());
+            sharedDB.publish(stagingDB);
+        } catch (Exception e) {
+            stagingDB.closeConnection();
+            stagingDB.deleteDatabaseFolder();
+            throw e;
+        }
+    }
+
+    /**
+     * Initializes the engine's environment, reusing the app resources from the installed app cache
+     * when another request has already initialized the same install
+     */
+    private void initEnvironment(FormplayerConfigEngine engine) throws ResourceInitializationException {
+        engine.useInstalledAppCache(cacheManager.getCache(Constants.INSTALLED_APP_CACHE),
+                getInstalledAppCacheKey());
+        engine.initEnvironment();
+    }
+
+    /**
+     * Keyed on the database file's identity and modification time, so a reinstall at the same path
+     * never picks up resources from the install it replaced
+     */
+    private String getInstalledAppCacheKey() {
+        File databaseFile = storageFactory.getSQLiteDB().getDatabaseFile();
+        if (databaseFile == null || !databaseFile.exists()) {
+            return null;
+        }
+        return databaseFile.getAbsolutePath() + ":" + databaseFile.lastModified() + ":" + databaseFile.length();
+    }
+
+    private FormplayerConfigEngine newConfigEngine() {
+        return new FormplayerConfigEngine(
+                storageFactory, formplayerInstallerFactory, formplayerArchiveFileRoot, restTemplate
+        );
+    }
+
     public SimpleTimer getInstallTimer() {
         return installTimer;
     }
@@ -0,0 +1,178 @@
+package org.commcare.formplayer.services;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.commcare.formplayer.objects.SerializableFormSession;
+import org.commcare.formplayer.session.FormSession;
+import org.commcare.formplayer.sqlitedb.SQLiteDB;
+import org.commcare.formplayer.util.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * Keeps fully initialized FormSessions in memory between requests so that consecutive requests
+ * against the same form session on this node skip loading the instance and re-initializing the
+ * form.
+ *
+ * Live sessions are checked out for the duration of a request and checked back in once the
+ * request completes, so at most one request uses a live session at a time. Every request still
+ * writes the session to Postgres, and a live session is only used if the persisted session is
+ * still at the version it last saved. Any node (or request) that does not hold an up to date
+ * live session therefore falls back to the persistent path with no further coordination. The
+ * user lock routes a user's requests through a single node, which is what makes hits likely.
+ *
+ * A sync discards a user's live sessions. Anything else that writes cases to the user's database
+ * must call {@link #invalidate()}.
+ */
+@Service
+public class LiveFormSessionService {
+
+    private final Log log = LogFactory.getLog(LiveFormSessionService.class);
+
+    private static final String CHECKED_OUT_ATTRIBUTE = "live_form_session";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private RestoreFactory restoreFactory;
+
+    @Autowired
+    private FormplayerStorageFactory storageFactory;
+
+    @Autowired
+    private FormDefinitionService formDefinitionService;
+
+    @Value("${formplayer.session.live_cache:false}")
+    private boolean enabled;
+
+    /**
+     * @return the live session for this persisted session, rebound to it, or null if this node
+     * has no live session for it or the live session is out of date
+     */
+    public FormSession checkout(SerializableFormSession session) {
+        Cache cache = getCache();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (cache == null || requestAttributes == null) {
+            return null;
+        }
+        LiveFormSession live = cache.get(session.getId(), LiveFormSession.class);
+        if (live == null || !cache.evictIfPresent(session.getId())) {
+            return null;
+        }
+        if (!live.isCurrent(session, restoreFactory, storageFactory)) {
+            log.info(String.format("Discarding out of date live form session %s", session.getId()));
+            live.closeConnections();
+            return null;
+        }
+        live.formSession.resume(session, restoreFactory);
+        requestAttributes.setAttribute(getCheckedOutAttribute(session.getId()), live,
+                RequestAttributes.SCOPE_REQUEST);
+        return live.formSession;
+    }
+
+    /**
+     * Keeps a session live for following requests once the current request completes
+     *
+     * @param formSession  session used by the current request
+     * @param savedSession the persisted session as just saved by the current request
+     */
+    public void checkin(FormSession formSession, SerializableFormSession savedSession) {
+        Cache cache = getCache();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (cache == null || requestAttributes == null || savedSession == null) {
+            return;
+        }
+        String sessionId = savedSession.getId();
+        String attribute = getCheckedOutAttribute(sessionId);
+        LiveFormSession live = (LiveFormSession)requestAttributes.getAttribute(attribute,
+                RequestAttributes.SCOPE_REQUEST);
+        if (live == null || live.formSession != formSession) {
+            // first request to keep this session live, it is bound to this request's databases
+            live = new LiveFormSession(formSession, restoreFactory.getSQLiteDB(),
+                    storageFactory.getSQLiteDB());
+            formDefinitionService.detachFormDef(formSession.getFormDef());
+        }
+        live.version = savedSession.getVersion();
+        live.syncToken = restoreFactory.getSyncToken();
+
+        LiveFormSession checkedIn = live;
+        requestAttributes.registerDestructionCallback(attribute, () -> {
+            // reopened lazily by the next request to use the session
+            checkedIn.closeConnections();
+            cache.put(sessionId, checkedIn);
+        }, RequestAttributes.SCOPE_REQUEST);
+        requestAttributes.setAttribute(attribute, live, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    /**
+     * Discards all live sessions of the current user, for use when their cases have changed
+     */
+    public void invalidate() {
+        CaffeineCache cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        File userDatabaseFile = restoreFactory.getSQLiteDB().getDatabaseFile();
+        cache.getNativeCache().asMap().values().removeIf(value -> {
+            if (!(value instanceof LiveFormSession)
+                    || !((LiveFormSession)value).userDB.getDatabaseFile().equals(userDatabaseFile)) {
+                return false;
+            }
+            ((LiveFormSession)value).closeConnections();
+            return true;
+        });
+    }
+
+    private CaffeineCache getCache() {
+        if (!enabled) {
+            return null;
+        }
+        return (CaffeineCache)cacheManager.getCache(Constants.LIVE_FORM_SESSION_CACHE);
+    }
+
+    private static String getCheckedOutAttribute(String sessionId) {
+        return CHECKED_OUT_ATTRIBUTE + "." + sessionId;
+    }
+
+    private static class LiveFormSession {
+        private final FormSession formSession;
+        // databases the session's sandbox and app storage were bound to when it was initialized
+        private final SQLiteDB userDB;
+        private final SQLiteDB applicationDB;
+        private int version;
+        private String syncToken;
+
+        LiveFormSession(FormSession formSession, SQLiteDB userDB, SQLiteDB applicationDB) {
+            this.formSession = formSession;
+            this.userDB = userDB;
+            this.applicationDB = applicationDB;
+        }
+
+        /**
+         * The live session is only current if nothing has saved the session since it did and the
+         * user's data and app install it was initialized against are still in place
+         */
+        boolean isCurrent(SerializableFormSession session, RestoreFactory restoreFactory,
+                FormplayerStorageFactory storageFactory) {
+            return version == session.getVersion()
+                    && userDB.getDatabaseFile().equals(restoreFactory.getSQLiteDB().getDatabaseFile())
+                    && applicationDB.getDatabaseFile().equals(storageFactory.getSQLiteDB().getDatabaseFile())
+                    && Objects.equals(syncToken, restoreFactory.getSyncToken());
+        }
+
+        void closeConnections() {
+            userDB.closeConnection();
+            applicationDB.closeConnection();
+        }
+    }
+}
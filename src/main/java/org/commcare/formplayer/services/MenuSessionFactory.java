@@ -68,6 +68,9 @@ public class MenuSessionFactory {
     @Autowired
     private VirtualDataInstanceService virtualDataInstanceService;
 
+    @Autowired
+    private EntityListCursorService entityListCursorService;
+
     @Value("${commcarehq.host}")
     private String host;
 
@@ -211,16 +214,20 @@ public class MenuSessionFactory {
                                     boolean oneQuestionPerScreen,
                                     String asUser,
                                     boolean preview) throws Exception {
-        return new MenuSession(username, domain, appId, locale,
+        MenuSession menuSession = new MenuSession(username, domain, appId, locale,
                 installService, restoreFactory, host, oneQuestionPerScreen, asUser, preview,
                 new FormplayerRemoteInstanceFetcher(caseSearchHelper, virtualDataInstanceService));
+        menuSession.setEntityListCursorService(entityListCursorService);
+        return menuSession;
     }
 
     @Trace
     public MenuSession buildSession(SerializableMenuSession serializableMenuSession, FormplayerConfigEngine engine,
             CommCareSession commCareSession) throws Exception {
-        return new MenuSession(serializableMenuSession, engine, commCareSession, restoreFactory,
-                new FormplayerRemoteInstanceFetcher(caseSearchHelper, virtualDataInstanceService));
+        MenuSession menuSession = new MenuSession(serializableMenuSession, engine, commCareSession,
+                restoreFactory, new FormplayerRemoteInstanceFetcher(caseSearchHelper, virtualDataInstanceService));
+        menuSession.setEntityListCursorService(entityListCursorService);
+        return menuSession;
     }
 
     @Trace
@@ -3,6 +3,7 @@ package org.commcare.formplayer.services;
 import org.apache.commons.io.IOUtils;
 import org.commcare.formplayer.beans.NewFormResponse;
 import org.commcare.formplayer.beans.NewSessionRequestBean;
+import org.commcare.formplayer.beans.QuestionBean;
 import org.commcare.formplayer.objects.SerializableFormDefinition;
 import org.commcare.formplayer.objects.SerializableFormSession;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
@@ -14,6 +15,7 @@ import org.javarosa.core.model.FormDef;
 import org.javarosa.core.model.actions.FormSendCalloutHandler;
 import org.javarosa.xform.util.XFormUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -53,6 +55,12 @@ public class NewFormResponseFactory {
     @Autowired
     private VirtualDataInstanceService virtualDataInstanceService;
 
+    @Autowired
+    private LiveFormSessionService liveFormSessionService;
+
+    @Value("${formplayer.session.binary_state:false}")
+    private boolean binarySessionState;
+
     public NewFormResponse getResponse(NewSessionRequestBean bean, String postUrl) throws Exception {
 
         String formXml = null;
@@ -120,14 +128,15 @@ public class NewFormResponseFactory {
 
     public NewFormResponse getResponse(FormSession formEntrySession) throws Exception {
         // Calling getFormTree has side effects and must be done before the instanceXML is serialized
-        String formTreeJson = formEntrySession.getFormTree().toString();
+        QuestionBean[] formTree = formEntrySession.getFormTree();
 
-        SerializableFormSession serializedSession = formEntrySession.serialize();
-        formSessionService.saveSession(serializedSession);
+        SerializableFormSession serializedSession = formEntrySession.serialize(binarySessionState);
+        SerializableFormSession savedSession = formSessionService.saveSession(serializedSession);
         // cannot cache until session is saved
         formDefinitionService.cacheFormDef(formEntrySession);
+        liveFormSessionService.checkin(formEntrySession, savedSession);
         NewFormResponse response = new NewFormResponse(
-                formTreeJson, formEntrySession.getLanguages(), serializedSession.getTitle(),
+                formTree, formEntrySession.getLanguages(), serializedSession.getTitle(),
                 serializedSession.getId(), serializedSession.getVersion(),
                 serializedSession.getInstanceXml()
         );
@@ -139,11 +148,11 @@ public class NewFormResponseFactory {
 
     public NewFormResponse getResponse(SerializableFormSession session, CommCareSession commCareSession) throws Exception {
         FormSession formSession = getFormSession(session, commCareSession);
-        String formTreeJson = formSession.getFormTree().toString();
+        QuestionBean[] formTree = formSession.getFormTree();
         return new NewFormResponse(
-                formTreeJson, formSession.getLanguages(), session.getTitle(),
+                formTree, formSession.getLanguages(), session.getTitle(),
                 session.getId(), session.getVersion(),
-                session.getInstanceXml()
+                formSession.getInstanceXml()
         );
     }
 
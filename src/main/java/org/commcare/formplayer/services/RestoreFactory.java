@@ -18,6 +18,7 @@ import org.commcare.formplayer.auth.HqAuth;
 import org.commcare.formplayer.beans.AuthenticatedRequestBean;
 import org.commcare.formplayer.beans.auth.FeatureFlagChecker;
 import org.commcare.formplayer.engine.FormplayerTransactionParserFactory;
+import org.commcare.formplayer.engine.RestoreWriteStage;
 import org.commcare.formplayer.exceptions.AsyncRetryException;
 import org.commcare.formplayer.exceptions.SQLiteRuntimeException;
 import org.commcare.formplayer.exceptions.SyncRestoreException;
@@ -27,8 +28,10 @@ import org.commcare.formplayer.sqlitedb.SQLiteDB;
 import org.commcare.formplayer.sqlitedb.UserDB;
 import org.commcare.formplayer.util.Constants;
 import org.commcare.formplayer.util.FormplayerSentry;
+import org.commcare.formplayer.util.PrefetchingInputStream;
 import org.commcare.formplayer.util.RequestUtils;
 import org.commcare.formplayer.util.SimpleTimer;
+import org.commcare.formplayer.util.Timing;
 import org.commcare.formplayer.util.UserUtils;
 import org.commcare.formplayer.web.client.WebClient;
 import org.commcare.modern.database.TableBuilder;
@@ -70,6 +73,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.xml.parsers.DocumentBuilder;
@@ -113,6 +117,10 @@ public class RestoreFactory {
 
     private static final String ORIGIN_TOKEN_SLUG = "OriginToken";
 
+    // buffer up to 4MB of restore payload ahead of the parser in pipelined restores
+    private static final int RESTORE_PREFETCH_CHUNK_SIZE = 64 * 1024;
+    private static final int RESTORE_PREFETCH_MAX_CHUNKS = 64;
+
     @Autowired
     protected StatsDClient datadogStatsDClient;
 
@@ -149,6 +157,15 @@ public class RestoreFactory {
     @Value("${commcarehq.formplayerAuthKey}")
     private String formplayerAuthKey;
 
+    @Value("${formplayer.restore.pipelined:false}")
+    private boolean pipelinedRestore;
+
+    @Value("${formplayer.restore.index_all_fixtures:false}")
+    private boolean indexAllFixtures;
+
+    @Value("${formplayer.purge.incremental:false}")
+    private boolean incrementalPurge;
+
     private final Log log = LogFactory.getLog(RestoreFactory.class);
 
     CategoryTimingHelper.RecordingTimer downloadRestoreTimer;
@@ -228,7 +245,7 @@ public class RestoreFactory {
             try {
                 SimpleTimer purgeTimer = new SimpleTimer();
                 purgeTimer.start();
-                FormRecordProcessorHelper.purgeCases(sandbox);
+                FormRecordProcessorHelper.purgeCases(sandbox, incrementalPurge);
                 purgeTimer.end();
                 categoryTimingHelper.recordCategoryTiming(
                         purgeTimer,
@@ -290,27 +307,17 @@ public class RestoreFactory {
         while (true) {
             try {
                 UserSqlSandbox sandbox = getSqlSandbox();
-                FormplayerTransactionParserFactory factory = new FormplayerTransactionParserFactory(sandbox, true);
-                InputStream restoreStream = getRestoreXml(skipFixtures);
-
-                SimpleTimer parseTimer = new SimpleTimer();
-                parseTimer.start();
-
-                setAutoCommit(false);
-                ParseUtils.parseIntoSandbox(restoreStream, factory, true, true);
-                hasRestored = true;
-                commit();
-                setAutoCommit(true);
-
-                parseTimer.end();
-                categoryTimingHelper.recordCategoryTiming(
-                        parseTimer,
-                        Constants.TimingCategories.PARSE_RESTORE,
-                        null,
-                        extras
-                );
-                sandbox.writeSyncToken();
-                return sandbox;
+                // closed on every way out, so a failed or retried parse doesn't leave the
+                // download thread blocked on a full queue holding the HTTP connection
+                try (InputStream restoreStream = getRestoreXml(skipFixtures);
+                     PrefetchingInputStream prefetchStream = pipelinedRestore
+                             ? new PrefetchingInputStream(restoreStream,
+                             RESTORE_PREFETCH_CHUNK_SIZE, RESTORE_PREFETCH_MAX_CHUNKS,
+                             "restore-download-" + getEffectiveUsername())
+                             : null) {
+                    return parseRestore(sandbox, prefetchStream != null ? prefetchStream : restoreStream,
+                            prefetchStream, extras);
+                }
             } catch (InvalidStructureException | SQLiteRuntimeException e) {
                 if (e instanceof InvalidStructureException || ++counter >= maxRetries) {
                     // Before throwing exception, rollback any changes to relinquish SQLite lock
@@ -330,6 +337,76 @@ public class RestoreFactory {
         }
     }
 
+    private UserSqlSandbox parseRestore(UserSqlSandbox sandbox, InputStream restoreStream,
+            @Nullable PrefetchingInputStream prefetchStream, Map<String, String> extras)
+            throws InvalidStructureException, UnfullfilledRequirementsException,
+            XmlPullParserException, IOException {
+        RestoreWriteStage writeStage = prefetchStream != null ? new RestoreWriteStage() : null;
+        FormplayerTransactionParserFactory factory =
+                new FormplayerTransactionParserFactory(sandbox, true, writeStage);
+        factory.setIndexAllFixtures(indexAllFixtures);
+
+        SimpleTimer parseTimer = new SimpleTimer();
+        parseTimer.start();
+
+        setAutoCommit(false);
+        try {
+            ParseUtils.parseIntoSandbox(restoreStream, factory, true, true);
+            if (writeStage != null) {
+                writeStage.awaitIdle();
+            }
+        } finally {
+            if (writeStage != null) {
+                writeStage.close();
+            }
+        }
+        hasRestored = true;
+        commit();
+        setAutoCommit(true);
+
+        parseTimer.end();
+        categoryTimingHelper.recordCategoryTiming(
+                parseTimer,
+                Constants.TimingCategories.PARSE_RESTORE,
+                null,
+                extras
+        );
+        if (prefetchStream != null) {
+            recordPipelineStageTimings(parseTimer, prefetchStream, writeStage, extras);
+        }
+        sandbox.writeSyncToken();
+        return sandbox;
+    }
+
+    /**
+     * Reports how long each stage of a pipelined restore was busy. The parse stage excludes time
+     * spent waiting on the download and write stages, so the slowest stage is the bottleneck.
+     */
+    private void recordPipelineStageTimings(SimpleTimer parseTimer, PrefetchingInputStream prefetchStream,
+            RestoreWriteStage writeStage, Map<String, String> extras) {
+        long parseMs = parseTimer.durationInMs()
+                - prefetchStream.getConsumerWaitTimeMs()
+                - writeStage.getWaitTimeMs();
+        categoryTimingHelper.recordCategoryTiming(
+                Timing.constant(prefetchStream.getSourceReadTimeMs()),
+                Constants.TimingCategories.RESTORE_STAGE_DOWNLOAD,
+                null,
+                extras
+        );
+        categoryTimingHelper.recordCategoryTiming(
+                Timing.constant(Math.max(parseMs, 0)),
+                Constants.TimingCategories.RESTORE_STAGE_PARSE,
+                null,
+                extras
+        );
+        categoryTimingHelper.recordCategoryTiming(
+                Timing.constant(writeStage.getBusyTimeMs()),
+                Constants.TimingCategories.RESTORE_STAGE_WRITE,
+                null,
+                extras
+        );
+    }
+
     @Trace
     public UserSqlSandbox getSqlSandbox() {
         return new UserSqlSandbox(this.sqLiteDB);
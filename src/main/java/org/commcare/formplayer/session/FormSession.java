@@ -10,8 +10,10 @@ import org.apache.commons.logging.LogFactory;
 import org.commcare.core.interfaces.RemoteInstanceFetcher;
 import org.commcare.core.interfaces.UserSandbox;
 import org.commcare.formplayer.api.json.JsonActionUtils;
+import org.commcare.formplayer.api.json.PromptToQuestionBean;
 import org.commcare.formplayer.beans.FormEntryNavigationResponseBean;
 import org.commcare.formplayer.beans.FormEntryResponseBean;
+import org.commcare.formplayer.beans.QuestionBean;
 import org.commcare.formplayer.objects.FormVolatilityRecord;
 import org.commcare.formplayer.objects.FunctionHandler;
 import org.commcare.formplayer.objects.SerializableFormDefinition;
@@ -23,6 +25,7 @@ import org.commcare.formplayer.services.MediaHandler;
 import org.commcare.formplayer.services.MediaMetaDataService;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.commcare.formplayer.util.Constants;
+import org.commcare.formplayer.util.SerializationUtil;
 import org.commcare.modern.database.TableBuilder;
 import org.commcare.session.CommCareSession;
 import org.commcare.session.SessionFrame;
@@ -34,6 +37,7 @@ import org.javarosa.core.model.FormIndex;
 import org.javarosa.core.model.actions.FormSendCalloutHandler;
 import org.javarosa.core.model.data.IAnswerData;
 import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
 import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.core.model.utils.DateUtils;
 import org.javarosa.core.services.storage.StorageManager;
@@ -46,7 +50,6 @@ import org.javarosa.form.api.FormEntryPrompt;
 import org.javarosa.model.xform.XFormSerializingVisitor;
 import org.javarosa.xform.parse.XFormParser;
 import org.javarosa.xpath.XPathException;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -74,7 +77,7 @@ import datadog.trace.api.Trace;
  */
 public class FormSession {
 
-    private final SerializableFormSession session;
+    private SerializableFormSession session;
     private final FormDef formDef;
     private final UserSqlSandbox sandbox;
     Log log = LogFactory.getLog(FormSession.class);
@@ -108,7 +111,11 @@ public class FormSession {
 
         this.formDef = formDefinitionService.getFormDef(this.session);
 
-        loadInstanceXml(this.formDef, session.getInstanceXml());
+        if (session.getInstanceState() != null) {
+            loadInstanceState(this.formDef, session.getInstanceState());
+        } else {
+            loadInstanceXml(this.formDef, session.getInstanceXml());
+        }
         this.formDef.setSendCalloutHandler(formSendCalloutHandler);
         setupJavaRosaObjects();
 
@@ -178,6 +185,16 @@ public class FormSession {
         }
     }
 
+    /**
+     * Rebinds a session kept live in memory to the persisted session loaded for the current
+     * request. The persisted session must be the one this session last serialized, so only the
+     * per-request state needs to be reapplied.
+     */
+    public void resume(SerializableFormSession session, RestoreFactory restoreFactory) {
+        this.session = session;
+        restoreFactory.setPermitAggressiveSyncs(false);
+    }
+
     @Trace
     private void setupJavaRosaObjects() {
         formEntryModel = new FormEntryModel(formDef, FormEntryModel.REPEAT_STRUCTURE_LINEAR);
@@ -240,6 +257,20 @@ public class FormSession {
         xFormParser.loadXmlInstance(formDef, stringReader);
     }
 
+    /**
+     * Restores the main instance from binary state written by {@link #serialize(boolean)}. The
+     * state is the complete instance tree (including repeat templates and bind metadata) so,
+     * unlike loadInstanceXml, no copy of the template needs to be populated.
+     */
+    @Trace
+    private void loadInstanceState(FormDef formDef, byte[] instanceState) {
+        TreeElement savedRoot = SerializationUtil.deserializeCompressed(instanceState, TreeElement.class);
+        if (!savedRoot.getName().equals(formDef.getMainInstance().getRoot().getName())) {
+            throw new RuntimeException("Saved form instance does not match template form definition");
+        }
+        formDef.getMainInstance().setRoot(savedRoot);
+    }
+
     private void initLocale() {
         if (session.getInitLang() == null) {
             session.setInitLang(this.langs[0]);
@@ -391,14 +422,14 @@ public class FormSession {
     }
 
     @Trace
-    public JSONArray getFormTree() {
+    public QuestionBean[] getFormTree() {
         if (session.isOneQuestionPerScreen()) {
-            return JsonActionUtils.getOneQuestionPerScreenJson(
+            return JsonActionUtils.getOneQuestionPerScreenTree(
                     formController.getFormEntryController().getModel(),
                     formController.getFormEntryController(),
                     formController.getFormIndex());
         }
-        return JsonActionUtils.getFullFormJSON(getFormEntryModel(), getFormEntryController());
+        return JsonActionUtils.getFullFormTree(getFormEntryModel(), getFormEntryController());
     }
 
 
@@ -430,7 +461,26 @@ public class FormSession {
     }
 
     public SerializableFormSession serialize() throws IOException {
-        session.setInstanceXml(getInstanceXml());
+        return serialize(false);
+    }
+
+    /**
+     * @param binaryState persist the instance as compressed binary state rather than XML. The
+     *                    XML is still rendered and available from the returned session for the
+     *                    response to this request.
+     */
+    @Trace
+    public SerializableFormSession serialize(boolean binaryState) throws IOException {
+        String instanceXml = getInstanceXml();
+        if (binaryState) {
+            session.setInstanceState(SerializationUtil.serializeCompressed(
+                    formDef.getMainInstance().getRoot()));
+            session.setInstanceXml(null);
+            session.setRenderedInstanceXml(instanceXml);
+        } else {
+            session.setInstanceState(null);
+            session.setInstanceXml(instanceXml);
+        }
         return session;
     }
 
@@ -547,9 +597,8 @@ public class FormSession {
         session.setCurrentIndex(formController.getFormIndex().toString());
     }
 
-    public FormEntryResponseBean getCurrentJson() throws IOException {
-        JSONObject jsonObject = JsonActionUtils.getCurrentJson(formEntryController, formEntryModel);
-        return new ObjectMapper().readValue(jsonObject.toString(), FormEntryResponseBean.class);
+    public FormEntryResponseBean getCurrentJson() {
+        return JsonActionUtils.getCurrentResponse(formEntryController, formEntryModel);
     }
 
     @Trace
@@ -563,13 +612,20 @@ public class FormSession {
                 formEntryModel,
                 answer != null ? answer.toString() : null,
                 answerIndex,
-                session.isOneQuestionPerScreen(),
-                session.getCurrentIndex(),
-                false,
-                true);
+                false);
 
         FormEntryResponseBean response = new ObjectMapper().readValue(jsonObject.toString(),
                 FormEntryResponseBean.class);
+        if (Constants.ANSWER_RESPONSE_STATUS_POSITIVE.equals(response.getStatus())) {
+            if (session.isOneQuestionPerScreen()) {
+                response.setTree(JsonActionUtils.getOneQuestionPerScreenTree(formEntryModel,
+                        formEntryController,
+                        JsonActionUtils.indexFromString(session.getCurrentIndex(), formDef)));
+            } else {
+                response.setTree(JsonActionUtils.getFullFormTree(formEntryModel,
+                        formEntryController));
+            }
+        }
         if (!session.isInPromptMode() || !Constants.ANSWER_RESPONSE_STATUS_POSITIVE.equals(
                 response.getStatus())) {
             return response;
@@ -578,11 +634,10 @@ public class FormSession {
     }
 
     public FormEntryNavigationResponseBean getFormNavigation() throws IOException {
-        JSONObject resp = JsonActionUtils.getCurrentJson(formEntryController, formEntryModel,
-                session.getCurrentIndex());
-        FormEntryNavigationResponseBean responseBean
-                = new ObjectMapper().readValue(resp.toString(),
-                FormEntryNavigationResponseBean.class);
+        FormEntryNavigationResponseBean responseBean = new FormEntryNavigationResponseBean();
+        responseBean.setTree(JsonActionUtils.getOneQuestionPerScreenTree(formEntryModel,
+                formEntryController,
+                JsonActionUtils.indexFromString(session.getCurrentIndex(), formDef)));
         responseBean.setIsAtLastIndex(isAtLastIndex);
         responseBean.setIsAtFirstIndex(isAtFirstIndex);
         responseBean.setTitle(session.getTitle());
@@ -600,10 +655,8 @@ public class FormSession {
                 JsonActionUtils.indexFromString(session.getCurrentIndex(), formDef));
         int nextEvent = formEntryController.stepToNextEvent();
         session.setCurrentIndex(formController.getFormIndex().toString());
-        JSONObject resp = JsonActionUtils.getPromptJson(formEntryModel);
-        FormEntryNavigationResponseBean responseBean
-                = new ObjectMapper().readValue(resp.toString(),
-                FormEntryNavigationResponseBean.class);
+        FormEntryNavigationResponseBean responseBean = new FormEntryNavigationResponseBean();
+        responseBean.setEvent(PromptToQuestionBean.parseQuestionType(formEntryModel));
         responseBean.setIsAtLastIndex(isAtLastIndex);
         responseBean.setIsAtFirstIndex(isAtFirstIndex);
         responseBean.setTitle(session.getTitle());
@@ -13,6 +13,7 @@ import org.commcare.formplayer.objects.SerializableMenuSession;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
 import org.commcare.formplayer.screens.FormplayerQueryScreen;
 import org.commcare.formplayer.screens.FormplayerSyncScreen;
+import org.commcare.formplayer.services.EntityListCursorService;
 import org.commcare.formplayer.services.FormDefinitionService;
 import org.commcare.formplayer.services.FormplayerRemoteInstanceFetcher;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
@@ -87,6 +88,9 @@ public class MenuSession implements HereFunctionHandlerListener {
 
     private String smartLinkRedirect;
 
+    @Nullable
+    private EntityListCursorService entityListCursorService;
+
     public MenuSession(SerializableMenuSession session,
             FormplayerConfigEngine engine, CommCareSession commCareSession, RestoreFactory restoreFactory,
             FormplayerRemoteInstanceFetcher instanceFetcher) throws Exception {
@@ -295,12 +299,18 @@ public class MenuSession implements HereFunctionHandlerListener {
     private EntityScreen createFreshEntityScreen(boolean needsFullEntityScreen,
             EntityDatum datum, EntityScreenContext entityScreenContext)
             throws CommCareSessionException {
+        EntityScreen entityScreen;
         if (datum instanceof MultiSelectEntityDatum) {
-            return new MultiSelectEntityScreen(false, needsFullEntityScreen,
+            entityScreen = new MultiSelectEntityScreen(false, needsFullEntityScreen,
                     sessionWrapper, instanceFetcher.getVirtualDataInstanceStorage(), entityScreenContext);
         } else {
-            return new EntityScreen(false, needsFullEntityScreen, sessionWrapper, entityScreenContext);
+            entityScreen = new EntityScreen(false, needsFullEntityScreen, sessionWrapper, entityScreenContext);
+        }
+        if (entityListCursorService != null) {
+            entityScreen.setEntityListCursorStore(
+                    entityListCursorService.getCursorStore(currentBrowserLocation));
         }
+        return entityScreen;
     }
 
     private void computeDatum() {
@@ -411,6 +421,10 @@ public class MenuSession implements HereFunctionHandlerListener {
         return this.currentBrowserLocation;
     }
 
+    public void setEntityListCursorService(@Nullable EntityListCursorService entityListCursorService) {
+        this.entityListCursorService = entityListCursorService;
+    }
+
     @Override
     public void onEvalLocationChanged() {
     }
@@ -1,7 +1,52 @@
 package org.commcare.formplayer.sqlitedb;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
 public class ApplicationDB extends SQLiteDB {
+
+    // written next to the user's application db when the user is on a shared install
+    private static final String SHARED_BUILD_FILE = "shared_build";
+
+    private final String domain;
+    private final String appId;
+
     public ApplicationDB(String domain, String username, String asUsername, String appId) {
         super(new ApplicationDBPath(domain, username, asUsername, appId));
+        this.domain = domain;
+        this.appId = appId;
+    }
+
+    /**
+     * @return the shared install this user's application points at, or null if it is not
+     * pointing at one or the shared install no longer exists
+     */
+    public SharedApplicationDB getSharedApplicationDB() {
+        File pointer = new File(getDatabaseFolder(), SHARED_BUILD_FILE);
+        if (!pointer.exists()) {
+            return null;
+        }
+        String buildKey;
+        try {
+            buildKey = new String(Files.readAllBytes(pointer.toPath()), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return null;
+        }
+        SharedApplicationDB sharedDB = new SharedApplicationDB(domain, appId, buildKey);
+        return sharedDB.databaseFileExists() ? sharedDB : null;
+    }
+
+    /**
+     * Points this user's application at a shared install, removing any install of their own
+     */
+    public void setSharedApplicationDB(SharedApplicationDB sharedDB) throws IOException {
+        deleteDatabaseFile();
+        if (!databaseFolderExists() && !createDatabaseFolder()) {
+            throw new IOException("Error instantiating folder " + getDatabaseFolder());
+        }
+        Files.write(new File(getDatabaseFolder(), SHARED_BUILD_FILE).toPath(),
+                sharedDB.getBuildKey().getBytes(StandardCharsets.UTF_8));
     }
 }
@@ -9,6 +9,7 @@ import org.commcare.formplayer.sandbox.SqlSandboxUtils;
 import org.commcare.formplayer.services.ConnectionHandler;
 
 import javax.sql.DataSource;
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -99,6 +100,14 @@ public class SQLiteDB implements ConnectionHandler {
         return dbArchivableFile.getParentFile().exists();
     }
 
+    public File getDatabaseFile() {
+        return dbArchivableFile;
+    }
+
+    public File getDatabaseFolder() {
+        return dbArchivableFile.getParentFile();
+    }
+
     public String getDatabaseFileForDebugPurposes() {
         return dbPath.getDatabaseFile();
     }
@@ -0,0 +1,66 @@
+package org.commcare.formplayer.sqlitedb;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Application database shared by every user of one app build. The build is identified by a
+ * content hash of its .ccz, so two users only ever share an install of identical app content.
+ *
+ * Shared installs are written once, in a private staging folder, and then published with an
+ * atomic rename. After that they are only ever read.
+ */
+public class SharedApplicationDB extends SQLiteDB {
+
+    private static final String STAGING_SEPARATOR = "_staging_";
+
+    private final Log log = LogFactory.getLog(SharedApplicationDB.class);
+
+    private final String domain;
+    private final String appId;
+    private final String buildKey;
+
+    public SharedApplicationDB(String domain, String appId, String buildKey) {
+        super(new SharedApplicationDBPath(domain, appId, buildKey));
+        this.domain = domain;
+        this.appId = appId;
+        this.buildKey = buildKey;
+    }
+
+    public String getBuildKey() {
+        return buildKey;
+    }
+
+    /**
+     * @return a database in a uniquely named sibling folder to install into before publishing
+     */
+    public SharedApplicationDB newStagingDB() {
+        return new SharedApplicationDB(domain, appId, buildKey + STAGING_SEPARATOR + UUID.randomUUID());
+    }
+
+    /**
+     * Moves a fully installed staging database into this database's location.
+     *
+     * @return false if another install won the race, in which case the staging copy is discarded
+     */
+    public boolean publish(SharedApplicationDB staging) throws IOException {
+        staging.closeConnection();
+        try {
+            Files.move(staging.getDatabaseFolder().toPath(), getDatabaseFolder().toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            log.info(String.format("Shared install %s already published, discarding %s",
+                    getDatabaseFolder(), staging.getDatabaseFolder()));
+            staging.deleteDatabaseFolder();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.commcare.formplayer.sqlitedb;
+
+import org.commcare.formplayer.application.SQLiteProperties;
+import org.commcare.formplayer.util.Constants;
+
+import java.nio.file.Paths;
+
+class SharedApplicationDBPath extends DBPath {
+
+    // user folders are scrubbed of '.', so this can never collide with a username
+    static final String SHARED_APPS_FOLDER = ".shared_apps";
+
+    private String domain;
+    private String appId;
+    private String buildKey;
+
+    SharedApplicationDBPath(String domain, String appId, String buildKey) {
+        this.domain = domain;
+        this.appId = appId;
+        this.buildKey = buildKey;
+    }
+
+    @Override
+    public String getDatabasePath() {
+        return SQLiteProperties.getDataDir() + Paths.get(domain, SHARED_APPS_FOLDER, appId, buildKey);
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return "application_" + Constants.SQLITE_DB_VERSION;
+    }
+}
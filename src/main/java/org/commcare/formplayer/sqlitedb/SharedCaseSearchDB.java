@@ -0,0 +1,36 @@
+package org.commcare.formplayer.sqlitedb;
+
+import java.util.UUID;
+
+/**
+ * Database holding one set of indexed case search results, shared by every user of the domain
+ * whose search has the same query and permission scope (see CaseSearchResultStore).
+ *
+ * Each set of results gets its own folder. It is written once, by the request that ran the
+ * search, and only read after that. Every request reading it opens its own connection.
+ */
+public class SharedCaseSearchDB extends SQLiteDB {
+
+    private final String domain;
+    private final String resultsId;
+
+    public SharedCaseSearchDB(String domain, String resultsId) {
+        super(new SharedCaseSearchDBPath(domain, resultsId));
+        this.domain = domain;
+        this.resultsId = resultsId;
+    }
+
+    /**
+     * @return a database in a new, uniquely named folder to index a set of search results into
+     */
+    public static SharedCaseSearchDB newResults(String domain) {
+        return new SharedCaseSearchDB(domain, UUID.randomUUID().toString());
+    }
+
+    /**
+     * @return another handle on the same database, which opens its own connection
+     */
+    public SharedCaseSearchDB reopen() {
+        return new SharedCaseSearchDB(domain, resultsId);
+    }
+}
@@ -0,0 +1,30 @@
+package org.commcare.formplayer.sqlitedb;
+
+import org.commcare.formplayer.application.SQLiteProperties;
+import org.commcare.formplayer.util.Constants;
+
+import java.nio.file.Paths;
+
+class SharedCaseSearchDBPath extends DBPath {
+
+    // user folders are scrubbed of '.', so this can never collide with a username
+    static final String SHARED_CASE_SEARCH_FOLDER = ".shared_case_search";
+
+    private String domain;
+    private String resultsId;
+
+    SharedCaseSearchDBPath(String domain, String resultsId) {
+        this.domain = domain;
+        this.resultsId = resultsId;
+    }
+
+    @Override
+    public String getDatabasePath() {
+        return SQLiteProperties.getTempDataDir() + Paths.get(domain, SHARED_CASE_SEARCH_FOLDER, resultsId);
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return "case_search_" + Constants.CASE_SEARCH_DB_VERSION;
+    }
+}
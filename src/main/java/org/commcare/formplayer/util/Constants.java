@@ -108,6 +108,8 @@ public class Constants {
     public static final String COMMCARE_USER_SUFFIX = "commcarehq.org";
 
     public static final int USER_LOCK_TIMEOUT = 21;
+    // requests waiting on a user's lock beyond this are rejected rather than queued
+    public static final int USER_LOCK_MAX_QUEUE_DEPTH = 8;
     // 15 minutes in milliseconds
     public static final int LOCK_DURATION = 60 * 15 * 1000;
     public static final int CONNECT_TIMEOUT = 60 * 1000;
@@ -121,6 +123,8 @@ public class Constants {
     public static final String DATADOG_TIMINGS = "timings";
     public static final String DATADOG_GRANULAR_TIMINGS = "granular.timings";
     public static final String DATADOG_RESTORE_COUNT = "restore.count";
+    public static final String DATADOG_LOCK_QUEUE_DEPTH = "lock.queue_depth";
+    public static final String DATADOG_LOCK_COALESCED = "lock.coalesced";
 
     // Datadog/Sentry tags
     public static final String APP_NAME_TAG = "app_name";
@@ -169,6 +173,9 @@ public class Constants {
         public static final String UPDATE_SESSION = "update_session";
         public static final String COMPILE_RESPONSE = "compile_response";
         public static final String BUILD_RESTORE_URL = "build_restore_url";
+        public static final String RESTORE_STAGE_DOWNLOAD = "restore_stage_download";
+        public static final String RESTORE_STAGE_PARSE = "restore_stage_parse";
+        public static final String RESTORE_STAGE_WRITE = "restore_stage_write";
     }
 
     // Requests
@@ -186,6 +193,10 @@ public class Constants {
     // Cache Names
     public static final String VIRTUAL_DATA_INSTANCES_CACHE = "virtual_data_instances";
     public static final String MEDIA_METADATA_CACHE = "media_metadata";
+    public static final String INSTALLED_APP_CACHE = "installed_app";
+    public static final String LIVE_FORM_SESSION_CACHE = "live_form_session";
+    public static final String ENTITY_LIST_CURSOR_CACHE = "entity_list_cursor";
+    public static final String FORM_TREE_SNAPSHOT_CACHE = "form_tree_snapshot";
 
     // End Datadog metrics
 
@@ -198,6 +209,7 @@ public class Constants {
     public static final String TOGGLE_SESSION_ENDPOINTS = "SESSION_ENDPOINTS";
     public static final String TOGGLE_SPLIT_SCREEN_CASE_SEARCH = "SPLIT_SCREEN_CASE_SEARCH";
     public static final String TOGGLE_INCLUDE_STATE_HASH = "FORMPLAYER_INCLUDE_STATE_HASH";
+    public static final String TOGGLE_SHARE_CASE_SEARCH_RESULTS = "FORMPLAYER_SHARE_CASE_SEARCH_RESULTS";
 
     public static final String AUTHORITY_COMMCARE = "COMMCARE";
 }
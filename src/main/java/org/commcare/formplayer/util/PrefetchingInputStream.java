@@ -0,0 +1,157 @@
+package org.commcare.formplayer.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InputStream which drains a source stream on a background thread into a bounded queue of
+ * chunks. Used for restores so that reading the response off the socket overlaps with
+ * parsing instead of alternating with it. Once the queue is full the reader thread blocks,
+ * so at most {@code chunkSize * maxChunks} bytes are ever buffered in memory.
+ */
+public class PrefetchingInputStream extends InputStream {
+
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final InputStream source;
+    private final int chunkSize;
+    private final BlockingQueue<byte[]> chunks;
+    private final Thread reader;
+
+    private volatile IOException readFailure;
+    private volatile boolean closed = false;
+    private volatile long sourceReadNanos = 0;
+
+    private byte[] current;
+    private int position;
+    private boolean finished = false;
+    private long consumerWaitNanos = 0;
+
+    public PrefetchingInputStream(InputStream source, int chunkSize, int maxChunks, String threadName) {
+        this.source = source;
+        this.chunkSize = chunkSize;
+        this.chunks = new ArrayBlockingQueue<>(maxChunks);
+        this.reader = new Thread(this::fill, threadName);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void fill() {
+        try {
+            while (!closed) {
+                byte[] buffer = new byte[chunkSize];
+                long start = System.nanoTime();
+                int read = source.read(buffer);
+                sourceReadNanos += System.nanoTime() - start;
+                if (read == -1) {
+                    break;
+                }
+                if (read > 0) {
+                    chunks.put(read == chunkSize ? buffer : Arrays.copyOf(buffer, read));
+                }
+            }
+        } catch (IOException e) {
+            readFailure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            signalEndOfStream();
+        }
+    }
+
+    private void signalEndOfStream() {
+        try {
+            while (!closed && !chunks.offer(END_OF_STREAM, 100, TimeUnit.MILLISECONDS)) {
+                // consumer is still draining a full queue, keep waiting
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return false once the stream is exhausted
+     */
+    private boolean ensureChunk() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (current != null && position < current.length) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            current = chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for restore data", e);
+        } finally {
+            consumerWaitNanos += System.nanoTime() - start;
+        }
+        position = 0;
+        if (current == END_OF_STREAM) {
+            finished = true;
+            if (readFailure != null) {
+                throw new IOException("Failed to read restore stream", readFailure);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureChunk()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureChunk()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.interrupt();
+        chunks.clear();
+        source.close();
+    }
+
+    /**
+     * @return time the background thread spent blocked reading from the source stream
+     */
+    public long getSourceReadTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(sourceReadNanos);
+    }
+
+    /**
+     * @return time the consumer spent waiting for data to arrive from the source stream
+     */
+    public long getConsumerWaitTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(consumerWaitNanos);
+    }
+}
@@ -3,11 +3,16 @@ package org.commcare.formplayer.util;
 import org.javarosa.core.services.Logger;
 import org.javarosa.core.services.PrototypeManager;
 import org.javarosa.core.util.externalizable.DeserializationException;
+import org.javarosa.core.util.externalizable.ExtUtil;
 import org.javarosa.core.util.externalizable.Externalizable;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class SerializationUtil {
 
@@ -29,6 +34,38 @@ public class SerializationUtil {
         return t;
     }
 
+    /**
+     * Externalizes an object into a gzip compressed byte array, for larger values such as form
+     * instances where most of the serialized bytes are repeated element names
+     */
+    public static byte[] serializeCompressed(Externalizable data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            ExtUtil.write(out, data);
+        } catch (IOException e) {
+            throw logAndWrap(e, data.getClass(), "IO Exception");
+        }
+        return bytes.toByteArray();
+    }
+
+    public static <T extends Externalizable> T deserializeCompressed(byte[] bytes, Class<T> type) {
+        T t;
+        try (DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(bytes)))) {
+            t = type.newInstance();
+            t.readExternal(in, PrototypeManager.getDefault());
+        } catch (IllegalAccessException e) {
+            throw logAndWrap(e, type, "Illegal Access Exception");
+        } catch (InstantiationException e) {
+            throw logAndWrap(e, type, "Instantiation Exception");
+        } catch (IOException e) {
+            throw logAndWrap(e, type, "IO Exception");
+        } catch (DeserializationException e) {
+            throw logAndWrap(e, type, "CommCare ran into an issue deserializing data");
+        }
+        return t;
+    }
+
     private static RuntimeException logAndWrap(Exception e, Class type, String message) {
         RuntimeException re = new RuntimeException(
                 message + " while inflating type " + type.getName());
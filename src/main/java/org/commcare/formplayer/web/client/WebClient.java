@@ -5,13 +5,17 @@ import com.google.common.collect.Multimap;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.commcare.formplayer.util.RequestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.URI;
@@ -82,6 +86,31 @@ public class WebClient {
         return postRaw(uri, headers, postData, String.class).getBody();
     }
 
+    /**
+     * Posts form data and hands the response to the extractor as it streams in, rather than first
+     * reading all of the response body into memory
+     */
+    public <R> R postFormData(String url, Multimap<String, String> data, ResponseExtractor<R> responseExtractor) {
+        checkHmac();
+        URI uri = URI.create(url);
+        LinkedMultiValueMap<String, String> postData = new LinkedMultiValueMap<>();
+        data.forEach(postData::add);
+
+        HttpHeaders headers = restoreFactory.getRequestHeaders(uri);
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        HttpStatusCode[] status = new HttpStatusCode[1];
+        try {
+            return restTemplate.execute(uri, HttpMethod.POST,
+                    restTemplate.httpEntityCallback(new HttpEntity<>(postData, headers)),
+                    response -> {
+                        status[0] = response.getStatusCode();
+                        return responseExtractor.extractData(response);
+                    });
+        } finally {
+            log.info(String.format("HTTP POST to '%s'. Response %s. Request body '%s'", uri, status[0], postData));
+        }
+    }
+
     public <T> Boolean caseClaimPost(String url, T body) {
         checkHmac();
         URI uri = URI.create(url);
@@ -0,0 +1,101 @@
+package org.commcare.formplayer.api.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.commcare.formplayer.beans.QuestionBean;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.xform.util.XFormUtils;
+import org.json.JSONArray;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares the time taken and memory allocated building and serializing a form's question tree
+ * as beans (JsonActionUtils.getFullFormTree) and through org.json (Walker and PromptToJson, as
+ * form entry responses used to be built).
+ *
+ * Runs outside of Spring against a form loaded straight from the test resources, e.g. from the
+ * IDE or with the test runtime classpath:
+ *
+ * java -cp ... org.commcare.formplayer.api.json.QuestionTreeBenchmark [form resource] [iterations]
+ *
+ * The form must not reference external instances, since nothing here can initialize them.
+ */
+public class QuestionTreeBenchmark {
+
+    private static final String DEFAULT_FORM = "xforms/question_types_2.xml";
+    private static final int DEFAULT_ITERATIONS = 2000;
+    private static final int ROUNDS = 5;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final FormEntryModel model;
+    private final FormEntryController controller;
+
+    private QuestionTreeBenchmark(FormDef formDef) {
+        formDef.initialize(true, null);
+        model = new FormEntryModel(formDef);
+        controller = new FormEntryController(model);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String form = args.length > 0 ? args[0] : DEFAULT_FORM;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        FormDef formDef;
+        try (InputStream is = QuestionTreeBenchmark.class.getClassLoader().getResourceAsStream(form)) {
+            if (is == null) {
+                throw new IllegalArgumentException("No form found at " + form);
+            }
+            formDef = XFormUtils.getFormFromInputStream(is);
+        }
+        new QuestionTreeBenchmark(formDef).run(iterations);
+    }
+
+    private void run(int iterations) throws Exception {
+        String expected = serializeWalkerTree();
+        String actual = serializeBeanTree();
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Question trees differ:\n" + expected + "\n" + actual);
+        }
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // the first rounds warm up both paths
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = threadBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                serializeWalkerTree();
+            }
+            long jsonNanos = System.nanoTime() - start;
+            long jsonBytes = threadBean.getThreadAllocatedBytes(threadId) - allocated;
+
+            allocated = threadBean.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                serializeBeanTree();
+            }
+            long beanNanos = System.nanoTime() - start;
+            long beanBytes = threadBean.getThreadAllocatedBytes(threadId) - allocated;
+
+            System.out.printf("round %d: org.json %d us, %d bytes per tree; "
+                            + "beans %d us, %d bytes per tree%n", round,
+                    jsonNanos / iterations / 1000, jsonBytes / iterations,
+                    beanNanos / iterations / 1000, beanBytes / iterations);
+        }
+    }
+
+    private String serializeWalkerTree() throws Exception {
+        JSONArray tree = new JSONArray();
+        new Walker(tree, FormIndex.createBeginningOfFormIndex(), controller, model).walk();
+        return mapper.writeValueAsString(mapper.readValue(tree.toString(), QuestionBean[].class));
+    }
+
+    private String serializeBeanTree() throws Exception {
+        return mapper.writeValueAsString(JsonActionUtils.getFullFormTree(model, controller));
+    }
+}
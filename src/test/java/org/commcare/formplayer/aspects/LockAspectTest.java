@@ -0,0 +1,219 @@
+package org.commcare.formplayer.aspects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.commcare.formplayer.annotations.UserLock;
+import org.commcare.formplayer.beans.SessionRequestBean;
+import org.commcare.formplayer.services.CategoryTimingHelper;
+import org.commcare.formplayer.services.FormSessionService;
+import org.commcare.formplayer.services.FormplayerLockRegistry;
+import org.commcare.formplayer.services.FormplayerLockRegistry.FormplayerReentrantLock;
+import org.commcare.formplayer.util.Constants;
+import org.commcare.formplayer.util.MultipleReadHttpRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for queueing and coalescing requests on the user lock
+ */
+public class LockAspectTest {
+
+    private static final String USERNAME = "lockuser";
+
+    private LockAspect lockAspect;
+    private FormplayerLockRegistry lockRegistry;
+    private StatsDClient statsDClient;
+    private ExecutorService requestThreads;
+
+    private final AtomicInteger requestsRun = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        lockAspect = new LockAspect();
+        lockRegistry = Mockito.spy(new FormplayerLockRegistry());
+        statsDClient = mock(StatsDClient.class);
+        CategoryTimingHelper categoryTimingHelper = Mockito.spy(CategoryTimingHelper.class);
+        doNothing().when(categoryTimingHelper).recordCategoryTiming(any(), any(), any(), any());
+        ReflectionTestUtils.setField(lockAspect, "userLockRegistry", lockRegistry);
+        ReflectionTestUtils.setField(lockAspect, "datadogStatsDClient", statsDClient);
+        ReflectionTestUtils.setField(lockAspect, "categoryTimingHelper", categoryTimingHelper);
+        ReflectionTestUtils.setField(lockAspect, "formSessionService", mock(FormSessionService.class));
+        requestThreads = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        requestThreads.shutdownNow();
+    }
+
+    @Test
+    public void testUserLocksAreFair() {
+        assertTrue(lockRegistry.obtain(USERNAME).isFair());
+    }
+
+    @Test
+    public void testRejectedWhenQueueIsFull() throws Throwable {
+        FormplayerReentrantLock lock = mock(FormplayerReentrantLock.class);
+        when(lock.getQueueLength()).thenReturn(Constants.USER_LOCK_MAX_QUEUE_DEPTH);
+        Mockito.doReturn(lock).when(lockRegistry).obtain(USERNAME);
+
+        ProceedingJoinPoint joinPoint = mockJoinPoint("current", "session");
+        assertThrows(LockAspect.LockError.class,
+                () -> callWithBody(joinPoint, "{\"session_id\": \"session\"}"));
+        verify(joinPoint, never()).proceed();
+        verify(lock, never()).tryLock(Mockito.anyLong(), any());
+    }
+
+    @Test
+    public void testIdenticalQueuedRequestsShareResponse() throws Throwable {
+        FormplayerReentrantLock lock = lockRegistry.obtain(USERNAME);
+        lock.lock();
+        Future<Object> first;
+        Future<Object> second;
+        try {
+            first = queueRequest("current", "{\"session_id\": \"session\"}");
+            awaitQueueLength(lock, 1);
+            second = queueRequest("current", "{\"session_id\": \"session\"}");
+            verify(statsDClient, timeout(5000)).increment(eq(Constants.DATADOG_LOCK_COALESCED),
+                    anyString(), anyString());
+        } finally {
+            lock.unlock();
+        }
+        assertEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requestsRun.get());
+    }
+
+    @Test
+    public void testRequestsWithDifferentBodiesAreNotCoalesced() throws Throwable {
+        FormplayerReentrantLock lock = lockRegistry.obtain(USERNAME);
+        lock.lock();
+        Future<Object> first;
+        Future<Object> second;
+        try {
+            first = queueRequest("current", "{\"session_id\": \"session\", \"tz_offset\": 0}");
+            awaitQueueLength(lock, 1);
+            second = queueRequest("current", "{\"session_id\": \"session\", \"tz_offset\": 60}");
+            awaitQueueLength(lock, 2);
+        } finally {
+            lock.unlock();
+        }
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, requestsRun.get());
+        verify(statsDClient, never()).increment(eq(Constants.DATADOG_LOCK_COALESCED),
+                anyString(), anyString());
+    }
+
+    @Test
+    public void testCoalescedRequestTimesOutWithRequestItJoined() throws Throwable {
+        FormplayerReentrantLock lock = lockRegistry.obtain(USERNAME);
+        lock.lock();
+        Future<Object> first;
+        try {
+            first = queueRequest("current", "{\"session_id\": \"session\"}");
+            awaitQueueLength(lock, 1);
+            // the first request has been waiting on the lock for all but a second of its timeout
+            Object pending = ((Map<?, ?>)ReflectionTestUtils.getField(lockAspect, "pendingRequests"))
+                    .get(USERNAME);
+            ReflectionTestUtils.setField(pending, "startedAt",
+                    System.nanoTime() - TimeUnit.SECONDS.toNanos(Constants.USER_LOCK_TIMEOUT - 1));
+
+            Future<Object> second = queueRequest("current", "{\"session_id\": \"session\"}");
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> second.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof LockAspect.LockError);
+        } finally {
+            lock.unlock();
+        }
+        assertEquals("response 1", first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requestsRun.get());
+    }
+
+    private Future<Object> queueRequest(String methodName, String body) throws Throwable {
+        ProceedingJoinPoint joinPoint = mockJoinPoint(methodName, "session");
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        requestThreads.submit(() -> {
+            try {
+                result.complete(callWithBody(joinPoint, body));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    private Object callWithBody(ProceedingJoinPoint joinPoint, String body) throws Throwable {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/current");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        RequestContextHolder.setRequestAttributes(
+                new ServletRequestAttributes(new MultipleReadHttpRequest(request)));
+        try {
+            return lockAspect.aroundLock(joinPoint);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private ProceedingJoinPoint mockJoinPoint(String methodName, String sessionId) throws Throwable {
+        SessionRequestBean bean = new SessionRequestBean();
+        bean.setUsername(USERNAME);
+        bean.setDomain("lock-domain");
+        bean.setSessionId(sessionId);
+
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(
+                LockedEndpoints.class.getMethod(methodName, SessionRequestBean.class));
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{bean});
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.proceed()).thenAnswer(invocation -> "response " + requestsRun.incrementAndGet());
+        return joinPoint;
+    }
+
+    private static void awaitQueueLength(FormplayerReentrantLock lock, int length)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (lock.getQueueLength() < length && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(length, lock.getQueueLength());
+    }
+
+    static class LockedEndpoints {
+        @UserLock(coalesce = true)
+        public Object current(SessionRequestBean bean) {
+            return null;
+        }
+    }
+}
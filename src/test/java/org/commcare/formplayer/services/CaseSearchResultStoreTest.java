@@ -0,0 +1,152 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import org.commcare.formplayer.sqlitedb.SharedCaseSearchDB;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for CaseSearchResultStore
+ */
+public class CaseSearchResultStoreTest {
+
+    private static final String DOMAIN = "case_search_domain";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private CaseSearchResultStore store;
+
+    @BeforeEach
+    public void setUp() {
+        FileSystemUtils.deleteRecursively(new File("tmp_dbs"));
+        store = new CaseSearchResultStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(store, "maxMegabytes", 1L);
+        ReflectionTestUtils.setField(store, "deleteDelayMillis", TimeUnit.SECONDS.toMillis(60));
+        ReflectionTestUtils.setField(store, "ticker", (Ticker)nanos::get);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        FileSystemUtils.deleteRecursively(new File("tmp_dbs"));
+    }
+
+    @Test
+    public void testSharedUntilExpired() throws SQLException {
+        SharedCaseSearchDB results = indexResults(1000);
+        store.publish("query", results);
+
+        SharedCaseSearchDB shared = store.get("query");
+        assertNotNull(shared);
+        assertEquals(results.getDatabaseFile(), shared.getDatabaseFile());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(301));
+        assertNull(store.get("query"));
+        store.cleanUp();
+
+        // requests which were handed the results can keep reading them for a while
+        assertTrue(results.getDatabaseFolder().exists());
+        assertResultsReadable(shared);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        store.cleanUp();
+        assertFalse(results.getDatabaseFolder().exists());
+    }
+
+    @Test
+    public void testReaderConnectionOpened() throws SQLException {
+        store.publish("query", indexResults(1000));
+        SharedCaseSearchDB shared = store.get("query");
+        assertFalse(shared.getConnection().isClosed());
+        assertResultsReadable(shared);
+    }
+
+    @Test
+    public void testReplacedResultsDeleted() throws SQLException {
+        SharedCaseSearchDB first = indexResults(1000);
+        store.publish("query", first);
+        SharedCaseSearchDB second = indexResults(1000);
+        store.publish("query", second);
+        assertEquals(second.getDatabaseFile(), store.get("query").getDatabaseFile());
+
+        store.invalidate("query");
+        assertNull(store.get("query"));
+        assertTrue(first.getDatabaseFolder().exists());
+        assertTrue(second.getDatabaseFolder().exists());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        store.cleanUp();
+        assertFalse(first.getDatabaseFolder().exists());
+        assertFalse(second.getDatabaseFolder().exists());
+    }
+
+    @Test
+    public void testEvictedBySize() throws SQLException {
+        List<SharedCaseSearchDB> published = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            SharedCaseSearchDB results = indexResults(400 * 1024);
+            store.publish("query_" + i, results);
+            published.add(results);
+        }
+        store.cleanUp();
+        // past the delay for deleting evicted results, but not the time to live of the rest
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        store.cleanUp();
+
+        long bytesOnDisk = 0;
+        int kept = 0;
+        for (SharedCaseSearchDB results : published) {
+            if (results.databaseFileExists()) {
+                bytesOnDisk += results.getDatabaseFile().length();
+                kept++;
+            }
+        }
+        assertTrue(kept < published.size());
+        assertTrue(bytesOnDisk <= 1024 * 1024);
+    }
+
+    @Test
+    public void testDiscard() throws SQLException {
+        SharedCaseSearchDB results = indexResults(1000);
+        store.discard(results);
+        assertFalse(results.getDatabaseFolder().exists());
+    }
+
+    private static void assertResultsReadable(SharedCaseSearchDB results) throws SQLException {
+        try (ResultSet rows = results.getConnection().createStatement().executeQuery(
+                "SELECT COUNT(*) FROM results")) {
+            assertTrue(rows.next());
+            assertEquals(1, rows.getInt(1));
+        }
+    }
+
+    private SharedCaseSearchDB indexResults(int bytes) throws SQLException {
+        SharedCaseSearchDB results = store.newResults(DOMAIN);
+        results.getConnection().createStatement().execute("CREATE TABLE results (data BLOB)");
+        try (PreparedStatement insert = results.getConnection().prepareStatement(
+                "INSERT INTO results VALUES (?)")) {
+            insert.setBytes(1, new byte[bytes]);
+            insert.execute();
+        }
+        return results;
+    }
+}
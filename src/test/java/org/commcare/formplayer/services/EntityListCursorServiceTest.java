@@ -0,0 +1,113 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.commcare.formplayer.configuration.CacheConfiguration;
+import org.commcare.formplayer.sqlitedb.SQLiteDB;
+import org.commcare.formplayer.util.Constants;
+import org.commcare.util.screen.EntityListCursor;
+import org.commcare.util.screen.EntityListCursorStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Tests for EntityListCursorService
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration
+@EnableConfigurationProperties(value = CacheConfiguration.class)
+@TestPropertySource(locations = "classpath:application.properties",
+        properties = "formplayer.entity_list.cursor_cache=true")
+public class EntityListCursorServiceTest {
+
+    private static final String CURSOR_KEY = "app_1|en|m0_case_short|instance('casedb')/casedb/case|0";
+
+    @Autowired
+    EntityListCursorService entityListCursorService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    RestoreFactory restoreFactory;
+
+    private final EntityListCursor cursor = EntityListCursor.fromEntities(new ArrayList<>(), false);
+
+    @BeforeEach
+    public void setUp() {
+        setUser("user.db");
+        when(restoreFactory.getSyncToken()).thenReturn("sync_token");
+    }
+
+    @AfterEach
+    public void cleanup() {
+        cacheManager.getCache(Constants.ENTITY_LIST_CURSOR_CACHE).clear();
+    }
+
+    @Test
+    public void testGetStoredCursor() {
+        entityListCursorService.getCursorStore(null).storeCursor(CURSOR_KEY, cursor);
+        assertSame(cursor, entityListCursorService.getCursorStore(null).getCursor(CURSOR_KEY));
+        assertNull(entityListCursorService.getCursorStore("1.0 2.0").getCursor(CURSOR_KEY));
+    }
+
+    @Test
+    public void testCursorsDiscardedBySync() {
+        EntityListCursorStore store = entityListCursorService.getCursorStore(null);
+        store.storeCursor(CURSOR_KEY, cursor);
+        when(restoreFactory.getSyncToken()).thenReturn("new_sync_token");
+        assertNull(store.getCursor(CURSOR_KEY));
+    }
+
+    @Test
+    public void testInvalidateOnlyDiscardsCurrentUser() {
+        entityListCursorService.getCursorStore(null).storeCursor(CURSOR_KEY, cursor);
+        setUser("other_user.db");
+        entityListCursorService.getCursorStore(null).storeCursor(CURSOR_KEY, cursor);
+
+        entityListCursorService.invalidate();
+        assertNull(entityListCursorService.getCursorStore(null).getCursor(CURSOR_KEY));
+        setUser("user.db");
+        assertSame(cursor, entityListCursorService.getCursorStore(null).getCursor(CURSOR_KEY));
+    }
+
+    private void setUser(String databaseFile) {
+        SQLiteDB userDB = mock(SQLiteDB.class);
+        when(userDB.getDatabaseFile()).thenReturn(new File(databaseFile));
+        when(restoreFactory.getSQLiteDB()).thenReturn(userDB);
+    }
+
+    /**
+     * Only include the service under test and its dependencies
+     */
+    @ComponentScan(
+            basePackageClasses = {EntityListCursorService.class},
+            useDefaultFilters = false,
+            includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = {
+                    EntityListCursorService.class})
+    )
+    @Configuration
+    public static class EntityListCursorServiceTestConfig {
+
+        @MockBean
+        public RestoreFactory restoreFactory;
+    }
+}
@@ -42,10 +42,13 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.FilterType;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.io.InputStreamReader;
 import java.util.Arrays;
@@ -209,13 +212,35 @@ public class FormDefinitionServiceTest {
         SerializableFormDefinition formDef = this.formDefinitionService.getOrCreateFormDefinition(
                 this.appId, this.formXmlns, this.formVersion, this.formDef
         );
-        String sessionId = UUID.randomUUID().toString();
-        SerializableFormSession session = new SerializableFormSession(sessionId);
+        SerializableFormSession session = new SerializableFormSession(UUID.randomUUID().toString());
         session.setFormDefinition(formDef);
-
-        assertThat(getCachedFormDefinition(sessionId)).isEmpty();
-        this.formDefinitionService.getFormDef(session);
-        assertThat(getCachedFormDefinition(sessionId)).isNotEmpty();
+        SerializableFormSession otherSession = new SerializableFormSession(UUID.randomUUID().toString());
+        otherSession.setFormDefinition(formDef);
+
+        ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(request);
+        FormDef first;
+        FormDef second;
+        try {
+            first = this.formDefinitionService.getFormDef(session);
+            // checked out for the rest of the request
+            second = this.formDefinitionService.getFormDef(otherSession);
+            assertThat(second).isNotSameAs(first);
+        } finally {
+            request.requestCompleted();
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        // other sessions of the same form reuse it once the request has completed
+        request = new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(request);
+        try {
+            FormDef reused = this.formDefinitionService.getFormDef(otherSession);
+            assertThat(reused).isIn(first, second);
+        } finally {
+            request.requestCompleted();
+            RequestContextHolder.resetRequestAttributes();
+        }
     }
 
     @Test
@@ -0,0 +1,147 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.commcare.formplayer.beans.FormEntryResponseBean;
+import org.commcare.formplayer.beans.QuestionBean;
+import org.commcare.formplayer.configuration.CacheConfiguration;
+import org.commcare.formplayer.util.Constants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Tests for FormTreeDeltaService
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration
+@EnableConfigurationProperties(value = CacheConfiguration.class)
+@TestPropertySource(locations = "classpath:application.properties")
+public class FormTreeDeltaServiceTest {
+
+    private static final String SESSION_ID = "session_1";
+
+    @Autowired
+    FormTreeDeltaService formTreeDeltaService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @AfterEach
+    public void cleanup() {
+        cacheManager.getCache(Constants.FORM_TREE_SNAPSHOT_CACHE).clear();
+    }
+
+    @Test
+    public void testChangedFieldsOnly() {
+        FormEntryResponseBean first = response(1, tree("a", "b", "c"));
+        formTreeDeltaService.applyDelta(SESSION_ID, 0, first);
+        assertFalse(first.isDelta());
+        assertNotNull(first.getTree());
+
+        QuestionBean[] tree = tree("a", "b", "c");
+        tree[1].getChildren()[0].setAnswer("new answer");
+        FormEntryResponseBean second = response(2, tree);
+        formTreeDeltaService.applyDelta(SESSION_ID, 1, second);
+        assertTrue(second.isDelta());
+        assertNull(second.getTree());
+        assertEquals(1, second.getChanged().length);
+        assertEquals("b,0", second.getChanged()[0].getIx());
+        assertEquals("new answer", second.getChanged()[0].getAnswer());
+    }
+
+    @Test
+    public void testChangedChildrenSendsGroup() {
+        formTreeDeltaService.applyDelta(SESSION_ID, 0, response(1, tree("a", "b")));
+
+        QuestionBean[] tree = tree("a", "b");
+        tree[0].setChildren(new QuestionBean[0]);
+        FormEntryResponseBean second = response(2, tree);
+        formTreeDeltaService.applyDelta(SESSION_ID, 1, second);
+        assertTrue(second.isDelta());
+        assertEquals(1, second.getChanged().length);
+        assertArrayEquals(new QuestionBean[0], second.getChanged()[0].getChildren());
+    }
+
+    @Test
+    public void testFullTreeWhenClientIsBehind() {
+        formTreeDeltaService.applyDelta(SESSION_ID, 0, response(1, tree("a")));
+        formTreeDeltaService.applyDelta(SESSION_ID, 1, response(2, tree("a")));
+
+        FormEntryResponseBean stale = response(3, tree("a"));
+        formTreeDeltaService.applyDelta(SESSION_ID, 1, stale);
+        assertFalse(stale.isDelta());
+        assertNotNull(stale.getTree());
+    }
+
+    @Test
+    public void testFullTreeWhenTopLevelChanges() {
+        formTreeDeltaService.applyDelta(SESSION_ID, 0, response(1, tree("a", "b")));
+
+        FormEntryResponseBean second = response(2, tree("a"));
+        formTreeDeltaService.applyDelta(SESSION_ID, 1, second);
+        assertFalse(second.isDelta());
+        assertEquals(1, second.getTree().length);
+    }
+
+    @Test
+    public void testRejectedAnswerKeepsClientTree() {
+        formTreeDeltaService.applyDelta(SESSION_ID, 0, response(1, tree("a")));
+        formTreeDeltaService.applyDelta(SESSION_ID, 1, response(2, null));
+
+        FormEntryResponseBean third = response(3, tree("a"));
+        formTreeDeltaService.applyDelta(SESSION_ID, 2, third);
+        assertTrue(third.isDelta());
+        assertEquals(0, third.getChanged().length);
+    }
+
+    /**
+     * @return a group for each of the ixs, each with one question
+     */
+    private static QuestionBean[] tree(String... ixs) {
+        QuestionBean[] groups = new QuestionBean[ixs.length];
+        for (int i = 0; i < ixs.length; i++) {
+            QuestionBean question = new QuestionBean();
+            question.setIx(ixs[i] + ",0");
+            question.setCaption("question " + i);
+            groups[i] = new QuestionBean();
+            groups[i].setIx(ixs[i]);
+            groups[i].setChildren(new QuestionBean[]{question});
+        }
+        return groups;
+    }
+
+    private static FormEntryResponseBean response(int sequenceId, QuestionBean[] tree) {
+        FormEntryResponseBean response = new FormEntryResponseBean();
+        response.setSequenceId(sequenceId);
+        response.setTree(tree);
+        return response;
+    }
+
+    /**
+     * Only include the service under test and its dependencies
+     */
+    @ComponentScan(
+            basePackageClasses = {FormTreeDeltaService.class},
+            useDefaultFilters = false,
+            includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = {
+                    FormTreeDeltaService.class})
+    )
+    @Configuration
+    public static class FormTreeDeltaServiceTestConfig {
+    }
+}
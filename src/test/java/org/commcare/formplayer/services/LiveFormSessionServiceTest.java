@@ -0,0 +1,191 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.commcare.formplayer.configuration.CacheConfiguration;
+import org.commcare.formplayer.objects.SerializableFormSession;
+import org.commcare.formplayer.session.FormSession;
+import org.commcare.formplayer.sqlitedb.SQLiteDB;
+import org.commcare.formplayer.util.Constants;
+import org.javarosa.core.model.FormDef;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.File;
+import java.util.function.Supplier;
+
+/**
+ * Tests for LiveFormSessionService
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration
+@EnableConfigurationProperties(value = CacheConfiguration.class)
+@TestPropertySource(locations = "classpath:application.properties",
+        properties = "formplayer.session.live_cache=true")
+public class LiveFormSessionServiceTest {
+
+    private static final String SESSION_ID = "live_session_id";
+
+    @Autowired
+    LiveFormSessionService liveFormSessionService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    RestoreFactory restoreFactory;
+
+    @Autowired
+    FormplayerStorageFactory storageFactory;
+
+    private FormSession formSession;
+
+    @BeforeEach
+    public void setUp() {
+        SQLiteDB userDB = mock(SQLiteDB.class);
+        when(userDB.getDatabaseFile()).thenReturn(new File("user.db"));
+        SQLiteDB applicationDB = mock(SQLiteDB.class);
+        when(applicationDB.getDatabaseFile()).thenReturn(new File("application.db"));
+        when(restoreFactory.getSQLiteDB()).thenReturn(userDB);
+        when(restoreFactory.getSyncToken()).thenReturn("sync_token");
+        when(storageFactory.getSQLiteDB()).thenReturn(applicationDB);
+
+        formSession = mock(FormSession.class);
+        when(formSession.getFormDef()).thenReturn(new FormDef());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        cacheManager.getCache(Constants.LIVE_FORM_SESSION_CACHE).clear();
+    }
+
+    @Test
+    public void testCheckoutAfterCheckin() {
+        inRequest(() -> {
+            liveFormSessionService.checkin(formSession, getSession(1));
+            // not available until the request that checked it in completes
+            assertNull(liveFormSessionService.checkout(getSession(1)));
+            return null;
+        });
+
+        SerializableFormSession nextSession = getSession(1);
+        FormSession liveSession = inRequest(() -> liveFormSessionService.checkout(nextSession));
+        assertSame(formSession, liveSession);
+        verify(formSession).resume(nextSession, restoreFactory);
+
+        // checked out sessions are not handed to a second request
+        assertNull(inRequest(() -> liveFormSessionService.checkout(getSession(1))));
+    }
+
+    @Test
+    public void testCheckoutOutOfDateVersion() {
+        inRequest(() -> {
+            liveFormSessionService.checkin(formSession, getSession(1));
+            return null;
+        });
+        assertNull(inRequest(() -> liveFormSessionService.checkout(getSession(2))));
+    }
+
+    @Test
+    public void testCheckoutAfterSync() {
+        inRequest(() -> {
+            liveFormSessionService.checkin(formSession, getSession(1));
+            return null;
+        });
+        when(restoreFactory.getSyncToken()).thenReturn("new_sync_token");
+        assertNull(inRequest(() -> liveFormSessionService.checkout(getSession(1))));
+    }
+
+    @Test
+    public void testCheckoutAfterInvalidate() {
+        inRequest(() -> {
+            liveFormSessionService.checkin(formSession, getSession(1));
+            return null;
+        });
+        SQLiteDB otherUserDB = mock(SQLiteDB.class);
+        when(otherUserDB.getDatabaseFile()).thenReturn(new File("other_user.db"));
+        when(restoreFactory.getSQLiteDB()).thenReturn(otherUserDB);
+        liveFormSessionService.invalidate();
+
+        // only discards the sessions of the user whose cases changed
+        SQLiteDB userDB = mock(SQLiteDB.class);
+        when(userDB.getDatabaseFile()).thenReturn(new File("user.db"));
+        when(restoreFactory.getSQLiteDB()).thenReturn(userDB);
+        inRequest(() -> {
+            assertSame(formSession, liveFormSessionService.checkout(getSession(1)));
+            liveFormSessionService.checkin(formSession, getSession(1));
+            return null;
+        });
+
+        liveFormSessionService.invalidate();
+        assertNull(inRequest(() -> liveFormSessionService.checkout(getSession(1))));
+    }
+
+    @Test
+    public void testCheckoutOutsideRequest() {
+        inRequest(() -> {
+            liveFormSessionService.checkin(formSession, getSession(1));
+            return null;
+        });
+        assertNull(liveFormSessionService.checkout(getSession(1)));
+    }
+
+    private SerializableFormSession getSession(int version) {
+        SerializableFormSession session = new SerializableFormSession(SESSION_ID);
+        ReflectionTestUtils.setField(session, "version", version);
+        return session;
+    }
+
+    private <T> T inRequest(Supplier<T> request) {
+        ServletRequestAttributes requestAttributes = new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+        try {
+            return request.get();
+        } finally {
+            requestAttributes.requestCompleted();
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    /**
+     * Only include the service under test and its dependencies
+     */
+    @ComponentScan(
+            basePackageClasses = {LiveFormSessionService.class},
+            useDefaultFilters = false,
+            includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = {
+                    LiveFormSessionService.class})
+    )
+    @Configuration
+    public static class LiveFormSessionServiceTestConfig {
+
+        @MockBean
+        public RestoreFactory restoreFactory;
+
+        @MockBean
+        public FormplayerStorageFactory storageFactory;
+
+        @MockBean
+        public FormDefinitionService formDefinitionService;
+    }
+}
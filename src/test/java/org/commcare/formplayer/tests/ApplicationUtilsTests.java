@@ -2,6 +2,7 @@ package org.commcare.formplayer.tests;
 
 import org.commcare.formplayer.sqlitedb.ApplicationDB;
 import org.commcare.formplayer.sqlitedb.SQLiteDB;
+import org.commcare.formplayer.sqlitedb.SharedApplicationDB;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
@@ -20,4 +21,35 @@ public class ApplicationUtilsTests {
 
         assert !new File(db.getDatabaseFileForDebugPurposes()).getParentFile().exists();
     }
+
+    @Test
+    public void testSharedApplicationDbPointer() throws Exception {
+        ApplicationDB db = new ApplicationDB("dummy-domain", "dummy-username", null, "dummy-app-id");
+        SharedApplicationDB sharedDB = new SharedApplicationDB("dummy-domain", "dummy-app-id", "dummy-build");
+        SharedApplicationDB stagingDB = sharedDB.newStagingDB();
+        try {
+            stagingDB.createDatabaseFolder();
+            new File(stagingDB.getDatabaseFileForDebugPurposes()).createNewFile();
+            assert db.getSharedApplicationDB() == null;
+
+            assert sharedDB.publish(stagingDB);
+            assert sharedDB.databaseFileExists();
+            assert !stagingDB.databaseFolderExists();
+
+            db.setSharedApplicationDB(sharedDB);
+            SharedApplicationDB resolved = db.getSharedApplicationDB();
+            assert resolved != null;
+            assert "dummy-build".equals(resolved.getBuildKey());
+
+            // a second install of the same build loses the race and is discarded
+            SharedApplicationDB otherStagingDB = sharedDB.newStagingDB();
+            otherStagingDB.createDatabaseFolder();
+            new File(otherStagingDB.getDatabaseFileForDebugPurposes()).createNewFile();
+            assert !sharedDB.publish(otherStagingDB);
+            assert !otherStagingDB.databaseFolderExists();
+        } finally {
+            db.deleteDatabaseFolder();
+            sharedDB.deleteDatabaseFolder();
+        }
+    }
 }
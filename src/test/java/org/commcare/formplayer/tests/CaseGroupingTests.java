@@ -17,9 +17,11 @@ import org.commcare.formplayer.junit.RestoreFactoryExtension;
 import org.commcare.formplayer.junit.StorageFactoryExtension;
 import org.commcare.formplayer.junit.request.Response;
 import org.commcare.formplayer.junit.request.SessionNavigationRequest;
+import org.commcare.formplayer.services.EntityListCursorService;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.commcare.formplayer.utils.MockRequestUtils;
+import org.commcare.formplayer.util.Constants;
 import org.commcare.formplayer.utils.TestContext;
 import org.commcare.formplayer.web.client.WebClient;
 import org.junit.jupiter.api.BeforeEach;
@@ -28,8 +30,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 
 @WebMvcTest
@@ -54,6 +59,12 @@ public class CaseGroupingTests {
     @Autowired
     FormplayerStorageFactory storageFactoryMock;
 
+    @Autowired
+    EntityListCursorService entityListCursorService;
+
+    @Autowired
+    CacheManager cacheManager;
+
     @RegisterExtension
     static RestoreFactoryExtension restoreFactoryExt = new RestoreFactoryExtension.builder()
             .withUser("caseclaimuser").withDomain("caseclaimdomain")
@@ -117,6 +128,41 @@ public class CaseGroupingTests {
         matchEntityIds(expectedIds, entityListResponse.getEntities());
     }
 
+    @Test
+    public void testCaseListPaginationWithGroupingFromCursor() {
+        ReflectionTestUtils.setField(entityListCursorService, "enabled", true);
+        CaffeineCache cursorCache = (CaffeineCache)cacheManager.getCache(
+                Constants.ENTITY_LIST_CURSOR_CACHE);
+        try {
+            // the first page builds the cursor, which every later page is read from
+            for (int i = 0; i < 2; i++) {
+                EntityListResponse entityListResponse = loadCaseList(0, 2);
+                assertEquals(2, entityListResponse.getPageCount());
+                assertEquals(6, entityListResponse.getEntities().length);
+                matchEntityIds(ImmutableList.of("case1", "case3", "case6", "case2", "case5", "case8"),
+                        entityListResponse.getEntities());
+
+                entityListResponse = loadCaseList(1, 2);
+                assertEquals(5, entityListResponse.getEntities().length);
+                matchEntityIds(ImmutableList.of("case2", "case5", "case8", "case4", "case7"),
+                        entityListResponse.getEntities());
+
+                entityListResponse = loadCaseList(2, 2);
+                assertEquals(1, entityListResponse.getCurrentPage());
+                assertEquals(2, entityListResponse.getEntities().length);
+                matchEntityIds(ImmutableList.of("case4", "case7"), entityListResponse.getEntities());
+
+                // a page past the last group is empty
+                entityListResponse = loadCaseList(3, 2);
+                assertEquals(0, entityListResponse.getEntities().length);
+            }
+            assertEquals(1, cursorCache.getNativeCache().asMap().size());
+        } finally {
+            ReflectionTestUtils.setField(entityListCursorService, "enabled", false);
+            cursorCache.clear();
+        }
+    }
+
     private void matchEntityIds(ImmutableList<String> expectedIds, EntityBean[] entities) {
         for (int i = 0; i < entities.length; i++) {
             assertEquals(expectedIds.get(i), entities[i].getId());
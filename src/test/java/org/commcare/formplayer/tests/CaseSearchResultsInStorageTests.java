@@ -5,9 +5,16 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.Multimap;
+
 import org.commcare.cases.model.Case;
 import org.commcare.formplayer.application.MenuController;
 import org.commcare.formplayer.beans.SessionNavigationBean;
@@ -30,11 +37,13 @@ import org.commcare.formplayer.sandbox.CaseSearchSqlSandbox;
 import org.commcare.formplayer.sandbox.SqlSandboxUtils;
 import org.commcare.formplayer.sandbox.SqlStorage;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
+import org.commcare.formplayer.services.CaseSearchResultStore;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
 import org.commcare.formplayer.services.InstallService;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.commcare.formplayer.sqlitedb.CaseSearchDB;
 import org.commcare.formplayer.sqlitedb.SQLiteDB;
+import org.commcare.formplayer.utils.FileUtils;
 import org.commcare.formplayer.utils.MockRequestUtils;
 import org.commcare.formplayer.utils.TestContext;
 import org.commcare.formplayer.web.client.WebClient;
@@ -54,9 +63,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.FileSystemUtils;
+import org.springframework.web.client.ResponseExtractor;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
@@ -92,6 +105,9 @@ public class CaseSearchResultsInStorageTests {
     @Autowired
     InstallService installService;
 
+    @Autowired
+    CaseSearchResultStore caseSearchResultStore;
+
     @RegisterExtension
     static RestoreFactoryExtension restoreFactoryExt = new RestoreFactoryExtension.builder()
             .withUser("caseclaimuser").withDomain("caseclaimdomain")
@@ -231,6 +247,45 @@ public class CaseSearchResultsInStorageTests {
         }
     }
 
+    @Test
+    public void testSharedResultStore() throws Exception {
+        ReflectionTestUtils.setField(caseSearchResultStore, "enabled", true);
+        try {
+            Mockito.reset(webClientMock);
+            byte[] queryResponse = FileUtils.getFile(getClass(),
+                    "query_responses/case_claim_response.xml").getBytes(StandardCharsets.UTF_8);
+            when(webClientMock.postFormData(anyString(), any(Multimap.class),
+                    any(ResponseExtractor.class))).thenAnswer(invocation ->
+                    ((ResponseExtractor<?>)invocation.getArgument(2)).extractData(
+                            new MockClientHttpResponse(queryResponse, HttpStatus.OK)));
+
+            // the first search indexes its results into the store and the second reads them back
+            for (int i = 0; i < 2; i++) {
+                EntityListResponse entityResponse = navigate(new String[]{"1", "action 1"},
+                        EntityListResponse.class).bean();
+                assertEquals(1, entityResponse.getEntities().length);
+                EntityBean entity = entityResponse.getEntities()[0];
+                assertEquals("0156fa3e-093e-4136-b95c-01b13dae66c6", entity.getId());
+                assertEquals("Burt Maclin", entity.getData()[0]);
+            }
+            verify(webClientMock, times(1)).postFormData(anyString(), any(Multimap.class),
+                    any(ResponseExtractor.class));
+            verify(webClientMock, never()).postFormData(anyString(), any(Multimap.class));
+            verify(caseSearchResultStore, times(1)).publish(anyString(), any());
+
+            // nothing is written to the user's own case search storage
+            String cacheKey = "caseclaimdomain_caseclaimuser_http://localhost:8000/a/test/phone/search"
+                    + "/_case_type=case1=case2=case3_include_closed=False_x_commcare_tag_module_name=Search All Cases";
+            SQLiteDB caseSearchDb = new CaseSearchDB("caseclaimdomain", "caseclaimuser", null);
+            UserSqlSandbox caseSearchSandbox = new CaseSearchSqlSandbox(
+                    getCaseSearchTableName(cacheKey), caseSearchDb);
+            assertFalse(caseSearchSandbox.getCaseStorage().isStorageExists());
+        } finally {
+            ReflectionTestUtils.setField(caseSearchResultStore, "enabled", false);
+            Mockito.reset(caseSearchResultStore);
+        }
+    }
+
     private String getCaseSearchTableName(String cacheKey) {
         return UserSqlSandbox.FORMPLAYER_CASE + "_" + MD5.toHex(
                 MD5.hash(cacheKey.getBytes(StandardCharsets.UTF_8)));
@@ -1,16 +1,33 @@
 package org.commcare.formplayer.tests;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.commcare.formplayer.beans.NewFormResponse;
 import org.commcare.formplayer.beans.menus.CommandListResponseBean;
+import org.commcare.formplayer.engine.FormplayerConfigEngine;
 import org.commcare.formplayer.sandbox.SqlSandboxUtils;
 import org.commcare.formplayer.utils.TestContext;
+import org.javarosa.core.model.FormDef;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.test.context.ContextConfiguration;
 
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Created by willpride on 1/14/16.
  */
@@ -54,6 +71,33 @@ public class InstallTests extends BaseTestClass {
 
     }
 
+    @Test
+    public void testNewFormWithPrefetch() throws Exception {
+        SqlSandboxUtils.deleteDatabaseFolder("dbs");
+        CountingPrefetchExecutor executor = new CountingPrefetchExecutor();
+        FormplayerConfigEngine.setInstallPrefetchExecutor(executor, 4);
+        try {
+            CommandListResponseBean menuResponseBean =
+                    doInstall("requests/install/install.json");
+            assert menuResponseBean.getCommands().length == 12;
+            assert menuResponseBean.getTitle().equals("Basic Tests");
+
+            NewFormResponse newFormResponse =
+                    sessionNavigate(new String[]{"0", "0"}, "case", NewFormResponse.class);
+            assert newFormResponse.getTree().length > 0;
+
+            // forms and locale files were parsed by the prefetches and installed from those
+            assertTrue(executor.prefetched.count(FormDef.class) > 0);
+            assertTrue(executor.prefetched.count(Hashtable.class) > 0);
+            assertTrue(executor.taken.count(FormDef.class) > 0);
+            assertTrue(executor.taken.count(Hashtable.class) > 0);
+        } finally {
+            FormplayerConfigEngine.setInstallPrefetchExecutor(null, 0);
+            executor.shutdownNow();
+            SqlSandboxUtils.deleteDatabaseFolder("dbs");
+        }
+    }
+
     @Test
     public void testCaseSelect() throws Exception {
         SqlSandboxUtils.deleteDatabaseFolder("dbs");
@@ -66,4 +110,75 @@ public class InstallTests extends BaseTestClass {
         SqlSandboxUtils.deleteDatabaseFolder("dbs");
     }
 
+    /**
+     * Runs prefetches as soon as they are submitted, so that none of them is still pending when
+     * its installer looks for it, and counts the resources they parsed and the installers took
+     */
+    private static class CountingPrefetchExecutor extends AbstractExecutorService {
+        private final Multiset<Class<?>> prefetched = ConcurrentHashMultiset.create();
+        private final Multiset<Class<?>> taken = ConcurrentHashMultiset.create();
+        private volatile boolean shutdown;
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new FutureTask<T>(callable) {
+                @Override
+                protected void set(T resource) {
+                    if (resource != null) {
+                        prefetched.add(getResourceType(resource));
+                    }
+                    super.set(resource);
+                }
+
+                @Override
+                public T get() throws InterruptedException, ExecutionException {
+                    T resource = super.get();
+                    if (resource != null) {
+                        taken.add(getResourceType(resource));
+                    }
+                    return resource;
+                }
+            };
+        }
+
+        private static Class<?> getResourceType(Object resource) {
+            if (resource instanceof FormDef) {
+                return FormDef.class;
+            } else if (resource instanceof Hashtable) {
+                return Hashtable.class;
+            }
+            return resource.getClass();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package org.commcare.formplayer.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.commcare.formplayer.api.json.JsonActionUtils;
+import org.commcare.formplayer.api.json.PromptToJson;
+import org.commcare.formplayer.api.json.Walker;
+import org.commcare.formplayer.beans.NewFormResponse;
+import org.commcare.formplayer.beans.QuestionBean;
+import org.commcare.formplayer.session.FormSession;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+
+/**
+ * Checks that the question trees built as beans serialize the same as the ones formerly built
+ * through org.json by Walker and PromptToJson.
+ */
+@WebMvcTest
+public class QuestionTreeTest extends BaseTestClass {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        configureRestoreFactory("test", "test");
+    }
+
+    @Test
+    public void testQuestionTypes() throws Exception {
+        String sessionId = answerQuestionTypes();
+        assertSameTree(getFormSession(formSessionService.getSessionById(sessionId)));
+    }
+
+    @Test
+    public void testGroupsAndSelects() throws Exception {
+        NewFormResponse newSessionResponse = startNewForm("requests/new_form/new_form_2.json",
+                "xforms/question_types_2.xml");
+        String sessionId = newSessionResponse.getSessionId();
+        answerQuestionGetResult("1", "William Pride", sessionId);
+        answerQuestionGetResult("8,1", "1", sessionId);
+        answerQuestionGetResult("8,2", "2", sessionId);
+        assertSameTree(getFormSession(formSessionService.getSessionById(sessionId)));
+    }
+
+    @Test
+    public void testRepeats() throws Exception {
+        NewFormResponse newSessionResponse = startNewForm("requests/new_form/new_form.json",
+                "xforms/nested_repeat.xml");
+        String sessionId = newSessionResponse.getSessionId();
+        newRepeatRequest(sessionId, "0_0");
+        newRepeatRequest(sessionId, "0_0, 0_0");
+        newRepeatRequest(sessionId, "0_1");
+        assertSameTree(getFormSession(formSessionService.getSessionById(sessionId)));
+    }
+
+    @Test
+    public void testOneQuestionPerScreen() throws Exception {
+        NewFormResponse newSessionResponse = startNewForm("requests/new_form/new_form_oqps.json",
+                "xforms/oqps.xml");
+        FormSession formSession = getFormSession(
+                formSessionService.getSessionById(newSessionResponse.getSessionId()));
+        FormEntryModel model = formSession.getFormEntryModel();
+        FormEntryController controller = formSession.getFormEntryController();
+        FormIndex index = FormIndex.createBeginningOfFormIndex();
+        do {
+            index = controller.getAdjacentIndex(index, true, false);
+            String expected = mapper.writeValueAsString(mapper.readValue(
+                    getOneQuestionPerScreenJson(model, controller, index)
+                            .toString(), QuestionBean[].class));
+            String actual = mapper.writeValueAsString(
+                    JsonActionUtils.getOneQuestionPerScreenTree(model, controller, index));
+            assertEquals(expected, actual);
+        } while (!index.isEndOfFormIndex());
+    }
+
+    private String answerQuestionTypes() throws Exception {
+        NewFormResponse newSessionResponse = startNewForm("requests/new_form/new_form_2.json",
+                "xforms/question_types.xml");
+        String sessionId = newSessionResponse.getSessionId();
+        answerQuestionGetResult("1", "William Pride", sessionId);
+        answerQuestionGetResult("2", "345", sessionId);
+        answerQuestionGetResult("3", "3", sessionId);
+        answerQuestionGetResult("4", "1970-10-23", sessionId);
+        answerQuestionGetResult("6", "12:30:30", sessionId);
+        answerQuestionGetResult("7", "ben rudolph", sessionId);
+        answerQuestionGetResult("8", "123456789", sessionId);
+        answerQuestionGetResult("10", "2", sessionId);
+        answerQuestionGetResult("11", "1 2 3", sessionId);
+        answerQuestionGetResult("17", "[13.0, 7.723388671875]", sessionId);
+        return sessionId;
+    }
+
+    private void assertSameTree(FormSession formSession) throws Exception {
+        FormEntryModel model = formSession.getFormEntryModel();
+        FormEntryController controller = formSession.getFormEntryController();
+        String expected = mapper.writeValueAsString(mapper.readValue(
+                getFullFormJSON(model, controller).toString(),
+                QuestionBean[].class));
+        String actual = mapper.writeValueAsString(
+                JsonActionUtils.getFullFormTree(model, controller));
+        assertEquals(expected, actual);
+    }
+
+    private static JSONArray getFullFormJSON(FormEntryModel fem, FormEntryController fec) {
+        JSONArray ret = new JSONArray();
+        Walker walker = new Walker(ret, FormIndex.createBeginningOfFormIndex(), fec, fem);
+        walker.walk();
+        return ret;
+    }
+
+    private static JSONArray getOneQuestionPerScreenJson(FormEntryModel fem,
+            FormEntryController fec, FormIndex formIndex) {
+        JSONArray ret = new JSONArray();
+        if (formIndex.isEndOfFormIndex()) {
+            return ret;
+        }
+        for (FormEntryPrompt prompt : fec.getQuestionPrompts(formIndex)) {
+            fem.setQuestionIndex(prompt.getIndex());
+            JSONObject obj = new JSONObject();
+            PromptToJson.parseQuestionType(fem, obj);
+            ret.put(obj);
+        }
+        return ret;
+    }
+}
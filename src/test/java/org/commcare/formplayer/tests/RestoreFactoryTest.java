@@ -5,6 +5,7 @@ import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
@@ -14,6 +15,7 @@ import org.commcare.cases.util.CaseDBUtils;
 import org.commcare.formplayer.auth.DjangoAuth;
 import org.commcare.formplayer.beans.AuthenticatedRequestBean;
 import org.commcare.formplayer.configuration.CacheConfiguration;
+import org.commcare.formplayer.exceptions.SyncRestoreException;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.commcare.formplayer.util.Constants;
 import org.commcare.formplayer.util.RequestUtils;
@@ -34,11 +36,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -311,6 +318,37 @@ public class RestoreFactoryTest {
         );
     }
 
+    @Test
+    public void testFailedPipelinedRestoreStopsDownloadThread() throws Exception {
+        ReflectionTestUtils.setField(restoreFactorySpy, "pipelinedRestore", true);
+        try {
+            // malformed response followed by more data than the prefetch queue holds, so the
+            // download thread is left blocked on a full queue when the parse fails
+            InputStream endless = new InputStream() {
+                @Override
+                public int read() {
+                    return ' ';
+                }
+            };
+            InputStream restore = new SequenceInputStream(new ByteArrayInputStream(
+                    "<OpenRosaResponse><a></b>".getBytes(StandardCharsets.UTF_8)), endless);
+            Mockito.doReturn(restore).when(restoreFactorySpy).getRestoreXml(anyBoolean());
+
+            Assertions.assertThrows(SyncRestoreException.class,
+                    () -> restoreFactorySpy.performTimedSync(false, false, false));
+
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith("restore-download-")) {
+                    thread.join(5000);
+                    Assertions.assertFalse(thread.isAlive(),
+                            "download thread still running after failed restore");
+                }
+            }
+        } finally {
+            ReflectionTestUtils.setField(restoreFactorySpy, "pipelinedRestore", false);
+        }
+    }
+
     private void validateHeaders(HttpHeaders headers,
             List<Matcher<Map<? extends String, ? extends List<String>>>> matchers) {
         for (Matcher<Map<? extends String, ? extends List<String>>> matcher : matchers) {
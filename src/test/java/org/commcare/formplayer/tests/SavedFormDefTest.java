@@ -1,6 +1,7 @@
 package org.commcare.formplayer.tests;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 
@@ -69,6 +70,38 @@ public class SavedFormDefTest extends BaseTestClass {
         assertEquals(formSession.getInstanceXml(true), session.getInstanceXml());
     }
 
+    @Test
+    public void testBinaryInstanceStateRoundTrip() throws Exception {
+        NewFormResponse newSessionResponse = startNewForm("requests/new_form/new_form_3.json",
+                "xforms/hidden_value_form.xml");
+        answerQuestionGetResult("0", "9", newSessionResponse.getSessionId());
+
+        SerializableFormSession session = this.formSessionService.getSessionById(
+                newSessionResponse.getSessionId());
+        String expectedXml = session.getInstanceXml();
+        FormSession formSession = new FormSession(session,
+                this.restoreFactoryMock,
+                null,
+                this.storageFactoryMock,
+                null,
+                this.remoteInstanceFetcherMock,
+                this.formDefinitionService
+        );
+        formSession.serialize(true);
+        assertNotNull(session.getInstanceState());
+        assertEquals(expectedXml, session.getInstanceXml());
+
+        FormSession restoredSession = new FormSession(session,
+                this.restoreFactoryMock,
+                null,
+                this.storageFactoryMock,
+                null,
+                this.remoteInstanceFetcherMock,
+                this.formDefinitionService
+        );
+        assertEquals(expectedXml, restoredSession.getInstanceXml(true));
+    }
+
     @Test
     public void testIrrelevantDataIsNotIncludedInSubmission() throws Exception {
         NewFormResponse newSessionResponse = startNewForm("requests/new_form/new_form_3.json",
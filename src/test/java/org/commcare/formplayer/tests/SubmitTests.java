@@ -3,6 +3,8 @@ package org.commcare.formplayer.tests;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.commcare.formplayer.objects.SerializableFormSession.SubmitStatus.PROCESSED_XML;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -18,12 +20,17 @@ import org.commcare.formplayer.exceptions.FormNotFoundException;
 import org.commcare.formplayer.objects.SerializableFormSession;
 import org.commcare.formplayer.sandbox.SqlStorage;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
+import org.commcare.formplayer.services.LiveFormSessionService;
+import org.commcare.formplayer.util.Constants;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.HttpClientErrorException;
 
 import java.util.Map;
@@ -35,6 +42,9 @@ import java.util.Map;
 public class SubmitTests extends BaseTestClass {
     static Map<String, Object> answers = ImmutableMap.of("0", "name", "1", "1");
 
+    @Autowired
+    private LiveFormSessionService liveFormSessionService;
+
     @BeforeEach
     public void setUpLocal() {
         configureRestoreFactory("basic_eofdomain", "basic_eofusername");
@@ -110,6 +120,32 @@ public class SubmitTests extends BaseTestClass {
         assertLocalCaseCount(117);
     }
 
+    @Test
+    public void testSubmissionDiscardsOtherLiveSessions() throws Exception {
+        ReflectionTestUtils.setField(liveFormSessionService, "enabled", true);
+        CaffeineCache liveSessionCache = (CaffeineCache)cacheManager.getCache(
+                Constants.LIVE_FORM_SESSION_CACHE);
+        try {
+            String sessionId = startSession("2", "0");
+            String otherSessionId = startSession("2", "0");
+            assertTrue(liveSessionCache.getNativeCache().asMap().containsKey(otherSessionId));
+
+            SubmitResponseBean response = submitForm(answers, sessionId);
+            assertEquals("success", response.getStatus());
+            assertLocalCaseCount(117);
+
+            // the other session was initialized before the submission wrote its case
+            assertFalse(liveSessionCache.getNativeCache().asMap().containsKey(otherSessionId));
+
+            // so the next request rebuilds it from the persisted session and keeps that live
+            answerQuestionGetResult("0", "name", otherSessionId);
+            assertTrue(liveSessionCache.getNativeCache().asMap().containsKey(otherSessionId));
+        } finally {
+            ReflectionTestUtils.setField(liveFormSessionService, "enabled", false);
+            liveSessionCache.clear();
+        }
+    }
+
     private String startSession(String... selections) throws Exception {
         NewFormResponse response = sessionNavigate(selections, "basic", NewFormResponse.class);
         String sessionId = response.getSessionId();
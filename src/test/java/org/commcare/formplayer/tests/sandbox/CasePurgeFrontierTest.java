@@ -0,0 +1,101 @@
+package org.commcare.formplayer.tests.sandbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.commcare.cases.model.Case;
+import org.commcare.formplayer.api.process.FormRecordProcessorHelper;
+import org.commcare.formplayer.database.models.CasePurgeFrontier;
+import org.commcare.formplayer.database.models.FormplayerCaseIndexTable;
+import org.commcare.formplayer.sandbox.UserSqlSandbox;
+import org.commcare.formplayer.sqlitedb.UserDB;
+import org.javarosa.core.util.DAG;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Tests for tracking the cases an incremental case purge needs to consider
+ */
+public class CasePurgeFrontierTest {
+
+    private static final Set<String> OWNERS = Collections.singleton("owner");
+
+    private UserSqlSandbox sandbox;
+    private FormplayerCaseIndexTable indexTable;
+
+    @BeforeEach
+    public void setUp() {
+        new UserDB("a", "b", null).deleteDatabaseFolder();
+        sandbox = new UserSqlSandbox(new UserDB("a", "b", null));
+        indexTable = new FormplayerCaseIndexTable(sandbox);
+        writeCase("parent", null, true);
+        writeCase("child", "parent", false);
+        writeCase("grandchild", "child", true);
+        writeCase("unrelated", null, true);
+    }
+
+    @Test
+    public void testCaseGraphCoversConnectedCases() {
+        DAG<String, int[], String> caseGraph = FormRecordProcessorHelper.getCaseGraph(
+                sandbox.getCaseStorage(), indexTable, OWNERS, Collections.singleton("parent"))
+                .toDAG();
+        assertEquals(3, caseGraph.getNodesCount());
+        assertNotNull(caseGraph.getNode("grandchild"));
+        assertNull(caseGraph.getNode("unrelated"));
+        assertEquals(1, caseGraph.getChildren("child").size());
+
+        DAG<String, int[], String> fullCaseGraph = FormRecordProcessorHelper.getFullCaseGraph(
+                sandbox.getCaseStorage(), indexTable, OWNERS).toDAG();
+        assertEquals(4, fullCaseGraph.getNodesCount());
+        assertEquals(fullCaseGraph.getNode("child")[0], caseGraph.getNode("child")[0]);
+    }
+
+    @Test
+    public void testFrontierIncludesPreviousIndexTargets() {
+        CasePurgeFrontier frontier = new CasePurgeFrontier(sandbox);
+        assertFalse(frontier.isTracking());
+        frontier.addCases(Collections.singletonList(readCase("child")), indexTable);
+        assertFalse(frontier.isTracking());
+
+        frontier.reset(OWNERS);
+        assertTrue(new CasePurgeFrontier(sandbox).isTracking());
+        assertEquals(OWNERS, frontier.getOwners());
+        assertTrue(frontier.getCaseIds().isEmpty());
+
+        frontier.addCases(Collections.singletonList(readCase("child")), indexTable);
+        assertEquals(Set.of("child", "parent"), frontier.getCaseIds());
+
+        frontier.stopTracking();
+        assertFalse(new CasePurgeFrontier(sandbox).isTracking());
+    }
+
+    private void writeCase(String caseId, String parentId, boolean closed) {
+        Case c = new Case(caseId, "case");
+        c.setCaseId(caseId);
+        c.setUserId("owner");
+        c.setClosed(closed);
+        if (parentId != null) {
+            c.setIndex("parent", "case", parentId);
+        }
+        sandbox.getCaseStorage().write(c);
+        indexTable.indexCase(c);
+    }
+
+    private Case readCase(String caseId) {
+        return sandbox.getCaseStorage().getRecordForValue(Case.INDEX_CASE_ID, caseId);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        sandbox.getConnection().close();
+        new UserDB("a", "b", null).deleteDatabaseFolder();
+    }
+}
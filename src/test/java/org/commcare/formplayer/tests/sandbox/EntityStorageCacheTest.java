@@ -0,0 +1,103 @@
+package org.commcare.formplayer.tests.sandbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.commcare.formplayer.database.models.EntityStorageCache;
+import org.commcare.formplayer.sandbox.UserSqlSandbox;
+import org.commcare.formplayer.sqlitedb.UserDB;
+import org.commcare.suite.model.DetailField;
+import org.commcare.suite.model.Text;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Hashtable;
+
+/**
+ * Tests for persisting evaluated case list fields in the entity cache
+ */
+public class EntityStorageCacheTest {
+
+    private UserSqlSandbox sandbox;
+
+    @BeforeEach
+    public void setUp() {
+        new UserDB("a", "b", null).deleteDatabaseFolder();
+        sandbox = new UserSqlSandbox(new UserDB("a", "b", null));
+    }
+
+    @Test
+    public void testValuesPersistOnceFlushed() {
+        EntityStorageCache cache = sandbox.getEntityStorageCache("app_1_en");
+        String cacheKey = cache.getCacheKey("m0_case_short", "2");
+        cache.cache("1", cacheKey, "sort value");
+        // buffered writes are visible before they are flushed
+        assertEquals("sort value", cache.retrieveCacheValue("1", cacheKey));
+        assertNull(sandbox.getEntityStorageCache("app_1_en").retrieveCacheValue("1", cacheKey));
+
+        cache.flush();
+        EntityStorageCache nextRequestCache = sandbox.getEntityStorageCache("app_1_en");
+        assertEquals("sort value", nextRequestCache.retrieveCacheValue("1", cacheKey));
+        assertEquals(2, nextRequestCache.getSortFieldIdFromCacheKey("m0_case_short", cacheKey));
+
+        cache.cache("1", cacheKey, "updated sort value");
+        cache.flush();
+        assertEquals("updated sort value", nextRequestCache.retrieveCacheValue("1", cacheKey));
+    }
+
+    @Test
+    public void testScopesAreIsolated() {
+        EntityStorageCache cache = sandbox.getEntityStorageCache("app_1_en");
+        cache.cache("1", cache.getCacheKey("m0_case_short", "0"), "sort value");
+        cache.flush();
+
+        EntityStorageCache otherBuildCache = sandbox.getEntityStorageCache("app_2_en");
+        assertNull(otherBuildCache.retrieveCacheValue("1",
+                otherBuildCache.getCacheKey("m0_case_short", "0")));
+    }
+
+    @Test
+    public void testInvalidatedByCaseWrites() {
+        EntityStorageCache cache = sandbox.getEntityStorageCache("app_1_en");
+        String cacheKey = cache.getCacheKey("m0_case_short", "0");
+        cache.cache("1", cacheKey, "sort value");
+        cache.cache("2", cacheKey, "other sort value");
+        cache.flush();
+
+        // as done by the case parsers
+        new EntityStorageCache(EntityStorageCache.CASE_CACHE_NAME, sandbox)
+                .invalidateCaches(Collections.singletonList(1));
+        assertNull(cache.retrieveCacheValue("1", cacheKey));
+        assertEquals("other sort value", cache.retrieveCacheValue("2", cacheKey));
+    }
+
+    @Test
+    public void testOnlyRowLocalSortFieldsAreCacheable() throws XPathSyntaxException {
+        EntityStorageCache cache = sandbox.getEntityStorageCache("app_1_en");
+        assertTrue(cache.isSortFieldCacheable(sortField("concat(case_name, ' ', date_opened)")));
+        // the parent can be renamed without this case being written
+        assertFalse(cache.isSortFieldCacheable(sortField(
+                "instance('casedb')/casedb/case[@case_id = current()/index/parent]/case_name")));
+        assertFalse(cache.isSortFieldCacheable(sortField("today() - date(date_opened)")));
+        assertFalse(cache.isSortFieldCacheable(
+                sortField("instance('commcaresession')/session/user/data/district")));
+    }
+
+    private static DetailField sortField(String sortXPath) throws XPathSyntaxException {
+        DetailField.Builder builder = new DetailField.Builder();
+        builder.setSort(Text.XPathText(sortXPath, new Hashtable<>()));
+        return builder.build();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        sandbox.getConnection().close();
+        new UserDB("a", "b", null).deleteDatabaseFolder();
+    }
+}
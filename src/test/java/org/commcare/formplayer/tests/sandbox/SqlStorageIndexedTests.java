@@ -7,19 +7,32 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import org.commcare.cases.ledger.Ledger;
 import org.commcare.cases.model.Case;
+import org.commcare.cases.query.IndexedDisjunctionLookup;
+import org.commcare.cases.query.IndexedSetMemberLookup;
+import org.commcare.cases.query.IndexedValueLookup;
+import org.commcare.cases.query.IndexedValuePrefixLookup;
+import org.commcare.cases.query.IndexedValueRangeLookup;
+import org.commcare.cases.query.PredicateProfile;
 import org.commcare.formplayer.sandbox.SqlSandboxUtils;
 import org.commcare.formplayer.sandbox.SqlStorage;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
 import org.commcare.formplayer.sqlitedb.UserDB;
 import org.javarosa.core.services.storage.IStorageIterator;
 import org.javarosa.core.util.externalizable.PrototypeFactory;
+import org.javarosa.xpath.expr.XPathCmpExpr;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SqlStorageIndexedTests {
 
@@ -149,6 +162,100 @@ public class SqlStorageIndexedTests {
         assertEquals(0, caseStorage.getNumRecords());
     }
 
+    @Test
+    public void testSqlCaseStorageWriteAll() {
+        sandbox = new UserSqlSandbox(new UserDB("a", "b", null));
+        caseStorage = new SqlStorage<>(sandbox, Case.class, "TFCase");
+
+        caseStorage.write(a);
+        a.setName("a_case_name_updated");
+
+        caseStorage.writeAll(Arrays.asList(a, b, c));
+
+        assertEquals(1, a.getID());
+        assertEquals(2, b.getID());
+        assertEquals(3, c.getID());
+        assertEquals(3, caseStorage.getNumRecords());
+        assertEquals("a_case_name_updated", caseStorage.read(1).getName());
+        assertEquals(c.getID(), caseStorage.getRecordForValue("case-id", "c_case_id").getID());
+        assertEquals(3, caseStorage.getIDsForValue("case-type", "case_type_ipsum").size());
+    }
+
+    @Test
+    public void testBulkReadDeserializedInParallel() {
+        sandbox = new UserSqlSandbox(new UserDB("a", "b", null));
+        caseStorage = new SqlStorage<>(sandbox, Case.class, "TFCase");
+
+        List<Case> cases = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            Case bulkCase = new Case("case_name_" + i, "case_type_ipsum");
+            bulkCase.setCaseId("case_id_" + i);
+            bulkCase.setID(-1);
+            cases.add(bulkCase);
+        }
+        caseStorage.writeAll(cases);
+
+        LinkedHashSet<Integer> ids = new LinkedHashSet<>();
+        for (Case bulkCase : cases) {
+            ids.add(bulkCase.getID());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        SqlStorage.setDeserializationExecutor(executor);
+        try {
+            HashMap<Integer, Case> recordMap = new HashMap<>();
+            caseStorage.bulkRead(ids, recordMap);
+            assertEquals(cases.size(), recordMap.size());
+            for (Case bulkCase : cases) {
+                Case read = recordMap.get(bulkCase.getID());
+                assertEquals(bulkCase.getID(), read.getID());
+                assertEquals(bulkCase.getCaseId(), read.getCaseId());
+                assertEquals(bulkCase.getName(), read.getName());
+            }
+        } finally {
+            SqlStorage.setDeserializationExecutor(null);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSqlCaseStorageProfileLookups() {
+        sandbox = new UserSqlSandbox(new UserDB("a", "b", null));
+        caseStorage = new SqlStorage<>(sandbox, Case.class, "TFCase");
+
+        a.setExternalId("5");
+        b.setExternalId("2021-01-01");
+        c.setExternalId("abc");
+        caseStorage.writeAll(Arrays.asList(a, b, c));
+
+        assertEquals(Arrays.asList(1, 3), getIDsForProfiles(
+                new IndexedSetMemberLookup(Case.INDEX_CASE_ID, "a_case_id c_case_id")));
+        assertEquals(Arrays.asList(2), getIDsForProfiles(
+                new IndexedValuePrefixLookup(Case.INDEX_CASE_ID, "b_c")));
+
+        // external ids are compared as xpath numbers, dates as days since the epoch
+        assertEquals(Arrays.asList(1), getIDsForProfiles(
+                new IndexedValueRangeLookup(Case.INDEX_EXTERNAL_ID, XPathCmpExpr.LT, 10)));
+        assertEquals(Arrays.asList(2), getIDsForProfiles(
+                new IndexedValueRangeLookup(Case.INDEX_EXTERNAL_ID, XPathCmpExpr.GT, 10)));
+        assertEquals(Arrays.asList(), getIDsForProfiles(
+                new IndexedValueRangeLookup(Case.INDEX_EXTERNAL_ID, XPathCmpExpr.GTE, Double.NaN)));
+
+        assertEquals(Arrays.asList(1, 2), getIDsForProfiles(
+                new IndexedDisjunctionLookup(
+                        new IndexedValueLookup(Case.INDEX_CASE_ID, "a_case_id"),
+                        new IndexedValueRangeLookup(Case.INDEX_EXTERNAL_ID, XPathCmpExpr.GT, 10))));
+        assertEquals(Arrays.asList(1), getIDsForProfiles(
+                new IndexedValueLookup(Case.INDEX_CASE_TYPE, "case_type_ipsum"),
+                new IndexedValueRangeLookup(Case.INDEX_EXTERNAL_ID, XPathCmpExpr.LTE, 5)));
+    }
+
+    private List<Integer> getIDsForProfiles(PredicateProfile... profiles) {
+        LinkedHashSet<Integer> ids = new LinkedHashSet<>();
+        caseStorage.getIDsForProfiles(Arrays.asList(profiles), ids);
+        return new ArrayList<>(ids);
+    }
+
     @Test
     public void testSqlLedgerStorage() {
         try {
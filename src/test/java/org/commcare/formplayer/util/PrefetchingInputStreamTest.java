@@ -0,0 +1,38 @@
+package org.commcare.formplayer.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+class PrefetchingInputStreamTest {
+
+    @Test
+    void readsSourceInOrder() throws IOException {
+        byte[] payload = new byte[100_000];
+        new Random(42).nextBytes(payload);
+        try (InputStream stream = new PrefetchingInputStream(
+                new ByteArrayInputStream(payload), 1024, 4, "test-prefetch")) {
+            assertArrayEquals(payload, IOUtils.toByteArray(stream));
+        }
+    }
+
+    @Test
+    void surfacesSourceFailure() throws IOException {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+        try (InputStream stream = new PrefetchingInputStream(failing, 1024, 4, "test-prefetch")) {
+            assertThrows(IOException.class, () -> IOUtils.toByteArray(stream));
+        }
+    }
+}
@@ -11,13 +11,17 @@ import org.commcare.formplayer.mocks.MockLockRegistry;
 import org.commcare.formplayer.mocks.TestInstallService;
 import org.commcare.formplayer.objects.FormVolatilityRecord;
 import org.commcare.formplayer.services.CaseSearchHelper;
+import org.commcare.formplayer.services.CaseSearchResultStore;
 import org.commcare.formplayer.services.CategoryTimingHelper;
+import org.commcare.formplayer.services.EntityListCursorService;
 import org.commcare.formplayer.services.FormDefinitionService;
 import org.commcare.formplayer.services.FormSessionService;
+import org.commcare.formplayer.services.FormTreeDeltaService;
 import org.commcare.formplayer.services.FormplayerFormSendCalloutHandler;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
 import org.commcare.formplayer.services.HqUserDetailsService;
 import org.commcare.formplayer.services.InstallService;
+import org.commcare.formplayer.services.LiveFormSessionService;
 import org.commcare.formplayer.services.MediaMetaDataService;
 import org.commcare.formplayer.services.MenuSessionFactory;
 import org.commcare.formplayer.services.MenuSessionRunnerService;
@@ -187,6 +191,11 @@ public class TestContext {
         return new CaseSearchHelper();
     }
 
+    @Bean
+    public CaseSearchResultStore caseSearchResultStore() {
+        return Mockito.spy(CaseSearchResultStore.class);
+    }
+
 
     @Bean
     public CategoryTimingHelper categoryTimingHelper() {
@@ -234,4 +243,19 @@ public class TestContext {
     public CommCareSessionFactory commcareSessionFactory() {
         return Mockito.spy(CommCareSessionFactory.class);
     }
+
+    @Bean
+    public LiveFormSessionService liveFormSessionService() {
+        return Mockito.spy(LiveFormSessionService.class);
+    }
+
+    @Bean
+    public EntityListCursorService entityListCursorService() {
+        return Mockito.spy(EntityListCursorService.class);
+    }
+
+    @Bean
+    public FormTreeDeltaService formTreeDeltaService() {
+        return Mockito.spy(FormTreeDeltaService.class);
+    }
 }
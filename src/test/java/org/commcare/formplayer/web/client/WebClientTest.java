@@ -24,9 +24,11 @@ import org.springframework.test.web.client.ExpectedCount;
 import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 
 public class WebClientTest {
 
@@ -81,4 +83,26 @@ public class WebClientTest {
         mockServer.verify();
     }
 
+    @Test
+    public void testPostFormDataStreamed() {
+        String url = "http://localhost:8000/a/demo/phone/search/1234";
+        ImmutableListMultimap<String, String> postData = ImmutableListMultimap.of("case_type", "patient");
+
+        MultiValueMap<String, String> expectedBody = new LinkedMultiValueMap<>();
+        postData.forEach(expectedBody::add);
+
+        mockServer.expect(ExpectedCount.once(), requestTo(url))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().formData(expectedBody))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_XML)
+                        .body("<results/>")
+                );
+
+        // call method under test
+        String response = webClient.postFormData(url, postData,
+                clientResponse -> StreamUtils.copyToString(clientResponse.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals("<results/>", response);
+        mockServer.verify();
+    }
 }